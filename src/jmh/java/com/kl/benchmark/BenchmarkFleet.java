@@ -0,0 +1,190 @@
+package com.kl.benchmark;
+
+import com.kl.audit.StatusAuditLog;
+import com.kl.cache.DeviceRegistry;
+import com.kl.cache.DeviceSearchIndex;
+import com.kl.cache.DeviceStatsAggregator;
+import com.kl.cache.FaultStatsAggregator;
+import com.kl.cache.FleetSnapshot;
+import com.kl.cache.ResponseCache;
+import com.kl.cache.WarrantyIndex;
+import com.kl.dto.DeviceJsonModule;
+import com.kl.dto.ResponseMappers;
+import com.kl.entity.DeviceFaultRecord;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import com.kl.mapper.DeviceStatusAuditMapper;
+import com.kl.notify.FaultNotifier;
+import com.kl.service.impl.DeviceServiceImpl;
+import com.kl.stream.DeviceEventStream;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 基准测试用的设备群：按固定随机种子生成设备，手工装配 Service 及其内存组件（不启动Spring容器）。
+ */
+class BenchmarkFleet {
+
+    static final String[] TYPES = {"ATM", "VTM", "智能柜台", "网络设备"};
+    static final String[] STATUSES = {"ONLINE", "ONLINE", "ONLINE", "ONLINE", "ONLINE", "ONLINE", "OFFLINE", "FAULT", "MAINTENANCE"};
+    static final String[] VENDORS = {"NCR", "Diebold", "GRG", "Hyosung", "华为"};
+    static final String[] DISTRICTS = {"城东", "城西", "高新", "滨江", "开发区", "东湖", "南山", "北城"};
+
+    final List<DeviceInfo> devices;
+    final DeviceInfoMapper mapper;
+    final DeviceRegistry registry;
+    final DeviceStatsAggregator aggregator;
+    final DeviceSearchIndex searchIndex;
+    final FleetSnapshot snapshot;
+    final WarrantyIndex warrantyIndex;
+    final DeviceEventStream eventStream;
+    final StatusAuditLog auditLog;
+    final DeviceServiceImpl service;
+    private final Path auditDir;
+
+    BenchmarkFleet(int size) {
+        devices = generate(size);
+        mapper = new InMemoryDeviceStore(devices).mapper();
+
+        registry = new DeviceRegistry();
+        ReflectionTestUtils.setField(registry, "deviceInfoMapper", mapper);
+        ReflectionTestUtils.setField(registry, "maxSize", Math.max(size, 1));
+        ReflectionTestUtils.setField(registry, "preload", true);
+        registry.afterPropertiesSet();
+
+        aggregator = new DeviceStatsAggregator();
+        ReflectionTestUtils.setField(aggregator, "deviceInfoMapper", mapper);
+        aggregator.afterPropertiesSet();
+
+        searchIndex = new DeviceSearchIndex();
+        ReflectionTestUtils.setField(searchIndex, "deviceInfoMapper", mapper);
+        searchIndex.afterPropertiesSet();
+
+        snapshot = new FleetSnapshot();
+        ReflectionTestUtils.setField(snapshot, "deviceInfoMapper", mapper);
+        ReflectionTestUtils.setField(snapshot, "enabled", true);
+        snapshot.afterPropertiesSet();
+
+        // 只重建，不启动每日定时任务
+        warrantyIndex = new WarrantyIndex();
+        ReflectionTestUtils.setField(warrantyIndex, "deviceInfoMapper", mapper);
+        ReflectionTestUtils.setField(warrantyIndex, "alertDays", 30);
+        warrantyIndex.rebuild();
+
+        eventStream = new DeviceEventStream();
+        ReflectionTestUtils.setField(eventStream, "deviceSearchIndex", searchIndex);
+
+        try {
+            auditDir = Files.createTempDirectory("bench-audit");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        auditLog = new StatusAuditLog();
+        ReflectionTestUtils.setField(auditLog, "deviceStatusAuditMapper", noopAuditMapper());
+        ReflectionTestUtils.setField(auditLog, "dir", auditDir.toString());
+        ReflectionTestUtils.setField(auditLog, "segmentSizeMb", 64);
+        ReflectionTestUtils.setField(auditLog, "retainSegments", 4);
+        ReflectionTestUtils.setField(auditLog, "queueCapacity", 100000);
+        ReflectionTestUtils.setField(auditLog, "dbFlushIntervalMs", 1000L);
+        ReflectionTestUtils.setField(auditLog, "dbBatchSize", 500);
+        auditLog.start();
+
+        service = new DeviceServiceImpl();
+        ReflectionTestUtils.setField(service, "deviceInfoMapper", mapper);
+        ReflectionTestUtils.setField(service, "deviceRegistry", registry);
+        ReflectionTestUtils.setField(service, "deviceStatsAggregator", aggregator);
+        ReflectionTestUtils.setField(service, "deviceSearchIndex", searchIndex);
+        ReflectionTestUtils.setField(service, "fleetSnapshot", snapshot);
+        ReflectionTestUtils.setField(service, "warrantyIndex", warrantyIndex);
+        ReflectionTestUtils.setField(service, "deviceEventStream", eventStream);
+        ReflectionTestUtils.setField(service, "faultNotifier", new FaultNotifier());
+        ReflectionTestUtils.setField(service, "statusAuditLog", auditLog);
+        ResponseCache responseCache = new ResponseCache();
+        ReflectionTestUtils.setField(responseCache, "responseMappers", new ResponseMappers(
+                JsonMapper.builder().addModule(new DeviceJsonModule()).build(),
+                CBORMapper.builder().addModule(new DeviceJsonModule()).build()));
+        ReflectionTestUtils.setField(service, "responseCache", responseCache);
+        // 只有已关闭的故障，状态变更不会访问故障记录表
+        ReflectionTestUtils.setField(service, "faultStatsAggregator", closedFaults(devices));
+    }
+
+    void close() {
+        auditLog.stop();
+        eventStream.destroy();
+        snapshot.destroy();
+        try (var files = Files.walk(auditDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ignored) {
+            // 临时目录清理失败不影响结果
+        }
+    }
+
+    static List<DeviceInfo> generate(int size) {
+        Random random = new Random(20240101L);
+        int branchCount = Math.max(10, size / 2000);
+        long now = System.currentTimeMillis();
+        List<DeviceInfo> list = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            String district = DISTRICTS[random.nextInt(DISTRICTS.length)];
+            String branch = district + "支行" + String.format("%03d", random.nextInt(branchCount));
+            String type = TYPES[random.nextInt(TYPES.length)];
+
+            DeviceInfo device = new DeviceInfo();
+            device.setId(i);
+            device.setDeviceId(String.format("%s-%07d", type.equals("ATM") ? "ATM" : "DEV", i));
+            device.setDeviceName(district + type + i + "号机");
+            device.setDeviceType(type);
+            device.setVendor(VENDORS[random.nextInt(VENDORS.length)]);
+            device.setModel("M" + random.nextInt(20));
+            device.setIpAddress("10." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256));
+            device.setLocation(district + "区" + random.nextInt(500) + "号营业厅");
+            device.setBranch(branch);
+            device.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+            device.setInstallDate(new Date(now - random.nextInt(5 * 365) * 86_400_000L));
+            device.setWarrantyPeriod(12 * (1 + random.nextInt(5)));
+            device.setCreateTime(device.getInstallDate());
+            device.setUpdateTime(new Date(now - random.nextInt(30 * 86_400) * 1000L));
+            list.add(device);
+        }
+        return list;
+    }
+
+    // 约十分之一的设备各有一条已修复的故障
+    private static FaultStatsAggregator closedFaults(List<DeviceInfo> devices) {
+        String[] codes = {"E001_CASH_JAM", "E002_CARD_READER", "E003_NETWORK", "E004_PRINTER", "E005_POWER"};
+        Random random = new Random(7L);
+        FaultStatsAggregator aggregator = new FaultStatsAggregator();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < devices.size(); i += 10) {
+            DeviceFaultRecord record = new DeviceFaultRecord();
+            record.setFaultCode(codes[random.nextInt(codes.length)]);
+            record.setOccurrenceTime(new Date(now - 86_400_000L));
+            aggregator.onOpen(devices.get(i), record);
+            aggregator.onClose(devices.get(i).getDeviceId(), record.getOccurrenceTime().getTime()
+                    + (5 + random.nextInt(600)) * 60_000L);
+        }
+        return aggregator;
+    }
+
+    private static DeviceStatusAuditMapper noopAuditMapper() {
+        return (DeviceStatusAuditMapper) Proxy.newProxyInstance(DeviceStatusAuditMapper.class.getClassLoader(),
+                new Class<?>[]{DeviceStatusAuditMapper.class}, (proxy, method, args) -> {
+                    if ("batchInsert".equals(method.getName())) {
+                        return ((List<?>) args[0]).size();
+                    }
+                    if (method.getReturnType() == List.class) {
+                        return Collections.emptyList();
+                    }
+                    return null;
+                });
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.kl.benchmark;
+
+import com.kl.dto.BranchHealth;
+import com.kl.dto.BranchHealthReport;
+import com.kl.dto.DeviceStatistics;
+import com.kl.entity.DeviceInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读路径基准：搜索、统计、支行健康度、故障分析和单设备查询。
+ * linearScan* / legacy* 是改造前的实现，留作对照。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DeviceQueryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int fleetSize;
+
+    private BenchmarkFleet fleet;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fleet = new BenchmarkFleet(fleetSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> searchByKeyword() {
+        return fleet.service.searchDevices("城东", null, null, 0, 50);
+    }
+
+    @Benchmark
+    public Map<String, Object> searchByTypeAndBranch() {
+        return fleet.service.searchDevices(null, "ATM", "高新支行001", 0, 50);
+    }
+
+    // 不经过列式快照：搜索索引取出全部匹配设备再排序分页
+    @Benchmark
+    public List<DeviceInfo> indexSearchByTypeAndBranch() {
+        List<DeviceInfo> matched = fleet.searchIndex.search(null, "ATM", "高新支行001");
+        return matched.subList(0, Math.min(50, matched.size()));
+    }
+
+    @Benchmark
+    public List<DeviceInfo> linearScanSearchByKeyword() {
+        return linearScan(fleet.mapper.selectAll(), "城东", null, null);
+    }
+
+    @Benchmark
+    public DeviceStatistics deviceStatistics() {
+        return fleet.service.getDeviceStatistics();
+    }
+
+    @Benchmark
+    public BranchHealthReport branchHealthStats() {
+        return fleet.service.getBranchHealthStats();
+    }
+
+    @Benchmark
+    public List<BranchHealth> counterBranchHealth() {
+        return fleet.aggregator.getBranchHealth();
+    }
+
+    @Benchmark
+    public Map<String, Object> breakdownAllDimensions() {
+        return fleet.service.getBreakdown("branch,deviceType,vendor,status", null, null, null, null, 10000);
+    }
+
+    @Benchmark
+    public Map<String, Object> breakdownDrillDown() {
+        return fleet.service.getBreakdown("deviceType,vendor", "高新支行001", null, null, "FAULT", 1000);
+    }
+
+    @Benchmark
+    public void legacyBranchHealthConversion(Blackhole bh) {
+        long totalDevices = 0;
+        long totalOnline = 0;
+        for (Map<String, Object> stat : fleet.mapper.getBranchHealthStats()) {
+            totalDevices += toLong(stat.get("total"));
+            totalOnline += toLong(stat.get("online"));
+        }
+        bh.consume(totalDevices);
+        bh.consume(totalOnline);
+    }
+
+    @Benchmark
+    public Map<String, Object> faultAnalysis() {
+        return fleet.service.getFaultAnalysis();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> warrantyAlertDevices() {
+        return fleet.service.getWarrantyAlertDevices();
+    }
+
+    @Benchmark
+    public DeviceInfo deviceById() {
+        cursor = cursor % fleetSize + 1;
+        return fleet.service.getDeviceById(cursor);
+    }
+
+    // 改造前 searchDevices 的 Java 过滤逻辑
+    private static List<DeviceInfo> linearScan(List<DeviceInfo> devices, String keyword, String deviceType, String branch) {
+        List<DeviceInfo> filtered = new ArrayList<>();
+        for (DeviceInfo device : devices) {
+            boolean match = true;
+            if (keyword != null && !keyword.trim().isEmpty()) {
+                String lowerKeyword = keyword.toLowerCase().trim();
+                match = device.getDeviceName().toLowerCase().contains(lowerKeyword) ||
+                        device.getDeviceId().toLowerCase().contains(lowerKeyword) ||
+                        device.getLocation().toLowerCase().contains(lowerKeyword) ||
+                        (device.getBranch() != null && device.getBranch().toLowerCase().contains(lowerKeyword));
+            }
+            if (deviceType != null && !deviceType.trim().isEmpty()) {
+                match = match && deviceType.trim().equalsIgnoreCase(device.getDeviceType());
+            }
+            if (branch != null && !branch.trim().isEmpty()) {
+                match = match && device.getBranch() != null &&
+                        device.getBranch().toLowerCase().contains(branch.toLowerCase().trim());
+            }
+            if (match) {
+                filtered.add(device);
+            }
+        }
+        return filtered;
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).longValue();
+        } else if (value instanceof Long) {
+            return (Long) value;
+        } else if (value instanceof Integer) {
+            return ((Integer) value).longValue();
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.kl.benchmark;
+
+import com.kl.dto.DeviceJsonModule;
+import com.kl.entity.DeviceInfo;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备列表序列化基准，对应 GET /api/devices 和搜索接口的响应体。
+ * default 为反射序列化（原实现），typed 为启动时注册的 DeviceInfoSerializer，cbor 为 Accept: application/cbor 时的输出；
+ * 各格式的响应体大小在 setup 时打印。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DeviceSerializationBenchmark {
+
+    @Param({"50", "1000", "10000", "100000"})
+    public int pageSize;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final ObjectMapper typedMapper = JsonMapper.builder().addModule(new DeviceJsonModule()).build();
+    private final ObjectMapper cborMapper = CBORMapper.builder().addModule(new DeviceJsonModule()).build();
+    private List<DeviceInfo> devices;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        devices = BenchmarkFleet.generate(pageSize);
+        System.out.printf("%n%d 台设备响应体: default %d 字节, typed %d 字节, cbor %d 字节%n", pageSize,
+                serializeDevicePage().length, serializeDevicePageTyped().length, serializeDevicePageCbor().length);
+    }
+
+    @Benchmark
+    public byte[] serializeDevicePage() {
+        return objectMapper.writeValueAsBytes(devices);
+    }
+
+    @Benchmark
+    public byte[] serializeDevicePageTyped() {
+        return typedMapper.writeValueAsBytes(devices);
+    }
+
+    @Benchmark
+    public byte[] serializeDevicePageCbor() {
+        return cborMapper.writeValueAsBytes(devices);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.kl.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写路径基准：状态变更（mapper更新 + 缓存/统计/索引/推送 + 审计日志追加）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DeviceWriteBenchmark {
+
+    @Param({"1000", "100000"})
+    public int fleetSize;
+
+    private BenchmarkFleet fleet;
+    private int cursor;
+    private boolean online;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fleet = new BenchmarkFleet(fleetSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public boolean changeDeviceStatus() {
+        cursor = cursor % fleetSize + 1;
+        if (cursor == 1) {
+            online = !online;
+        }
+        return fleet.service.changeDeviceStatus(cursor, online ? "ONLINE" : "OFFLINE", "benchmark", "benchmark");
+    }
+
+}
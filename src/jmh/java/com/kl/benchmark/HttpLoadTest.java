@@ -0,0 +1,166 @@
+package com.kl.benchmark;
+
+import com.kl.metrics.LatencyHistogram;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 接口压测：对运行中的服务保持固定数量的并发请求，统计吞吐、状态码分布和耗时分位数，用于对比平台线程与虚拟线程两种模式。
+ * <p>
+ * 用法（先 mvn -P benchmark test-compile）：
+ * <pre>
+ * java -cp target/classes:target/test-classes com.kl.benchmark.HttpLoadTest \
+ *      --url http://localhost:8080 --concurrency 2000 --seconds 30 --devices 10000 --device-id-format ATM-%07d
+ * </pre>
+ * 依次以默认配置和 --spring.profiles.active=virtual（java21 构建）启动服务各跑一次，比较两次输出。
+ * 请求混合：设备上报（POST /api/devices/telemetry）、按支行查询（走数据库）、按id查询（注册表）、统计概览（内存），
+ * 比例由 --mix 指定，如 "telemetry=6,branch=2,device=1,summary=1"。
+ * 客户端用异步 HttpClient，一个信号量限制在途请求数，不需要为每个并发开线程。
+ */
+public class HttpLoadTest {
+
+    private static final String[] BRANCHES = {"城东", "城西", "高新", "滨江", "开发区", "东湖", "南山", "北城"};
+
+    private final String url;
+    private final int concurrency;
+    private final int seconds;
+    private final int devices;
+    private final String deviceIdFormat;
+    private final String[] schedule;
+
+    private final HttpClient client;
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLong sequence = new AtomicLong();
+
+    HttpLoadTest(Map<String, String> options) {
+        url = options.getOrDefault("url", "http://localhost:8080").replaceAll("/+$", "");
+        concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1000"));
+        seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        devices = Integer.parseInt(options.getOrDefault("devices", "10000"));
+        // 上报用的设备编号格式，按第几台设备（从1开始）格式化
+        deviceIdFormat = options.getOrDefault("device-id-format", "ATM-%07d");
+        schedule = schedule(options.getOrDefault("mix", "telemetry=6,branch=2,device=1,summary=1"));
+        client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        new HttpLoadTest(options).run();
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf("压测 %s：并发 %d，持续 %ds，请求混合 %s%n", url, concurrency, seconds, String.join(",", new LinkedHashSet<>(List.of(schedule))));
+        // 预热：先跑满5秒再清空统计
+        drive(Math.min(5, seconds));
+        latencies.clear();
+        statuses.clear();
+        failures.reset();
+
+        long start = System.nanoTime();
+        long completed = drive(seconds);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        report(completed, elapsed);
+    }
+
+    // 保持 concurrency 个在途请求直到时间结束，返回完成的请求数
+    private long drive(int durationSeconds) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        LongAdder completed = new LongAdder();
+        long deadline = System.nanoTime() + durationSeconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            inFlight.acquire();
+            long n = sequence.getAndIncrement();
+            String kind = schedule[(int) (n % schedule.length)];
+            HttpRequest request = request(kind, n);
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long took = System.nanoTime() - sent;
+                latencies.computeIfAbsent(kind, k -> new LatencyHistogram()).recordNanos(took);
+                if (error != null) {
+                    failures.increment();
+                } else {
+                    statuses.computeIfAbsent(kind + " " + response.statusCode(), k -> new LongAdder()).increment();
+                }
+                completed.increment();
+                inFlight.release();
+            });
+        }
+        // 等在途请求全部结束
+        inFlight.acquire(concurrency);
+        return completed.sum();
+    }
+
+    private HttpRequest request(String kind, long n) {
+        int id = (int) (n % devices) + 1;
+        switch (kind) {
+            case "telemetry":
+                String body = String.format(
+                        "[{\"deviceId\":\"%s\",\"status\":\"ONLINE\",\"cpuUsage\":%d.5,\"memoryUsage\":%d.5,\"networkStatus\":1}]",
+                        String.format(deviceIdFormat, id), 10 + n % 80, 20 + n % 70);
+                return HttpRequest.newBuilder(URI.create(url + "/api/devices/telemetry"))
+                        .timeout(Duration.ofSeconds(30))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+            case "branch":
+                return get("/api/devices/branch/" + URLEncoder.encode(BRANCHES[(int) (n % BRANCHES.length)],
+                        StandardCharsets.UTF_8));
+            case "device":
+                return get("/api/devices/" + id);
+            case "summary":
+                return get("/api/devices/stats/summary");
+            default:
+                throw new IllegalArgumentException("未知的请求类型: " + kind);
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(url + path)).timeout(Duration.ofSeconds(30)).GET().build();
+    }
+
+    private void report(long completed, double elapsed) {
+        System.out.printf("完成 %d 个请求，%.1fs，吞吐 %.0f req/s，连接失败/超时 %d%n",
+                completed, elapsed, completed / elapsed, failures.sum());
+        System.out.printf("%-10s %10s %10s %10s %10s %10s%n", "类型", "请求数", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            System.out.printf("%-10s %10d %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), histogram.getCount(),
+                    histogram.quantileMicros(0.5) / 1000.0, histogram.quantileMicros(0.9) / 1000.0,
+                    histogram.quantileMicros(0.99) / 1000.0, histogram.getMaxMicros() / 1000.0);
+        }
+        System.out.println("状态码分布:");
+        new TreeMap<>(statuses).forEach((key, count) -> System.out.printf("  %-16s %d%n", key, count.sum()));
+    }
+
+    // "telemetry=6,branch=2" -> 按权重展开成轮转表
+    private static String[] schedule(String mix) {
+        List<String> kinds = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            for (int i = 0; i < weight; i++) {
+                kinds.add(pair[0].trim());
+            }
+        }
+        return kinds.toArray(new String[0]);
+    }
+}
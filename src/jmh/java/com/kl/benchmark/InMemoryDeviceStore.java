@@ -0,0 +1,152 @@
+package com.kl.benchmark;
+
+import com.kl.cache.DeviceRegistry;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基准测试用的内存数据库替身：以动态代理实现 DeviceInfoMapper，
+ * 只模拟基准用到的语句，返回值类型与 MySQL 驱动一致（COUNT 为 Long，ROUND/AVG 为 BigDecimal）。
+ * 与 MyBatis 一样，写入时保存副本、查询时返回新对象，调用方修改返回的实体不会影响"库"里的行。
+ */
+class InMemoryDeviceStore implements InvocationHandler {
+
+    private final Map<Integer, DeviceInfo> byId = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idByDeviceId = new ConcurrentHashMap<>();
+
+    InMemoryDeviceStore(List<DeviceInfo> devices) {
+        for (DeviceInfo device : devices) {
+            byId.put(device.getId(), DeviceRegistry.copyOf(device));
+            idByDeviceId.put(device.getDeviceId(), device.getId());
+        }
+    }
+
+    DeviceInfoMapper mapper() {
+        return (DeviceInfoMapper) Proxy.newProxyInstance(DeviceInfoMapper.class.getClassLoader(),
+                new Class<?>[]{DeviceInfoMapper.class}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        if (method.isDefault()) {
+            return InvocationHandler.invokeDefault(proxy, method, args);
+        }
+        switch (method.getName()) {
+            case "selectAll": {
+                List<DeviceInfo> all = copies(byId.values());
+                all.sort((a, b) -> b.getUpdateTime().compareTo(a.getUpdateTime()));
+                return all;
+            }
+            case "selectWarrantyCandidates":
+                return copies(byId.values());
+            case "selectById":
+                return copy(byId.get((Integer) args[0]));
+            case "selectByIds": {
+                List<DeviceInfo> result = new ArrayList<>();
+                for (Object id : (Collection<?>) args[0]) {
+                    DeviceInfo device = byId.get((Integer) id);
+                    if (device != null) {
+                        result.add(DeviceRegistry.copyOf(device));
+                    }
+                }
+                return result;
+            }
+            case "selectByDeviceId": {
+                Integer id = idByDeviceId.get((String) args[0]);
+                return id == null ? null : copy(byId.get(id));
+            }
+            case "updateStatus": {
+                // 替换整行而不是原地修改，已查出的实体不受影响
+                DeviceInfo updated = byId.computeIfPresent((Integer) args[0], (id, device) -> {
+                    DeviceInfo row = DeviceRegistry.copyOf(device);
+                    row.setStatus((String) args[1]);
+                    row.setUpdateTime((Date) args[2]);
+                    return row;
+                });
+                return updated == null ? 0 : 1;
+            }
+            case "countAll":
+                return byId.size();
+            case "countByStatus": {
+                Map<String, Long> counts = new HashMap<>();
+                for (DeviceInfo device : byId.values()) {
+                    counts.merge(device.getStatus(), 1L, Long::sum);
+                }
+                List<Map<String, Object>> rows = new ArrayList<>();
+                counts.forEach((status, count) -> {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("status", status);
+                    row.put("count", count);
+                    rows.add(row);
+                });
+                return rows;
+            }
+            case "countByBranchAndStatus": {
+                Map<List<String>, Long> counts = new HashMap<>();
+                for (DeviceInfo device : byId.values()) {
+                    counts.merge(Arrays.asList(device.getBranch(), device.getStatus()), 1L, Long::sum);
+                }
+                List<Map<String, Object>> rows = new ArrayList<>();
+                counts.forEach((key, count) -> {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("branch", key.get(0));
+                    row.put("status", key.get(1));
+                    row.put("count", count);
+                    rows.add(row);
+                });
+                return rows;
+            }
+            case "getBranchHealthStats":
+                return branchHealthRows();
+            default:
+                throw new UnsupportedOperationException("基准替身未实现: " + method.getName());
+        }
+    }
+
+    private static DeviceInfo copy(DeviceInfo device) {
+        return device == null ? null : DeviceRegistry.copyOf(device);
+    }
+
+    private static List<DeviceInfo> copies(Collection<DeviceInfo> devices) {
+        List<DeviceInfo> result = new ArrayList<>(devices.size());
+        for (DeviceInfo device : devices) {
+            result.add(DeviceRegistry.copyOf(device));
+        }
+        return result;
+    }
+
+    // 模拟原 GROUP BY 查询的结果行
+    private List<Map<String, Object>> branchHealthRows() {
+        Map<String, long[]> byBranch = new HashMap<>();
+        for (DeviceInfo device : byId.values()) {
+            String branch = device.getBranch() == null ? "未分配支行" : device.getBranch().trim();
+            long[] counts = byBranch.computeIfAbsent(branch, k -> new long[3]);
+            counts[0]++;
+            if ("online".equalsIgnoreCase(device.getStatus())) counts[1]++;
+            if ("fault".equalsIgnoreCase(device.getStatus())) counts[2]++;
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        byBranch.forEach((branch, counts) -> {
+            Map<String, Object> row = new HashMap<>();
+            row.put("branch", branch);
+            row.put("total", counts[0]);
+            row.put("online", counts[1]);
+            row.put("online_rate", BigDecimal.valueOf(counts[1] * 100.0 / counts[0]).setScale(2, RoundingMode.HALF_UP));
+            row.put("fault_count", counts[2]);
+            rows.add(row);
+        });
+        return rows;
+    }
+
+}
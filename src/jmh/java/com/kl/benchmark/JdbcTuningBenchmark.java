@@ -0,0 +1,153 @@
+package com.kl.benchmark;
+
+import com.kl.datasource.DataSourceRoutingConfig;
+import com.kl.datasource.PoolTuner;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据库访问基准：同一组 DeviceInfoMapper 语句在默认配置（plain）和 application-perf.yml（tuned）下的对比。
+ * tuned = PoolTuner 调整的连接池（MySQL 下加预编译语句缓存等驱动参数）+ 二级缓存 + 语句级一级缓存。
+ * <p>
+ * 默认连 H2 内存库，只能体现连接池和二级缓存的差别；驱动参数的效果要指定一个 MySQL 库（需先按 README 建表）：
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="JdbcTuningBenchmark -p jdbcUrl=jdbc:mysql://localhost:3306/bank_monitor -p username=root -p password=123456"
+ * </pre>
+ * 写入的设备 device_id 以 JMH- 开头，开始和结束时删除。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class JdbcTuningBenchmark {
+
+    private static final String[] BRANCHES = {"城东支行", "城西支行", "高新支行", "滨江支行", "开发区支行", "东湖支行", "南山支行", "北城支行"};
+    private static final String[] TYPES = {"ATM", "VTM", "智能柜台", "网络设备"};
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"plain", "tuned"})
+    public String mode;
+
+    @Param("jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:db/schema-h2.sql'")
+    public String jdbcUrl;
+
+    @Param("sa")
+    public String username;
+
+    @Param("")
+    public String password;
+
+    @Param("10000")
+    public int devices;
+
+    private HikariDataSource pool;
+    private DeviceInfoMapper mapper;
+    private int[] ids;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        pool = DataSourceRoutingConfig.pool("bench-" + mode, jdbcUrl, username, password, "");
+        Configuration configuration = new Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        if ("tuned".equals(mode)) {
+            new PoolTuner(0, 0, 0, 1, 0, true, 256, 32768).tune(pool);
+            configuration.setCacheEnabled(true);
+            configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+        } else {
+            configuration.setCacheEnabled(false);
+        }
+        configuration.addMapper(DeviceInfoMapper.class);
+
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(pool);
+        factoryBean.setConfiguration(configuration);
+        mapper = new SqlSessionTemplate(factoryBean.getObject()).getMapper(DeviceInfoMapper.class);
+
+        deleteBenchmarkDevices();
+        List<DeviceInfo> batch = new ArrayList<>(BATCH_SIZE);
+        ids = new int[devices];
+        for (int i = 0; i < devices; i++) {
+            batch.add(device(i));
+            if (batch.size() == BATCH_SIZE || i == devices - 1) {
+                mapper.batchInsert(batch);
+                for (int j = 0; j < batch.size(); j++) {
+                    ids[i - batch.size() + 1 + j] = batch.get(j).getId();
+                }
+                batch.clear();
+            }
+        }
+        sequence.set(devices);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        deleteBenchmarkDevices();
+        pool.close();
+    }
+
+    // 按主键查单台设备（注册表未命中时的回源路径）
+    @Benchmark
+    public DeviceInfo lookupById() {
+        return mapper.selectById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    // 按支行查询（/api/devices/branch/{branch}）
+    @Benchmark
+    public List<DeviceInfo> lookupByBranch() {
+        return mapper.selectByBranch(BRANCHES[ThreadLocalRandom.current().nextInt(BRANCHES.length)]);
+    }
+
+    // 批量导入的一批（多行 VALUES，回填自增id）
+    @Benchmark
+    public int batchInsert() {
+        List<DeviceInfo> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(device(sequence.getAndIncrement()));
+        }
+        return mapper.batchInsert(batch);
+    }
+
+    private static DeviceInfo device(long n) {
+        DeviceInfo device = new DeviceInfo();
+        device.setDeviceId(String.format("JMH-%09d", n));
+        device.setDeviceName("基准设备" + n);
+        device.setDeviceType(TYPES[(int) (n % TYPES.length)]);
+        device.setVendor("vendor-" + n % 5);
+        device.setModel("model-" + n % 20);
+        device.setIpAddress("10.0." + (n >> 8 & 255) + "." + (n & 255));
+        device.setBranch(BRANCHES[(int) (n % BRANCHES.length)]);
+        device.setLocation(device.getBranch() + "大厅");
+        device.setStatus("ONLINE");
+        device.setInstallDate(new Date());
+        device.setWarrantyPeriod(36);
+        device.setCreateTime(new Date());
+        device.setUpdateTime(new Date());
+        return device;
+    }
+
+    private void deleteBenchmarkDevices() throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM device_info WHERE device_id LIKE 'JMH-%'");
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.kl.alert;
+
+import com.kl.cache.DeviceRegistry;
+import com.kl.entity.DeviceInfo;
+import com.kl.entity.DeviceStatusLog;
+import com.kl.notify.FaultNotifier;
+import com.kl.service.DeviceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上报指标的流式告警：规则在加载时编译，每条上报按设备类型取出适用的规则逐条求值。
+ * <p>
+ * 每台设备一个状态对象，保存各规则是否处于告警中、持续超限的起始时间，以及 RATE 规则的滑动窗口
+ * （定长环形数组）。只由上报落库线程调用 {@link #evaluate}，状态不加锁；求值过程不分配对象，
+ * 只有规则触发时才生成告警记录并把动作（标记故障或发送通知）交给单独的线程执行。
+ * 规则触发后在条件恢复前不会重复触发。重新加载规则时，定义未变的规则沿用各设备已有的状态
+ * （告警中、持续超限起始时间、滑动窗口），新增或修改的规则从头开始。
+ */
+@Component
+public class AlertEngine implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertEngine.class);
+
+    private static final int WINDOW_CAPACITY = 64;
+    // device_info 中不存在的设备，隔多久再查一次
+    private static final long UNKNOWN_RECHECK_MS = 300_000L;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private FaultNotifier faultNotifier;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${bank-monitor.alert.rules-location:classpath:alert-rules.json}")
+    private String rulesLocation;
+
+    @Value("${bank-monitor.alert.recent-size:200}")
+    private int recentSize;
+
+    @Value("${bank-monitor.alert.action-queue-capacity:1000}")
+    private int actionQueueCapacity;
+
+    private volatile RuleSet ruleSet = new RuleSet(0, Collections.emptyList());
+    // 只由 evaluate 线程新建和替换；重新加载规则、删除设备时移除
+    private final ConcurrentHashMap<String, DeviceState> states = new ConcurrentHashMap<>();
+    private final Deque<Map<String, Object>> recent = new ArrayDeque<>();
+
+    private ThreadPoolExecutor actionExecutor;
+    private volatile boolean running;
+
+    private final AtomicLong sampleCount = new AtomicLong();
+    private final AtomicLong outOfOrderCount = new AtomicLong();
+    private final AtomicLong firedCount = new AtomicLong();
+    private final AtomicLong resolvedCount = new AtomicLong();
+    private final AtomicLong actionFailedCount = new AtomicLong();
+    private final AtomicLong actionDroppedCount = new AtomicLong();
+
+    // 对一批上报求值（上报落库线程调用）
+    public void evaluate(List<DeviceStatusLog> logs) {
+        RuleSet rules = ruleSet;
+        if (rules.rules.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (DeviceStatusLog log : logs) {
+            DeviceState state = states.get(log.getDeviceId());
+            if (state == null || state.generation != rules.generation || (state.id == null && now >= state.recheckAt)) {
+                DeviceState previous = state;
+                state = newState(rules, log.getDeviceId(), now);
+                if (previous != null) {
+                    state.carryOver(previous);
+                }
+                states.put(log.getDeviceId(), state);
+            }
+            if (state.rules.length == 0) {
+                continue;
+            }
+            long time = log.getLogTime().getTime();
+            if (time < state.lastTime) {
+                outOfOrderCount.incrementAndGet();
+                continue;
+            }
+            state.lastTime = time;
+            for (int i = 0; i < state.rules.length; i++) {
+                evaluate(state, i, log, time);
+            }
+        }
+        sampleCount.addAndGet(logs.size());
+    }
+
+    private void evaluate(DeviceState state, int i, DeviceStatusLog log, long time) {
+        CompiledRule rule = state.rules[i];
+        Number reading = rule.reader.apply(log);
+        if (reading == null) {
+            return;
+        }
+        double value = reading.doubleValue();
+
+        boolean breach;
+        switch (rule.type) {
+            case CompiledRule.SUSTAINED:
+                if (rule.condition.test(value)) {
+                    if (state.since[i] == 0) {
+                        state.since[i] = time;
+                    }
+                    breach = time - state.since[i] >= rule.durationMs;
+                    if (!breach) {
+                        // 尚未持续够时长：保持当前告警状态不变
+                        return;
+                    }
+                } else {
+                    state.since[i] = 0;
+                    breach = false;
+                }
+                break;
+            case CompiledRule.RATE:
+                value = pushAndRate(state, i, value, time, rule.windowMs);
+                if (Double.isNaN(value)) {
+                    return;
+                }
+                breach = rule.condition.test(value);
+                break;
+            default:
+                breach = rule.condition.test(value);
+        }
+
+        if (breach && !state.active[i]) {
+            state.active[i] = true;
+            fire(state, rule, value, time);
+        } else if (!breach && state.active[i]) {
+            state.active[i] = false;
+            resolvedCount.incrementAndGet();
+        }
+    }
+
+    // 写入滑动窗口，返回窗口内每分钟变化量；样本不足时返回 NaN
+    private static double pushAndRate(DeviceState state, int i, double value, long time, long windowMs) {
+        long[] times = state.windowTimes[i];
+        double[] values = state.windowValues[i];
+        int head = state.windowHead[i];
+        int size = state.windowSize[i];
+
+        int tail = (head + size) % WINDOW_CAPACITY;
+        times[tail] = time;
+        values[tail] = value;
+        if (size == WINDOW_CAPACITY) {
+            head = (head + 1) % WINDOW_CAPACITY;
+        } else {
+            size++;
+        }
+        while (size > 1 && time - times[head] > windowMs) {
+            head = (head + 1) % WINDOW_CAPACITY;
+            size--;
+        }
+        state.windowHead[i] = head;
+        state.windowSize[i] = size;
+
+        long span = time - times[head];
+        if (size < 2 || span <= 0) {
+            return Double.NaN;
+        }
+        return (value - values[head]) * 60_000.0 / span;
+    }
+
+    private void fire(DeviceState state, CompiledRule compiled, double value, long time) {
+        firedCount.incrementAndGet();
+        AlertRule rule = compiled.rule;
+        String detail = describe(compiled, value);
+
+        Map<String, Object> alert = new LinkedHashMap<>();
+        alert.put("ruleId", rule.getId());
+        alert.put("ruleName", rule.getName());
+        alert.put("deviceId", state.deviceId);
+        alert.put("value", value);
+        alert.put("detail", detail);
+        alert.put("action", compiled.fault ? "FAULT" : "NOTIFY");
+        alert.put("time", new Date(time));
+        synchronized (recent) {
+            recent.addFirst(alert);
+            while (recent.size() > recentSize) {
+                recent.removeLast();
+            }
+        }
+
+        Integer id = state.id;
+        Runnable action = compiled.fault
+                ? () -> deviceService.markDeviceAsFault(id,
+                        rule.getFaultCode() != null ? rule.getFaultCode() : rule.getId().replace('-', '_'),
+                        rule.getFaultLevel() != null ? rule.getFaultLevel() : "HIGH",
+                        "告警规则[" + rule.getName() + "] " + detail)
+                : () -> notify(id, rule, detail, time);
+        actionExecutor.execute(() -> {
+            try {
+                action.run();
+            } catch (Exception e) {
+                actionFailedCount.incrementAndGet();
+                log.warn("告警动作执行失败[{}]: {}", rule.getId(), e.getMessage());
+            }
+        });
+    }
+
+    private void notify(Integer id, AlertRule rule, String detail, long time) {
+        DeviceInfo device = deviceRegistry.getById(id);
+        if (device == null) {
+            return;
+        }
+        String content = String.format("设备: %s (%s)\n位置: %s\n规则: %s\n详情: %s\n时间: %tF %<tT",
+                device.getDeviceName(), device.getDeviceId(), device.getLocation(), rule.getName(), detail, new Date(time));
+        faultNotifier.notifyAlert(device, "【银行设备告警】", content);
+    }
+
+    private static String describe(CompiledRule compiled, double value) {
+        AlertRule rule = compiled.rule;
+        String condition = rule.getMetric() + " " + rule.getOperator() + " " + rule.getThreshold();
+        switch (compiled.type) {
+            case CompiledRule.SUSTAINED:
+                return String.format("%s 持续%d秒，当前值 %.2f", condition, rule.getDurationSeconds(), value);
+            case CompiledRule.RATE:
+                return String.format("%s 每分钟变化量在%d秒窗口内为 %.2f", condition, rule.getWindowSeconds(), value);
+            default:
+                return String.format("%s，当前值 %.2f", condition, value);
+        }
+    }
+
+    private DeviceState newState(RuleSet rules, String deviceId, long now) {
+        DeviceInfo device;
+        try {
+            device = deviceRegistry.getByDeviceId(deviceId);
+        } catch (Exception e) {
+            device = null;
+        }
+        if (device == null) {
+            return new DeviceState(rules.generation, null, deviceId, new CompiledRule[0], now + UNKNOWN_RECHECK_MS);
+        }
+        return new DeviceState(rules.generation, device.getId(), deviceId, rules.forType(device.getDeviceType()), 0);
+    }
+
+    // ---------------- 规则管理 ----------------
+
+    // 重新读取规则文件，编译失败时保留原规则
+    public synchronized List<AlertRule> reloadRules() {
+        List<AlertRule> rules = loadRules();
+        RuleSet reloaded = new RuleSet(ruleSet.generation + 1, rules);
+        ruleSet = reloaded;
+        // 没有可沿用规则的设备状态（含未知设备）直接丢弃，下次上报时重建；其余在下次上报时迁移
+        states.values().removeIf(state -> state.id == null || !state.sharesRuleWith(reloaded.definitions));
+        return rules;
+    }
+
+    // 设备已删除（事务提交后调用）
+    public void remove(String deviceId) {
+        states.remove(deviceId);
+    }
+
+    public List<AlertRule> getRules() {
+        return ruleSet.rules;
+    }
+
+    public List<Map<String, Object>> getRecentAlerts(int limit) {
+        synchronized (recent) {
+            List<Map<String, Object>> result = new ArrayList<>(Math.min(limit, recent.size()));
+            for (Map<String, Object> alert : recent) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(alert);
+            }
+            return result;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("rules", ruleSet.rules.size());
+        stats.put("rulesVersion", ruleSet.generation);
+        stats.put("trackedDevices", states.size());
+        stats.put("samples", sampleCount.get());
+        stats.put("outOfOrder", outOfOrderCount.get());
+        stats.put("fired", firedCount.get());
+        stats.put("resolved", resolvedCount.get());
+        stats.put("actionQueueSize", actionExecutor == null ? 0 : actionExecutor.getQueue().size());
+        stats.put("actionFailed", actionFailedCount.get());
+        stats.put("actionDropped", actionDroppedCount.get());
+        return stats;
+    }
+
+    private List<AlertRule> loadRules() {
+        Resource resource = resourceLoader.getResource(rulesLocation);
+        if (!resource.exists()) {
+            log.warn("告警规则文件不存在，不启用告警: {}", rulesLocation);
+            return Collections.emptyList();
+        }
+        AlertRule[] loaded;
+        try (InputStream in = resource.getInputStream()) {
+            loaded = objectMapper.readValue(in, AlertRule[].class);
+        } catch (IOException | JacksonException e) {
+            throw new IllegalArgumentException("读取告警规则失败: " + e.getMessage(), e);
+        }
+
+        List<AlertRule> rules = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (AlertRule rule : loaded) {
+            CompiledRule.compile(rule);
+            if (!ids.add(rule.getId())) {
+                throw new IllegalArgumentException("告警规则 id 重复: " + rule.getId());
+            }
+            if (rule.getName() == null) {
+                rule.setName(rule.getId());
+            }
+            if (!Boolean.FALSE.equals(rule.getEnabled())) {
+                rules.add(rule);
+            }
+        }
+        return Collections.unmodifiableList(rules);
+    }
+
+    // ---------------- 生命周期 ----------------
+
+    @Override
+    public void start() {
+        ruleSet = new RuleSet(1, loadRules());
+        actionExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(actionQueueCapacity), r -> {
+            Thread thread = new Thread(r, "alert-action");
+            thread.setDaemon(true);
+            return thread;
+        }, (r, executor) -> {
+            actionDroppedCount.incrementAndGet();
+            log.warn("告警动作队列已满，丢弃");
+        });
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        actionExecutor.shutdown();
+        try {
+            actionExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 早于上报服务启动、晚于其停止
+    @Override
+    public int getPhase() {
+        return -1;
+    }
+
+    // 一个版本的已编译规则，按设备类型预先分好组
+    private static final class RuleSet {
+        final int generation;
+        final List<AlertRule> rules;
+        final CompiledRule[] common;
+        final Map<String, CompiledRule[]> byType = new HashMap<>();
+        final Set<String> definitions = new HashSet<>();
+
+        RuleSet(int generation, List<AlertRule> rules) {
+            this.generation = generation;
+            this.rules = rules;
+            List<CompiledRule> shared = new ArrayList<>();
+            Map<String, List<CompiledRule>> typed = new HashMap<>();
+            for (AlertRule rule : rules) {
+                CompiledRule compiled = CompiledRule.compile(rule);
+                definitions.add(compiled.definition);
+                if (rule.getDeviceType() == null || rule.getDeviceType().trim().isEmpty()) {
+                    shared.add(compiled);
+                } else {
+                    typed.computeIfAbsent(rule.getDeviceType().trim().toUpperCase(), k -> new ArrayList<>()).add(compiled);
+                }
+            }
+            common = shared.toArray(new CompiledRule[0]);
+            for (Map.Entry<String, List<CompiledRule>> entry : typed.entrySet()) {
+                List<CompiledRule> merged = new ArrayList<>(entry.getValue());
+                merged.addAll(shared);
+                byType.put(entry.getKey(), merged.toArray(new CompiledRule[0]));
+            }
+        }
+
+        CompiledRule[] forType(String deviceType) {
+            if (deviceType == null) {
+                return common;
+            }
+            return byType.getOrDefault(deviceType.trim().toUpperCase(), common);
+        }
+    }
+
+    private static final class DeviceState {
+        final int generation;
+        final Integer id;
+        final String deviceId;
+        final CompiledRule[] rules;
+        final long recheckAt;
+        final boolean[] active;
+        final long[] since;
+        final long[][] windowTimes;
+        final double[][] windowValues;
+        final int[] windowHead;
+        final int[] windowSize;
+        long lastTime = Long.MIN_VALUE;
+
+        DeviceState(int generation, Integer id, String deviceId, CompiledRule[] rules, long recheckAt) {
+            this.generation = generation;
+            this.id = id;
+            this.deviceId = deviceId;
+            this.rules = rules;
+            this.recheckAt = recheckAt;
+            this.active = new boolean[rules.length];
+            this.since = new long[rules.length];
+            this.windowTimes = new long[rules.length][];
+            this.windowValues = new double[rules.length][];
+            this.windowHead = new int[rules.length];
+            this.windowSize = new int[rules.length];
+            for (int i = 0; i < rules.length; i++) {
+                if (rules[i].type == CompiledRule.RATE) {
+                    windowTimes[i] = new long[WINDOW_CAPACITY];
+                    windowValues[i] = new double[WINDOW_CAPACITY];
+                }
+            }
+        }
+
+        // 从旧版本规则的状态中沿用定义相同的规则
+        void carryOver(DeviceState previous) {
+            if (id == null || !id.equals(previous.id)) {
+                return;
+            }
+            lastTime = previous.lastTime;
+            for (int i = 0; i < rules.length; i++) {
+                for (int j = 0; j < previous.rules.length; j++) {
+                    if (rules[i].definition.equals(previous.rules[j].definition)) {
+                        active[i] = previous.active[j];
+                        since[i] = previous.since[j];
+                        windowTimes[i] = previous.windowTimes[j];
+                        windowValues[i] = previous.windowValues[j];
+                        windowHead[i] = previous.windowHead[j];
+                        windowSize[i] = previous.windowSize[j];
+                        break;
+                    }
+                }
+            }
+        }
+
+        boolean sharesRuleWith(Set<String> definitions) {
+            for (CompiledRule rule : rules) {
+                if (definitions.contains(rule.definition)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
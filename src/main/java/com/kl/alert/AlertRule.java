@@ -0,0 +1,135 @@
+package com.kl.alert;
+
+/**
+ * 告警规则定义（alert-rules.json 中的一项），启动或重新加载时编译成 {@link CompiledRule}。
+ */
+public class AlertRule {
+
+    // 规则唯一标识
+    private String id;
+    // 规则名称，出现在告警内容里
+    private String name;
+    // 适用的设备类型，为空表示全部
+    private String deviceType;
+    // cpu, memory, disk, temperature, cashLevel, network
+    private String metric;
+    // THRESHOLD 超过阈值即触发；SUSTAINED 持续 durationSeconds 后触发；RATE 每分钟变化量超过阈值触发
+    private String type;
+    // >, >=, <, <=, ==, !=
+    private String operator;
+    private Double threshold;
+    // SUSTAINED 的持续时间
+    private Long durationSeconds;
+    // RATE 计算变化率的时间窗口
+    private Long windowSeconds;
+    // FAULT 标记设备故障；NOTIFY 只发通知
+    private String action;
+    // FAULT 动作写入故障记录的代码和等级，默认取规则 id / HIGH
+    private String faultCode;
+    private String faultLevel;
+    private Boolean enabled = true;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDeviceType() {
+        return deviceType;
+    }
+
+    public void setDeviceType(String deviceType) {
+        this.deviceType = deviceType;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public void setOperator(String operator) {
+        this.operator = operator;
+    }
+
+    public Double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(Double threshold) {
+        this.threshold = threshold;
+    }
+
+    public Long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(Long durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    public Long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public void setWindowSeconds(Long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public String getFaultCode() {
+        return faultCode;
+    }
+
+    public void setFaultCode(String faultCode) {
+        this.faultCode = faultCode;
+    }
+
+    public String getFaultLevel() {
+        return faultLevel;
+    }
+
+    public void setFaultLevel(String faultLevel) {
+        this.faultLevel = faultLevel;
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+}
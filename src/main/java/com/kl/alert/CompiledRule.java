@@ -0,0 +1,118 @@
+package com.kl.alert;
+
+import com.kl.entity.DeviceStatusLog;
+import com.kl.rollup.TelemetryMetric;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoublePredicate;
+import java.util.function.Function;
+
+/**
+ * 编译后的规则：指标读取、比较条件都在编译时确定，求值时只做数组和基本类型运算。
+ */
+final class CompiledRule {
+
+    static final int THRESHOLD = 0;
+    static final int SUSTAINED = 1;
+    static final int RATE = 2;
+
+    private static final List<String> OPERATORS = Arrays.asList(">", ">=", "<", "<=", "==", "!=");
+
+    final AlertRule rule;
+    // 规则定义（含 id），重新加载规则时定义不变的规则沿用各设备的求值状态
+    final String definition;
+    final Function<DeviceStatusLog, ? extends Number> reader;
+    final DoublePredicate condition;
+    final int type;
+    final long durationMs;
+    final long windowMs;
+    final boolean fault;
+
+    private CompiledRule(AlertRule rule, Function<DeviceStatusLog, ? extends Number> reader, DoublePredicate condition,
+                         int type, long durationMs, long windowMs, boolean fault) {
+        this.rule = rule;
+        this.definition = String.join("|", rule.getId(), rule.getName(), rule.getDeviceType(), rule.getMetric(),
+                rule.getType(), rule.getOperator(), String.valueOf(rule.getThreshold()),
+                String.valueOf(rule.getDurationSeconds()), String.valueOf(rule.getWindowSeconds()),
+                rule.getAction(), rule.getFaultCode(), rule.getFaultLevel());
+        this.reader = reader;
+        this.condition = condition;
+        this.type = type;
+        this.durationMs = durationMs;
+        this.windowMs = windowMs;
+        this.fault = fault;
+    }
+
+    static CompiledRule compile(AlertRule rule) {
+        if (rule.getId() == null || rule.getId().trim().isEmpty()) {
+            throw new IllegalArgumentException("规则缺少 id");
+        }
+        String id = rule.getId();
+        if (rule.getThreshold() == null) {
+            throw new IllegalArgumentException("规则 " + id + " 缺少 threshold");
+        }
+        if (!OPERATORS.contains(rule.getOperator())) {
+            throw new IllegalArgumentException("规则 " + id + " 的 operator 只能是 " + OPERATORS);
+        }
+
+        Function<DeviceStatusLog, ? extends Number> reader;
+        if ("network".equalsIgnoreCase(rule.getMetric())) {
+            reader = DeviceStatusLog::getNetworkStatus;
+        } else {
+            reader = TelemetryMetric.of(rule.getMetric())::valueOf;
+        }
+
+        String type = rule.getType() == null ? "THRESHOLD" : rule.getType().toUpperCase();
+        int compiledType;
+        long durationMs = 0;
+        long windowMs = 0;
+        switch (type) {
+            case "THRESHOLD":
+                compiledType = THRESHOLD;
+                break;
+            case "SUSTAINED":
+                compiledType = SUSTAINED;
+                if (rule.getDurationSeconds() == null || rule.getDurationSeconds() <= 0) {
+                    throw new IllegalArgumentException("规则 " + id + " 缺少 durationSeconds");
+                }
+                durationMs = rule.getDurationSeconds() * 1000L;
+                break;
+            case "RATE":
+                compiledType = RATE;
+                if (rule.getWindowSeconds() == null || rule.getWindowSeconds() <= 0) {
+                    throw new IllegalArgumentException("规则 " + id + " 缺少 windowSeconds");
+                }
+                windowMs = rule.getWindowSeconds() * 1000L;
+                break;
+            default:
+                throw new IllegalArgumentException("规则 " + id + " 的 type 只能是 THRESHOLD/SUSTAINED/RATE");
+        }
+
+        String action = rule.getAction() == null ? "NOTIFY" : rule.getAction().toUpperCase();
+        if (!"FAULT".equals(action) && !"NOTIFY".equals(action)) {
+            throw new IllegalArgumentException("规则 " + id + " 的 action 只能是 FAULT 或 NOTIFY");
+        }
+
+        return new CompiledRule(rule, reader, condition(rule.getOperator(), rule.getThreshold()), compiledType,
+                durationMs, windowMs, "FAULT".equals(action));
+    }
+
+    private static DoublePredicate condition(String operator, double threshold) {
+        switch (operator) {
+            case ">":
+                return v -> v > threshold;
+            case ">=":
+                return v -> v >= threshold;
+            case "<":
+                return v -> v < threshold;
+            case "<=":
+                return v -> v <= threshold;
+            case "==":
+                return v -> v == threshold;
+            default:
+                return v -> v != threshold;
+        }
+    }
+
+}
@@ -0,0 +1,543 @@
+package com.kl.audit;
+
+import com.kl.entity.DeviceStatusAudit;
+import com.kl.mapper.DeviceStatusAuditMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 状态变更审计日志：只追加的内存映射分段文件（audit-&lt;段号&gt;.seg），由单个写线程顺序写入。
+ * <p>
+ * 记录格式：int 长度 | long 序号 | long 时间戳 | 5个字符串(int 字节数 + UTF-8)，
+ * 依次为 deviceId、原状态、新状态、原因、操作人；长度为0表示段内已无记录。
+ * 内存中按设备保存 (时间戳, 段号&lt;&lt;32|偏移) 索引；后台定时把新记录批量写入 device_status_audit，
+ * 已落库的最大序号记录在 checkpoint 文件里，重启时重放之后的记录。
+ * 启动时序号和 checkpoint 还要与数据库中的最大 seq 对齐：本地目录被清空或换机器部署后序号从数据库续接，
+ * 不会与已落库的记录冲突；同一个库只能有一个实例写入审计记录。
+ * 超出保留段数时只删除已全部落库的段；数据库长时间不可用时段文件继续累积，
+ * 积压段数通过 getStats 的 unflushedSegments 暴露，并在滚动时告警。
+ */
+@Component
+public class StatusAuditLog implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(StatusAuditLog.class);
+
+    private static final String SEGMENT_PREFIX = "audit-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int MAX_REASON_LENGTH = 500;
+
+    @Autowired
+    private DeviceStatusAuditMapper deviceStatusAuditMapper;
+
+    @Value("${bank-monitor.audit.dir:audit-log}")
+    private String dir;
+
+    @Value("${bank-monitor.audit.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    // 本地保留的段数，更早的记录只在数据库中（未落库的段不受此限制）
+    @Value("${bank-monitor.audit.retain-segments:32}")
+    private int retainSegments;
+
+    // 未落库的段数达到该值时每次滚动都告警
+    @Value("${bank-monitor.audit.unflushed-segments-warn:8}")
+    private int unflushedSegmentsWarn;
+
+    @Value("${bank-monitor.audit.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${bank-monitor.audit.db-flush-interval-ms:2000}")
+    private long dbFlushIntervalMs;
+
+    @Value("${bank-monitor.audit.db-batch-size:500}")
+    private int dbBatchSize;
+
+    private Path directory;
+    private BlockingQueue<DeviceStatusAudit> queue;
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, DeviceIndex> indexes = new ConcurrentHashMap<>();
+    private Segment active;
+    private long nextSeq = 1;
+
+    // 已写入段文件、等待落库的记录（落库线程独占 retry）
+    private final ConcurrentLinkedQueue<DeviceStatusAudit> pendingDb = new ConcurrentLinkedQueue<>();
+    private final List<DeviceStatusAudit> retry = new ArrayList<>();
+
+    private Thread writer;
+    private ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    private final AtomicLong appendedCount = new AtomicLong();
+    private final AtomicLong dbFlushedCount = new AtomicLong();
+    private final AtomicLong dbFailedCount = new AtomicLong();
+    private volatile long checkpointSeq;
+
+    // 记录一次状态变更；写线程落后太多时阻塞调用方（审计记录不能丢）
+    public void record(String deviceId, String oldStatus, String newStatus, String reason, String actor) {
+        DeviceStatusAudit audit = new DeviceStatusAudit();
+        audit.setDeviceId(deviceId);
+        audit.setOldStatus(oldStatus);
+        audit.setNewStatus(newStatus);
+        audit.setReason(reason != null && reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason);
+        audit.setActor(actor);
+        audit.setChangeTime(new Date());
+        try {
+            queue.put(audit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("审计记录写入被中断", e);
+        }
+    }
+
+    // 按设备和时间范围查询（含from不含to），新的在前
+    public List<DeviceStatusAudit> query(String deviceId, Date from, Date to, int limit) {
+        long fromMs = from == null ? Long.MIN_VALUE : from.getTime();
+        long toMs = to == null ? Long.MAX_VALUE : to.getTime();
+        List<DeviceStatusAudit> result = new ArrayList<>();
+
+        DeviceIndex index = indexes.get(deviceId);
+        if (index != null) {
+            long[][] entries = index.snapshot();
+            long[] times = entries[0];
+            long[] positions = entries[1];
+            for (int i = times.length - 1; i >= 0 && result.size() < limit; i--) {
+                if (times[i] >= fromMs && times[i] < toMs) {
+                    DeviceStatusAudit audit = read(positions[i]);
+                    if (audit != null) {
+                        result.add(audit);
+                    }
+                }
+            }
+        }
+
+        // 查询范围早于本地保留的最早记录时，剩余部分从数据库补齐
+        long oldestLocal = getOldestLocalTime();
+        if (result.size() < limit && fromMs < oldestLocal) {
+            Date dbTo = new Date(Math.min(toMs, oldestLocal));
+            Date dbFrom = new Date(Math.max(fromMs, 0));
+            result.addAll(deviceStatusAuditMapper.selectByDeviceAndTime(deviceId, dbFrom, dbTo, limit - result.size()));
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueSize", queue == null ? 0 : queue.size());
+        stats.put("appended", appendedCount.get());
+        stats.put("pendingDb", pendingDb.size() + retry.size());
+        stats.put("dbFlushed", dbFlushedCount.get());
+        stats.put("dbFailed", dbFailedCount.get());
+        stats.put("checkpointSeq", checkpointSeq);
+        stats.put("segments", segments.size());
+        stats.put("unflushedSegments", countUnflushedSegments());
+        stats.put("indexedDevices", indexes.size());
+        return stats;
+    }
+
+    // ---------------- 写入 ----------------
+
+    private void writeLoop() {
+        List<DeviceStatusAudit> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                DeviceStatusAudit first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, 1000);
+                for (DeviceStatusAudit audit : batch) {
+                    append(audit);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("审计日志写入失败: {}", e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void append(DeviceStatusAudit audit) {
+        audit.setSeq(nextSeq++);
+        byte[][] fields = {
+                bytes(audit.getDeviceId()), bytes(audit.getOldStatus()), bytes(audit.getNewStatus()),
+                bytes(audit.getReason()), bytes(audit.getActor())
+        };
+        int size = 4 + 8 + 8;
+        for (byte[] field : fields) {
+            size += 4 + field.length;
+        }
+        // 末尾至少留4个字节的0作为结束标记
+        if (active.writePosition + size + 4 > active.buffer.capacity()) {
+            roll();
+        }
+
+        ByteBuffer buffer = active.buffer;
+        int offset = active.writePosition;
+        buffer.position(offset);
+        buffer.putInt(size - 4);
+        buffer.putLong(audit.getSeq());
+        buffer.putLong(audit.getChangeTime().getTime());
+        for (byte[] field : fields) {
+            buffer.putInt(field.length);
+            buffer.put(field);
+        }
+        active.writePosition = buffer.position();
+        active.lastSeq = audit.getSeq();
+
+        indexes.computeIfAbsent(audit.getDeviceId(), k -> new DeviceIndex())
+                .add(audit.getChangeTime().getTime(), position(active.number, offset));
+        pendingDb.add(audit);
+        appendedCount.incrementAndGet();
+    }
+
+    // 当前段写满：新建下一段，超出保留数时删除最老的段；段内还有未落库的记录时保留，等落库追上后再删
+    private void roll() {
+        active.buffer.force();
+        active = openSegment(active.number + 1, true);
+        segments.put(active.number, active);
+
+        while (segments.size() > retainSegments) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest.lastSeq > checkpointSeq) {
+                break;
+            }
+            segments.pollFirstEntry();
+            int minSegment = segments.firstKey();
+            for (DeviceIndex index : indexes.values()) {
+                index.removeBefore(minSegment);
+            }
+            indexes.values().removeIf(DeviceIndex::isEmpty);
+            try {
+                oldest.channel.close();
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                log.warn("删除过期审计段失败: {}, {}", oldest.path, e.getMessage());
+            }
+        }
+
+        int unflushed = countUnflushedSegments();
+        if (unflushed >= unflushedSegmentsWarn) {
+            log.warn("审计记录落库积压: {} 个段未落库（checkpoint={}），本地共 {} 个段，请检查数据库连接",
+                    unflushed, checkpointSeq, segments.size());
+        }
+    }
+
+    // 含有未落库记录的段数（当前写入段之前的积压）
+    private int countUnflushedSegments() {
+        int count = 0;
+        for (Segment segment : segments.values()) {
+            if (segment.lastSeq > checkpointSeq) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // ---------------- 落库 ----------------
+
+    private void flushToDb() {
+        try {
+            if (active != null) {
+                active.buffer.force();
+            }
+            while (true) {
+                if (retry.isEmpty()) {
+                    DeviceStatusAudit audit;
+                    while (retry.size() < dbBatchSize && (audit = pendingDb.poll()) != null) {
+                        retry.add(audit);
+                    }
+                }
+                if (retry.isEmpty()) {
+                    return;
+                }
+                deviceStatusAuditMapper.batchInsert(retry);
+                dbFlushedCount.addAndGet(retry.size());
+                long lastSeq = retry.get(retry.size() - 1).getSeq();
+                // 已落库的记录不再重试；checkpoint 写失败时重启后由 alignWithDb 对齐
+                retry.clear();
+                writeCheckpoint(lastSeq);
+            }
+        } catch (Exception e) {
+            // 保留在 retry 中，下个周期按原顺序重试
+            dbFailedCount.incrementAndGet();
+            log.warn("审计记录落库失败({}条)，稍后重试: {}", retry.size(), e.getMessage());
+        }
+    }
+
+    private void writeCheckpoint(long seq) throws IOException {
+        Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(tmp, String.valueOf(seq).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointSeq = seq;
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim());
+    }
+
+    // ---------------- 读取与恢复 ----------------
+
+    // 启动时扫描已有段：重建索引，找回写入位置，未落库的记录重新排队
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        checkpointSeq = readCheckpoint();
+
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                numbers.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(numbers);
+
+        for (int number : numbers) {
+            Segment segment = openSegment(number, false);
+            segments.put(number, segment);
+            ByteBuffer buffer = segment.buffer.duplicate();
+            int offset = 0;
+            while (offset + 4 <= buffer.capacity()) {
+                int length = buffer.getInt(offset);
+                if (length <= 0 || offset + 4 + length > buffer.capacity()) {
+                    break;
+                }
+                DeviceStatusAudit audit = decode(buffer, offset);
+                indexes.computeIfAbsent(audit.getDeviceId(), k -> new DeviceIndex())
+                        .add(audit.getChangeTime().getTime(), position(number, offset));
+                if (audit.getSeq() > checkpointSeq) {
+                    pendingDb.add(audit);
+                }
+                nextSeq = Math.max(nextSeq, audit.getSeq() + 1);
+                segment.lastSeq = audit.getSeq();
+                offset += 4 + length;
+            }
+            segment.writePosition = offset;
+            active = segment;
+        }
+
+        if (active == null) {
+            active = openSegment(0, true);
+            segments.put(0, active);
+        }
+    }
+
+    // 序号从数据库已有的最大值之后继续；本地未落库但序号不大于它的记录是上次落库后、
+    // 写 checkpoint 前停机留下的，已在库中，不再重放
+    private void alignWithDb() throws IOException {
+        Long maxSeq;
+        try {
+            maxSeq = deviceStatusAuditMapper.selectMaxSeq();
+        } catch (RuntimeException e) {
+            if (nextSeq == 1 && checkpointSeq == 0) {
+                throw new IllegalStateException("本地没有审计日志且无法读取数据库中的最大序号，不能确定审计序号", e);
+            }
+            log.warn("读取审计记录最大序号失败，沿用本地序号 {}: {}", nextSeq, e.getMessage());
+            return;
+        }
+        if (maxSeq == null || maxSeq <= checkpointSeq) {
+            return;
+        }
+        pendingDb.removeIf(audit -> audit.getSeq() <= maxSeq);
+        nextSeq = Math.max(nextSeq, maxSeq + 1);
+        writeCheckpoint(maxSeq);
+    }
+
+    private DeviceStatusAudit read(long position) {
+        Segment segment = segments.get((int) (position >>> 32));
+        if (segment == null) {
+            return null;  // 所在段已过期删除
+        }
+        return decode(segment.buffer.duplicate(), (int) position);
+    }
+
+    private DeviceStatusAudit decode(ByteBuffer buffer, int offset) {
+        buffer.position(offset + 4);
+        DeviceStatusAudit audit = new DeviceStatusAudit();
+        audit.setSeq(buffer.getLong());
+        audit.setChangeTime(new Date(buffer.getLong()));
+        audit.setDeviceId(string(buffer));
+        audit.setOldStatus(string(buffer));
+        audit.setNewStatus(string(buffer));
+        audit.setReason(string(buffer));
+        audit.setActor(string(buffer));
+        return audit;
+    }
+
+    private long getOldestLocalTime() {
+        Map.Entry<Integer, Segment> first = segments.firstEntry();
+        if (first == null) {
+            return Long.MAX_VALUE;
+        }
+        ByteBuffer buffer = first.getValue().buffer.duplicate();
+        if (buffer.getInt(0) <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return buffer.getLong(4 + 8);
+    }
+
+    private Segment openSegment(int number, boolean create) {
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%08d", number) + SEGMENT_SUFFIX);
+        try {
+            FileChannel channel = create
+                    ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = create ? (long) segmentSizeMb * 1024 * 1024 : channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(number, path, channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开审计段失败: " + path, e);
+        }
+    }
+
+    private static long position(int segment, int offset) {
+        return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---------------- 生命周期 ----------------
+
+    @Override
+    public void start() {
+        directory = Paths.get(dir);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        try {
+            recover();
+            alignWithDb();
+        } catch (IOException e) {
+            throw new UncheckedIOException("审计日志恢复失败: " + directory, e);
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "audit-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushToDb, dbFlushIntervalMs, dbFlushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            if (writer != null) {
+                writer.join(5000);
+            }
+            flusher.shutdown();
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 最后落库一次，剩余的下次启动时重放
+        flushToDb();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private static final class Segment {
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // 只由写线程修改
+        volatile int writePosition;
+        // 段内最后一条记录的序号，不大于 checkpoint 时整段已落库
+        volatile long lastSeq;
+
+        Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    // 单台设备的审计索引：按追加顺序保存时间戳和位置
+    private static final class DeviceIndex {
+        private long[] times = new long[8];
+        private long[] positions = new long[8];
+        private int size;
+
+        synchronized void add(long time, long position) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            times[size] = time;
+            positions[size] = position;
+            size++;
+        }
+
+        synchronized long[][] snapshot() {
+            return new long[][]{Arrays.copyOf(times, size), Arrays.copyOf(positions, size)};
+        }
+
+        // 去掉已删除段中的记录（位置按段号递增，只需找到第一个保留的位置）
+        synchronized void removeBefore(int minSegment) {
+            int keepFrom = 0;
+            while (keepFrom < size && (int) (positions[keepFrom] >>> 32) < minSegment) {
+                keepFrom++;
+            }
+            if (keepFrom > 0) {
+                System.arraycopy(times, keepFrom, times, 0, size - keepFrom);
+                System.arraycopy(positions, keepFrom, positions, 0, size - keepFrom);
+                size -= keepFrom;
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+package com.kl.cache;
+
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 设备注册表：按 id 和 deviceId 缓存 device_info，写操作由 Service 同步写入（write-through）。
+ * 缓存中的对象只替换不修改，调用方不要修改拿到的实例。
+ */
+@Component
+public class DeviceRegistry implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceRegistry.class);
+
+    @Autowired
+    private DeviceInfoMapper deviceInfoMapper;
+
+    // 没有事务管理器时（基准测试直接构造）回源直接查询
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+
+    // 最多缓存的设备数，超出按LRU淘汰
+    @Value("${bank-monitor.registry.max-size:200000}")
+    private int maxSize;
+
+    // 启动时是否预加载全部设备
+    @Value("${bank-monitor.registry.preload:true}")
+    private boolean preload;
+
+    // 按访问顺序排列，最久未访问的在队头；所有访问都在 this 上同步
+    private final LinkedHashMap<Integer, DeviceInfo> byId = new LinkedHashMap<>(1024, 0.75f, true);
+    private final Map<String, Integer> idByDeviceId = new HashMap<>(1024);
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    // 挂起调用方的事务回源，见 load()
+    private TransactionTemplate primaryRead;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (maxSize <= 0) {
+            throw new IllegalStateException("registry max-size 必须大于0");
+        }
+        if (transactionManager != null) {
+            primaryRead = new TransactionTemplate(transactionManager);
+            primaryRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        }
+        if (!preload) {
+            return;
+        }
+        // selectAll 按 update_time 倒序，超出容量时保留最近活跃的设备
+        List<DeviceInfo> devices = deviceInfoMapper.selectAll();
+        synchronized (this) {
+            for (int i = Math.min(devices.size(), maxSize) - 1; i >= 0; i--) {
+                putInternal(devices.get(i));
+            }
+        }
+        log.info("设备注册表预加载完成: {}/{} 台", Math.min(devices.size(), maxSize), devices.size());
+    }
+
+    public DeviceInfo getById(Integer id) {
+        DeviceInfo device;
+        synchronized (this) {
+            device = byId.get(id);
+        }
+        if (device != null) {
+            hitCount.incrementAndGet();
+            return device;
+        }
+        missCount.incrementAndGet();
+
+        device = load(() -> deviceInfoMapper.selectById(id));
+        if (device != null) {
+            loadCount.incrementAndGet();
+            device = putIfAbsent(device);
+        }
+        return device;
+    }
+
+    public DeviceInfo getByDeviceId(String deviceId) {
+        DeviceInfo device = null;
+        synchronized (this) {
+            Integer id = idByDeviceId.get(deviceId);
+            if (id != null) {
+                device = byId.get(id);
+            }
+        }
+        if (device != null) {
+            hitCount.incrementAndGet();
+            return device;
+        }
+        missCount.incrementAndGet();
+
+        device = load(() -> deviceInfoMapper.selectByDeviceId(deviceId));
+        if (device != null) {
+            loadCount.incrementAndGet();
+            device = putIfAbsent(device);
+        }
+        return device;
+    }
+
+    // 批量按id获取：未命中的合并成一条 IN 查询回源
+    public Map<Integer, DeviceInfo> getByIds(Collection<Integer> ids) {
+        Map<Integer, DeviceInfo> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        synchronized (this) {
+            for (Integer id : ids) {
+                DeviceInfo device = byId.get(id);
+                if (device != null) {
+                    result.put(id, device);
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        hitCount.addAndGet(result.size());
+        missCount.addAndGet(missing.size());
+
+        if (!missing.isEmpty()) {
+            for (DeviceInfo device : load(() -> deviceInfoMapper.selectByIds(missing))) {
+                loadCount.incrementAndGet();
+                result.put(device.getId(), putIfAbsent(device));
+            }
+        }
+        return result;
+    }
+
+    // 只读事务开启了读写分离时会走从库，而回源结果要长期留在注册表里，
+    // 从库延迟时会缓存旧数据（甚至查不到刚新增的设备）：挂起只读事务，按无事务调用走主库
+    private <T> T load(Supplier<T> loader) {
+        if (primaryRead != null && TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primaryRead.execute(status -> loader.get());
+        }
+        return loader.get();
+    }
+
+    // 写入或替换设备（新增、更新、状态变更后调用）
+    public synchronized void put(DeviceInfo device) {
+        putInternal(device);
+    }
+
+    // 回源加载的结果只在缓存里没有时写入，避免覆盖并发写入的新版本
+    private synchronized DeviceInfo putIfAbsent(DeviceInfo device) {
+        DeviceInfo current = byId.get(device.getId());
+        if (current != null) {
+            return current;
+        }
+        putInternal(device);
+        return device;
+    }
+
+    public synchronized void evict(Integer id) {
+        DeviceInfo removed = byId.remove(id);
+        if (removed != null) {
+            idByDeviceId.remove(removed.getDeviceId());
+        }
+    }
+
+    public synchronized void clear() {
+        byId.clear();
+        idByDeviceId.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("size", byId.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("loads", loadCount.get());
+        stats.put("evictions", evictionCount.get());
+        stats.put("hitRate", hits + misses > 0 ?
+                String.format("%.2f%%", hits * 100.0 / (hits + misses)) : "0%");
+        return stats;
+    }
+
+    private void putInternal(DeviceInfo device) {
+        if (device == null || device.getId() == null) {
+            return;
+        }
+        DeviceInfo previous = byId.put(device.getId(), device);
+        if (previous != null && !previous.getDeviceId().equals(device.getDeviceId())) {
+            idByDeviceId.remove(previous.getDeviceId());
+        }
+        idByDeviceId.put(device.getDeviceId(), device.getId());
+
+        // 超出容量：淘汰最久未访问的设备
+        while (byId.size() > maxSize) {
+            Iterator<Map.Entry<Integer, DeviceInfo>> it = byId.entrySet().iterator();
+            DeviceInfo eldest = it.next().getValue();
+            it.remove();
+            idByDeviceId.remove(eldest.getDeviceId());
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    // 复制一份设备信息，用于构造更新后的新实例
+    public static DeviceInfo copyOf(DeviceInfo source) {
+        DeviceInfo copy = new DeviceInfo();
+        copy.setId(source.getId());
+        copy.setDeviceId(source.getDeviceId());
+        copy.setDeviceName(source.getDeviceName());
+        copy.setDeviceType(source.getDeviceType());
+        copy.setVendor(source.getVendor());
+        copy.setModel(source.getModel());
+        copy.setIpAddress(source.getIpAddress());
+        copy.setLocation(source.getLocation());
+        copy.setBranch(source.getBranch());
+        copy.setStatus(source.getStatus());
+        copy.setInstallDate(source.getInstallDate());
+        copy.setWarrantyPeriod(source.getWarrantyPeriod());
+        copy.setCreateTime(source.getCreateTime());
+        copy.setUpdateTime(source.getUpdateTime());
+        return copy;
+    }
+
+}
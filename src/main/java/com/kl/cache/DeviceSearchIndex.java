@@ -0,0 +1,290 @@
+package com.kl.cache;
+
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 设备搜索索引：关键词走三元组(trigram)倒排索引，设备类型/支行走位图。
+ * 每台设备占一个槽位(slot)，槽位号只增不复用，倒排表天然有序；
+ * 删除或关键字段变更时旧槽位作废，作废过多时整体压缩重建。
+ */
+@Component
+public class DeviceSearchIndex implements InitializingBean {
+
+    private static final int GRAM = 3;
+
+    // 字段分隔符，保证关键词不会跨字段匹配
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    @Autowired
+    private DeviceInfoMapper deviceInfoMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private DeviceInfo[] docs = new DeviceInfo[1024];
+    // 每个槽位预先转小写拼接好的关键词字段：名称、设备ID、位置、支行
+    private String[] texts = new String[1024];
+    private int nextSlot;
+    private int deadCount;
+
+    private final BitSet live = new BitSet();
+    private final Map<Integer, Integer> slotById = new HashMap<>();
+    private final Map<String, Postings> gramPostings = new HashMap<>();
+    private final Map<String, BitSet> typeBitmaps = new HashMap<>();
+    private final Map<String, BitSet> branchBitmaps = new HashMap<>();
+
+    @Override
+    public void afterPropertiesSet() {
+        rebuild(deviceInfoMapper.selectAll());
+    }
+
+    public void rebuild(Collection<DeviceInfo> devices) {
+        lock.writeLock().lock();
+        try {
+            docs = new DeviceInfo[Math.max(1024, devices.size() * 2)];
+            texts = new String[docs.length];
+            nextSlot = 0;
+            deadCount = 0;
+            live.clear();
+            slotById.clear();
+            gramPostings.clear();
+            typeBitmaps.clear();
+            branchBitmaps.clear();
+            for (DeviceInfo device : devices) {
+                addInternal(device);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 新增或更新设备；关键词/类型/支行未变时（如状态变更）只替换槽位上的对象
+    public void put(DeviceInfo device) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.get(device.getId());
+            if (slot != null) {
+                DeviceInfo old = docs[slot];
+                if (buildText(old).equals(buildText(device))
+                        && Objects.equals(old.getDeviceType(), device.getDeviceType())
+                        && Objects.equals(old.getBranch(), device.getBranch())) {
+                    docs[slot] = device;
+                    return;
+                }
+                removeInternal(slot);
+            }
+            addInternal(device);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.get(id);
+            if (slot != null) {
+                removeInternal(slot);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索设备，条件语义与原先逐行过滤的实现一致：
+     * 关键词对名称/设备ID/位置/支行做不区分大小写的包含匹配，类型精确匹配，支行包含匹配。
+     * 结果按更新时间倒序。
+     */
+    public List<DeviceInfo> search(String keyword, String deviceType, String branch) {
+        String kw = normalize(keyword);
+        String type = normalize(deviceType);
+        String branchKw = normalize(branch);
+
+        lock.readLock().lock();
+        try {
+            BitSet candidates = (BitSet) live.clone();
+
+            if (type != null) {
+                BitSet typeBits = typeBitmaps.get(type);
+                if (typeBits == null) {
+                    return new ArrayList<>();
+                }
+                candidates.and(typeBits);
+            }
+
+            if (branchKw != null) {
+                // 支行数量很少，遍历支行字典把包含关键词的支行位图合并
+                BitSet branchBits = new BitSet();
+                for (Map.Entry<String, BitSet> entry : branchBitmaps.entrySet()) {
+                    if (entry.getKey().contains(branchKw)) {
+                        branchBits.or(entry.getValue());
+                    }
+                }
+                candidates.and(branchBits);
+            }
+
+            List<DeviceInfo> matched = new ArrayList<>();
+            if (kw != null && kw.length() >= GRAM) {
+                // 取最短的倒排表作为候选，再用原文校验
+                Postings shortest = null;
+                for (int i = 0; i + GRAM <= kw.length(); i++) {
+                    Postings postings = gramPostings.get(kw.substring(i, i + GRAM));
+                    if (postings == null) {
+                        return matched;
+                    }
+                    if (shortest == null || postings.size < shortest.size) {
+                        shortest = postings;
+                    }
+                }
+                for (int i = 0; i < shortest.size; i++) {
+                    int slot = shortest.slots[i];
+                    if (candidates.get(slot) && texts[slot].contains(kw)) {
+                        matched.add(docs[slot]);
+                    }
+                }
+            } else {
+                // 关键词过短无法用三元组，直接在候选集上匹配预处理过的小写文本
+                for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                    if (kw == null || texts[slot].contains(kw)) {
+                        matched.add(docs[slot]);
+                    }
+                }
+            }
+
+            matched.sort(NEWEST_FIRST);
+            return matched;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addInternal(DeviceInfo device) {
+        if (nextSlot == docs.length) {
+            docs = Arrays.copyOf(docs, docs.length * 2);
+            texts = Arrays.copyOf(texts, texts.length * 2);
+        }
+        int slot = nextSlot++;
+        String text = buildText(device);
+        docs[slot] = device;
+        texts[slot] = text;
+        live.set(slot);
+        slotById.put(device.getId(), slot);
+
+        // 同一台设备的重复三元组只登记一次
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM);
+            if (gram.indexOf(FIELD_SEPARATOR) < 0) {
+                grams.add(gram);
+            }
+        }
+        for (String gram : grams) {
+            gramPostings.computeIfAbsent(gram, k -> new Postings()).add(slot);
+        }
+
+        typeBitmaps.computeIfAbsent(lower(device.getDeviceType()), k -> new BitSet()).set(slot);
+        if (device.getBranch() != null) {
+            branchBitmaps.computeIfAbsent(lower(device.getBranch()), k -> new BitSet()).set(slot);
+        }
+    }
+
+    // 倒排表中的作废槽位不删除，靠 live 位图过滤；类型/支行位图直接清掉
+    private void removeInternal(int slot) {
+        DeviceInfo device = docs[slot];
+        live.clear(slot);
+        slotById.remove(device.getId());
+        clearBit(typeBitmaps, lower(device.getDeviceType()), slot);
+        if (device.getBranch() != null) {
+            clearBit(branchBitmaps, lower(device.getBranch()), slot);
+        }
+        docs[slot] = null;
+        texts[slot] = null;
+        deadCount++;
+    }
+
+    private void compactIfNeeded() {
+        if (deadCount > 1024 && deadCount > slotById.size() / 4) {
+            List<DeviceInfo> alive = new ArrayList<>(slotById.size());
+            for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+                alive.add(docs[slot]);
+            }
+            rebuild(alive);
+        }
+    }
+
+    private static void clearBit(Map<String, BitSet> bitmaps, String key, int slot) {
+        BitSet bits = bitmaps.get(key);
+        if (bits != null) {
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private static String buildText(DeviceInfo device) {
+        return lower(device.getDeviceName()) + FIELD_SEPARATOR +
+                lower(device.getDeviceId()) + FIELD_SEPARATOR +
+                lower(device.getLocation()) + FIELD_SEPARATOR +
+                lower(device.getBranch());
+    }
+
+    private static String lower(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalize(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // 与 selectAll 的 ORDER BY update_time DESC 保持一致，时间相同按id倒序保证分页稳定
+    private static final Comparator<DeviceInfo> NEWEST_FIRST = (a, b) -> {
+        Date ta = a.getUpdateTime();
+        Date tb = b.getUpdateTime();
+        if (ta != null && tb != null && !ta.equals(tb)) {
+            return tb.compareTo(ta);
+        }
+        if (ta == null && tb != null) {
+            return 1;
+        }
+        if (ta != null && tb == null) {
+            return -1;
+        }
+        return Integer.compare(b.getId(), a.getId());
+    };
+
+    // 倒排表：按槽位号递增追加的int数组
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.kl.cache;
+
+import com.kl.dto.BranchHealth;
+import com.kl.dto.StatusCount;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 设备状态计数器：启动时从数据库按 支行×状态 汇总一次，之后由设备的增删改增量维护。
+ * 统计接口只需遍历各支行的计数，不再扫描 device_info。
+ */
+@Component
+public class DeviceStatsAggregator implements InitializingBean {
+
+    // 与原 getBranchHealthStats SQL 中 COALESCE(TRIM(branch), '未分配支行') 保持一致
+    public static final String UNASSIGNED_BRANCH = "未分配支行";
+
+    @Autowired
+    private DeviceInfoMapper deviceInfoMapper;
+
+    private final ConcurrentHashMap<String, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, LongAdder>> branchStatusCounts = new ConcurrentHashMap<>();
+    private final LongAdder totalCount = new LongAdder();
+
+    @Override
+    public void afterPropertiesSet() {
+        rebuild();
+    }
+
+    // 从数据库重新汇总（启动时调用，也可用于人工校准）
+    public synchronized void rebuild() {
+        statusCounts.clear();
+        branchStatusCounts.clear();
+        totalCount.reset();
+
+        for (Map<String, Object> row : deviceInfoMapper.countByBranchAndStatus()) {
+            long count = ((Number) row.get("count")).longValue();
+            add((String) row.get("branch"), (String) row.get("status"), count);
+        }
+    }
+
+    public void onInsert(DeviceInfo device) {
+        add(device.getBranch(), device.getStatus(), 1);
+    }
+
+    public void onDelete(DeviceInfo device) {
+        add(device.getBranch(), device.getStatus(), -1);
+    }
+
+    public void onUpdate(DeviceInfo before, DeviceInfo after) {
+        if (Objects.equals(branchKey(before.getBranch()), branchKey(after.getBranch()))
+                && Objects.equals(before.getStatus(), after.getStatus())) {
+            return;
+        }
+        add(before.getBranch(), before.getStatus(), -1);
+        add(after.getBranch(), after.getStatus(), 1);
+    }
+
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    // 按状态统计，与 countByStatus 查询结果一致
+    public List<StatusCount> getStatusDistribution() {
+        List<StatusCount> result = new ArrayList<>();
+        statusCounts.forEach((status, counter) -> {
+            long count = counter.sum();
+            if (count > 0) {
+                result.add(new StatusCount(status.isEmpty() ? null : status, count));
+            }
+        });
+        return result;
+    }
+
+    public long getStatusCount(String status) {
+        LongAdder counter = statusCounts.get(status);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    // 支行健康度，字段与原 getBranchHealthStats 查询一致，按在线率倒序
+    public List<BranchHealth> getBranchHealth() {
+        List<BranchHealth> result = new ArrayList<>();
+        branchStatusCounts.forEach((branch, counters) -> {
+            long total = 0;
+            long online = 0;
+            long fault = 0;
+            for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+                long count = entry.getValue().sum();
+                total += count;
+                if ("online".equalsIgnoreCase(entry.getKey())) {
+                    online += count;
+                } else if ("fault".equalsIgnoreCase(entry.getKey())) {
+                    fault += count;
+                }
+            }
+            if (total <= 0) {
+                return;
+            }
+            result.add(new BranchHealth(branch, total, online, Math.round(online * 10000.0 / total) / 100.0, fault));
+        });
+        result.sort(Comparator.comparingDouble(BranchHealth::onlineRate).reversed());
+        return result;
+    }
+
+    private void add(String branch, String status, long delta) {
+        // 状态为空的记录在 GROUP BY 中也会单独成组，这里用空串占位
+        String statusKey = status == null ? "" : status;
+        statusCounts.computeIfAbsent(statusKey, k -> new LongAdder()).add(delta);
+        branchStatusCounts.computeIfAbsent(branchKey(branch), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(statusKey, k -> new LongAdder()).add(delta);
+        totalCount.add(delta);
+    }
+
+    private static String branchKey(String branch) {
+        return branch == null ? UNASSIGNED_BRANCH : branch.trim();
+    }
+
+}
@@ -0,0 +1,233 @@
+package com.kl.cache;
+
+import com.kl.entity.DeviceFaultRecord;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceFaultRecordMapper;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 故障修复时长统计：按故障代码、设备类型、支行三个维度维护次数、MTTR 和 p50/p95。
+ * <p>
+ * 启动时从 device_fault_record 汇总一次，之后在故障记录关闭时增量累加。分位数来自对数分桶直方图
+ * （64分钟以内按分钟精确计数，之上每个2的幂区间分16个桶，相对误差约3%），不保存单条记录。
+ * 未关闭的故障保存在内存里，设备恢复上线时据此判断是否需要关闭记录。
+ */
+@Component
+public class FaultStatsAggregator implements InitializingBean {
+
+    @Autowired
+    private DeviceFaultRecordMapper deviceFaultRecordMapper;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    // 设备ID -> 未关闭的故障
+    private final Map<String, OpenFault> openFaults = new HashMap<>();
+    private final Map<String, DowntimeStats> byFaultCode = new TreeMap<>();
+    private final Map<String, DowntimeStats> byDeviceType = new TreeMap<>();
+    private final Map<String, DowntimeStats> byBranch = new TreeMap<>();
+    private DowntimeStats overall = new DowntimeStats();
+
+    @Override
+    public void afterPropertiesSet() {
+        rebuild();
+    }
+
+    // 从数据库重新汇总（启动时调用，也可用于人工校准）
+    public synchronized void rebuild() {
+        openFaults.clear();
+        byFaultCode.clear();
+        byDeviceType.clear();
+        byBranch.clear();
+        overall = new DowntimeStats();
+
+        // 同一设备的多行只查一次；已删除的设备记为未知类型、未分配支行
+        Map<String, Optional<DeviceInfo>> devices = new HashMap<>();
+        for (Map<String, Object> row : deviceFaultRecordMapper.summarizeClosed()) {
+            Number minutes = (Number) row.get("minutes");
+            long count = ((Number) row.get("count")).longValue();
+            DeviceInfo device = devices.computeIfAbsent((String) row.get("deviceId"),
+                    deviceId -> Optional.ofNullable(deviceRegistry.getByDeviceId(deviceId))).orElse(null);
+            record((String) row.get("faultCode"), device == null ? null : device.getDeviceType(),
+                    device == null ? null : device.getBranch(), minutes == null ? 0 : minutes.longValue(), count);
+        }
+        for (DeviceFaultRecord record : deviceFaultRecordMapper.selectOpen()) {
+            DeviceInfo device = deviceRegistry.getByDeviceId(record.getDeviceId());
+            openFaults.put(record.getDeviceId(), new OpenFault(record.getId(), record.getFaultCode(),
+                    device == null ? null : device.getDeviceType(),
+                    device == null ? null : device.getBranch(),
+                    record.getOccurrenceTime().getTime()));
+        }
+    }
+
+    public synchronized boolean hasOpenFault(String deviceId) {
+        return openFaults.containsKey(deviceId);
+    }
+
+    // 未关闭故障的记录id，没有时返回 null
+    public synchronized Integer getOpenFaultId(String deviceId) {
+        OpenFault fault = openFaults.get(deviceId);
+        return fault == null ? null : fault.recordId;
+    }
+
+    // 故障记录已写入数据库（事务提交后调用）
+    public synchronized void onOpen(DeviceInfo device, DeviceFaultRecord record) {
+        openFaults.put(device.getDeviceId(), new OpenFault(record.getId(), record.getFaultCode(),
+                device.getDeviceType(), device.getBranch(), record.getOccurrenceTime().getTime()));
+    }
+
+    // 故障记录已关闭（事务提交后调用），按与 downtime_duration 相同的口径取整到分钟
+    public synchronized void onClose(String deviceId, long recoveryTime) {
+        OpenFault fault = openFaults.remove(deviceId);
+        if (fault == null) {
+            return;
+        }
+        long minutes = Math.max(0, (recoveryTime - fault.occurredAt) / 60_000L);
+        record(fault.faultCode, fault.deviceType, fault.branch, minutes, 1);
+    }
+
+    public synchronized Map<String, Object> getFaultAnalysis() {
+        Map<String, Integer> openByCode = new HashMap<>();
+        Map<String, Integer> openByType = new HashMap<>();
+        Map<String, Integer> openByBranch = new HashMap<>();
+        for (OpenFault fault : openFaults.values()) {
+            openByCode.merge(fault.faultCode, 1, Integer::sum);
+            openByType.merge(typeKey(fault.deviceType), 1, Integer::sum);
+            openByBranch.merge(branchKey(fault.branch), 1, Integer::sum);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("faultAnalysis", toRows("faultCode", byFaultCode, openByCode));
+        result.put("byDeviceType", toRows("deviceType", byDeviceType, openByType));
+        result.put("byBranch", toRows("branch", byBranch, openByBranch));
+        result.put("totalFaults", overall.count + openFaults.size());
+        result.put("openFaults", openFaults.size());
+        result.put("overallMTTR", overall.count > 0 ?
+                String.format("%.1f分钟", overall.mttr()) : "无故障记录");
+        result.put("overallP50Minutes", overall.percentile(0.50));
+        result.put("overallP95Minutes", overall.percentile(0.95));
+        return result;
+    }
+
+    private void record(String faultCode, String deviceType, String branch, long minutes, long count) {
+        byFaultCode.computeIfAbsent(faultCode, k -> new DowntimeStats()).add(minutes, count);
+        byDeviceType.computeIfAbsent(typeKey(deviceType), k -> new DowntimeStats()).add(minutes, count);
+        byBranch.computeIfAbsent(branchKey(branch), k -> new DowntimeStats()).add(minutes, count);
+        overall.add(minutes, count);
+    }
+
+    private static List<Map<String, Object>> toRows(String keyName, Map<String, DowntimeStats> stats,
+                                                    Map<String, Integer> open) {
+        Set<String> keys = new TreeSet<>(stats.keySet());
+        keys.addAll(open.keySet());
+        List<Map<String, Object>> rows = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            DowntimeStats s = stats.getOrDefault(key, DowntimeStats.EMPTY);
+            int openCount = open.getOrDefault(key, 0);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put(keyName, key);
+            row.put("faultCount", s.count + openCount);
+            row.put("openCount", openCount);
+            row.put("closedCount", s.count);
+            row.put("avgFixTimeMinutes", Math.round(s.mttr() * 100) / 100.0);
+            row.put("p50FixTimeMinutes", s.percentile(0.50));
+            row.put("p95FixTimeMinutes", s.percentile(0.95));
+            row.put("maxFixTimeMinutes", s.max);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String typeKey(String deviceType) {
+        return deviceType == null ? "未知类型" : deviceType;
+    }
+
+    private static String branchKey(String branch) {
+        return branch == null ? DeviceStatsAggregator.UNASSIGNED_BRANCH : branch.trim();
+    }
+
+    private static final class OpenFault {
+        final Integer recordId;
+        final String faultCode;
+        final String deviceType;
+        final String branch;
+        final long occurredAt;
+
+        OpenFault(Integer recordId, String faultCode, String deviceType, String branch, long occurredAt) {
+            this.recordId = recordId;
+            this.faultCode = faultCode;
+            this.deviceType = deviceType;
+            this.branch = branch;
+            this.occurredAt = occurredAt;
+        }
+    }
+
+    // 一个维度取值下的修复时长分布
+    private static final class DowntimeStats {
+        static final DowntimeStats EMPTY = new DowntimeStats();
+
+        private static final int LINEAR = 64;
+        private static final int SUB_BUCKETS = 16;
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 6 + 1) * SUB_BUCKETS;
+
+        final long[] buckets = new long[BUCKETS];
+        long count;
+        long totalMinutes;
+        long max;
+
+        void add(long minutes, long n) {
+            buckets[bucketOf(minutes)] += n;
+            count += n;
+            totalMinutes += minutes * n;
+            max = Math.max(max, minutes);
+        }
+
+        double mttr() {
+            return count == 0 ? 0 : (double) totalMinutes / count;
+        }
+
+        // 返回所在桶的中点；64分钟以内是精确值
+        long percentile(double q) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    long lower = lowerBound(i);
+                    long upper = i + 1 < BUCKETS ? lowerBound(i + 1) : lower + 1;
+                    return Math.min(max, lower + (upper - lower - 1) / 2);
+                }
+            }
+            return max;
+        }
+
+        private static int bucketOf(long minutes) {
+            if (minutes < LINEAR) {
+                return (int) Math.max(0, minutes);
+            }
+            int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(minutes));
+            int sub = exponent == MAX_EXPONENT && minutes >= (1L << (MAX_EXPONENT + 1))
+                    ? SUB_BUCKETS - 1
+                    : (int) ((minutes >>> (exponent - 4)) & (SUB_BUCKETS - 1));
+            return LINEAR + (exponent - 6) * SUB_BUCKETS + sub;
+        }
+
+        private static long lowerBound(int bucket) {
+            if (bucket < LINEAR) {
+                return bucket;
+            }
+            int exponent = (bucket - LINEAR) / SUB_BUCKETS + 6;
+            int sub = (bucket - LINEAR) % SUB_BUCKETS;
+            return (1L << exponent) + ((long) sub << (exponent - 4));
+        }
+    }
+
+}
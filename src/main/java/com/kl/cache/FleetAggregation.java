@@ -0,0 +1,210 @@
+package com.kl.cache;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * FleetSnapshot 的分组聚合：按行号区间二分成 fork-join 任务，每段在自己的部分结果里累加，返回时两两合并。
+ * 分组数（各维度字典大小之积）不超过 DENSE_GROUPS 时，分组键是各维度编码的混合进制数，直接作为数组下标；
+ * 否则把各维度编码按16位拼成一个 long，部分结果是以该 long 为键的开放寻址表。整个扫描不创建对象。
+ */
+final class FleetAggregation {
+
+    // 每个叶子任务扫描的行数下限，太小时合并开销超过并行收益
+    static final int LEAF_ROWS = 32 * 1024;
+    // 直接寻址的分组数上限，每个叶子任务的部分结果占 DENSE_GROUPS*METRICS 个long
+    static final int DENSE_GROUPS = 4096;
+
+    static final int TOTAL = 0;
+    static final int ONLINE = 1;
+    static final int FAULT = 2;
+    static final int WARRANTY_EXPIRED = 3;
+    static final int AGE_DAYS_SUM = 4;
+    static final int AGE_COUNT = 5;
+    static final int METRICS = 6;
+
+    private FleetAggregation() {
+    }
+
+    /**
+     * 一次聚合的输入：快照的列数组引用（调用方持有读锁期间有效），分组维度的列和筛选条件。
+     * filters[i] 是 filterColumns[i] 上允许的编码，没有筛选条件时两者都是空数组。
+     * radix 是各分组维度的字典大小，直接寻址时分组键 = 各维度编码的混合进制数；denseGroups 为0表示走哈希表。
+     */
+    record Scan(BitSet live, short[][] groupColumns, int[] radix, int denseGroups, short[][] filterColumns, boolean[][] filters,
+                short[] statusCodes, boolean[] onlineStatus, boolean[] faultStatus,
+                int[] installDays, int[] expiryDays, int noDay, int today) {
+    }
+
+    static Partial scan(Scan scan, int from, int to) {
+        Partial partial = new Partial(scan.denseGroups);
+        boolean dense = scan.denseGroups > 0;
+        int[] radix = scan.radix;
+        short[][] groupColumns = scan.groupColumns;
+        short[][] filterColumns = scan.filterColumns;
+        boolean[][] filters = scan.filters;
+        rows:
+        for (int row = scan.live.nextSetBit(from); row >= 0 && row < to; row = scan.live.nextSetBit(row + 1)) {
+            for (int i = 0; i < filters.length; i++) {
+                if (!filters[i][filterColumns[i][row]]) {
+                    continue rows;
+                }
+            }
+            long key = 0;
+            for (int d = 0; d < groupColumns.length; d++) {
+                key = dense ? key * radix[d] + groupColumns[d][row] : (key << 16) | groupColumns[d][row];
+            }
+            int base = (dense ? (int) key : partial.slotOf(key)) * METRICS;
+            long[] metrics = partial.metrics;
+            metrics[base + TOTAL]++;
+            int status = scan.statusCodes[row];
+            if (scan.onlineStatus[status]) {
+                metrics[base + ONLINE]++;
+            } else if (scan.faultStatus[status]) {
+                metrics[base + FAULT]++;
+            }
+            int expiry = scan.expiryDays[row];
+            if (expiry != scan.noDay && expiry < scan.today) {
+                metrics[base + WARRANTY_EXPIRED]++;
+            }
+            int install = scan.installDays[row];
+            if (install != scan.noDay) {
+                metrics[base + AGE_DAYS_SUM] += scan.today - install;
+                metrics[base + AGE_COUNT]++;
+            }
+        }
+        return partial;
+    }
+
+    static final class Task extends RecursiveTask<Partial> {
+        private final Scan scan;
+        private final int from;
+        private final int to;
+
+        Task(Scan scan, int from, int to) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= LEAF_ROWS) {
+                return scan(scan, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            Task left = new Task(scan, from, mid);
+            left.fork();
+            Partial right = new Task(scan, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // 把分组键还原成各维度的字典编码
+    static void decode(Scan scan, long key, int[] codes) {
+        for (int d = codes.length - 1; d >= 0; d--) {
+            if (scan.denseGroups > 0) {
+                codes[d] = (int) (key % scan.radix[d]);
+                key /= scan.radix[d];
+            } else {
+                codes[d] = (int) (key & 0xFFFF);
+                key >>>= 16;
+            }
+        }
+    }
+
+    /**
+     * 分组键 -> 指标。直接寻址时槽位号就是分组键；否则是开放寻址表（线性探测，装载因子不超过1/2）。
+     * metrics 按槽位连续存放 METRICS 个计数。
+     */
+    static final class Partial {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private final boolean dense;
+        long[] keys;
+        long[] metrics;
+        int size;
+
+        Partial(int denseGroups) {
+            dense = denseGroups > 0;
+            keys = dense ? null : newKeys(64);
+            metrics = new long[(dense ? denseGroups : 64) * METRICS];
+        }
+
+        int slots() {
+            return metrics.length / METRICS;
+        }
+
+        long key(int slot) {
+            return dense ? slot : keys[slot];
+        }
+
+        int slotOf(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+                return slotOf(key);
+            }
+            keys[slot] = key;
+            size++;
+            return slot;
+        }
+
+        Partial merge(Partial other) {
+            if (dense) {
+                for (int i = 0; i < metrics.length; i++) {
+                    metrics[i] += other.metrics[i];
+                }
+                return this;
+            }
+            Partial into = size >= other.size ? this : other;
+            Partial from = into == this ? other : this;
+            for (int i = 0; i < from.keys.length; i++) {
+                if (from.keys[i] != EMPTY) {
+                    int base = into.slotOf(from.keys[i]) * METRICS;
+                    for (int m = 0; m < METRICS; m++) {
+                        into.metrics[base + m] += from.metrics[i * METRICS + m];
+                    }
+                }
+            }
+            return into;
+        }
+
+        boolean occupied(int slot) {
+            return dense ? metrics[slot * METRICS + TOTAL] > 0 : keys[slot] != EMPTY;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldMetrics = metrics;
+            keys = newKeys(capacity);
+            metrics = new long[capacity * METRICS];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int base = slotOf(oldKeys[i]) * METRICS;
+                    System.arraycopy(oldMetrics, i * METRICS, metrics, base, METRICS);
+                }
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
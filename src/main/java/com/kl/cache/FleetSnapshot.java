@@ -0,0 +1,733 @@
+package com.kl.cache;
+
+import com.kl.dto.BranchHealth;
+import com.kl.dto.StatusCount;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 列式设备快照：每台设备一行，字段按列存成基本类型数组，统计和筛选都是数组上的循环，不创建设备对象。
+ * 支行、设备类型、厂商、状态做字典编码（编码0表示空值），安装日期和保修到期日存 epochDay，
+ * 每个状态一个位图，另按 支行×状态 维护计数。每行约28字节，100万台设备加上id索引约45MB。
+ * 随设备增删改增量维护，删除腾出的行号由后续新增复用。
+ * 任意维度组合的分组统计（aggregate）在独立的 fork-join 线程池上按行号区间并行扫描，见 FleetAggregation。
+ */
+@Component
+public class FleetSnapshot implements InitializingBean, DisposableBean {
+
+    private static final int NO_DAY = Integer.MIN_VALUE;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int BYTES_PER_ROW = 4 + 2 + 2 + 2 + 2 + 4 + 4 + 8;
+
+    @Autowired
+    private DeviceInfoMapper deviceInfoMapper;
+
+    @Value("${bank-monitor.fleet-snapshot.enabled:true}")
+    private boolean enabled;
+
+    // 分组统计的并行度，0 表示CPU核数
+    @Value("${bank-monitor.fleet-snapshot.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int[] ids = new int[0];
+    private short[] branchCodes = new short[0];
+    private short[] typeCodes = new short[0];
+    private short[] vendorCodes = new short[0];
+    private short[] statusCodes = new short[0];
+    private int[] installDays = new int[0];
+    private int[] expiryDays = new int[0];
+    private long[] updateTimes = new long[0];
+
+    // 已使用过的最大行号+1；其中 live 位图为0的是空闲行
+    private int rowLimit;
+    private final BitSet live = new BitSet();
+    private int[] freeRows = new int[64];
+    private int freeCount;
+    private final IdIndex rowById = new IdIndex();
+
+    private final Dictionary branches = new Dictionary(Short.MAX_VALUE);
+    private final Dictionary types = new Dictionary(Short.MAX_VALUE);
+    private final Dictionary vendors = new Dictionary(Short.MAX_VALUE);
+    private final Dictionary statuses = new Dictionary(Byte.MAX_VALUE);
+    private final List<BitSet> statusBits = new ArrayList<>();
+    // [支行编码][状态编码] -> 设备数
+    private int[][] branchStatusCounts = new int[16][];
+
+    private volatile long lastRebuildAt;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) {
+            pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                    p -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                        thread.setName("fleet-aggregate-" + thread.getPoolIndex());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, null, false);
+            rebuild(deviceInfoMapper.selectAll());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void rebuild(Collection<DeviceInfo> devices) {
+        lock.writeLock().lock();
+        try {
+            allocate(Math.max(1024, devices.size() + 1024));
+            rowLimit = 0;
+            freeCount = 0;
+            live.clear();
+            rowById.clear();
+            branches.clear();
+            types.clear();
+            vendors.clear();
+            statuses.clear();
+            statusBits.clear();
+            branchStatusCounts = new int[16][];
+            for (DeviceInfo device : devices) {
+                putInternal(device);
+            }
+            lastRebuildAt = System.currentTimeMillis();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 新增或更新设备（更新时原地覆盖所在行）
+    public void put(DeviceInfo device) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            putInternal(device);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer id) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int row = rowById.remove(id);
+            if (row < 0) {
+                return;
+            }
+            unlink(row);
+            live.clear(row);
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            }
+            freeRows[freeCount++] = row;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 统计 ====================
+
+    public long getTotalCount() {
+        lock.readLock().lock();
+        try {
+            return rowById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getStatusCount(String status) {
+        lock.readLock().lock();
+        try {
+            int code = statuses.find(status);
+            return code < 0 || code >= statusBits.size() ? 0 : statusBits.get(code).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 按状态统计，格式与 DeviceStatsAggregator.getStatusDistribution 一致
+    public List<StatusCount> getStatusDistribution() {
+        lock.readLock().lock();
+        try {
+            List<StatusCount> result = new ArrayList<>();
+            for (int code = 0; code < statusBits.size(); code++) {
+                int count = statusBits.get(code).cardinality();
+                if (count > 0) {
+                    String status = statuses.valueOf(code);
+                    result.add(new StatusCount(status == null || status.isEmpty() ? null : status, count));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 支行健康度，字段与 DeviceStatsAggregator.getBranchHealth 一致，按在线率倒序
+    public List<BranchHealth> getBranchHealth() {
+        lock.readLock().lock();
+        try {
+            int statusCount = statuses.size();
+            boolean[] online = matchCodes(statuses, "online"::equals);
+            boolean[] fault = matchCodes(statuses, "fault"::equals);
+
+            // 空支行与字面值为“未分配支行”的合并为一行，与 SQL 的 COALESCE 口径一致
+            Map<String, long[]> totals = new HashMap<>();
+            for (int branch = 0; branch < Math.min(branches.size(), branchStatusCounts.length); branch++) {
+                int[] counts = branchStatusCounts[branch];
+                if (counts == null) {
+                    continue;
+                }
+                long total = 0;
+                long onlineCount = 0;
+                long faultCount = 0;
+                for (int status = 0; status < Math.min(counts.length, statusCount); status++) {
+                    total += counts[status];
+                    if (online[status]) {
+                        onlineCount += counts[status];
+                    } else if (fault[status]) {
+                        faultCount += counts[status];
+                    }
+                }
+                if (total > 0) {
+                    String name = branch == 0 ? DeviceStatsAggregator.UNASSIGNED_BRANCH : branches.valueOf(branch);
+                    long[] sum = totals.computeIfAbsent(name, k -> new long[3]);
+                    sum[0] += total;
+                    sum[1] += onlineCount;
+                    sum[2] += faultCount;
+                }
+            }
+
+            List<BranchHealth> result = new ArrayList<>(totals.size());
+            totals.forEach((branch, sum) ->
+                    result.add(new BranchHealth(branch, sum[0], sum[1], Math.round(sum[1] * 10000.0 / sum[0]) / 100.0, sum[2])));
+            result.sort(Comparator.comparingDouble(BranchHealth::onlineRate).reversed());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 分组统计 ====================
+
+    public enum Dimension {
+        BRANCH("branch"), DEVICE_TYPE("deviceType"), VENDOR("vendor"), STATUS("status");
+
+        private final String field;
+
+        Dimension(String field) {
+            this.field = field;
+        }
+
+        public String field() {
+            return field;
+        }
+
+        public static Dimension of(String field) {
+            for (Dimension dimension : values()) {
+                if (dimension.field.equalsIgnoreCase(field.trim())) {
+                    return dimension;
+                }
+            }
+            throw new IllegalArgumentException("不支持的分组维度: " + field + "，可选 branch/deviceType/vendor/status");
+        }
+    }
+
+    /**
+     * 按 groupBy 中的维度（可为空，即全体汇总）分组统计设备数、在线数、故障数、保修已过期数和平均设备年龄（天）。
+     * filters 中的取值做不区分大小写的精确匹配，支行取“未分配支行”时包含支行为空的设备。
+     * 结果按设备数倒序；各维度取值为空的分组对应字段为 null（支行为“未分配支行”）。
+     */
+    public List<Map<String, Object>> aggregate(List<Dimension> groupBy, Map<Dimension, String> filters) {
+        if (pool == null) {
+            throw new IllegalStateException("列式快照未启用（bank-monitor.fleet-snapshot.enabled）");
+        }
+        int today = (int) LocalDate.now().toEpochDay();
+
+        Map<List<String>, long[]> groups = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            short[][] groupColumns = new short[groupBy.size()][];
+            int[] radix = new int[groupBy.size()];
+            long groupSpace = 1;
+            for (int d = 0; d < groupColumns.length; d++) {
+                groupColumns[d] = column(groupBy.get(d));
+                radix[d] = dictionary(groupBy.get(d)).size();
+                groupSpace *= radix[d];
+            }
+            int denseGroups = groupSpace <= FleetAggregation.DENSE_GROUPS ? (int) groupSpace : 0;
+            short[][] filterColumns = new short[filters.size()][];
+            boolean[][] allowed = new boolean[filters.size()][];
+            int i = 0;
+            for (Map.Entry<Dimension, String> filter : filters.entrySet()) {
+                String value = filter.getValue().trim().toLowerCase(Locale.ROOT);
+                filterColumns[i] = column(filter.getKey());
+                allowed[i] = matchCodes(dictionary(filter.getKey()), value::equals);
+                if (filter.getKey() == Dimension.BRANCH
+                        && value.equals(DeviceStatsAggregator.UNASSIGNED_BRANCH.toLowerCase(Locale.ROOT))) {
+                    allowed[i][0] = true;
+                }
+                i++;
+            }
+            FleetAggregation.Scan scan = new FleetAggregation.Scan(live, groupColumns, radix, denseGroups, filterColumns, allowed,
+                    statusCodes, matchCodes(statuses, "online"::equals), matchCodes(statuses, "fault"::equals),
+                    installDays, expiryDays, NO_DAY, today);
+            // 数据量小时直接在当前线程扫描，省去任务调度
+            FleetAggregation.Partial partial = rowLimit <= FleetAggregation.LEAF_ROWS
+                    ? FleetAggregation.scan(scan, 0, rowLimit)
+                    : pool.invoke(new FleetAggregation.Task(scan, 0, rowLimit));
+
+            // 编码还原为取值；空支行与“未分配支行”合并
+            int[] codes = new int[groupBy.size()];
+            for (int slot = 0; slot < partial.slots(); slot++) {
+                if (!partial.occupied(slot)) {
+                    continue;
+                }
+                FleetAggregation.decode(scan, partial.key(slot), codes);
+                String[] labels = new String[codes.length];
+                for (int d = 0; d < codes.length; d++) {
+                    labels[d] = label(groupBy.get(d), codes[d]);
+                }
+                long[] sum = groups.computeIfAbsent(Arrays.asList(labels), k -> new long[FleetAggregation.METRICS]);
+                for (int m = 0; m < FleetAggregation.METRICS; m++) {
+                    sum[m] += partial.metrics[slot * FleetAggregation.METRICS + m];
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>(groups.size());
+        groups.forEach((labels, sum) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int d = 0; d < labels.size(); d++) {
+                row.put(groupBy.get(d).field(), labels.get(d));
+            }
+            long total = sum[FleetAggregation.TOTAL];
+            row.put("total", total);
+            row.put("online", sum[FleetAggregation.ONLINE]);
+            row.put("onlineRate", Math.round(sum[FleetAggregation.ONLINE] * 10000.0 / total) / 100.0);
+            row.put("faultCount", sum[FleetAggregation.FAULT]);
+            row.put("warrantyExpired", sum[FleetAggregation.WARRANTY_EXPIRED]);
+            long aged = sum[FleetAggregation.AGE_COUNT];
+            row.put("avgAgeDays", aged == 0 ? null : Math.round(sum[FleetAggregation.AGE_DAYS_SUM] * 10.0 / aged) / 10.0);
+            rows.add(row);
+        });
+        rows.sort((a, b) -> Long.compare((Long) b.get("total"), (Long) a.get("total")));
+        return rows;
+    }
+
+    private short[] column(Dimension dimension) {
+        switch (dimension) {
+            case BRANCH:
+                return branchCodes;
+            case DEVICE_TYPE:
+                return typeCodes;
+            case VENDOR:
+                return vendorCodes;
+            default:
+                return statusCodes;
+        }
+    }
+
+    private Dictionary dictionary(Dimension dimension) {
+        switch (dimension) {
+            case BRANCH:
+                return branches;
+            case DEVICE_TYPE:
+                return types;
+            case VENDOR:
+                return vendors;
+            default:
+                return statuses;
+        }
+    }
+
+    private String label(Dimension dimension, int code) {
+        if (code == 0) {
+            return dimension == Dimension.BRANCH ? DeviceStatsAggregator.UNASSIGNED_BRANCH : null;
+        }
+        return dictionary(dimension).valueOf(code);
+    }
+
+    // ==================== 筛选 ====================
+
+    /**
+     * 按设备类型（精确匹配）和支行（包含匹配）筛选，条件均不区分大小写，语义与 DeviceSearchIndex 相同。
+     * 按更新时间倒序（相同时按id倒序）只取 [offset, offset+limit) 这一页的设备id，由调用方到注册表取设备。
+     */
+    public SearchPage search(String deviceType, String branch, int offset, int limit) {
+        String type = normalize(deviceType);
+        String branchKw = normalize(branch);
+
+        lock.readLock().lock();
+        try {
+            boolean[] typeMatch = type == null ? null : matchCodes(types, value -> value.equals(type));
+            boolean[] branchMatch = branchKw == null ? null : matchCodes(branches, value -> value.contains(branchKw));
+
+            // 只保留最新的 offset+limit 行：堆顶是其中最旧的一行
+            int keep = (int) Math.min((long) offset + limit, rowById.size());
+            int[] heap = new int[keep];
+            int size = 0;
+            int total = 0;
+            for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+                if (typeMatch != null && !typeMatch[typeCodes[row]]) {
+                    continue;
+                }
+                if (branchMatch != null && !branchMatch[branchCodes[row]]) {
+                    continue;
+                }
+                total++;
+                if (size < keep) {
+                    heap[size] = row;
+                    siftUp(heap, size++);
+                } else if (keep > 0 && newer(row, heap[0])) {
+                    heap[0] = row;
+                    siftDown(heap, 0, size);
+                }
+            }
+
+            // 依次取出堆顶放到末尾，得到从新到旧的顺序
+            for (int end = size - 1; end > 0; end--) {
+                int oldest = heap[0];
+                heap[0] = heap[end];
+                heap[end] = oldest;
+                siftDown(heap, 0, end);
+            }
+            List<Integer> pageIds = new ArrayList<>(Math.max(0, size - offset));
+            for (int i = offset; i < size; i++) {
+                pageIds.add(ids[heap[i]]);
+            }
+            return new SearchPage(total, pageIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public record SearchPage(int total, List<Integer> ids) {
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        lock.readLock().lock();
+        try {
+            stats.put("devices", rowById.size());
+            stats.put("capacity", ids.length);
+            stats.put("freeRows", freeCount);
+            stats.put("branches", branches.size() - 1);
+            stats.put("deviceTypes", types.size() - 1);
+            stats.put("vendors", vendors.size() - 1);
+            stats.put("statuses", statuses.size() - 1);
+            stats.put("parallelism", pool == null ? 0 : pool.getParallelism());
+            stats.put("estimatedBytes", (long) ids.length * BYTES_PER_ROW + rowById.bytes() + live.size() / 8
+                    + statusBits.stream().mapToLong(bits -> bits.size() / 8).sum());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("lastRebuildAt", new Date(lastRebuildAt));
+        return stats;
+    }
+
+    // ==================== 内部实现 ====================
+
+    private void putInternal(DeviceInfo device) {
+        int row = rowById.get(device.getId());
+        if (row >= 0) {
+            unlink(row);
+        } else {
+            row = freeCount > 0 ? freeRows[--freeCount] : rowLimit++;
+            if (row == ids.length) {
+                allocate(ids.length * 2);
+            }
+            rowById.put(device.getId(), row);
+            live.set(row);
+        }
+
+        ids[row] = device.getId();
+        branchCodes[row] = (short) branches.codeOf(device.getBranch() == null ? null : device.getBranch().trim());
+        typeCodes[row] = (short) types.codeOf(device.getDeviceType());
+        vendorCodes[row] = (short) vendors.codeOf(device.getVendor());
+        int status = statuses.codeOf(device.getStatus());
+        statusCodes[row] = (short) status;
+        installDays[row] = device.getInstallDate() == null ? NO_DAY : (int) toLocalDate(device.getInstallDate()).toEpochDay();
+        expiryDays[row] = device.getInstallDate() == null || device.getWarrantyPeriod() == null ? NO_DAY
+                : (int) toLocalDate(device.getInstallDate()).plusMonths(device.getWarrantyPeriod()).toEpochDay();
+        updateTimes[row] = device.getUpdateTime() == null ? NO_TIME : device.getUpdateTime().getTime();
+
+        while (statusBits.size() <= status) {
+            statusBits.add(new BitSet());
+        }
+        statusBits.get(status).set(row);
+        addCount(branchCodes[row], status, 1);
+    }
+
+    // 从状态位图和计数中摘除该行（行本身仍占用）
+    private void unlink(int row) {
+        statusBits.get(statusCodes[row]).clear(row);
+        addCount(branchCodes[row], statusCodes[row], -1);
+    }
+
+    private void addCount(int branch, int status, int delta) {
+        if (branch >= branchStatusCounts.length) {
+            branchStatusCounts = Arrays.copyOf(branchStatusCounts, Math.max(branch + 1, branchStatusCounts.length * 2));
+        }
+        int[] counts = branchStatusCounts[branch];
+        if (counts == null || status >= counts.length) {
+            counts = counts == null ? new int[Math.max(8, status + 1)] : Arrays.copyOf(counts, Math.max(status + 1, counts.length * 2));
+            branchStatusCounts[branch] = counts;
+        }
+        counts[status] += delta;
+    }
+
+    private void allocate(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        branchCodes = Arrays.copyOf(branchCodes, capacity);
+        typeCodes = Arrays.copyOf(typeCodes, capacity);
+        vendorCodes = Arrays.copyOf(vendorCodes, capacity);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        installDays = Arrays.copyOf(installDays, capacity);
+        expiryDays = Arrays.copyOf(expiryDays, capacity);
+        updateTimes = Arrays.copyOf(updateTimes, capacity);
+    }
+
+    // 与 DeviceSearchIndex 的 NEWEST_FIRST 一致：更新时间倒序，空值排最后，相同时id大的在前
+    private boolean newer(int a, int b) {
+        if (updateTimes[a] != updateTimes[b]) {
+            return updateTimes[a] > updateTimes[b];
+        }
+        return ids[a] > ids[b];
+    }
+
+    private void siftUp(int[] heap, int index) {
+        int row = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!newer(heap[parent], row)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = row;
+    }
+
+    private void siftDown(int[] heap, int index, int size) {
+        int row = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && newer(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!newer(row, heap[child])) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = row;
+    }
+
+    // 字典很小，逐个编码判断一次，循环里只查数组
+    private static boolean[] matchCodes(Dictionary dictionary, Predicate<String> predicate) {
+        boolean[] match = new boolean[dictionary.size()];
+        for (int code = 1; code < match.length; code++) {
+            match[code] = predicate.test(dictionary.valueOf(code).toLowerCase(Locale.ROOT));
+        }
+        return match;
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date instanceof java.sql.Date
+                ? ((java.sql.Date) date).toLocalDate()
+                : date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static String normalize(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // 字符串字典：编码0固定表示 null，编码只增不删（支行、类型等取值很少）
+    private static final class Dictionary {
+        private final int maxSize;
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        Dictionary(int maxSize) {
+            this.maxSize = maxSize;
+            clear();
+        }
+
+        void clear() {
+            values.clear();
+            codes.clear();
+            values.add(null);
+        }
+
+        int codeOf(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (values.size() > maxSize) {
+                    throw new IllegalStateException("字典取值过多: " + values.size());
+                }
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        int find(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        String valueOf(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    // 设备id -> 行号：线性探测的开放寻址表，删除时后移归位，不留墓碑
+    private static final class IdIndex {
+        private static final int EMPTY = Integer.MIN_VALUE;
+
+        private int[] keys = newKeys(1024);
+        private int[] rows = new int[1024];
+        private int size;
+
+        int get(int id) {
+            int mask = keys.length - 1;
+            for (int slot = hash(id) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == id) {
+                    return rows[slot];
+                }
+            }
+            return -1;
+        }
+
+        void put(int id, int row) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = hash(id) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                size++;
+            }
+            keys[slot] = id;
+            rows[slot] = row;
+        }
+
+        int remove(int id) {
+            int mask = keys.length - 1;
+            int slot = hash(id) & mask;
+            while (keys[slot] != id) {
+                if (keys[slot] == EMPTY) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int row = rows[slot];
+            size--;
+            // 把后面探测链上的元素前移，保证查找不断链
+            int gap = slot;
+            for (int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    rows[gap] = rows[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = EMPTY;
+            return row;
+        }
+
+        void clear() {
+            keys = newKeys(1024);
+            rows = new int[1024];
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long bytes() {
+            return keys.length * 8L;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldRows = rows;
+            keys = newKeys(capacity);
+            rows = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldRows[i]);
+                }
+            }
+        }
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.kl.cache;
+
+import com.kl.dto.ResponseMappers;
+import com.kl.dto.WireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 看板接口的响应缓存：按 接口+参数 缓存序列化好的 JSON 字节和 ETag。
+ * 设备变更（及故障记录变化）提交后版本号加一，缓存项版本不一致或超过 max-age 时重新计算；
+ * 请求带 If-None-Match 且与当前 ETag 相同时直接返回 304，不再查询和序列化。
+ * ETag 取响应内容的哈希，重新计算后内容没变的仍然返回 304。
+ * 同一接口的 JSON 和 CBOR（Accept: application/cbor）分别缓存。
+ */
+@Component
+public class ResponseCache {
+
+    @Autowired
+    private ResponseMappers responseMappers;
+
+    @Value("${bank-monitor.response-cache.enabled:true}")
+    private boolean enabled;
+
+    // 兜底过期时间，覆盖不经过 Service 的数据变化（如其他实例写库）
+    @Value("${bank-monitor.response-cache.max-age-seconds:30}")
+    private long maxAgeSeconds;
+
+    @Value("${bank-monitor.response-cache.max-entries:256}")
+    private int maxEntries;
+
+    // 超过这个大小的响应不缓存字节，只计算 ETag
+    @Value("${bank-monitor.response-cache.max-entry-kb:2048}")
+    private int maxEntryKb;
+
+    private final AtomicLong version = new AtomicLong();
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+
+    @FunctionalInterface
+    public interface BodyWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    public ResponseEntity<byte[]> serve(String key, WireFormat format, String ifNoneMatch, Supplier<?> loader) {
+        return serve(key, format, ifNoneMatch, out -> responseMappers.mapperFor(format).writeValue(out, loader.get()));
+    }
+
+    // writer 按 format 写出响应体
+    public ResponseEntity<byte[]> serve(String key, WireFormat format, String ifNoneMatch, BodyWriter writer) {
+        if (format != WireFormat.JSON) {
+            key = key + "#" + format;
+        }
+        long current = version.get();
+        long now = System.currentTimeMillis();
+        Entry entry = enabled ? entries.get(key) : null;
+
+        if (entry != null && entry.version == current && now - entry.createdAt <= maxAgeSeconds * 1000) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+            // 版本号在计算前读取：计算期间发生变更时，这一项下次请求就会重算
+            entry = load(current, now, writer);
+            if (enabled && entry.body.length <= maxEntryKb * 1024L) {
+                if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+                    entries.clear();
+                }
+                entries.put(key, entry);
+            }
+        }
+
+        if (matches(ifNoneMatch, entry.etag)) {
+            notModifiedCount.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(entry.etag)
+                    .varyBy("Accept")
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .contentType(format.mediaType())
+                .eTag(entry.etag)
+                .varyBy("Accept")
+                .cacheControl(CacheControl.noCache())
+                .body(entry.body);
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    // 事务完成后再失效：afterCompletion 在所有 afterCommit 回调（内存统计更新）之后执行，
+    // 避免新版本号下缓存了更新前的结果。同一事务只登记一次；无事务时立即失效
+    public void invalidateAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ResponseCache.this);
+                if (status == STATUS_COMMITTED) {
+                    invalidate();
+                }
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("version", version.get());
+        stats.put("entries", entries.size());
+        stats.put("hits", hitCount.get());
+        stats.put("misses", missCount.get());
+        stats.put("notModified", notModifiedCount.get());
+        return stats;
+    }
+
+    private static Entry load(long version, long now, BodyWriter writer) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8 * 1024);
+        try {
+            writer.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] body = buffer.toByteArray();
+        return new Entry(version, now, body, etagOf(body));
+    }
+
+    // 64位 FNV-1a
+    private static String etagOf(byte[] body) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : body) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return "\"" + Long.toHexString(hash) + "\"";
+    }
+
+    // If-None-Match 可能是逗号分隔的多个值、弱校验 W/ 前缀或 *
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Entry(long version, long createdAt, byte[] body, String etag) {
+    }
+}
@@ -0,0 +1,324 @@
+package com.kl.cache;
+
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import com.kl.notify.FaultNotifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 保修到期索引：按 到期日(epochDay)&lt;&lt;32 | 设备id 排序的有序集合，另按支行、设备类型各维护一份。
+ * 到期日 = 安装日期 + 保修期（月），与 MySQL DATE_ADD(install_date, INTERVAL n MONTH) 口径一致。
+ * 任意日期窗口的查询是一次有序集合的范围截取，O(log n + k)。
+ * 随设备增删改增量维护，每天定时从数据库全量重建一次校准，可选在重建后按支行发送到期汇总通知。
+ */
+@Component
+public class WarrantyIndex implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(WarrantyIndex.class);
+
+    private static final int DIGEST_MAX_LINES = 20;
+
+    @Autowired
+    private DeviceInfoMapper deviceInfoMapper;
+
+    @Autowired
+    private FaultNotifier faultNotifier;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    // 每日重建时间（本地时间 HH:mm）
+    @Value("${bank-monitor.warranty.rebuild-time:02:00}")
+    private String rebuildTime;
+
+    @Value("${bank-monitor.warranty.digest-enabled:false}")
+    private boolean digestEnabled;
+
+    // 汇总通知与 /stats/warranty-alert 的提前天数
+    @Value("${bank-monitor.warranty.alert-days:30}")
+    private int alertDays;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeSet<Long> all = new TreeSet<>();
+    private final Map<String, TreeSet<Long>> byBranch = new HashMap<>();
+    private final Map<String, TreeSet<Long>> byType = new HashMap<>();
+    private final Map<Integer, DeviceInfo> devices = new HashMap<>();
+    private final Map<Integer, Long> keyById = new HashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private volatile long lastRebuildAt;
+
+    @Override
+    public void afterPropertiesSet() {
+        rebuild();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "warranty-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LocalTime time = LocalTime.parse(rebuildTime);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime first = now.toLocalDate().atTime(time);
+        if (!first.isAfter(now)) {
+            first = first.plusDays(1);
+        }
+        scheduler.scheduleAtFixedRate(this::nightly, Duration.between(now, first).toMillis(),
+                TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void rebuild() {
+        List<DeviceInfo> candidates = deviceInfoMapper.selectWarrantyCandidates();
+        lock.writeLock().lock();
+        try {
+            all.clear();
+            byBranch.clear();
+            byType.clear();
+            devices.clear();
+            keyById.clear();
+            for (DeviceInfo device : candidates) {
+                addInternal(device);
+            }
+            lastRebuildAt = System.currentTimeMillis();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 新增或更新设备；保修相关字段未变时只替换对象
+    public void put(DeviceInfo device) {
+        Long key = keyOf(device);
+        lock.writeLock().lock();
+        try {
+            Long old = keyById.get(device.getId());
+            DeviceInfo previous = devices.get(device.getId());
+            if (old != null && old.equals(key)
+                    && Objects.equals(previous.getBranch(), device.getBranch())
+                    && Objects.equals(previous.getDeviceType(), device.getDeviceType())) {
+                devices.put(device.getId(), device);
+                return;
+            }
+            removeInternal(device.getId());
+            if (key != null) {
+                addInternal(device);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询到期日落在 [今天+fromDays, 今天+toDays] 内的设备，按到期日升序。
+     *
+     * @param fromDays 为空表示不限下界（包含所有已过期）
+     * @param toDays   为空表示不限上界
+     */
+    public Map<String, Object> query(Integer fromDays, Integer toDays, String branch, String deviceType, int limit) {
+        long today = LocalDate.now().toEpochDay();
+        long low = fromDays == null ? Long.MIN_VALUE : key(today + fromDays, 0);
+        long high = toDays == null ? Long.MAX_VALUE : key(today + toDays + 1, 0);
+        if (low >= high) {
+            throw new IllegalArgumentException("fromDays 不能大于 toDays");
+        }
+        String branchKey = blankToNull(branch);
+        String typeKey = deviceType == null || deviceType.trim().isEmpty() ? null : deviceType.trim().toUpperCase();
+
+        lock.readLock().lock();
+        try {
+            // 同时按支行和类型筛选时，截取较小的那个集合再过滤另一个条件
+            TreeSet<Long> source = all;
+            if (branchKey != null || typeKey != null) {
+                TreeSet<Long> branchSet = branchKey == null ? null : byBranch.getOrDefault(branchKey, new TreeSet<>());
+                TreeSet<Long> typeSet = typeKey == null ? null : byType.getOrDefault(typeKey, new TreeSet<>());
+                source = branchSet == null ? typeSet
+                        : typeSet == null || branchSet.size() <= typeSet.size() ? branchSet : typeSet;
+            }
+            boolean filterBranch = branchKey != null && source != byBranch.get(branchKey);
+            boolean filterType = typeKey != null && source != byType.get(typeKey);
+
+            List<Map<String, Object>> rows = new ArrayList<>(Math.min(limit, 256));
+            int total = 0;
+            for (Long key : source.subSet(low, true, high, false)) {
+                DeviceInfo device = devices.get((int) (key & 0xFFFFFFFFL));
+                if (filterBranch && !branchKey.equals(branchKeyOf(device))) {
+                    continue;
+                }
+                if (filterType && !typeKey.equals(typeKeyOf(device))) {
+                    continue;
+                }
+                total++;
+                if (rows.size() < limit) {
+                    rows.add(toRow(device, key >> 32, today));
+                }
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("total", total);
+            result.put("devices", rows);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 未来 alertDays 天内到期的设备（保修预警）
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> getAlertDevices() {
+        return (List<Map<String, Object>>) query(0, alertDays, null, null, Integer.MAX_VALUE).get("devices");
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("indexed", all.size());
+            stats.put("branches", byBranch.size());
+            stats.put("deviceTypes", byType.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("lastRebuildAt", new Date(lastRebuildAt));
+        stats.put("digestEnabled", digestEnabled);
+        return stats;
+    }
+
+    private void nightly() {
+        try {
+            rebuild();
+            responseCache.invalidate();
+            if (digestEnabled) {
+                sendDigests();
+            }
+        } catch (Exception e) {
+            log.error("保修索引重建失败: {}", e.getMessage());
+        }
+    }
+
+    // 每个支行一条汇总：未来 alertDays 天内到期的设备
+    private void sendDigests() {
+        Map<String, List<Map<String, Object>>> byBranchRows = new TreeMap<>();
+        for (Map<String, Object> row : getAlertDevices()) {
+            byBranchRows.computeIfAbsent((String) row.get("branch"), k -> new ArrayList<>()).add(row);
+        }
+        for (Map.Entry<String, List<Map<String, Object>>> entry : byBranchRows.entrySet()) {
+            List<Map<String, Object>> rows = entry.getValue();
+            List<String> deviceIds = new ArrayList<>(rows.size());
+            StringBuilder content = new StringBuilder();
+            content.append("支行: ").append(entry.getKey())
+                    .append("\n未来").append(alertDays).append("天内保修到期: ").append(rows.size()).append("台\n");
+            for (Map<String, Object> row : rows) {
+                deviceIds.add((String) row.get("deviceId"));
+                if (deviceIds.size() <= DIGEST_MAX_LINES) {
+                    content.append(String.format("- %s (%s) %s 到期，剩余%s天%n", row.get("deviceName"),
+                            row.get("deviceId"), row.get("warrantyEndDate"), row.get("daysRemaining")));
+                }
+            }
+            if (rows.size() > DIGEST_MAX_LINES) {
+                content.append("... 其余").append(rows.size() - DIGEST_MAX_LINES).append("台略");
+            }
+            faultNotifier.notifyMessage("【保修到期提醒】", content.toString(), entry.getKey(), deviceIds);
+        }
+    }
+
+    private void addInternal(DeviceInfo device) {
+        Long key = keyOf(device);
+        if (key == null) {
+            return;
+        }
+        all.add(key);
+        byBranch.computeIfAbsent(branchKeyOf(device), k -> new TreeSet<>()).add(key);
+        byType.computeIfAbsent(typeKeyOf(device), k -> new TreeSet<>()).add(key);
+        devices.put(device.getId(), device);
+        keyById.put(device.getId(), key);
+    }
+
+    private void removeInternal(Integer id) {
+        Long key = keyById.remove(id);
+        DeviceInfo device = devices.remove(id);
+        if (key == null) {
+            return;
+        }
+        all.remove(key);
+        removeFrom(byBranch, branchKeyOf(device), key);
+        removeFrom(byType, typeKeyOf(device), key);
+    }
+
+    private static void removeFrom(Map<String, TreeSet<Long>> sets, String name, Long key) {
+        TreeSet<Long> set = sets.get(name);
+        if (set != null) {
+            set.remove(key);
+            if (set.isEmpty()) {
+                sets.remove(name);
+            }
+        }
+    }
+
+    private static Map<String, Object> toRow(DeviceInfo device, long expiryDay, long today) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("deviceId", device.getDeviceId());
+        row.put("deviceName", device.getDeviceName());
+        row.put("deviceType", device.getDeviceType());
+        row.put("branch", device.getBranch());
+        row.put("installDate", device.getInstallDate());
+        row.put("warrantyPeriod", device.getWarrantyPeriod());
+        row.put("warrantyEndDate", LocalDate.ofEpochDay(expiryDay));
+        row.put("daysRemaining", expiryDay - today);
+        return row;
+    }
+
+    // 没有安装日期或保修期的设备不入索引
+    private static Long keyOf(DeviceInfo device) {
+        if (device.getInstallDate() == null || device.getWarrantyPeriod() == null) {
+            return null;
+        }
+        LocalDate install = device.getInstallDate() instanceof java.sql.Date
+                ? ((java.sql.Date) device.getInstallDate()).toLocalDate()
+                : device.getInstallDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        return key(install.plusMonths(device.getWarrantyPeriod()).toEpochDay(), device.getId());
+    }
+
+    private static long key(long epochDay, int id) {
+        return (epochDay << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static String branchKeyOf(DeviceInfo device) {
+        return device.getBranch() == null ? DeviceStatsAggregator.UNASSIGNED_BRANCH : device.getBranch().trim();
+    }
+
+    private static String typeKeyOf(DeviceInfo device) {
+        return device.getDeviceType() == null ? "" : device.getDeviceType().trim().toUpperCase();
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.kl.controller;
+
+import com.kl.alert.AlertEngine;
+import com.kl.alert.AlertRule;
+import com.kl.dto.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/alerts")
+public class AlertController {
+
+    @Autowired
+    private AlertEngine alertEngine;
+
+    // GET 当前生效的告警规则
+    @GetMapping("/rules")
+    public ResponseEntity<ApiResponse<List<AlertRule>>> getRules() {
+        List<AlertRule> rules = alertEngine.getRules();
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", rules.size(), rules));
+    }
+
+    // POST 重新加载规则文件（校验失败时保留原规则）
+    @PostMapping("/rules/reload")
+    public ResponseEntity<ApiResponse<List<AlertRule>>> reloadRules() {
+        try {
+            List<AlertRule> rules = alertEngine.reloadRules();
+            return ResponseEntity.ok(ApiResponse.ok("已加载 " + rules.size() + " 条规则", rules));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("规则错误: " + e.getMessage()));
+        }
+    }
+
+    // GET 最近触发的告警（新的在前）
+    @GetMapping("/recent")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getRecentAlerts(@RequestParam(defaultValue = "50") int limit) {
+        if (limit <= 0 || limit > 1000) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: limit 取值范围 1-1000"));
+        }
+        List<Map<String, Object>> alerts = alertEngine.getRecentAlerts(limit);
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", alerts.size(), alerts));
+    }
+
+    // GET 规则求值与动作执行统计
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getStats() {
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", alertEngine.getStats()));
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.kl.controller;
+
+import com.kl.audit.StatusAuditLog;
+import com.kl.dto.ApiResponse;
+import com.kl.entity.DeviceStatusAudit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/audit")
+public class AuditController {
+
+    @Autowired
+    private StatusAuditLog statusAuditLog;
+
+    // GET 设备状态变更审计记录（时间范围含from不含to，新的在前）
+    @GetMapping("/devices/{deviceId}")
+    public ResponseEntity<ApiResponse<List<DeviceStatusAudit>>> getDeviceAudit(
+            @PathVariable String deviceId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date to,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        if (limit <= 0 || limit > 1000) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: limit 取值范围 1-1000"));
+        }
+        try {
+            List<DeviceStatusAudit> records = statusAuditLog.query(deviceId, from, to, limit);
+            return ResponseEntity.ok(ApiResponse.ok("查询成功", records.size(), records));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("查询失败: " + e.getMessage()));
+        }
+    }
+
+    // GET 审计日志写入与落库统计
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getAuditStats() {
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", statusAuditLog.getStats()));
+    }
+
+}
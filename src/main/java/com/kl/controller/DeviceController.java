@@ -1,10 +1,36 @@
 package com.kl.controller;
 
+import com.kl.cache.ResponseCache;
+import com.kl.datasource.DbConcurrencyLimiter;
+import com.kl.datasource.ReplicaRouter;
+import com.kl.dto.ApiResponse;
+import com.kl.dto.DeviceStatistics;
+import com.kl.dto.ResponseMappers;
+import com.kl.dto.WireFormat;
 import com.kl.entity.DeviceInfo;
+import com.kl.entity.DevicePage;
+import com.kl.service.DeviceCsv;
+import com.kl.shard.ShardedDeviceInfoMapper;
+import com.kl.stream.DeviceEventStream;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,283 +39,489 @@ import java.util.Map;
 @RequestMapping("/api/devices")
 public class DeviceController {
 
+    // 全量列表和导出每次从数据库读取的行数
+    private static final int STREAM_PAGE_SIZE = 1000;
+
     @Autowired
     private com.kl.service.DeviceService deviceService;  // 注入Service
 
-    // GET 所有设备
-    @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllDevices() {
-        Map<String, Object> response = new HashMap<>();
+    @Autowired
+    private DeviceEventStream deviceEventStream;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private ResponseMappers responseMappers;
+
+    // 只有开启读写分离时才存在
+    @Autowired
+    private ObjectProvider<ReplicaRouter> replicaRouter;
+
+    // 只有开启数据库并发限制时才存在
+    @Autowired
+    private ObjectProvider<DbConcurrencyLimiter> dbConcurrencyLimiter;
+
+    // 只有开启分片时才存在
+    @Autowired
+    private ObjectProvider<ShardedDeviceInfoMapper> shardedDeviceInfoMapper;
+
+    // GET 设备列表：支持游标分页(cursor, limit)和字段投影(fields)，Accept: application/cbor 时输出 CBOR
+    // 带 limit 的分页结果走响应缓存（支持 If-None-Match）
+    @GetMapping(params = "limit")
+    public ResponseEntity<?> getDevicePage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = "Accept", required = false) String accept,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+
+        DevicePage page;
         try {
-            List<DeviceInfo> devices = deviceService.getAllDevices();
-            response.put("success", true);
-            response.put("message", "查询成功");
-            response.put("total", devices.size());
-            response.put("data", devices);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "查询失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            if (limit == null) {
+                throw new IllegalArgumentException("limit 不能为空");
+            }
+            page = DevicePage.parse(cursor, limit, fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
         }
+
+        WireFormat format = WireFormat.of(accept);
+        String key = "devices?cursor=" + cursor + "&limit=" + limit + "&fields=" + fields;
+        return responseCache.serve(key, format, ifNoneMatch, out -> writeDevicePage(page, format, out));
+    }
+
+    // 不带 limit 的全量列表按页读库、边读边写，不在内存中拼装
+    // 返回类型要声明为 StreamingResponseBody，Spring MVC 才会按流式响应处理
+    @GetMapping(params = "!limit")
+    public ResponseEntity<StreamingResponseBody> getAllDevices(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = "Accept", required = false) String accept) {
+
+        DevicePage page;
+        try {
+            page = DevicePage.parse(cursor, null, fields);
+        } catch (IllegalArgumentException e) {
+            return jsonError(400, "参数错误: " + e.getMessage());
+        }
+
+        WireFormat format = WireFormat.of(accept);
+        StreamingResponseBody body = out -> writeDevicePage(page, format, out);
+        return ResponseEntity.ok().contentType(format.mediaType()).varyBy("Accept").body(body);
+    }
+
+    // GET 设备变更推送（SSE）：先推全量快照，之后只推增量；可按支行订阅
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDevices(@RequestParam(required = false) String branch) {
+        return deviceEventStream.subscribe(branch);
     }
 
     // GET 按ID查询
     @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getDeviceById(@PathVariable Integer id) {
-        Map<String, Object> response = new HashMap<>();
+    public ResponseEntity<ApiResponse<DeviceInfo>> getDeviceById(@PathVariable Integer id) {
         try {
             DeviceInfo device = deviceService.getDeviceById(id);
-            response.put("success", true);
-            response.put("message", "查询成功");
-            response.put("data", device);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ApiResponse.ok("查询成功", device));
         } catch (IllegalArgumentException e) {
-            response.put("success", false);
-            response.put("message", "参数错误: " + e.getMessage());
-            return ResponseEntity.status(400).body(response);
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
         } catch (RuntimeException e) {
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(404).body(response);
+            return ResponseEntity.status(404).body(ApiResponse.fail(e.getMessage()));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "查询失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("查询失败: " + e.getMessage()));
         }
     }
 
     // GET 按支行查询
     @GetMapping("/branch/{branch}")
-    public ResponseEntity<Map<String, Object>> getDevicesByBranch(@PathVariable String branch) {
-        Map<String, Object> response = new HashMap<>();
+    public ResponseEntity<ApiResponse<List<DeviceInfo>>> getDevicesByBranch(@PathVariable String branch) {
         try {
             List<DeviceInfo> devices = deviceService.getDevicesByBranch(branch);
-            response.put("success", true);
-            response.put("message", "查询成功");
-            response.put("total", devices.size());
-            response.put("data", devices);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ApiResponse.ok("查询成功", devices.size(), devices));
         } catch (IllegalArgumentException e) {
-            response.put("success", false);
-            response.put("message", "参数错误: " + e.getMessage());
-            return ResponseEntity.status(400).body(response);
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "查询失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("查询失败: " + e.getMessage()));
         }
     }
 
 
     // GET 按状态查询
     @GetMapping("/status/{status}")
-    public ResponseEntity<Map<String, Object>> getDevicesByStatus(@PathVariable String status) {
-        Map<String, Object> response = new HashMap<>();
+    public ResponseEntity<ApiResponse<List<DeviceInfo>>> getDevicesByStatus(@PathVariable String status) {
         try {
             List<DeviceInfo> devices = deviceService.getDevicesByStatus(status);
-            response.put("success", true);
-            response.put("message", "查询成功");
-            response.put("total", devices.size());
-            response.put("data", devices);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ApiResponse.ok("查询成功", devices.size(), devices));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "查询失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("查询失败: " + e.getMessage()));
         }
     }
 
     // POST 添加设备
     @PostMapping
-    public ResponseEntity<Map<String, Object>> addDevice(@RequestBody DeviceInfo device) {
-        Map<String, Object> response = new HashMap<>();
+    public ResponseEntity<ApiResponse<DeviceInfo>> addDevice(@RequestBody DeviceInfo device) {
         try {
             DeviceInfo savedDevice = deviceService.addDevice(device);
-            response.put("success", true);
-            response.put("message", "设备添加成功，等待验收上线");
-            response.put("data", savedDevice);
-            return ResponseEntity.status(201).body(response);
+            return ResponseEntity.status(201).body(ApiResponse.ok("设备添加成功，等待验收上线", savedDevice));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("添加失败: " + e.getMessage()));
+        }
+    }
+
+    // POST 批量导入设备：text/csv（首行表头）或 application/x-ndjson（每行一个JSON），流式读取
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ApiResponse<Map<String, Object>>> importDevices(
+            @RequestHeader("Content-Type") String contentType,
+            InputStream body) {
+
+        try {
+            String format = contentType.startsWith("text/csv") ? "csv" : "ndjson";
+            Map<String, Object> report = deviceService.importDevices(body, format);
+            return ResponseEntity.ok(ApiResponse.ok("导入完成", report));
         } catch (IllegalArgumentException e) {
-            response.put("success", false);
-            response.put("message", "参数错误: " + e.getMessage());
-            return ResponseEntity.status(400).body(response);
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "添加失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("导入失败: " + e.getMessage()));
         }
     }
 
+    // GET 导出全部设备（csv / ndjson），逐行读取逐行写出，内存占用与表大小无关
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportDevices(@RequestParam(defaultValue = "csv") String format) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            return jsonError(400, "参数错误: 不支持的导出格式 " + format);
+        }
+
+        StreamingResponseBody body = out -> writeExport(csv, out);
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=devices." + (csv ? "csv" : "ndjson"))
+                .contentType(csv ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     // PUT 更新设备
     @PutMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> updateDevice(
+    public ResponseEntity<ApiResponse<DeviceInfo>> updateDevice(
             @PathVariable Integer id,
             @RequestBody DeviceInfo device) {
 
-        Map<String, Object> response = new HashMap<>();
         try {
             DeviceInfo updatedDevice = deviceService.updateDevice(id, device);
-            response.put("success", true);
-            response.put("message", "设备更新成功");
-            response.put("data", updatedDevice);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ApiResponse.ok("设备更新成功", updatedDevice));
         } catch (IllegalArgumentException e) {
-            response.put("success", false);
-            response.put("message", "参数错误: " + e.getMessage());
-            return ResponseEntity.status(400).body(response);
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
         } catch (RuntimeException e) {
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(400).body(response);
+            return ResponseEntity.status(400).body(ApiResponse.fail(e.getMessage()));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "更新失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("更新失败: " + e.getMessage()));
         }
     }
 
     // DELETE 删除设备
     @DeleteMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> deleteDevice(@PathVariable Integer id) {
-        Map<String, Object> response = new HashMap<>();
+    public ResponseEntity<ApiResponse<Void>> deleteDevice(@PathVariable Integer id) {
         try {
             deviceService.deleteDevice(id);
-            response.put("success", true);
-            response.put("message", "设备删除成功");
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ApiResponse.ok("设备删除成功"));
         } catch (RuntimeException e) {
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(400).body(response);
+            return ResponseEntity.status(400).body(ApiResponse.fail(e.getMessage()));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "删除失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("删除失败: " + e.getMessage()));
         }
     }
 
     // 设备统计接口
     @GetMapping("/stats/summary")
-    public ResponseEntity<Map<String, Object>> getDeviceSummary() {
-        Map<String, Object> response = new HashMap<>();
+    public ResponseEntity<ApiResponse<DeviceStatistics>> getDeviceSummary() {
         try {
-            Map<String, Object> stats = deviceService.getDeviceStatistics();
-            response.put("success", true);
-            response.put("message", "统计信息获取成功");
-            response.put("data", stats);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ApiResponse.ok("统计信息获取成功", deviceService.getDeviceStatistics()));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "统计失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("统计失败: " + e.getMessage()));
         }
     }
 
     // 设备状态变更接口
     @PatchMapping("/{id}/status")
-    public ResponseEntity<Map<String, Object>> updateDeviceStatus(
+    public ResponseEntity<ApiResponse<Void>> updateDeviceStatus(
             @PathVariable Integer id,
-            @RequestBody Map<String, String> request) {
+            @RequestBody Map<String, String> request,
+            @RequestHeader(value = "X-Operator", required = false) String operator) {
 
-        Map<String, Object> response = new HashMap<>();
         try {
             String newStatus = request.get("status");
             String changeReason = request.get("reason");
 
             if (newStatus == null || newStatus.isEmpty()) {
-                response.put("success", false);
-                response.put("message", "状态不能为空");
-                return ResponseEntity.status(400).body(response);
+                return ResponseEntity.status(400).body(ApiResponse.fail("状态不能为空"));
             }
 
-            boolean success = deviceService.changeDeviceStatus(id, newStatus, changeReason);
+            boolean success = deviceService.changeDeviceStatus(id, newStatus, changeReason,
+                    operator == null || operator.isEmpty() ? "anonymous" : operator);
 
             if (success) {
-                response.put("success", true);
-                response.put("message", "设备状态更新成功");
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ApiResponse.ok("设备状态更新成功"));
             } else {
-                response.put("success", false);
-                response.put("message", "状态更新失败");
-                return ResponseEntity.status(500).body(response);
+                return ResponseEntity.status(500).body(ApiResponse.fail("状态更新失败"));
             }
         } catch (IllegalArgumentException e) {
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(400).body(response);
+            return ResponseEntity.status(400).body(ApiResponse.fail(e.getMessage()));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "状态更新失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("状态更新失败: " + e.getMessage()));
+        }
+    }
+
+    // 批量状态变更：{"ids":[1,2], "status":"MAINTENANCE", "reason":"..."} 或以 branch/deviceType 代替 ids
+    @PatchMapping("/batch/status")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> updateDeviceStatusBatch(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = "X-Operator", required = false) String operator) {
+        try {
+            List<Integer> ids = null;
+            Object rawIds = request.get("ids");
+            if (rawIds instanceof List) {
+                ids = new ArrayList<>();
+                for (Object id : (List<?>) rawIds) {
+                    if (!(id instanceof Number)) {
+                        throw new IllegalArgumentException("ids 必须为整数数组");
+                    }
+                    ids.add(((Number) id).intValue());
+                }
+            }
+
+            Map<String, Object> result = deviceService.changeDeviceStatusBatch(ids,
+                    (String) request.get("branch"), (String) request.get("deviceType"),
+                    (String) request.get("status"), (String) request.get("reason"),
+                    operator == null || operator.isEmpty() ? "anonymous" : operator);
+            return ResponseEntity.ok(ApiResponse.ok("批量状态变更完成", result));
+        } catch (IllegalArgumentException | ClassCastException e) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("批量状态变更失败: " + e.getMessage()));
         }
     }
 
     // 设备搜索接口
     @GetMapping("/search")
-    public ResponseEntity<Map<String, Object>> searchDevices(
+    public ResponseEntity<ApiResponse<Map<String, Object>>> searchDevices(
             @RequestParam(required = false) String keyword,
             @RequestParam(required = false) String deviceType,
-            @RequestParam(required = false) String branch) {
+            @RequestParam(required = false) String branch,
+            @RequestParam(required = false) Integer offset,
+            @RequestParam(required = false) Integer limit) {
 
-        Map<String, Object> response = new HashMap<>();
         try {
-            Map<String, Object> result = deviceService.searchDevices(keyword, deviceType, branch);
-            response.put("success", true);
-            response.put("data", result);
-            return ResponseEntity.ok(response);
+            Map<String, Object> result = deviceService.searchDevices(keyword, deviceType, branch, offset, limit);
+            return ResponseEntity.ok(new ApiResponse<>(true, null, null, result));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "搜索失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("搜索失败: " + e.getMessage()));
         }
     }
 
     // 标记设备故障
     @PostMapping("/{id}/mark-fault")
-    public ResponseEntity<Map<String, Object>> markDeviceAsFault(
+    public ResponseEntity<ApiResponse<Void>> markDeviceAsFault(
             @PathVariable Integer id,
             @RequestBody Map<String, String> request) {
 
-        Map<String, Object> response = new HashMap<>();
         try {
             String faultReason = request.get("reason");
             if (faultReason == null || faultReason.isEmpty()) {
                 throw new IllegalArgumentException("必须提供故障原因");
             }
 
-            boolean success = deviceService.markDeviceAsFault(id, faultReason);
+            // 故障代码、等级可选，默认 MANUAL / MEDIUM
+            boolean success = deviceService.markDeviceAsFault(id, request.get("faultCode"),
+                    request.get("faultLevel"), faultReason);
 
-            response.put("success", success);
-            response.put("message", success ? "设备已标记为故障" : "标记失败");
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(success ? ApiResponse.ok("设备已标记为故障") : ApiResponse.fail("标记失败"));
         } catch (IllegalArgumentException e) {
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(400).body(response);
+            return ResponseEntity.status(400).body(ApiResponse.fail(e.getMessage()));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "操作失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("操作失败: " + e.getMessage()));
         }
     }
 
     // 保修预警设备
     @GetMapping("/stats/warranty-alert")
-    public ResponseEntity<List<Map<String, Object>>> getWarrantyAlertDevices() {
-        return ResponseEntity.ok(deviceService.getWarrantyAlertDevices());
+    public ResponseEntity<byte[]> getWarrantyAlertDevices(
+            @RequestHeader(value = "Accept", required = false) String accept,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        // 预警窗口按天滚动，日期作为缓存键的一部分
+        return responseCache.serve("warranty-alert@" + LocalDate.now(), WireFormat.of(accept), ifNoneMatch,
+                deviceService::getWarrantyAlertDevices);
+    }
+
+    // 保修到期查询：任意窗口，按支行/类型筛选（不传 fromDays/toDays 时为未来30天）
+    @GetMapping("/stats/warranty")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getWarrantyDevices(
+            @RequestParam(required = false) Integer fromDays,
+            @RequestParam(required = false) Integer toDays,
+            @RequestParam(required = false) String branch,
+            @RequestParam(required = false) String deviceType,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        try {
+            if (fromDays == null && toDays == null) {
+                fromDays = 0;
+                toDays = 30;
+            }
+            Map<String, Object> result = deviceService.getWarrantyDevices(fromDays, toDays, branch, deviceType, limit);
+            return ResponseEntity.ok(ApiResponse.ok("查询成功", result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("查询失败: " + e.getMessage()));
+        }
     }
 
     // 故障分析报告
     @GetMapping("/stats/fault-analysis")
-    public ResponseEntity<Map<String, Object>> getFaultAnalysis() {
-        return ResponseEntity.ok(deviceService.getFaultAnalysis());
+    public ResponseEntity<byte[]> getFaultAnalysis(
+            @RequestHeader(value = "Accept", required = false) String accept,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        return responseCache.serve("fault-analysis", WireFormat.of(accept), ifNoneMatch, deviceService::getFaultAnalysis);
     }
 
     // 支行健康度统计
     @GetMapping("/stats/branch-health")
-    public ResponseEntity<Map<String, Object>> getBranchHealthStats() {
-        return ResponseEntity.ok(deviceService.getBranchHealthStats());
+    public ResponseEntity<byte[]> getBranchHealthStats(
+            @RequestHeader(value = "Accept", required = false) String accept,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        return responseCache.serve("branch-health", WireFormat.of(accept), ifNoneMatch, deviceService::getBranchHealthStats);
+    }
+
+    // 多维分组统计（钻取）：如 groupBy=branch,deviceType&status=FAULT
+    @GetMapping("/stats/breakdown")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getBreakdown(
+            @RequestParam(defaultValue = "branch") String groupBy,
+            @RequestParam(required = false) String branch,
+            @RequestParam(required = false) String deviceType,
+            @RequestParam(required = false) String vendor,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "1000") int limit) {
+
+        try {
+            Map<String, Object> result = deviceService.getBreakdown(groupBy, branch, deviceType, vendor, status, limit);
+            return ResponseEntity.ok(ApiResponse.ok("查询成功", result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("查询失败: " + e.getMessage()));
+        }
+    }
+
+    // 设备注册表缓存命中统计
+    @GetMapping("/stats/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(deviceService.getCacheStats());
+    }
+
+    // 读写分离路由统计（未开启时 enabled=false），开启并发限制时附带 limiter 的许可使用情况
+    @GetMapping("/stats/datasource")
+    public ResponseEntity<Map<String, Object>> getDataSourceStats() {
+        ReplicaRouter router = replicaRouter.getIfAvailable();
+        Map<String, Object> stats = router == null ? new HashMap<>() : router.getStats();
+        stats.put("enabled", router != null);
+        DbConcurrencyLimiter limiter = dbConcurrencyLimiter.getIfAvailable();
+        if (limiter != null) {
+            stats.put("limiter", limiter.getStats());
+        }
+        return ResponseEntity.ok(stats);
+    }
+
+    // 分片统计：各分片设备数、deviceId目录命中（未开启时 enabled=false）
+    @GetMapping("/stats/shards")
+    public ResponseEntity<Map<String, Object>> getShardStats() {
+        ShardedDeviceInfoMapper sharded = shardedDeviceInfoMapper.getIfAvailable();
+        Map<String, Object> stats = sharded == null ? new HashMap<>() : sharded.getStats();
+        stats.put("enabled", sharded != null);
+        return ResponseEntity.ok(stats);
+    }
+
+    // 写出分页结果：{"success":true,"message":"查询成功","data":[...],"total":本页条数,"nextCursor":"..."}
+    // 所有设备写进同一个生成器，不为每台设备单独生成字节数组；关闭生成器时不关闭响应流
+    private void writeDevicePage(DevicePage page, WireFormat format, OutputStream out) throws IOException {
+        ObjectMapper mapper = responseMappers.mapperFor(format);
+        OutputStream buffered = new BufferedOutputStream(out, 16 * 1024);
+        try (JsonGenerator gen = mapper.writer().without(StreamWriteFeature.AUTO_CLOSE_TARGET).createGenerator(buffered)) {
+            gen.writeStartObject();
+            gen.writeBooleanProperty("success", true);
+            gen.writeStringProperty("message", "查询成功");
+            gen.writeName("data");
+            gen.writeStartArray();
+
+            int[] count = {0};
+            DeviceInfo last = forEachDevice(page, device -> {
+                mapper.writeValue(gen, page.project(device));
+                count[0]++;
+            });
+
+            gen.writeEndArray();
+            gen.writeNumberProperty("total", count[0]);
+            // 本页取满才可能还有下一页
+            gen.writeStringProperty("nextCursor", page.getLimit() != null && count[0] == page.getLimit()
+                    ? DevicePage.encodeCursor(last) : null);
+            gen.writeEndObject();
+        }
+        buffered.flush();
+    }
+
+    private void writeExport(boolean csv, OutputStream out) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        SimpleDateFormat dateFormat = DeviceCsv.newDateFormat();
+        if (csv) {
+            buffered.write((DeviceCsv.header() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        forEachDevice(DevicePage.parse(null, null, null), device -> {
+            if (csv) {
+                buffered.write(DeviceCsv.toLine(device, dateFormat).getBytes(StandardCharsets.UTF_8));
+            } else {
+                buffered.write(objectMapper.writeValueAsBytes(device));
+            }
+            buffered.write('\n');
+        });
+        buffered.flush();
+    }
+
+    // 流式接口的错误响应
+    private ResponseEntity<StreamingResponseBody> jsonError(int status, String message) {
+        byte[] body = objectMapper.writeValueAsBytes(ApiResponse.fail(message));
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(out -> out.write(body));
+    }
+
+    @FunctionalInterface
+    private interface DeviceWriter {
+        void write(DeviceInfo device) throws IOException;
+    }
+
+    // 逐页读取后再写出：每页一个只读事务，写给客户端之前连接已归还，慢客户端不会占住数据库连接。
+    // 带 limit 时只取这一页；不带时按 STREAM_PAGE_SIZE 键集翻页直到取完（期间被修改的设备可能漏出或重复出现）
+    private DeviceInfo forEachDevice(DevicePage page, DeviceWriter writer) throws IOException {
+        boolean all = page.getLimit() == null;
+        DevicePage current = all ? page.next(null, STREAM_PAGE_SIZE) : page;
+        DeviceInfo last = null;
+        while (true) {
+            List<DeviceInfo> rows = new ArrayList<>(current.getLimit());
+            deviceService.streamDevices(current, rows::add);
+            for (DeviceInfo device : rows) {
+                writer.write(device);
+            }
+            if (!rows.isEmpty()) {
+                last = rows.get(rows.size() - 1);
+            }
+            if (!all || rows.size() < current.getLimit()) {
+                return last;
+            }
+            current = current.next(last, STREAM_PAGE_SIZE);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package com.kl.controller;
+
+import com.kl.dto.ApiResponse;
+import com.kl.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8");
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    // GET Prometheus 抓取端点
+    @GetMapping
+    public ResponseEntity<String> scrape() {
+        return ResponseEntity.ok().contentType(PROMETHEUS_TEXT).body(metricsRegistry.scrape());
+    }
+
+    // GET 最近的慢查询（含SQL和绑定参数），最新的在前
+    @GetMapping("/slow-queries")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getSlowQueries() {
+        List<Map<String, Object>> queries = metricsRegistry.getSlowQueries();
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", queries.size(), queries));
+    }
+}
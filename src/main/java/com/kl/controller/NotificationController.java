@@ -0,0 +1,39 @@
+package com.kl.controller;
+
+import com.kl.dto.ApiResponse;
+import com.kl.notify.FaultNotifier;
+import com.kl.notify.InMemoryNotificationChannel;
+import com.kl.notify.NotificationMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/notifications")
+public class NotificationController {
+
+    @Autowired
+    private FaultNotifier faultNotifier;
+
+    @Autowired
+    private InMemoryNotificationChannel inMemoryNotificationChannel;
+
+    // GET 最近的故障通知
+    @GetMapping("/recent")
+    public ResponseEntity<ApiResponse<List<NotificationMessage>>> getRecentNotifications() {
+        List<NotificationMessage> recent = inMemoryNotificationChannel.getRecent();
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", recent.size(), recent));
+    }
+
+    // GET 通知队列与投递延迟统计
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getNotificationStats() {
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", faultNotifier.getStats()));
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.kl.controller;
+
+import com.kl.dto.ApiResponse;
+import com.kl.entity.DeviceStatusLog;
+import com.kl.liveness.DeviceLivenessTracker;
+import com.kl.rollup.TelemetryRollupEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/devices/telemetry")
+public class TelemetryController {
+
+    @Autowired
+    private com.kl.service.TelemetryService telemetryService;
+
+    @Autowired
+    private TelemetryRollupEngine telemetryRollupEngine;
+
+    @Autowired
+    private DeviceLivenessTracker deviceLivenessTracker;
+
+    // POST 批量上报设备状态（异步落库），data 中返回接收和拒绝的条数
+    @PostMapping
+    public ResponseEntity<ApiResponse<Map<String, Integer>>> submitReports(@RequestBody List<DeviceStatusLog> reports) {
+        try {
+            int accepted = telemetryService.submit(reports);
+            Map<String, Integer> counts = new HashMap<>();
+            counts.put("accepted", accepted);
+            counts.put("rejected", reports.size() - accepted);
+
+            if (accepted < reports.size()) {
+                // 队列已满：返回429，让设备端退避后重试未接收的部分
+                return ResponseEntity.status(429).header("Retry-After", "1")
+                        .body(new ApiResponse<>(false, "上报队列已满，请稍后重试", null, counts));
+            }
+            return ResponseEntity.status(202).body(ApiResponse.ok("上报已接收", counts));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("上报失败: " + e.getMessage()));
+        }
+    }
+
+    // GET 设备最近上报记录
+    @GetMapping("/{deviceId}")
+    public ResponseEntity<ApiResponse<List<DeviceStatusLog>>> getRecentLogs(
+            @PathVariable String deviceId,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        try {
+            List<DeviceStatusLog> logs = telemetryService.getRecentLogs(deviceId, limit);
+            return ResponseEntity.ok(ApiResponse.ok("查询成功", logs.size(), logs));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("查询失败: " + e.getMessage()));
+        }
+    }
+
+    // GET 指标趋势（自动选择满足时间范围和分辨率的最粗聚合层级）
+    @GetMapping("/rollups")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getRollups(
+            @RequestParam(defaultValue = "device") String scope,
+            @RequestParam String key,
+            @RequestParam String metric,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date to,
+            @RequestParam(required = false) Long resolution) {
+
+        try {
+            return ResponseEntity.ok(ApiResponse.ok("查询成功",
+                    telemetryRollupEngine.query(scope, key, metric, from, to, resolution)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(ApiResponse.fail("参数错误: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("查询失败: " + e.getMessage()));
+        }
+    }
+
+    // GET 降采样与保留期统计
+    @GetMapping("/rollups/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getRollupStats() {
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", telemetryRollupEngine.getStats()));
+    }
+
+    // GET 心跳存活检测统计
+    @GetMapping("/liveness")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getLivenessStats() {
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", deviceLivenessTracker.getStats()));
+    }
+
+    // GET 上报队列统计
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getIngestStats() {
+        return ResponseEntity.ok(ApiResponse.ok("查询成功", telemetryService.getIngestStats()));
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.kl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * bank-monitor.datasource.routing.enabled=true 时替换默认数据源：
+ * 主库仍用 spring.datasource，从库地址来自 replica-urls（逗号分隔，账号默认与主库相同）。
+ * 未开启时不创建任何Bean，沿用 Spring Boot 自动配置的单数据源。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "bank-monitor.datasource.routing", name = "enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    public ReplicaRouter replicaRouter(
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username:}") String username,
+            @Value("${spring.datasource.password:}") String password,
+            @Value("${spring.datasource.driver-class-name:}") String driverClassName,
+            @Value("${bank-monitor.datasource.routing.replica-urls:}") String replicaUrls,
+            @Value("${bank-monitor.datasource.routing.replica-username:${spring.datasource.username:}}") String replicaUsername,
+            @Value("${bank-monitor.datasource.routing.replica-password:${spring.datasource.password:}}") String replicaPassword,
+            @Value("${bank-monitor.datasource.routing.strategy:round-robin}") String strategy,
+            @Value("${bank-monitor.datasource.routing.sticky-ms:2000}") long stickyMillis,
+            @Value("${bank-monitor.datasource.routing.retry-after-ms:5000}") long retryAfterMillis,
+            ObjectProvider<PoolTuner> poolTuner) {
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String replicaUrl : replicaUrls.split(",")) {
+            if (!replicaUrl.isBlank()) {
+                String name = "replica-" + (replicas.size() + 1);
+                HikariDataSource replica = pool(name, replicaUrl.trim(), replicaUsername, replicaPassword, driverClassName);
+                poolTuner.ifAvailable(tuner -> tuner.tune(replica));
+                replicas.put(name, replica);
+            }
+        }
+        if (replicas.isEmpty()) {
+            throw new IllegalStateException("已开启读写分离，但 bank-monitor.datasource.routing.replica-urls 为空");
+        }
+
+        ReplicaRouter.Strategy parsed;
+        try {
+            parsed = ReplicaRouter.Strategy.valueOf(strategy.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("不支持的从库选择策略: " + strategy + "（可选 round-robin、least-loaded）");
+        }
+
+        HikariDataSource primary = pool("primary", url, username, password, driverClassName);
+        poolTuner.ifAvailable(tuner -> tuner.tune(primary));
+        return new ReplicaRouter(primary, replicas, parsed, stickyMillis, retryAfterMillis);
+    }
+
+    // MyBatis 和事务管理器都使用这个数据源
+    @Bean
+    public DataSource dataSource(ReplicaRouter replicaRouter) {
+        return new LazyConnectionDataSourceProxy(new RoutingDataSource(replicaRouter));
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+
+    // 分片数据源也用这个方法建连接池
+    public static HikariDataSource pool(String name, String url, String username, String password,
+                                         String driverClassName) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        if (!driverClassName.isBlank()) {
+            dataSource.setDriverClassName(driverClassName);
+        }
+        return dataSource;
+    }
+}
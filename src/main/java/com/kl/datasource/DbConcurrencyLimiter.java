@@ -0,0 +1,157 @@
+package com.kl.datasource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据库并发限制：取连接前先取信号量许可，连接归还时释放，同时使用数据库的调用不超过 max-concurrent。
+ * <p>
+ * 用虚拟线程处理请求时并发数不再受 Tomcat 线程池约束，上万个上报/查询请求会一起挤进连接池等待；
+ * 这里让多出的请求在公平信号量上排队（排队的虚拟线程只是挂起），超过 acquire-timeout-ms 仍拿不到许可时快速失败，
+ * 不必等到连接池 connection-timeout。
+ * <p>
+ * 许可加在名为 dataSource 的 Bean 上（开启读写分离时是路由数据源），所有 Mapper 的调用都经过这里。
+ * 不在单条 Mapper 语句上限流：那样事务会占着连接排队，挡不住对连接池的争抢。
+ * 限流数据源外面套一层 LazyConnectionDataSourceProxy，@Transactional 开始时拿到的只是连接句柄，
+ * 执行第一条 SQL 时才取许可和物理连接，事务结束时归还；没有执行 SQL 的事务（如命中内存的只读查询）不占许可。
+ * 读写分离的数据源本身已是这种代理，这时把许可加在代理和路由数据源之间。分片数据源各有连接池，不在限制范围内。
+ */
+public class DbConcurrencyLimiter implements BeanPostProcessor {
+
+    private static final String DATA_SOURCE_BEAN = "dataSource";
+
+    private final int maxConcurrent;
+    private final long acquireTimeoutMs;
+    private final Semaphore permits;
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong waitedNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public DbConcurrencyLimiter(int maxConcurrent, long acquireTimeoutMs) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalStateException("db-limiter max-concurrent 必须大于0");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && DATA_SOURCE_BEAN.equals(beanName)) {
+            DataSource target = dataSource instanceof LazyConnectionDataSourceProxy lazy
+                    ? lazy.getTargetDataSource() : dataSource;
+            return new LazyConnectionDataSourceProxy(new LimitedDataSource(target));
+        }
+        return bean;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("inUse", maxConcurrent - permits.availablePermits());
+        stats.put("waiting", permits.getQueueLength());
+        stats.put("acquired", acquired.get());
+        stats.put("rejected", rejected.get());
+        long count = acquired.get();
+        stats.put("avgWaitMs", count == 0 ? 0.0 : waitedNanos.get() / 1e6 / count);
+        stats.put("maxWaitMs", maxWaitNanos.get() / 1e6);
+        return stats;
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        boolean granted;
+        try {
+            granted = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("等待数据库许可时被中断", e);
+        }
+        if (!granted) {
+            rejected.incrementAndGet();
+            throw new SQLTransientConnectionException("数据库繁忙：" + acquireTimeoutMs + "ms 内未获得连接许可（上限 "
+                    + maxConcurrent + "）");
+        }
+        long waited = System.nanoTime() - start;
+        acquired.incrementAndGet();
+        waitedNanos.addAndGet(waited);
+        if (waited > maxWaitNanos.get()) {
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+    }
+
+    // 连接代理：close() 时归还许可（只归还一次）
+    private Connection releasing(Connection target) {
+        boolean[] closed = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    if ("close".equals(method.getName()) && !closed[0]) {
+                        closed[0] = true;
+                        try {
+                            target.close();
+                        } finally {
+                            permits.release();
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    private class LimitedDataSource extends DelegatingDataSource {
+
+        LimitedDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            try {
+                return releasing(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            try {
+                return releasing(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.kl.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * bank-monitor.db-limiter.enabled=true 时给 dataSource 加上并发许可（见 DbConcurrencyLimiter）。
+ * 一般与虚拟线程一起开启（application-virtual.yml）；平台线程模式下 Tomcat 线程数本身就限制了并发。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "bank-monitor.db-limiter", name = "enabled", havingValue = "true")
+public class DbLimiterConfig {
+
+    // BeanPostProcessor 要用静态方法声明，避免提前实例化配置类
+    @Bean
+    public static DbConcurrencyLimiter dbConcurrencyLimiter(
+            @Value("${bank-monitor.db-limiter.max-concurrent:10}") int maxConcurrent,
+            @Value("${bank-monitor.db-limiter.acquire-timeout-ms:3000}") long acquireTimeoutMs) {
+        return new DbConcurrencyLimiter(maxConcurrent, acquireTimeoutMs);
+    }
+}
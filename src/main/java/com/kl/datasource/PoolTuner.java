@@ -0,0 +1,90 @@
+package com.kl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 连接池调优（bank-monitor.pool-tuning.enabled=true，见 application-perf.yml）。
+ * <p>
+ * 连接数：pool-size 或 spring.datasource.hikari.maximum-pool-size 显式配置时按配置；开启 db-limiter 时等于许可数（多出的连接拿不到许可，少了则拿到许可的请求还要在池里等）；
+ * 否则按 数据库核数*2+有效磁盘数 估算（HikariCP 文档的经验公式），db-cores 未配置时按本机核数。
+ * 最小空闲连接数等于最大值，固定大小的池不会在高峰时临时建连。
+ * <p>
+ * MySQL 连接加上预编译语句缓存（cachePrepStmts/useServerPrepStmts）、rewriteBatchedStatements 等驱动参数，
+ * URL 或 data-source-properties 里已显式配置的参数不覆盖。
+ * 自动配置的 spring.datasource 连接池在这里处理，从库和分片的连接池由各自的配置类建池后调用 tune()。
+ */
+public class PoolTuner implements BeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolTuner.class);
+
+    private final int poolSize;
+    private final Map<String, String> driverProperties = new LinkedHashMap<>();
+
+    public PoolTuner(int poolSize, int hikariMaxPoolSize, int dbCores, int effectiveSpindles, int dbConcurrency,
+                     boolean statementCache, int prepStmtCacheSize, int prepStmtCacheSqlLimit) {
+        this.poolSize = poolSize(poolSize > 0 ? poolSize : hikariMaxPoolSize, dbCores, effectiveSpindles, dbConcurrency);
+        if (statementCache) {
+            driverProperties.put("cachePrepStmts", "true");
+            driverProperties.put("prepStmtCacheSize", String.valueOf(prepStmtCacheSize));
+            // 批量插入的多行 VALUES 语句较长，上限要能容纳一批（500行约20KB）
+            driverProperties.put("prepStmtCacheSqlLimit", String.valueOf(prepStmtCacheSqlLimit));
+            driverProperties.put("useServerPrepStmts", "true");
+        }
+        driverProperties.put("rewriteBatchedStatements", "true");
+        // 会话状态在客户端跟踪，省掉 setAutoCommit/isReadOnly 等每次借还连接时的往返
+        driverProperties.put("useLocalSessionState", "true");
+        driverProperties.put("elideSetAutoCommits", "true");
+        driverProperties.put("cacheServerConfiguration", "true");
+        driverProperties.put("cacheResultSetMetadata", "true");
+        driverProperties.put("maintainTimeStats", "false");
+    }
+
+    static int poolSize(int configured, int dbCores, int effectiveSpindles, int dbConcurrency) {
+        if (configured > 0) {
+            return configured;
+        }
+        if (dbConcurrency > 0) {
+            return dbConcurrency;
+        }
+        int cores = dbCores > 0 ? dbCores : Runtime.getRuntime().availableProcessors();
+        return cores * 2 + Math.max(effectiveSpindles, 0);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource pool) {
+            tune(pool, pool.getPoolName() != null ? pool.getPoolName() : beanName);
+        }
+        return bean;
+    }
+
+    public void tune(HikariDataSource pool) {
+        tune(pool, pool.getPoolName());
+    }
+
+    private void tune(HikariDataSource pool, String name) {
+        pool.setMaximumPoolSize(poolSize);
+        pool.setMinimumIdle(poolSize);
+        String url = pool.getJdbcUrl();
+        boolean mysql = url != null && url.startsWith("jdbc:mysql:");
+        if (mysql) {
+            for (Map.Entry<String, String> property : driverProperties.entrySet()) {
+                if (!url.contains(property.getKey() + "=")
+                        && !pool.getDataSourceProperties().containsKey(property.getKey())) {
+                    pool.addDataSourceProperty(property.getKey(), property.getValue());
+                }
+            }
+        }
+        log.info("连接池[{}]调优: 连接数 {}{}", name, poolSize, mysql ? "，已开启预编译语句缓存" : "");
+    }
+}
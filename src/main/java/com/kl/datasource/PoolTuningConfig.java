@@ -0,0 +1,30 @@
+package com.kl.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * bank-monitor.pool-tuning.enabled=true 时按核数和 db-limiter 许可数确定连接池大小，并给 MySQL 连接加上语句缓存参数（见 PoolTuner）。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "bank-monitor.pool-tuning", name = "enabled", havingValue = "true")
+public class PoolTuningConfig {
+
+    // BeanPostProcessor 要用静态方法声明，避免提前实例化配置类
+    @Bean
+    public static PoolTuner poolTuner(
+            @Value("${bank-monitor.pool-tuning.pool-size:0}") int poolSize,
+            @Value("${spring.datasource.hikari.maximum-pool-size:0}") int hikariMaxPoolSize,
+            @Value("${bank-monitor.pool-tuning.db-cores:0}") int dbCores,
+            @Value("${bank-monitor.pool-tuning.effective-spindles:1}") int effectiveSpindles,
+            @Value("${bank-monitor.db-limiter.enabled:false}") boolean limiterEnabled,
+            @Value("${bank-monitor.db-limiter.max-concurrent:10}") int maxConcurrent,
+            @Value("${bank-monitor.pool-tuning.statement-cache:true}") boolean statementCache,
+            @Value("${bank-monitor.pool-tuning.prep-stmt-cache-size:256}") int prepStmtCacheSize,
+            @Value("${bank-monitor.pool-tuning.prep-stmt-cache-sql-limit:32768}") int prepStmtCacheSqlLimit) {
+        return new PoolTuner(poolSize, hikariMaxPoolSize, dbCores, effectiveSpindles, limiterEnabled ? maxConcurrent : 0,
+                statementCache, prepStmtCacheSize, prepStmtCacheSqlLimit);
+    }
+}
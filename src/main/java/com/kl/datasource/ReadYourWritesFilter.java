@@ -0,0 +1,27 @@
+package com.kl.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 给当前请求绑定客户端标识（请求头 X-Operator，没有时用来源IP），供 ReplicaRouter 判断读己之写。
+ */
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String operator = request.getHeader("X-Operator");
+        ReplicaRouter.bindClient(operator != null && !operator.isBlank() ? operator.trim() : request.getRemoteAddr());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRouter.clearClient();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.kl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读写分离路由：只读事务（@Transactional(readOnly = true)）的连接从从库池中选取，
+ * 其余（写事务、无事务的调用、后台线程）一律走主库。
+ * <p>
+ * 读己之写：同一客户端（请求头 X-Operator，没有时按来源IP）的写事务结束后，
+ * 在 sticky-ms 内的只读请求仍走主库，避免刚写完就从延迟的从库读到旧数据。
+ * 无事务的调用虽然也走主库，但不产生粘滞。
+ * 从库取连接失败时标记下线 retry-after-ms，期间跳过；全部不可用时回落主库。
+ */
+public class ReplicaRouter implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    public enum Strategy { ROUND_ROBIN, LEAST_LOADED }
+
+    // 粘滞表超过这个大小时顺手清理过期项
+    private static final int STICKY_PURGE_THRESHOLD = 10000;
+
+    // 当前请求的客户端标识，由 ReadYourWritesFilter 绑定；后台线程为空，不产生粘滞
+    private static final ThreadLocal<String> CLIENT = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Node> replicas;
+    private final Strategy strategy;
+    private final long stickyMillis;
+    private final long retryAfterMillis;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+    // 客户端 -> 粘滞到期时间
+    private final ConcurrentHashMap<String, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    private final AtomicLong primaryWrites = new AtomicLong();
+    private final AtomicLong stickyReads = new AtomicLong();
+    private final AtomicLong fallbackReads = new AtomicLong();
+
+    public ReplicaRouter(DataSource primary, Map<String, DataSource> replicas, Strategy strategy,
+                         long stickyMillis, long retryAfterMillis) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas.size());
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Node(name, dataSource)));
+        this.strategy = strategy;
+        this.stickyMillis = stickyMillis;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public static void bindClient(String client) {
+        CLIENT.set(client);
+    }
+
+    public static void clearClient() {
+        CLIENT.remove();
+    }
+
+    Connection getConnection() throws SQLException {
+        boolean readOnly = TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        String client = CLIENT.get();
+
+        if (!readOnly) {
+            Connection connection = primary.getConnection();
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                return connection;
+            }
+            primaryWrites.incrementAndGet();
+            // 连接归还时写事务已提交，从这时开始计算粘滞窗口
+            return client == null || stickyMillis <= 0 ? connection : onClose(connection, () -> markWrite(client));
+        }
+
+        if (client != null && isSticky(client)) {
+            stickyReads.incrementAndGet();
+            return primary.getConnection();
+        }
+
+        // 从轮询位置开始排列；LEAST_LOADED 再按借出连接数稳定排序，连接数相同时仍轮询分摊
+        int n = replicas.size();
+        int offset = Math.floorMod(cursor.getAndIncrement(), n);
+        Node[] order = new Node[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = replicas.get((offset + i) % n);
+        }
+        if (strategy == Strategy.LEAST_LOADED) {
+            Arrays.sort(order, Comparator.comparingInt(node -> node.active.get()));
+        }
+
+        long now = System.currentTimeMillis();
+        for (Node node : order) {
+            if (node.downUntil > now) {
+                continue;
+            }
+            try {
+                return node.borrow();
+            } catch (SQLException e) {
+                node.failures.incrementAndGet();
+                node.downUntil = now + retryAfterMillis;
+                log.warn("从库 {} 获取连接失败，暂停使用 {}ms: {}", node.name, retryAfterMillis, e.getMessage());
+            }
+        }
+
+        fallbackReads.incrementAndGet();
+        return primary.getConnection();
+    }
+
+    private boolean isSticky(String client) {
+        Long until = stickyUntil.get(client);
+        if (until == null) {
+            return false;
+        }
+        if (until > System.currentTimeMillis()) {
+            return true;
+        }
+        stickyUntil.remove(client, until);
+        return false;
+    }
+
+    private void markWrite(String client) {
+        long now = System.currentTimeMillis();
+        if (stickyUntil.size() > STICKY_PURGE_THRESHOLD) {
+            stickyUntil.values().removeIf(until -> until <= now);
+        }
+        stickyUntil.put(client, now + stickyMillis);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("strategy", strategy.name());
+        stats.put("stickyMillis", stickyMillis);
+        stats.put("stickyClients", stickyUntil.size());
+        stats.put("primaryWrites", primaryWrites.get());
+        stats.put("stickyReads", stickyReads.get());
+        stats.put("fallbackReads", fallbackReads.get());
+
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        for (Node node : replicas) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", node.name);
+            item.put("up", node.downUntil <= now);
+            item.put("active", node.active.get());
+            item.put("borrowed", node.borrowed.get());
+            item.put("failures", node.failures.get());
+            nodes.add(item);
+        }
+        stats.put("replicas", nodes);
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+        close(primary);
+        for (Node node : replicas) {
+            close(node.dataSource);
+        }
+    }
+
+    private static void close(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikari) {
+            hikari.close();
+        }
+    }
+
+    // 包一层连接代理，close() 时执行回调（只回调一次）
+    private static Connection onClose(Connection target, Runnable callback) {
+        boolean[] closed = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    if ("close".equals(method.getName()) && !closed[0]) {
+                        closed[0] = true;
+                        try {
+                            target.close();
+                        } finally {
+                            callback.run();
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    private static class Node {
+        final String name;
+        final DataSource dataSource;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicLong borrowed = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        volatile long downUntil;
+
+        Node(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        Connection borrow() throws SQLException {
+            Connection connection = dataSource.getConnection();
+            active.incrementAndGet();
+            borrowed.incrementAndGet();
+            return onClose(connection, active::decrementAndGet);
+        }
+    }
+}
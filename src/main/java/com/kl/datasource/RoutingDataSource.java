@@ -0,0 +1,29 @@
+package com.kl.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 把取连接交给 ReplicaRouter。需要包在 LazyConnectionDataSourceProxy 里使用：
+ * 事务开始时只拿到代理，第一次执行SQL时事务的只读标记已经设置好，再决定走主库还是从库。
+ */
+class RoutingDataSource extends AbstractDataSource {
+
+    private final ReplicaRouter router;
+
+    RoutingDataSource(ReplicaRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return router.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("读写分离数据源不支持指定用户名取连接");
+    }
+}
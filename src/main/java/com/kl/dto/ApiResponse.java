@@ -0,0 +1,26 @@
+package com.kl.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 接口统一响应：{"success":true,"message":"查询成功","total":10,"data":[...]}，total 和 data 为空时不输出。
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ApiResponse<T>(boolean success, String message, Integer total, T data) {
+
+    public static <T> ApiResponse<T> ok(String message) {
+        return new ApiResponse<>(true, message, null, null);
+    }
+
+    public static <T> ApiResponse<T> ok(String message, T data) {
+        return new ApiResponse<>(true, message, null, data);
+    }
+
+    public static <T> ApiResponse<T> ok(String message, int total, T data) {
+        return new ApiResponse<>(true, message, total, data);
+    }
+
+    public static <T> ApiResponse<T> fail(String message) {
+        return new ApiResponse<>(false, message, null, null);
+    }
+}
@@ -0,0 +1,9 @@
+package com.kl.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// 支行健康度一行，字段名与原 getBranchHealthStats 查询的列名一致（看板按 online_rate、fault_count 读取）
+public record BranchHealth(String branch, long total, long online,
+                           @JsonProperty("online_rate") double onlineRate,
+                           @JsonProperty("fault_count") long faultCount) {
+}
@@ -0,0 +1,8 @@
+package com.kl.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// GET /stats/branch-health：各支行按在线率倒序，overallOnlineRate 如 "97.50%"
+public record BranchHealthReport(List<BranchHealth> branchStats, String overallOnlineRate, LocalDateTime timestamp) {
+}
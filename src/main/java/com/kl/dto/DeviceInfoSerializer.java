@@ -0,0 +1,84 @@
+package com.kl.dto;
+
+import com.kl.entity.DeviceInfo;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.SerializableString;
+import tools.jackson.core.io.SerializedString;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.ser.std.StdSerializer;
+
+import java.util.Date;
+
+/**
+ * DeviceInfo 的手写序列化器：字段名预先编码，按字段直接写出，不经过 Bean 属性的反射访问和类型查找。
+ * 输出的字段和取值与默认 Bean 序列化一致（空值照常输出 null），日期按 ObjectMapper 的日期配置写出。
+ * DeviceInfo 增加字段时这里要同步。
+ */
+public class DeviceInfoSerializer extends StdSerializer<DeviceInfo> {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString DEVICE_ID = new SerializedString("deviceId");
+    private static final SerializableString DEVICE_NAME = new SerializedString("deviceName");
+    private static final SerializableString DEVICE_TYPE = new SerializedString("deviceType");
+    private static final SerializableString VENDOR = new SerializedString("vendor");
+    private static final SerializableString MODEL = new SerializedString("model");
+    private static final SerializableString IP_ADDRESS = new SerializedString("ipAddress");
+    private static final SerializableString LOCATION = new SerializedString("location");
+    private static final SerializableString BRANCH = new SerializedString("branch");
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString INSTALL_DATE = new SerializedString("installDate");
+    private static final SerializableString WARRANTY_PERIOD = new SerializedString("warrantyPeriod");
+    private static final SerializableString CREATE_TIME = new SerializedString("createTime");
+    private static final SerializableString UPDATE_TIME = new SerializedString("updateTime");
+
+    public DeviceInfoSerializer() {
+        super(DeviceInfo.class);
+    }
+
+    @Override
+    public void serialize(DeviceInfo device, JsonGenerator gen, SerializationContext ctxt) {
+        gen.writeStartObject(device);
+        writeInt(gen, ID, device.getId());
+        writeString(gen, DEVICE_ID, device.getDeviceId());
+        writeString(gen, DEVICE_NAME, device.getDeviceName());
+        writeString(gen, DEVICE_TYPE, device.getDeviceType());
+        writeString(gen, VENDOR, device.getVendor());
+        writeString(gen, MODEL, device.getModel());
+        writeString(gen, IP_ADDRESS, device.getIpAddress());
+        writeString(gen, LOCATION, device.getLocation());
+        writeString(gen, BRANCH, device.getBranch());
+        writeString(gen, STATUS, device.getStatus());
+        writeDate(gen, ctxt, INSTALL_DATE, device.getInstallDate());
+        writeInt(gen, WARRANTY_PERIOD, device.getWarrantyPeriod());
+        writeDate(gen, ctxt, CREATE_TIME, device.getCreateTime());
+        writeDate(gen, ctxt, UPDATE_TIME, device.getUpdateTime());
+        gen.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator gen, SerializableString name, String value) {
+        gen.writeName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(value);
+        }
+    }
+
+    private static void writeInt(JsonGenerator gen, SerializableString name, Integer value) {
+        gen.writeName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value.intValue());
+        }
+    }
+
+    private static void writeDate(JsonGenerator gen, SerializationContext ctxt, SerializableString name, Date value) {
+        gen.writeName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            ctxt.defaultSerializeDateValue(value, gen);
+        }
+    }
+}
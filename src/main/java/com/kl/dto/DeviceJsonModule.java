@@ -0,0 +1,15 @@
+package com.kl.dto;
+
+import com.kl.entity.DeviceInfo;
+import tools.jackson.databind.module.SimpleModule;
+
+/**
+ * 启动时注册的序列化器：作为 Bean 声明后由 Spring Boot 加到自动配置的 JSON 和 CBOR mapper。
+ */
+public class DeviceJsonModule extends SimpleModule {
+
+    public DeviceJsonModule() {
+        super("bank-monitor-device");
+        addSerializer(DeviceInfo.class, new DeviceInfoSerializer());
+    }
+}
@@ -0,0 +1,9 @@
+package com.kl.dto;
+
+import java.util.Date;
+import java.util.List;
+
+// GET /stats/summary：设备总数、按状态分布、在线率（如 "97.50%"）
+public record DeviceStatistics(long totalDevices, List<StatusCount> statusDistribution, String onlineRate,
+                               Date lastUpdateTime) {
+}
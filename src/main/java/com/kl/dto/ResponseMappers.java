@@ -0,0 +1,20 @@
+package com.kl.dto;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+// 按响应格式取 mapper，给自己写字节的接口用（分页列表、ResponseCache）
+public class ResponseMappers {
+
+    private final ObjectMapper json;
+    private final CBORMapper cbor;
+
+    public ResponseMappers(ObjectMapper json, CBORMapper cbor) {
+        this.json = json;
+        this.cbor = cbor;
+    }
+
+    public ObjectMapper mapperFor(WireFormat format) {
+        return format == WireFormat.CBOR ? cbor : json;
+    }
+}
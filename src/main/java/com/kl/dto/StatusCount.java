@@ -0,0 +1,5 @@
+package com.kl.dto;
+
+// 某个状态的设备数，status 为空的设备单独成组（status=null）
+public record StatusCount(String status, long count) {
+}
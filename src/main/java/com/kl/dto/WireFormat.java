@@ -0,0 +1,43 @@
+package com.kl.dto;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * 响应格式：默认 JSON；Accept 中显式列出 application/cbor，且质量值不低于 application/json 时返回 CBOR（二进制，体积更小，适合大屏轮询）。
+ */
+public enum WireFormat {
+
+    JSON(MediaType.APPLICATION_JSON),
+    CBOR(MediaType.APPLICATION_CBOR);
+
+    private final MediaType mediaType;
+
+    WireFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public static WireFormat of(String accept) {
+        if (accept == null || !accept.contains("cbor")) {
+            return JSON;
+        }
+        double cbor = 0;
+        double json = 0;
+        try {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(type)) {
+                    cbor = Math.max(cbor, type.getQualityValue());
+                } else if (MediaType.APPLICATION_JSON.equalsTypeAndSubtype(type)) {
+                    json = Math.max(json, type.getQualityValue());
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        return cbor > 0 && cbor >= json ? CBOR : JSON;
+    }
+}
@@ -0,0 +1,27 @@
+package com.kl.dto;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+/**
+ * 序列化配置：DeviceJsonModule 注册到 JSON 和 CBOR 两个 mapper。
+ * 两个 mapper 都用 Spring Boot 自动配置的实例，spring.jackson.* 设置和 JacksonModule Bean 对两种格式一致生效。
+ * CBOR 只用于自己写字节的接口（分页列表、看板缓存），由 ResponseMappers 按 WireFormat 选择；
+ * 不注册 CBOR 消息转换器，否则只接受任意类型的请求也可能被协商成 CBOR。
+ */
+@Configuration
+public class WireFormatConfig {
+
+    // Spring Boot 会把 JacksonModule 类型的 Bean 注册到自动配置的 JSON 和 CBOR mapper
+    @Bean
+    public DeviceJsonModule deviceJsonModule() {
+        return new DeviceJsonModule();
+    }
+
+    @Bean
+    public ResponseMappers responseMappers(ObjectMapper objectMapper, CBORMapper cborMapper) {
+        return new ResponseMappers(objectMapper, cborMapper);
+    }
+}
@@ -0,0 +1,108 @@
+package com.kl.entity;
+
+import lombok.Data;
+import java.util.Date;
+
+// 设备故障记录（对应 device_fault_record 表，downtime_duration 为数据库计算列，只读）
+@Data
+public class DeviceFaultRecord {
+    private Integer id;
+    private String deviceId;
+    private String faultCode;
+    private String faultDescription;
+    private String faultLevel;
+    private Date occurrenceTime;
+    private Date recoveryTime;
+    private Integer downtimeDuration;
+    private String maintenancePerson;
+    private String solution;
+    private Date createTime;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getFaultCode() {
+        return faultCode;
+    }
+
+    public void setFaultCode(String faultCode) {
+        this.faultCode = faultCode;
+    }
+
+    public String getFaultDescription() {
+        return faultDescription;
+    }
+
+    public void setFaultDescription(String faultDescription) {
+        this.faultDescription = faultDescription;
+    }
+
+    public String getFaultLevel() {
+        return faultLevel;
+    }
+
+    public void setFaultLevel(String faultLevel) {
+        this.faultLevel = faultLevel;
+    }
+
+    public Date getOccurrenceTime() {
+        return occurrenceTime;
+    }
+
+    public void setOccurrenceTime(Date occurrenceTime) {
+        this.occurrenceTime = occurrenceTime;
+    }
+
+    public Date getRecoveryTime() {
+        return recoveryTime;
+    }
+
+    public void setRecoveryTime(Date recoveryTime) {
+        this.recoveryTime = recoveryTime;
+    }
+
+    public Integer getDowntimeDuration() {
+        return downtimeDuration;
+    }
+
+    public void setDowntimeDuration(Integer downtimeDuration) {
+        this.downtimeDuration = downtimeDuration;
+    }
+
+    public String getMaintenancePerson() {
+        return maintenancePerson;
+    }
+
+    public void setMaintenancePerson(String maintenancePerson) {
+        this.maintenancePerson = maintenancePerson;
+    }
+
+    public String getSolution() {
+        return solution;
+    }
+
+    public void setSolution(String solution) {
+        this.solution = solution;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+}
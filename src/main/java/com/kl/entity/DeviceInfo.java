@@ -1,10 +1,15 @@
 package com.kl.entity;
 
 import lombok.Data;
+
+import java.io.Serializable;
 import java.util.Date;
 
+// 实现 Serializable：DeviceInfoMapper 的二级缓存按序列化副本返回，调用方修改结果不会影响缓存
 @Data
-public class DeviceInfo {
+public class DeviceInfo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Integer id;
     private String deviceId;
     private String deviceName;
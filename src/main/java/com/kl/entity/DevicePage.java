@@ -0,0 +1,167 @@
+package com.kl.entity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 设备列表分页请求：游标为上一页最后一条的 (update_time, id)，fields 为返回字段白名单。
+ * 游标格式为 Base64("毫秒时间戳:id")，update_time 为空时时间戳部分写 "-"。
+ */
+public class DevicePage {
+
+    public static final int MAX_LIMIT = 5000;
+
+    // 可投影字段 -> 列名
+    private static final Map<String, String> FIELD_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        FIELD_COLUMNS.put("id", "id");
+        FIELD_COLUMNS.put("deviceId", "device_id");
+        FIELD_COLUMNS.put("deviceName", "device_name");
+        FIELD_COLUMNS.put("deviceType", "device_type");
+        FIELD_COLUMNS.put("vendor", "vendor");
+        FIELD_COLUMNS.put("model", "model");
+        FIELD_COLUMNS.put("ipAddress", "ip_address");
+        FIELD_COLUMNS.put("location", "location");
+        FIELD_COLUMNS.put("branch", "branch");
+        FIELD_COLUMNS.put("status", "status");
+        FIELD_COLUMNS.put("installDate", "install_date");
+        FIELD_COLUMNS.put("warrantyPeriod", "warranty_period");
+        FIELD_COLUMNS.put("createTime", "create_time");
+        FIELD_COLUMNS.put("updateTime", "update_time");
+    }
+
+    private boolean hasCursor;
+    private Date afterTime;
+    private Integer afterId;
+    private Integer limit;
+    private List<String> fields;
+
+    public static DevicePage parse(String cursor, Integer limit, String fields) {
+        DevicePage page = new DevicePage();
+
+        if (limit != null && (limit <= 0 || limit > MAX_LIMIT)) {
+            throw new IllegalArgumentException("limit 取值范围 1-" + MAX_LIMIT);
+        }
+        page.limit = limit;
+
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = decoded.indexOf(':');
+                String time = decoded.substring(0, sep);
+                page.afterTime = "-".equals(time) ? null : new Date(Long.parseLong(time));
+                page.afterId = Integer.valueOf(decoded.substring(sep + 1));
+                page.hasCursor = true;
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+        }
+
+        if (fields != null && !fields.trim().isEmpty()) {
+            List<String> selected = new ArrayList<>();
+            for (String field : fields.split(",")) {
+                String name = field.trim();
+                if (!FIELD_COLUMNS.containsKey(name)) {
+                    throw new IllegalArgumentException("不支持的字段: " + name);
+                }
+                if (!selected.contains(name)) {
+                    selected.add(name);
+                }
+            }
+            page.fields = selected;
+        }
+        return page;
+    }
+
+    // 复制一份只替换游标 id，分片查询时把全局 id 换算成各分片内的 id
+    public DevicePage withAfterId(Integer afterId) {
+        DevicePage copy = new DevicePage();
+        copy.hasCursor = hasCursor;
+        copy.afterTime = afterTime;
+        copy.afterId = afterId;
+        copy.limit = limit;
+        copy.fields = fields;
+        return copy;
+    }
+
+    // 从 last 之后继续取，每页 limit 条；用于不带 limit 的全量输出按页读取
+    public DevicePage next(DeviceInfo last, int limit) {
+        DevicePage copy = new DevicePage();
+        copy.hasCursor = last != null ? true : hasCursor;
+        copy.afterTime = last != null ? last.getUpdateTime() : afterTime;
+        copy.afterId = last != null ? last.getId() : afterId;
+        copy.limit = limit;
+        copy.fields = fields;
+        return copy;
+    }
+
+    // 下一页游标
+    public static String encodeCursor(DeviceInfo last) {
+        String time = last.getUpdateTime() == null ? "-" : String.valueOf(last.getUpdateTime().getTime());
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((time + ":" + last.getId()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 查询列：游标依赖的 id、update_time 总是查出
+    public String getColumns() {
+        if (fields == null) {
+            return "*";
+        }
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add("id");
+        columns.add("update_time");
+        for (String field : fields) {
+            columns.add(FIELD_COLUMNS.get(field));
+        }
+        return String.join(", ", columns);
+    }
+
+    // 按投影字段输出；未指定字段时返回设备本身
+    public Object project(DeviceInfo device) {
+        if (fields == null) {
+            return device;
+        }
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (String field : fields) {
+            switch (field) {
+                case "id": row.put(field, device.getId()); break;
+                case "deviceId": row.put(field, device.getDeviceId()); break;
+                case "deviceName": row.put(field, device.getDeviceName()); break;
+                case "deviceType": row.put(field, device.getDeviceType()); break;
+                case "vendor": row.put(field, device.getVendor()); break;
+                case "model": row.put(field, device.getModel()); break;
+                case "ipAddress": row.put(field, device.getIpAddress()); break;
+                case "location": row.put(field, device.getLocation()); break;
+                case "branch": row.put(field, device.getBranch()); break;
+                case "status": row.put(field, device.getStatus()); break;
+                case "installDate": row.put(field, device.getInstallDate()); break;
+                case "warrantyPeriod": row.put(field, device.getWarrantyPeriod()); break;
+                case "createTime": row.put(field, device.getCreateTime()); break;
+                case "updateTime": row.put(field, device.getUpdateTime()); break;
+                default: break;
+            }
+        }
+        return row;
+    }
+
+    public boolean isHasCursor() {
+        return hasCursor;
+    }
+
+    public Date getAfterTime() {
+        return afterTime;
+    }
+
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+}
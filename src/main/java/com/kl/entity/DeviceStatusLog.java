@@ -0,0 +1,99 @@
+package com.kl.entity;
+
+import lombok.Data;
+import java.util.Date;
+
+// 设备状态上报日志（对应 device_status_log 表）
+@Data
+public class DeviceStatusLog {
+    private Long id;
+    private String deviceId;
+    private String status;
+    private Float cpuUsage;
+    private Float memoryUsage;
+    private Float diskUsage;
+    private Integer networkStatus;
+    private Float temperature;
+    private Float cashLevel;
+    private Date logTime;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Float getCpuUsage() {
+        return cpuUsage;
+    }
+
+    public void setCpuUsage(Float cpuUsage) {
+        this.cpuUsage = cpuUsage;
+    }
+
+    public Float getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public void setMemoryUsage(Float memoryUsage) {
+        this.memoryUsage = memoryUsage;
+    }
+
+    public Float getDiskUsage() {
+        return diskUsage;
+    }
+
+    public void setDiskUsage(Float diskUsage) {
+        this.diskUsage = diskUsage;
+    }
+
+    public Integer getNetworkStatus() {
+        return networkStatus;
+    }
+
+    public void setNetworkStatus(Integer networkStatus) {
+        this.networkStatus = networkStatus;
+    }
+
+    public Float getTemperature() {
+        return temperature;
+    }
+
+    public void setTemperature(Float temperature) {
+        this.temperature = temperature;
+    }
+
+    public Float getCashLevel() {
+        return cashLevel;
+    }
+
+    public void setCashLevel(Float cashLevel) {
+        this.cashLevel = cashLevel;
+    }
+
+    public Date getLogTime() {
+        return logTime;
+    }
+
+    public void setLogTime(Date logTime) {
+        this.logTime = logTime;
+    }
+}
@@ -0,0 +1,108 @@
+package com.kl.entity;
+
+import lombok.Data;
+import java.util.Date;
+
+// 设备上报指标的降采样聚合桶（对应 telemetry_rollup 表）
+@Data
+public class TelemetryRollup {
+    private String tier;
+    private Integer scopeType;
+    private String scopeKey;
+    private String metric;
+    private Date bucketTime;
+    private Long sampleCount;
+    private Double minValue;
+    private Double maxValue;
+    private Double sumValue;
+    private Double lastValue;
+    private Date lastTime;
+
+    public String getTier() {
+        return tier;
+    }
+
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+
+    public Integer getScopeType() {
+        return scopeType;
+    }
+
+    public void setScopeType(Integer scopeType) {
+        this.scopeType = scopeType;
+    }
+
+    public String getScopeKey() {
+        return scopeKey;
+    }
+
+    public void setScopeKey(String scopeKey) {
+        this.scopeKey = scopeKey;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public Date getBucketTime() {
+        return bucketTime;
+    }
+
+    public void setBucketTime(Date bucketTime) {
+        this.bucketTime = bucketTime;
+    }
+
+    public Long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public Double getMinValue() {
+        return minValue;
+    }
+
+    public void setMinValue(Double minValue) {
+        this.minValue = minValue;
+    }
+
+    public Double getMaxValue() {
+        return maxValue;
+    }
+
+    public void setMaxValue(Double maxValue) {
+        this.maxValue = maxValue;
+    }
+
+    public Double getSumValue() {
+        return sumValue;
+    }
+
+    public void setSumValue(Double sumValue) {
+        this.sumValue = sumValue;
+    }
+
+    public Double getLastValue() {
+        return lastValue;
+    }
+
+    public void setLastValue(Double lastValue) {
+        this.lastValue = lastValue;
+    }
+
+    public Date getLastTime() {
+        return lastTime;
+    }
+
+    public void setLastTime(Date lastTime) {
+        this.lastTime = lastTime;
+    }
+}
@@ -0,0 +1,387 @@
+package com.kl.liveness;
+
+import com.kl.cache.DeviceRegistry;
+import com.kl.entity.DeviceInfo;
+import com.kl.service.DeviceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 心跳存活检测：设备上报即视为心跳，超过设备类型对应的超时时间未上报则置为 OFFLINE，恢复上报后置回 ONLINE。
+ * <p>
+ * 每台设备占一个槽位，最后心跳时间等都存放在按槽位下标的基本类型数组里。超时检测用哈希时间轮：
+ * 槽位通过 next 数组串在到期刻度对应的轮槽链表上，心跳只更新最后心跳时间（O(1)，不移动链表），
+ * 时间轮转到该轮槽时再按最新心跳时间判断是真的超时还是挂到新的到期位置。
+ * 状态变化先合并到待处理表，每个刻度按目标状态各调用一次批量状态变更。
+ * <p>
+ * 只跟踪启动后上报过的设备，未接入上报的设备不会被误判离线；只做 ONLINE 与 OFFLINE 之间的切换，
+ * FAULT / MAINTENANCE 由人工处理。首次上报时设备处于 OFFLINE 的直接置回 ONLINE。
+ * 设备删除后释放槽位，槽位下标通过 next 数组串成空闲链表复用。
+ */
+@Component
+public class DeviceLivenessTracker implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceLivenessTracker.class);
+
+    private static final String ACTOR = "liveness";
+    private static final int NONE = -1;
+    // 与批量状态变更接口的单次上限一致
+    private static final int MAX_BATCH = 10000;
+    // device_info 中不存在的设备，隔多久再查一次
+    private static final long UNKNOWN_RECHECK_MS = 300_000L;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Value("${bank-monitor.liveness.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bank-monitor.liveness.tick-ms:1000}")
+    private long tickMs;
+
+    // 轮槽数（取2的幂），一圈覆盖 tickMs * wheelSize
+    @Value("${bank-monitor.liveness.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${bank-monitor.liveness.default-timeout-seconds:120}")
+    private long defaultTimeoutSeconds;
+
+    // 按设备类型的超时，格式：类型=秒,类型=秒
+    @Value("${bank-monitor.liveness.type-timeouts:}")
+    private String typeTimeouts;
+
+    private final Map<String, Long> timeoutByType = new HashMap<>();
+
+    // ---- 以下由 this 锁保护 ----
+    private final Map<String, Integer> slotByDeviceId = new HashMap<>();
+    private final Map<String, Long> unknownUntil = new HashMap<>();
+    private int[] ids = new int[1024];
+    private long[] lastSeen = new long[1024];
+    private long[] timeoutMillis = new long[1024];
+    private int[] next = new int[1024];
+    private boolean[] expired = new boolean[1024];
+    private int slotCount;
+    private int freeHead = NONE;
+    private int[] wheel;
+    private int mask;
+    private long currentTick;
+    // 槽位 -> 待执行的目标状态，同一设备多次变化只保留最后一次
+    private final Map<Integer, String> pending = new HashMap<>();
+
+    private ScheduledExecutorService ticker;
+    private volatile boolean running;
+
+    private final AtomicLong heartbeatCount = new AtomicLong();
+    private final AtomicLong offlineCount = new AtomicLong();
+    private final AtomicLong onlineCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    // 批量心跳（上报接口收到数据时调用）
+    public void onHeartbeats(Collection<String> deviceIds) {
+        if (!running || deviceIds.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+
+        // 新设备在锁外查注册表，拿到设备类型对应的超时
+        List<String> unseen = null;
+        synchronized (this) {
+            for (String deviceId : deviceIds) {
+                if (!slotByDeviceId.containsKey(deviceId)) {
+                    Long until = unknownUntil.get(deviceId);
+                    if (until == null || until <= now) {
+                        if (unseen == null) {
+                            unseen = new ArrayList<>();
+                        }
+                        unseen.add(deviceId);
+                    }
+                }
+            }
+        }
+        Map<String, DeviceInfo> found = Collections.emptyMap();
+        if (unseen != null) {
+            found = new HashMap<>();
+            for (String deviceId : unseen) {
+                found.put(deviceId, deviceRegistry.getByDeviceId(deviceId));
+            }
+        }
+
+        synchronized (this) {
+            for (String deviceId : deviceIds) {
+                Integer slot = slotByDeviceId.get(deviceId);
+                if (slot == null) {
+                    if (!found.containsKey(deviceId)) {
+                        continue;
+                    }
+                    DeviceInfo device = found.get(deviceId);
+                    if (device == null) {
+                        unknownUntil.put(deviceId, now + UNKNOWN_RECHECK_MS);
+                        continue;
+                    }
+                    unknownUntil.remove(deviceId);
+                    slot = register(deviceId, device.getId(), timeoutFor(device.getDeviceType()), now);
+                    // 离线期间（含重启前）被置为 OFFLINE 的设备，恢复上报即上线
+                    if ("OFFLINE".equals(device.getStatus())) {
+                        pending.put(slot, "ONLINE");
+                    }
+                }
+                lastSeen[slot] = now;
+                if (expired[slot]) {
+                    expired[slot] = false;
+                    pending.put(slot, "ONLINE");
+                    schedule(slot);
+                }
+            }
+        }
+        heartbeatCount.addAndGet(deviceIds.size());
+    }
+
+    // 设备已删除（事务提交后调用）：释放槽位；仍挂在时间轮上的槽位等转到时再回收
+    public synchronized void remove(String deviceId) {
+        unknownUntil.remove(deviceId);
+        Integer slot = slotByDeviceId.remove(deviceId);
+        if (slot == null) {
+            return;
+        }
+        pending.remove(slot);
+        ids[slot] = NONE;
+        // 已超时的槽位不在时间轮上，直接回收
+        if (expired[slot]) {
+            expired[slot] = false;
+            free(slot);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            int expiredNow = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (expired[slot]) {
+                    expiredNow++;
+                }
+            }
+            stats.put("tracked", slotByDeviceId.size());
+            stats.put("unknownDevices", unknownUntil.size());
+            stats.put("expired", expiredNow);
+            stats.put("pendingTransitions", pending.size());
+        }
+        stats.put("enabled", enabled);
+        stats.put("heartbeats", heartbeatCount.get());
+        stats.put("markedOffline", offlineCount.get());
+        stats.put("markedOnline", onlineCount.get());
+        stats.put("failedTransitions", failedCount.get());
+        stats.put("defaultTimeoutSeconds", defaultTimeoutSeconds);
+        Map<String, Long> typeTimeoutSeconds = new HashMap<>();
+        for (Map.Entry<String, Long> entry : timeoutByType.entrySet()) {
+            typeTimeoutSeconds.put(entry.getKey(), entry.getValue() / 1000);
+        }
+        stats.put("typeTimeoutSeconds", typeTimeoutSeconds);
+        return stats;
+    }
+
+    // ---------------- 时间轮 ----------------
+
+    private int register(String deviceId, int id, long timeout, long now) {
+        if (freeHead == NONE && slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            lastSeen = Arrays.copyOf(lastSeen, capacity);
+            timeoutMillis = Arrays.copyOf(timeoutMillis, capacity);
+            next = Arrays.copyOf(next, capacity);
+            expired = Arrays.copyOf(expired, capacity);
+        }
+        int slot;
+        if (freeHead != NONE) {
+            slot = freeHead;
+            freeHead = next[slot];
+        } else {
+            slot = slotCount++;
+        }
+        slotByDeviceId.put(deviceId, slot);
+        ids[slot] = id;
+        lastSeen[slot] = now;
+        timeoutMillis[slot] = timeout;
+        next[slot] = NONE;
+        schedule(slot);
+        return slot;
+    }
+
+    private void free(int slot) {
+        next[slot] = freeHead;
+        freeHead = slot;
+    }
+
+    // 挂到到期刻度所在的轮槽；超过一圈的在转到时重新挂
+    private void schedule(int slot) {
+        long deadlineTick = Math.max(currentTick + 1, (lastSeen[slot] + timeoutMillis[slot]) / tickMs);
+        int bucket = (int) (deadlineTick & mask);
+        next[slot] = wheel[bucket];
+        wheel[bucket] = slot;
+    }
+
+    private synchronized void advance(long now) {
+        long targetTick = now / tickMs;
+        // 停顿超过一圈时只需把每个轮槽处理一遍
+        if (targetTick - currentTick > wheelSize) {
+            currentTick = targetTick - wheelSize;
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            int bucket = (int) (currentTick & mask);
+            int slot = wheel[bucket];
+            wheel[bucket] = NONE;
+            while (slot != NONE) {
+                int following = next[slot];
+                next[slot] = NONE;
+                if (ids[slot] == NONE) {
+                    free(slot);
+                } else if ((lastSeen[slot] + timeoutMillis[slot]) / tickMs > currentTick) {
+                    schedule(slot);
+                } else {
+                    expired[slot] = true;
+                    pending.put(slot, "OFFLINE");
+                }
+                slot = following;
+            }
+        }
+    }
+
+    private void tick() {
+        try {
+            advance(System.currentTimeMillis());
+            applyPending();
+        } catch (Exception e) {
+            log.warn("心跳检测处理失败: {}", e.getMessage());
+        }
+    }
+
+    // ---------------- 状态变更 ----------------
+
+    private void applyPending() {
+        List<Integer> toOffline = new ArrayList<>();
+        List<Integer> toOnline = new ArrayList<>();
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<Integer, String> entry : pending.entrySet()) {
+                if ("OFFLINE".equals(entry.getValue())) {
+                    toOffline.add(ids[entry.getKey()]);
+                } else {
+                    toOnline.add(ids[entry.getKey()]);
+                }
+            }
+            pending.clear();
+        }
+        offlineCount.addAndGet(transition(toOffline, "ONLINE", "OFFLINE", "心跳超时，自动离线"));
+        onlineCount.addAndGet(transition(toOnline, "OFFLINE", "ONLINE", "恢复上报，自动上线"));
+    }
+
+    // 只变更当前处于 fromStatus 的设备，返回实际变更数：注册表先粗筛，
+    // 批量变更在事务中加锁核对数据库里的状态，期间被人工改为其他状态的设备不会被覆盖
+    private int transition(List<Integer> candidates, String fromStatus, String toStatus, String reason) {
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, DeviceInfo> devices = deviceRegistry.getByIds(candidates);
+        List<Integer> targets = new ArrayList<>(candidates.size());
+        for (Integer id : candidates) {
+            DeviceInfo device = devices.get(id);
+            if (device != null && fromStatus.equals(device.getStatus())) {
+                targets.add(id);
+            }
+        }
+        if (targets.isEmpty()) {
+            return 0;
+        }
+        int updated = 0;
+        for (int from = 0; from < targets.size(); from += MAX_BATCH) {
+            List<Integer> batch = targets.subList(from, Math.min(from + MAX_BATCH, targets.size()));
+            try {
+                Map<String, Object> result = deviceService.transitionDeviceStatus(batch, fromStatus, toStatus, reason, ACTOR);
+                updated += (Integer) result.get("updated");
+            } catch (RuntimeException e) {
+                failedCount.addAndGet(batch.size());
+                log.warn("自动{}状态变更失败({}台): {}", toStatus, batch.size(), e.getMessage());
+            }
+        }
+        return updated;
+    }
+
+    private long timeoutFor(String deviceType) {
+        Long timeout = deviceType == null ? null : timeoutByType.get(deviceType.trim().toUpperCase());
+        return timeout != null ? timeout : defaultTimeoutSeconds * 1000L;
+    }
+
+    private void parseTypeTimeouts() {
+        if (typeTimeouts == null || typeTimeouts.trim().isEmpty()) {
+            return;
+        }
+        for (String pair : typeTimeouts.split(",")) {
+            String[] parts = pair.split("=");
+            if (parts.length != 2) {
+                throw new IllegalStateException("liveness.type-timeouts 格式错误: " + pair);
+            }
+            timeoutByType.put(parts[0].trim().toUpperCase(), Long.parseLong(parts[1].trim()) * 1000L);
+        }
+    }
+
+    // ---------------- 生命周期 ----------------
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (tickMs <= 0 || wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalStateException("liveness tick-ms 必须大于0，wheel-size 必须是2的幂");
+        }
+        parseTypeTimeouts();
+        wheel = new int[wheelSize];
+        Arrays.fill(wheel, NONE);
+        mask = wheelSize - 1;
+        currentTick = System.currentTimeMillis() / tickMs;
+
+        running = true;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "device-liveness");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        ticker.shutdown();
+        try {
+            ticker.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.kl.mapper;
+
+import com.kl.entity.DeviceFaultRecord;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface DeviceFaultRecordMapper {
+
+    @Insert("INSERT INTO device_fault_record (device_id, fault_code, fault_description, fault_level, occurrence_time) " +
+            "VALUES (#{deviceId}, #{faultCode}, #{faultDescription}, #{faultLevel}, #{occurrenceTime})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int insert(DeviceFaultRecord record);
+
+    // 设备恢复上线：关闭这些设备所有未关闭的故障记录
+    @Update("<script>" +
+            "UPDATE device_fault_record SET recovery_time = #{recoveryTime}, " +
+            "maintenance_person = COALESCE(maintenance_person, #{person}) " +
+            "WHERE recovery_time IS NULL AND device_id IN " +
+            "<foreach collection='deviceIds' item='deviceId' open='(' separator=',' close=')'>#{deviceId}</foreach>" +
+            "</script>")
+    int closeOpenRecords(@Param("deviceIds") List<String> deviceIds,
+                         @Param("recoveryTime") Date recoveryTime,
+                         @Param("person") String person);
+
+    @Select("SELECT * FROM device_fault_record WHERE recovery_time IS NULL")
+    List<DeviceFaultRecord> selectOpen();
+
+    // 设备未关闭的故障记录id；加锁读，能看到并发事务刚提交的记录
+    @Select("SELECT id FROM device_fault_record WHERE device_id = #{deviceId} AND recovery_time IS NULL FOR UPDATE")
+    Integer selectOpenId(@Param("deviceId") String deviceId);
+
+    // 已关闭记录按 故障代码×设备×时长 汇总，启动时重建内存统计用；
+    // 设备类型和支行由调用方通过 DeviceRegistry 补齐（分片时 device_info 不一定和本表在同一个库）
+    @Select("SELECT fault_code AS faultCode, device_id AS deviceId, " +
+            "downtime_duration AS minutes, COUNT(*) AS count " +
+            "FROM device_fault_record " +
+            "WHERE recovery_time IS NOT NULL " +
+            "GROUP BY fault_code, device_id, downtime_duration")
+    List<Map<String, Object>> summarizeClosed();
+
+}
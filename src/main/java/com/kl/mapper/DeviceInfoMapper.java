@@ -1,20 +1,48 @@
 package com.kl.mapper;
 
 import com.kl.entity.DeviceInfo;
+import com.kl.entity.DevicePage;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cursor.Cursor;
 
-import java.math.BigDecimal;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+// 二级缓存：只在 mybatis.configuration.cache-enabled=true 时生效（application-perf.yml）。
+// 本命名空间的任何写语句会清空整个缓存；flushInterval 兜底其他实例或直接改库造成的不一致。
+// 全表加载、游标、批量检查、按状态/类型/支行/关键词的列表查询设置 useCache = false，避免大结果集占满缓存
 @Mapper
+@CacheNamespace(eviction = LruCache.class, size = 1024, flushInterval = 60000)
 public interface DeviceInfoMapper {
 
     @Select("SELECT * FROM device_info ORDER BY update_time DESC")
+    @Options(useCache = false)
     List<DeviceInfo> selectAll();
 
+    // 游标分页（键集分页）：按 update_time DESC, id DESC 逐行流式读取，依赖索引 idx_update_time_id
+    // 列名来自 DevicePage 的字段白名单，可以安全拼接
+    @Select("<script>" +
+            "SELECT ${page.columns} FROM device_info" +
+            "<where>" +
+            "  <if test='page.hasCursor'>" +
+            "    <choose>" +
+            "      <when test='page.afterTime != null'>" +
+            "        update_time &lt; #{page.afterTime} OR (update_time = #{page.afterTime} AND id &lt; #{page.afterId}) OR update_time IS NULL" +
+            "      </when>" +
+            "      <otherwise>update_time IS NULL AND id &lt; #{page.afterId}</otherwise>" +
+            "    </choose>" +
+            "  </if>" +
+            "</where>" +
+            " ORDER BY update_time DESC, id DESC" +
+            "<if test='page.limit != null'> LIMIT #{page.limit}</if>" +
+            "</script>")
+    @Options(useCache = false)  // 调用方按页读取（每页不超过 DevicePage.MAX_LIMIT 行），不需要驱动逐行流式读取
+    Cursor<DeviceInfo> selectPage(@Param("page") DevicePage page);
+
     @Select("SELECT * FROM device_info WHERE status = #{status}")
+    @Options(useCache = false)
     List<DeviceInfo> selectByStatus(String status);
 
     @Insert("INSERT INTO device_info (device_id, device_name, device_type, vendor, model, ip_address, location, branch, status, install_date, warranty_period, create_time, update_time) " +
@@ -23,7 +51,26 @@ public interface DeviceInfoMapper {
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(DeviceInfo deviceInfo);
 
-    //  更新设备信息
+    // 批量插入（多行VALUES），回填自增id
+    @Insert("<script>" +
+            "INSERT INTO device_info (device_id, device_name, device_type, vendor, model, ip_address, location, branch, status, install_date, warranty_period, create_time, update_time) VALUES " +
+            "<foreach collection='devices' item='d' separator=','>" +
+            "(#{d.deviceId}, #{d.deviceName}, #{d.deviceType}, #{d.vendor}, #{d.model}, #{d.ipAddress}, #{d.location}, " +
+            "#{d.branch}, #{d.status}, #{d.installDate}, #{d.warrantyPeriod}, #{d.createTime}, #{d.updateTime})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int batchInsert(@Param("devices") List<DeviceInfo> devices);
+
+    // 批量检查设备是否已存在，返回已存在的deviceId
+    @Select("<script>" +
+            "SELECT device_id FROM device_info WHERE device_id IN " +
+            "<foreach collection='deviceIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    @Options(useCache = false)
+    List<String> selectExistingDeviceIds(@Param("deviceIds") List<String> deviceIds);
+
+    //  更新设备信息（不含状态，状态只能经 updateStatus 变更以保证审计和故障记录）
     @Update("<script>" +
             "UPDATE device_info " +
             "<set>" +
@@ -34,7 +81,6 @@ public interface DeviceInfoMapper {
             "  <if test='ipAddress != null'>ip_address = #{ipAddress},</if>" +
             "  <if test='location != null'>location = #{location},</if>" +
             "  <if test='branch != null'>branch = #{branch},</if>" +
-            "  <if test='status != null'>status = #{status},</if>" +
             "  <if test='installDate != null'>install_date = #{installDate},</if>" +
             "  <if test='warrantyPeriod != null'>warranty_period = #{warrantyPeriod},</if>" +
             "  update_time = NOW()" +
@@ -43,9 +89,26 @@ public interface DeviceInfoMapper {
             "</script>")
     int update(DeviceInfo device);
 
-    //  更新设备状态
-    @Update("UPDATE device_info SET status = #{status} WHERE id = #{id}")
-    int updateStatus(@Param("id") Integer id, @Param("status") String status);
+    //  更新设备状态，update_time 与写入内存结构的时间相同
+    @Update("UPDATE device_info SET status = #{status}, update_time = #{updateTime} WHERE id = #{id}")
+    int updateStatus(@Param("id") Integer id, @Param("status") String status, @Param("updateTime") Date updateTime);
+
+    // 批量变更前锁定目标行并读取当前状态，调用方据此只更新状态仍符合预期的行
+    @Select("<script>" +
+            "SELECT id, device_id, status FROM device_info WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " FOR UPDATE" +
+            "</script>")
+    @Options(useCache = false)
+    List<DeviceInfo> selectStatusForUpdate(@Param("ids") List<Integer> ids);
+
+    // 批量更新状态（集合更新，一条语句处理一批）
+    @Update("<script>" +
+            "UPDATE device_info SET status = #{status}, update_time = #{updateTime} WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateStatusBatch(@Param("ids") List<Integer> ids, @Param("status") String status,
+                          @Param("updateTime") Date updateTime);
 
     //  删除设备
     @Delete("DELETE FROM device_info WHERE id = #{id}")
@@ -55,6 +118,13 @@ public interface DeviceInfoMapper {
     @Select("SELECT * FROM device_info WHERE id = #{id}")
     DeviceInfo selectById(Integer id);
 
+    @Select("<script>" +
+            "SELECT * FROM device_info WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    @Options(useCache = false)
+    List<DeviceInfo> selectByIds(@Param("ids") List<Integer> ids);
+
     @Select("SELECT * FROM device_info WHERE device_id = #{deviceId}")
     DeviceInfo selectByDeviceId(String deviceId);
 
@@ -64,10 +134,16 @@ public interface DeviceInfoMapper {
     @Select("SELECT status, COUNT(*) as count FROM device_info GROUP BY status")
     List<Map<String, Object>> countByStatus();
 
+    // 按 支行×状态 汇总，用于初始化内存计数器
+    @Select("SELECT branch, status, COUNT(*) as count FROM device_info GROUP BY branch, status")
+    List<Map<String, Object>> countByBranchAndStatus();
+
     @Select("SELECT * FROM device_info WHERE device_type = #{deviceType}")
+    @Options(useCache = false)
     List<DeviceInfo> selectByDeviceType(String deviceType);
 
     @Select("SELECT * FROM device_info WHERE branch LIKE CONCAT('%', #{branch}, '%')")
+    @Options(useCache = false)
     List<DeviceInfo> selectByBranch(String branch);
 
     // 设备搜索（关键词模糊搜索）
@@ -77,53 +153,14 @@ public interface DeviceInfoMapper {
             "location LIKE #{keyword} OR " +
             "branch LIKE #{keyword} OR " +
             "vendor LIKE #{keyword}")
+    @Options(useCache = false)
     List<DeviceInfo> searchByKeyword(String keyword);
 
-    // 保修预警（未来30天到期）
-    @Select("SELECT device_id as deviceId, device_name as deviceName, device_type as deviceType, " +
-            "branch, install_date as installDate, warranty_period as warrantyPeriod, " +
-            "DATE_ADD(install_date, INTERVAL warranty_period MONTH) as warrantyEndDate, " +
-            "DATEDIFF(DATE_ADD(install_date, INTERVAL warranty_period MONTH), CURDATE()) as daysRemaining " +
-            "FROM device_info " +
-            "WHERE DATE_ADD(install_date, INTERVAL warranty_period MONTH) " +
-            "BETWEEN CURDATE() AND DATE_ADD(CURDATE(), INTERVAL 30 DAY) " +
-            "ORDER BY daysRemaining ASC")
-    List<Map<String, Object>> getWarrantyAlertDevices();
-
-    // 故障分析
-    @Select("SELECT fault_code as faultCode, " +
-            "COUNT(*) as faultCount, " +  // MySQL返回Long
-            "CAST(COALESCE(AVG(downtime_duration), 0) AS DECIMAL(10,2)) as avgFixTimeMinutes " +  // 明确返回DECIMAL
-            "FROM device_fault_record " +
-            "GROUP BY fault_code")
-    List<Map<String, Object>> getFaultAnalysisData();
-
-    // MyBatis返回Map需要额外处理，写一个默认方法
-    default Map<String, Object> getFaultAnalysis() {
-        List<Map<String, Object>> faultData = getFaultAnalysisData();
-
-        Map<String, Object> result = new HashMap<>();
-        result.put("faultAnalysis", faultData);
-
-        // 计算总体MTTR
-        double totalTime = 0;
-        long totalFaults = 0;
-        for (Map<String, Object> fault : faultData) {
-            Long count = (Long) fault.get("faultCount");
-            totalFaults += count;
-
-            BigDecimal avgTimeBigDecimal = (BigDecimal) fault.get("avgFixTimeMinutes");
-            double avgTime = avgTimeBigDecimal.doubleValue();
-
-            totalTime += avgTime * count;
-        }
-
-        result.put("totalFaults", totalFaults);
-        result.put("overallMTTR", totalFaults > 0 ?
-                String.format("%.1f分钟", totalTime / totalFaults) : "无故障记录");
-
-        return result;
-    }
+    // 保修索引重建用：只取计算到期日需要的列
+    @Select("SELECT id, device_id, device_name, device_type, branch, location, install_date, warranty_period " +
+            "FROM device_info WHERE install_date IS NOT NULL AND warranty_period IS NOT NULL")
+    @Options(useCache = false)
+    List<DeviceInfo> selectWarrantyCandidates();
 
     // 支行健康度统计
     @Select("SELECT " +
@@ -0,0 +1,30 @@
+package com.kl.mapper;
+
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+// 设备ID目录（0 号分片），只在按支行分片时使用：device_id 主键保证设备ID在所有分片间唯一
+@Mapper
+public interface DeviceShardMapper {
+
+    // 新增设备前占位，设备ID已被任一分片占用时抛出 DuplicateKeyException
+    @Insert("<script>" +
+            "INSERT INTO device_shard (device_id, shard) VALUES " +
+            "<foreach collection='deviceIds' item='deviceId' separator=','>(#{deviceId}, #{shard})</foreach>" +
+            "</script>")
+    int insertBatch(@Param("deviceIds") List<String> deviceIds, @Param("shard") int shard);
+
+    @Delete("DELETE FROM device_shard WHERE device_id = #{deviceId}")
+    int delete(@Param("deviceId") String deviceId);
+
+    @Select("SELECT COUNT(*) FROM device_shard")
+    int countAll();
+
+    @Select("<script>" +
+            "SELECT device_id FROM device_shard WHERE device_id IN " +
+            "<foreach collection='deviceIds' item='deviceId' open='(' separator=',' close=')'>#{deviceId}</foreach>" +
+            "</script>")
+    List<String> selectExisting(@Param("deviceIds") List<String> deviceIds);
+
+}
@@ -0,0 +1,34 @@
+package com.kl.mapper;
+
+import com.kl.entity.DeviceStatusAudit;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Date;
+import java.util.List;
+
+@Mapper
+public interface DeviceStatusAuditMapper {
+
+    // 批量落库；seq 唯一，序号冲突时整批失败（不静默丢弃审计记录）
+    @Insert("<script>" +
+            "INSERT INTO device_status_audit (seq, device_id, old_status, new_status, reason, actor, change_time) VALUES " +
+            "<foreach collection='audits' item='a' separator=','>" +
+            "(#{a.seq}, #{a.deviceId}, #{a.oldStatus}, #{a.newStatus}, #{a.reason}, #{a.actor}, #{a.changeTime})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("audits") List<DeviceStatusAudit> audits);
+
+    // 已落库的最大序号，启动时续接序号用
+    @Select("SELECT MAX(seq) FROM device_status_audit")
+    Long selectMaxSeq();
+
+    // 查询早于本地审计日志保留范围的历史记录
+    @Select("SELECT * FROM device_status_audit WHERE device_id = #{deviceId} " +
+            "AND change_time >= #{from} AND change_time < #{to} " +
+            "ORDER BY change_time DESC, seq DESC LIMIT #{limit}")
+    List<DeviceStatusAudit> selectByDeviceAndTime(@Param("deviceId") String deviceId,
+                                                  @Param("from") Date from,
+                                                  @Param("to") Date to,
+                                                  @Param("limit") int limit);
+
+}
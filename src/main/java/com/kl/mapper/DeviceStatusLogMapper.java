@@ -0,0 +1,35 @@
+package com.kl.mapper;
+
+import com.kl.entity.DeviceStatusLog;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Date;
+import java.util.List;
+
+@Mapper
+public interface DeviceStatusLogMapper {
+
+    // 批量写入上报日志（多行VALUES，一条语句一次往返）
+    @Insert("<script>" +
+            "INSERT INTO device_status_log (device_id, status, cpu_usage, memory_usage, disk_usage, network_status, temperature, cash_level, log_time) VALUES " +
+            "<foreach collection='logs' item='log' separator=','>" +
+            "(#{log.deviceId}, #{log.status}, #{log.cpuUsage}, #{log.memoryUsage}, #{log.diskUsage}, " +
+            "#{log.networkStatus}, #{log.temperature}, #{log.cashLevel}, #{log.logTime})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("logs") List<DeviceStatusLog> logs);
+
+    @Select("SELECT * FROM device_status_log WHERE device_id = #{deviceId} ORDER BY log_time DESC LIMIT #{limit}")
+    List<DeviceStatusLog> selectRecentByDeviceId(@Param("deviceId") String deviceId, @Param("limit") int limit);
+
+    @Select("SELECT * FROM device_status_log WHERE device_id = #{deviceId} " +
+            "AND log_time >= #{from} AND log_time < #{to} ORDER BY log_time")
+    List<DeviceStatusLog> selectByDeviceAndTime(@Param("deviceId") String deviceId,
+                                                @Param("from") Date from,
+                                                @Param("to") Date to);
+
+    // 原始日志保留期清理，按批删除避免长事务
+    @Delete("DELETE FROM device_status_log WHERE log_time < #{before} LIMIT #{limit}")
+    int deleteBefore(@Param("before") Date before, @Param("limit") int limit);
+
+}
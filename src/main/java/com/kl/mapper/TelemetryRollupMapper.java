@@ -0,0 +1,46 @@
+package com.kl.mapper;
+
+import com.kl.entity.TelemetryRollup;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Date;
+import java.util.List;
+
+@Mapper
+public interface TelemetryRollupMapper {
+
+    // 按增量合并写入：同一个桶被多次写入（迟到数据、停机前的未满桶）时累加而不是覆盖
+    @Insert("<script>" +
+            "INSERT INTO telemetry_rollup (tier, scope_type, scope_key, metric, bucket_time, sample_count, " +
+            "min_value, max_value, sum_value, last_value, last_time) VALUES " +
+            "<foreach collection='rows' item='r' separator=','>" +
+            "(#{r.tier}, #{r.scopeType}, #{r.scopeKey}, #{r.metric}, #{r.bucketTime}, #{r.sampleCount}, " +
+            "#{r.minValue}, #{r.maxValue}, #{r.sumValue}, #{r.lastValue}, #{r.lastTime})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE " +
+            "sample_count = sample_count + VALUES(sample_count), " +
+            "min_value = LEAST(min_value, VALUES(min_value)), " +
+            "max_value = GREATEST(max_value, VALUES(max_value)), " +
+            "sum_value = sum_value + VALUES(sum_value), " +
+            // last_value 必须先于 last_time 赋值，比较的是旧的 last_time
+            "last_value = IF(VALUES(last_time) >= last_time, VALUES(last_value), last_value), " +
+            "last_time = GREATEST(last_time, VALUES(last_time))" +
+            "</script>")
+    int upsertBatch(@Param("rows") List<TelemetryRollup> rows);
+
+    @Select("SELECT * FROM telemetry_rollup " +
+            "WHERE tier = #{tier} AND scope_type = #{scopeType} AND scope_key = #{scopeKey} AND metric = #{metric} " +
+            "AND bucket_time >= #{from} AND bucket_time < #{to} " +
+            "ORDER BY bucket_time")
+    List<TelemetryRollup> selectRange(@Param("tier") String tier,
+                                      @Param("scopeType") int scopeType,
+                                      @Param("scopeKey") String scopeKey,
+                                      @Param("metric") String metric,
+                                      @Param("from") Date from,
+                                      @Param("to") Date to);
+
+    // 保留期清理，按批删除避免长事务
+    @Delete("DELETE FROM telemetry_rollup WHERE tier = #{tier} AND bucket_time < #{before} LIMIT #{limit}")
+    int deleteBefore(@Param("tier") String tier, @Param("before") Date before, @Param("limit") int limit);
+
+}
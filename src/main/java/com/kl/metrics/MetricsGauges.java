@@ -0,0 +1,91 @@
+package com.kl.metrics;
+
+import com.kl.alert.AlertEngine;
+import com.kl.audit.StatusAuditLog;
+import com.kl.cache.DeviceRegistry;
+import com.kl.cache.FleetSnapshot;
+import com.kl.cache.ResponseCache;
+import com.kl.cache.WarrantyIndex;
+import com.kl.datasource.DbConcurrencyLimiter;
+import com.kl.datasource.ReplicaRouter;
+import com.kl.liveness.DeviceLivenessTracker;
+import com.kl.notify.FaultNotifier;
+import com.kl.rollup.TelemetryRollupEngine;
+import com.kl.service.TelemetryService;
+import com.kl.stream.DeviceEventStream;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 把各组件已有的 getStats() 注册为 gauge（队列长度、缓存命中、落库积压等），抓取时才调用。
+ */
+@Component
+public class MetricsGauges implements SmartInitializingSingleton {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    @Autowired
+    private FleetSnapshot fleetSnapshot;
+
+    @Autowired
+    private WarrantyIndex warrantyIndex;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private TelemetryService telemetryService;
+
+    @Autowired
+    private TelemetryRollupEngine telemetryRollupEngine;
+
+    @Autowired
+    private DeviceLivenessTracker deviceLivenessTracker;
+
+    @Autowired
+    private AlertEngine alertEngine;
+
+    @Autowired
+    private StatusAuditLog statusAuditLog;
+
+    @Autowired
+    private FaultNotifier faultNotifier;
+
+    @Autowired
+    private DeviceEventStream deviceEventStream;
+
+    @Autowired
+    private ObjectProvider<ReplicaRouter> replicaRouter;
+
+    @Autowired
+    private ObjectProvider<DbConcurrencyLimiter> dbConcurrencyLimiter;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        metricsRegistry.registerGauges("registry", deviceRegistry::getStats);
+        metricsRegistry.registerGauges("fleet_snapshot", fleetSnapshot::getStats);
+        metricsRegistry.registerGauges("warranty", warrantyIndex::getStats);
+        metricsRegistry.registerGauges("response_cache", responseCache::getStats);
+        metricsRegistry.registerGauges("telemetry", telemetryService::getIngestStats);
+        metricsRegistry.registerGauges("rollup", telemetryRollupEngine::getStats);
+        metricsRegistry.registerGauges("liveness", deviceLivenessTracker::getStats);
+        metricsRegistry.registerGauges("alert", alertEngine::getStats);
+        metricsRegistry.registerGauges("audit", statusAuditLog::getStats);
+        metricsRegistry.registerGauges("notify", faultNotifier::getStats);
+        metricsRegistry.registerGauges("stream", deviceEventStream::getStats);
+        ReplicaRouter router = replicaRouter.getIfAvailable();
+        if (router != null) {
+            metricsRegistry.registerGauges("datasource", router::getStats);
+        }
+        DbConcurrencyLimiter limiter = dbConcurrencyLimiter.getIfAvailable();
+        if (limiter != null) {
+            metricsRegistry.registerGauges("db_limiter", limiter::getStats);
+        }
+    }
+}
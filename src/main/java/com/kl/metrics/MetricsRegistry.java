@@ -0,0 +1,215 @@
+package com.kl.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 进程内指标：接口耗时、SQL语句耗时/行数、慢查询，以及各组件 getStats() 中的数值（队列长度、缓存命中等）。
+ * 记录路径只有哈希查找和原子自增，输出 Prometheus 文本格式时再汇总。
+ * 本类不依赖其他组件（MyBatis 拦截器在 SqlSessionFactory 之前创建），组件统计由 MetricsGauges 启动后注册。
+ */
+@Component
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    @Value("${bank-monitor.metrics.enabled:true}")
+    private boolean enabled;
+
+    // 超过这个耗时的SQL记入慢查询
+    @Value("${bank-monitor.metrics.slow-query-ms:200}")
+    private long slowQueryMs;
+
+    @Value("${bank-monitor.metrics.slow-query-size:100}")
+    private int slowQuerySize;
+
+    private final ConcurrentHashMap<RequestKey, LatencyHistogram> requests = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Map<String, Object>>> gauges = new ConcurrentHashMap<>();
+    private final ArrayDeque<Map<String, Object>> slowQueries = new ArrayDeque<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getSlowQueryNanos() {
+        return slowQueryMs * 1_000_000L;
+    }
+
+    public void recordRequest(String method, String uri, int status, long nanos) {
+        requests.computeIfAbsent(new RequestKey(method, uri, status), k -> new LatencyHistogram()).recordNanos(nanos);
+    }
+
+    public void recordStatement(String statementId, long nanos, long rows, boolean failed) {
+        StatementStats stats = statements.computeIfAbsent(statementId, k -> new StatementStats());
+        stats.latency.recordNanos(nanos);
+        if (rows > 0) {
+            stats.rows.add(rows);
+        }
+        if (failed) {
+            stats.errors.increment();
+        }
+    }
+
+    public void recordSlowQuery(String statementId, String sql, List<Object> parameters, long nanos, long rows) {
+        statements.computeIfAbsent(statementId, k -> new StatementStats()).slow.increment();
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("time", new Date());
+        entry.put("statement", statementId);
+        entry.put("elapsedMs", nanos / 1_000_000);
+        entry.put("rows", rows);
+        entry.put("sql", sql);
+        entry.put("parameters", parameters);
+        synchronized (slowQueries) {
+            slowQueries.addFirst(entry);
+            while (slowQueries.size() > slowQuerySize) {
+                slowQueries.removeLast();
+            }
+        }
+    }
+
+    // 组件统计：数值和布尔值输出为 gauge，其他类型忽略
+    public void registerGauges(String component, Supplier<Map<String, Object>> stats) {
+        gauges.put(component, stats);
+    }
+
+    public List<Map<String, Object>> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    // ==================== Prometheus 文本格式 ====================
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+
+        header(out, "bank_monitor_http_request_seconds", "summary", "接口耗时（从进入过滤器到响应完成）");
+        for (Map.Entry<RequestKey, LatencyHistogram> entry : sorted(requests)) {
+            RequestKey key = entry.getKey();
+            String labels = "method=\"" + escape(key.method) + "\",uri=\"" + escape(key.uri) + "\",status=\"" + key.status + "\"";
+            summary(out, "bank_monitor_http_request_seconds", labels, entry.getValue());
+        }
+
+        header(out, "bank_monitor_sql_seconds", "summary", "Mapper语句耗时");
+        List<Map.Entry<String, StatementStats>> statementEntries = sorted(statements);
+        for (Map.Entry<String, StatementStats> entry : statementEntries) {
+            summary(out, "bank_monitor_sql_seconds", statementLabel(entry.getKey()), entry.getValue().latency);
+        }
+        header(out, "bank_monitor_sql_rows_total", "counter", "Mapper语句返回或影响的行数");
+        for (Map.Entry<String, StatementStats> entry : statementEntries) {
+            sample(out, "bank_monitor_sql_rows_total", statementLabel(entry.getKey()), entry.getValue().rows.sum());
+        }
+        header(out, "bank_monitor_sql_errors_total", "counter", "Mapper语句执行失败次数");
+        for (Map.Entry<String, StatementStats> entry : statementEntries) {
+            sample(out, "bank_monitor_sql_errors_total", statementLabel(entry.getKey()), entry.getValue().errors.sum());
+        }
+        header(out, "bank_monitor_sql_slow_total", "counter", "超过慢查询阈值的次数");
+        for (Map.Entry<String, StatementStats> entry : statementEntries) {
+            sample(out, "bank_monitor_sql_slow_total", statementLabel(entry.getKey()), entry.getValue().slow.sum());
+        }
+
+        for (Map.Entry<String, Supplier<Map<String, Object>>> component : sorted(gauges)) {
+            Map<String, Object> stats;
+            try {
+                stats = component.getValue().get();
+            } catch (RuntimeException e) {
+                continue;  // 单个组件出错不影响其他指标
+            }
+            for (Map.Entry<String, Object> stat : new TreeMap<>(stats).entrySet()) {
+                Object value = stat.getValue();
+                double number;
+                if (value instanceof Number) {
+                    number = ((Number) value).doubleValue();
+                } else if (value instanceof Boolean) {
+                    number = (Boolean) value ? 1 : 0;
+                } else {
+                    continue;
+                }
+                String name = "bank_monitor_" + snake(component.getKey()) + "_" + snake(stat.getKey());
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                out.append(name).append(' ').append(format(number)).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES) {
+            sample(out, name, labels + ",quantile=\"" + quantile + "\"", histogram.quantileMicros(quantile) / 1e6);
+        }
+        sample(out, name + "_count", labels, histogram.getCount());
+        sample(out, name + "_sum", labels, histogram.getSumMicros() / 1e6);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append('{').append(labels).append("} ").append(format(value)).append('\n');
+    }
+
+    private static String statementLabel(String statementId) {
+        return "statement=\"" + escape(statementId) + "\"";
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // queueSize -> queue_size
+    private static String snake(String name) {
+        StringBuilder out = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    out.append('_');
+                }
+                out.append(Character.toLowerCase(c));
+            } else if (Character.isLetterOrDigit(c)) {
+                out.append(c);
+            } else {
+                out.append('_');
+            }
+        }
+        return out.toString();
+    }
+
+    private static <K extends Comparable<K>, V> List<Map.Entry<K, V>> sorted(Map<K, V> map) {
+        List<Map.Entry<K, V>> entries = new ArrayList<>(map.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        return entries;
+    }
+
+    private record RequestKey(String method, String uri, int status) implements Comparable<RequestKey> {
+        @Override
+        public int compareTo(RequestKey other) {
+            int byUri = uri.compareTo(other.uri);
+            if (byUri != 0) {
+                return byUri;
+            }
+            int byMethod = method.compareTo(other.method);
+            return byMethod != 0 ? byMethod : Integer.compare(status, other.status);
+        }
+    }
+
+    private static class StatementStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder rows = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder slow = new LongAdder();
+    }
+}
@@ -0,0 +1,42 @@
+package com.kl.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * 按 (方法, 路由模板, 状态码) 记录接口耗时。路由用 /api/devices/{id} 这样的模板，避免每个ID一个序列；
+ * 没匹配到控制器的请求（静态资源、404）记为 UNMATCHED。SSE 等异步请求只计到开始异步处理为止。
+ */
+@Component
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        if (!metricsRegistry.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        int status = 500;
+        try {
+            chain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            metricsRegistry.recordRequest(request.getMethod(), pattern == null ? "UNMATCHED" : pattern.toString(),
+                    status, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.kl.metrics;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * MyBatis 拦截器：按 Mapper 语句（如 com.kl.mapper.DeviceInfoMapper.selectById）记录耗时和行数，
+ * 超过慢查询阈值时才解析 SQL 和绑定参数。由 MyBatis 自动配置注册，分片数据源也会复制过去。
+ * queryCursor 只计打开游标的时间，行数记为0。
+ * <p>
+ * SQL 日志（logger com.kl.sql）：慢查询总是输出 WARN；其余语句按 sql-log-sample-rate 抽样输出 INFO，
+ * 用于替代 MyBatis 逐条打印（application-perf.yml 关闭了 StdOutImpl）。
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class SqlMetricsInterceptor implements Interceptor {
+
+    // 慢查询最多记录的参数个数和单个参数长度，批量插入的参数可能有上万个
+    private static final int MAX_PARAMETERS = 50;
+    private static final int MAX_PARAMETER_LENGTH = 200;
+
+    private static final Logger SQL_LOG = LoggerFactory.getLogger("com.kl.sql");
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    // 抽样比例，0 不输出，1 每条都输出
+    @Value("${bank-monitor.metrics.sql-log-sample-rate:0}")
+    private double sqlLogSampleRate;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!metricsRegistry.isEnabled()) {
+            return invocation.proceed();
+        }
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        long start = System.nanoTime();
+        Object result = null;
+        boolean failed = true;
+        try {
+            result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            long rows = rowsOf(result);
+            metricsRegistry.recordStatement(statement.getId(), elapsed, rows, failed);
+            if (elapsed >= metricsRegistry.getSlowQueryNanos()) {
+                recordSlow(invocation, statement, elapsed, rows);
+            } else if (sqlLogSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sqlLogSampleRate
+                    && SQL_LOG.isInfoEnabled()) {
+                logSample(invocation, statement, elapsed, rows, failed);
+            }
+        }
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        return 0;
+    }
+
+    private void recordSlow(Invocation invocation, MappedStatement statement, long elapsed, long rows) {
+        try {
+            Object parameter = invocation.getArgs()[1];
+            Object[] args = invocation.getArgs();
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : statement.getBoundSql(parameter);
+            String sql = boundSql.getSql().replaceAll("\\s+", " ").trim();
+            List<Object> parameters = parameters(statement.getConfiguration(), boundSql, parameter);
+            metricsRegistry.recordSlowQuery(statement.getId(), sql, parameters, elapsed, rows);
+            SQL_LOG.warn("慢查询 {} {}ms rows={} sql=[{}] parameters={}", statement.getId(), elapsed / 1_000_000, rows, sql, parameters);
+        } catch (RuntimeException e) {
+            // 解析参数失败只影响慢查询详情
+            metricsRegistry.recordSlowQuery(statement.getId(), null, List.of(), elapsed, rows);
+        }
+    }
+
+    private void logSample(Invocation invocation, MappedStatement statement, long elapsed, long rows, boolean failed) {
+        try {
+            Object parameter = invocation.getArgs()[1];
+            Object[] args = invocation.getArgs();
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : statement.getBoundSql(parameter);
+            SQL_LOG.info("{} {}us rows={}{} sql=[{}] parameters={}", statement.getId(), elapsed / 1000, rows,
+                    failed ? " 失败" : "", boundSql.getSql().replaceAll("\\s+", " ").trim(),
+                    parameters(statement.getConfiguration(), boundSql, parameter));
+        } catch (RuntimeException e) {
+            SQL_LOG.info("{} {}us rows={}", statement.getId(), elapsed / 1000, rows);
+        }
+    }
+
+    // 与 DefaultParameterHandler 取值方式一致
+    private static List<Object> parameters(Configuration configuration, BoundSql boundSql, Object parameter) {
+        List<ParameterMapping> mappings = boundSql.getParameterMappings();
+        List<Object> values = new ArrayList<>(Math.min(mappings.size(), MAX_PARAMETERS + 1));
+        for (ParameterMapping mapping : mappings) {
+            if (values.size() == MAX_PARAMETERS) {
+                values.add("...共" + mappings.size() + "个参数");
+                break;
+            }
+            String property = mapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameter == null) {
+                value = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+                value = parameter;
+            } else {
+                value = configuration.newMetaObject(parameter).getValue(property);
+            }
+            if (value != null && !(value instanceof Number) && !(value instanceof Boolean)) {
+                String text = String.valueOf(value);
+                value = text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text;
+            }
+            values.add(value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,59 @@
+package com.kl.notify;
+
+// 一次设备故障事件（入队时已复制好所需字段，不持有可变对象）
+public class FaultEvent {
+
+    private final String deviceId;
+    // 对应的故障记录id，同一次故障重复触发时相同
+    private final Integer faultRecordId;
+    private final String deviceName;
+    private final String branch;
+    private final String location;
+    private final String previousStatus;
+    private final String reason;
+    private final long occurredAt;
+
+    public FaultEvent(String deviceId, Integer faultRecordId, String deviceName, String branch, String location,
+                      String previousStatus, String reason, long occurredAt) {
+        this.deviceId = deviceId;
+        this.faultRecordId = faultRecordId;
+        this.deviceName = deviceName;
+        this.branch = branch;
+        this.location = location;
+        this.previousStatus = previousStatus;
+        this.reason = reason;
+        this.occurredAt = occurredAt;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public Integer getFaultRecordId() {
+        return faultRecordId;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public long getOccurredAt() {
+        return occurredAt;
+    }
+}
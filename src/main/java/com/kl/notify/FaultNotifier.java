@@ -0,0 +1,319 @@
+package com.kl.notify;
+
+import com.kl.entity.DeviceInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 故障通知分发：请求线程只负责入队，后台线程按聚合窗口攒批。
+ * 同一次故障（同一条故障记录）在去重窗口内只通知一次，设备恢复后再次故障会重新通知；
+ * 同一支行窗口内故障数达到阈值时合并为一条汇总通知，再交给工作线程池投递到各渠道。
+ * 投递队列满时丢弃并计数，不让调用线程去执行渠道I/O。
+ */
+@Component
+public class FaultNotifier implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(FaultNotifier.class);
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // 投递延迟分桶上限（毫秒），最后一个桶为溢出桶
+    private static final long[] LATENCY_BUCKETS = {10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, Long.MAX_VALUE};
+
+    @Autowired
+    private List<NotificationChannel> channels;
+
+    @Value("${bank-monitor.notify.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${bank-monitor.notify.workers:2}")
+    private int workers;
+
+    @Value("${bank-monitor.notify.coalesce-window-ms:1000}")
+    private long coalesceWindowMs;
+
+    @Value("${bank-monitor.notify.dedup-window-seconds:300}")
+    private long dedupWindowSeconds;
+
+    @Value("${bank-monitor.notify.digest-threshold:3}")
+    private int digestThreshold;
+
+    @Value("${bank-monitor.notify.delivery-queue-capacity:1000}")
+    private int deliveryQueueCapacity;
+
+    private BlockingQueue<FaultEvent> queue;
+    private ExecutorService deliveryPool;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    // 设备ID|故障记录id -> 最近一次通知时间
+    private final Map<String, Long> lastNotified = new ConcurrentHashMap<>();
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong dedupCount = new AtomicLong();
+    private final AtomicLong digestCount = new AtomicLong();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final LongAdder latencyTotalMs = new LongAdder();
+    private final AtomicLong latencyMaxMs = new AtomicLong();
+    private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS.length];
+
+    {
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            latencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    // 故障事件入队，不阻塞调用方；队列满时丢弃并计数。faultRecordId 为本次故障的记录id，用于去重
+    public boolean notifyFault(DeviceInfo device, Integer faultRecordId, String reason) {
+        FaultEvent event = new FaultEvent(device.getDeviceId(), faultRecordId, device.getDeviceName(), device.getBranch(),
+                device.getLocation(), device.getStatus(), reason, System.currentTimeMillis());
+        if (queue == null || !queue.offer(event)) {
+            droppedCount.incrementAndGet();
+            log.warn("故障通知队列已满，丢弃通知: {}", device.getDeviceId());
+            return false;
+        }
+        enqueuedCount.incrementAndGet();
+        return true;
+    }
+
+    // 告警规则触发的通知：规则引擎已按触发/恢复去重，不再聚合，直接交给投递线程池
+    public boolean notifyAlert(DeviceInfo device, String title, String content) {
+        return notifyMessage(title, content, device.getBranch(), Collections.singletonList(device.getDeviceId()));
+    }
+
+    // 已汇总好的通知（如每日保修到期提醒），不去重、不聚合
+    public boolean notifyMessage(String title, String content, String branch, List<String> deviceIds) {
+        if (!running) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        enqueuedCount.incrementAndGet();
+        return submit(new NotificationMessage(title, content, branch, deviceIds, deviceIds.size() > 1,
+                System.currentTimeMillis()));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueSize", queue == null ? 0 : queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("enqueued", enqueuedCount.get());
+        stats.put("dropped", droppedCount.get());
+        stats.put("deduplicated", dedupCount.get());
+        stats.put("digests", digestCount.get());
+        stats.put("delivered", deliveredCount.get());
+        stats.put("failed", failedCount.get());
+
+        long delivered = 0;
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            long count = latencyBuckets[i].sum();
+            delivered += count;
+            buckets.put(LATENCY_BUCKETS[i] == Long.MAX_VALUE ? "+Inf" : "le" + LATENCY_BUCKETS[i], count);
+        }
+        stats.put("latencyBuckets", buckets);
+        stats.put("latencyAvgMs", delivered > 0 ? latencyTotalMs.sum() / delivered : 0);
+        stats.put("latencyMaxMs", latencyMaxMs.get());
+        stats.put("latencyP95Ms", percentile(delivered, 0.95));
+        return stats;
+    }
+
+    private void dispatchLoop() {
+        List<FaultEvent> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                FaultEvent first = queue.poll(coalesceWindowMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    cleanupDedup();
+                    continue;
+                }
+                // 等满一个聚合窗口，把同一波故障一起处理
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + coalesceWindowMs;
+                long remaining;
+                while (running && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    FaultEvent next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch);
+                }
+                queue.drainTo(batch);
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<FaultEvent> batch) {
+        // 去重后按支行分组
+        long now = System.currentTimeMillis();
+        long dedupWindowMs = dedupWindowSeconds * 1000;
+        Map<String, List<FaultEvent>> byBranch = new LinkedHashMap<>();
+        for (FaultEvent event : batch) {
+            String branch = event.getBranch() == null ? "未分配支行" : event.getBranch();
+            String key = event.getDeviceId() + "|" + event.getFaultRecordId();
+            Long last = lastNotified.get(key);
+            if (last != null && now - last < dedupWindowMs) {
+                dedupCount.incrementAndGet();
+                continue;
+            }
+            lastNotified.put(key, now);
+            byBranch.computeIfAbsent(branch, k -> new ArrayList<>()).add(event);
+        }
+
+        for (Map.Entry<String, List<FaultEvent>> entry : byBranch.entrySet()) {
+            List<FaultEvent> events = entry.getValue();
+            if (events.size() >= digestThreshold) {
+                digestCount.incrementAndGet();
+                submit(buildDigest(entry.getKey(), events));
+            } else {
+                for (FaultEvent event : events) {
+                    submit(buildSingle(event));
+                }
+            }
+        }
+    }
+
+    // 投递队列满时丢弃并计数（调用方可能是请求线程或分发线程，不能在这里执行渠道I/O）
+    private boolean submit(NotificationMessage message) {
+        try {
+            deliveryPool.execute(() -> deliver(message));
+            return true;
+        } catch (RejectedExecutionException e) {
+            droppedCount.incrementAndGet();
+            log.warn("通知投递队列已满，丢弃通知: {} {}", message.getTitle(), message.getDeviceIds());
+            return false;
+        }
+    }
+
+    private void deliver(NotificationMessage message) {
+        for (NotificationChannel channel : channels) {
+            try {
+                channel.send(message);
+                deliveredCount.incrementAndGet();
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                log.warn("通知渠道[{}]投递失败: {}", channel.getName(), e.getMessage());
+            }
+        }
+        recordLatency(System.currentTimeMillis() - message.getFirstOccurredAt());
+    }
+
+    private NotificationMessage buildSingle(FaultEvent event) {
+        String content = String.format(
+                "设备: %s (%s)\n位置: %s\n状态: %s -> FAULT\n原因: %s\n时间: %s",
+                event.getDeviceName(), event.getDeviceId(), event.getLocation(),
+                event.getPreviousStatus(), event.getReason(),
+                TIME_FORMAT.format(Instant.ofEpochMilli(event.getOccurredAt())));
+        return new NotificationMessage("【银行设备故障报警】", content, event.getBranch(),
+                Collections.singletonList(event.getDeviceId()), false, event.getOccurredAt());
+    }
+
+    private NotificationMessage buildDigest(String branch, List<FaultEvent> events) {
+        long first = Long.MAX_VALUE;
+        List<String> deviceIds = new ArrayList<>(events.size());
+        StringBuilder content = new StringBuilder();
+        content.append("支行: ").append(branch).append("，共 ").append(events.size()).append(" 台设备故障\n");
+        for (FaultEvent event : events) {
+            first = Math.min(first, event.getOccurredAt());
+            deviceIds.add(event.getDeviceId());
+            content.append("- ").append(event.getDeviceName()).append(" (").append(event.getDeviceId())
+                    .append(")，原因: ").append(event.getReason()).append('\n');
+        }
+        content.append("首次故障时间: ").append(TIME_FORMAT.format(Instant.ofEpochMilli(first)));
+        return new NotificationMessage("【银行设备故障汇总】", content.toString(), branch, deviceIds, true, first);
+    }
+
+    private void recordLatency(long latencyMs) {
+        latencyTotalMs.add(latencyMs);
+        latencyMaxMs.accumulateAndGet(latencyMs, Math::max);
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            if (latencyMs <= LATENCY_BUCKETS[i]) {
+                latencyBuckets[i].increment();
+                return;
+            }
+        }
+    }
+
+    // 按分桶估算分位数，返回所在桶的上限
+    private long percentile(long total, double p) {
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * p);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            seen += latencyBuckets[i].sum();
+            if (seen >= target) {
+                return LATENCY_BUCKETS[i] == Long.MAX_VALUE ? latencyMaxMs.get() : LATENCY_BUCKETS[i];
+            }
+        }
+        return latencyMaxMs.get();
+    }
+
+    private void cleanupDedup() {
+        long expireBefore = System.currentTimeMillis() - dedupWindowSeconds * 1000;
+        lastNotified.values().removeIf(time -> time < expireBefore);
+    }
+
+    @Override
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        // 投递队列满时拒绝（AbortPolicy），由 submit 丢弃并计数
+        deliveryPool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(deliveryQueueCapacity), r -> {
+            Thread thread = new Thread(r, "fault-notify-worker");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "fault-notify-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            if (dispatcher != null) {
+                dispatcher.join(coalesceWindowMs * 2 + 1000);
+            }
+            deliveryPool.shutdown();
+            deliveryPool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.kl.notify;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+// 文件渠道：追加写入本地文件，配置 bank-monitor.notify.file-path 后启用
+@Component
+@ConditionalOnProperty(prefix = "bank-monitor.notify", name = "file-path")
+public class FileNotificationChannel implements NotificationChannel {
+
+    @Value("${bank-monitor.notify.file-path}")
+    private String filePath;
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public synchronized void send(NotificationMessage message) throws IOException {
+        String line = Instant.now() + " " + message.getTitle() + " " +
+                message.getContent().replace('\n', ' ') + System.lineSeparator();
+        Path path = Paths.get(filePath);
+        Files.write(path, line.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.kl.notify;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// 内存渠道：保留最近的通知，供页面查看和测试校验
+@Component
+public class InMemoryNotificationChannel implements NotificationChannel {
+
+    @Value("${bank-monitor.notify.recent-size:200}")
+    private int recentSize;
+
+    private final Deque<NotificationMessage> recent = new ArrayDeque<>();
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public synchronized void send(NotificationMessage message) {
+        recent.addFirst(message);
+        while (recent.size() > recentSize) {
+            recent.removeLast();
+        }
+    }
+
+    // 最近的通知，新的在前
+    public synchronized List<NotificationMessage> getRecent() {
+        return new ArrayList<>(recent);
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.kl.notify;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+// 日志渠道（原模拟通知的输出方式，改为经 slf4j 输出）
+@Component
+public class LogNotificationChannel implements NotificationChannel {
+
+    private static final Logger log = LoggerFactory.getLogger(LogNotificationChannel.class);
+
+    @Override
+    public String getName() {
+        return "log";
+    }
+
+    @Override
+    public void send(NotificationMessage message) {
+        log.info("发送通知: {}\n{}", message.getTitle(), message.getContent());
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.kl.notify;
+
+/**
+ * 通知渠道（短信、企业微信、邮件等的接入点）。实现类注册为Spring Bean即自动生效。
+ */
+public interface NotificationChannel {
+
+    String getName();
+
+    // 由通知工作线程调用，抛出异常视为本渠道投递失败
+    void send(NotificationMessage message) throws Exception;
+
+}
@@ -0,0 +1,49 @@
+package com.kl.notify;
+
+import java.util.List;
+
+// 待投递的通知：单台设备故障，或同一支行短时间内多台故障合并成的汇总
+public class NotificationMessage {
+
+    private final String title;
+    private final String content;
+    private final String branch;
+    private final List<String> deviceIds;
+    private final boolean digest;
+    // 最早一条故障的发生时间，用于统计投递延迟
+    private final long firstOccurredAt;
+
+    public NotificationMessage(String title, String content, String branch, List<String> deviceIds,
+                               boolean digest, long firstOccurredAt) {
+        this.title = title;
+        this.content = content;
+        this.branch = branch;
+        this.deviceIds = deviceIds;
+        this.digest = digest;
+        this.firstOccurredAt = firstOccurredAt;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public List<String> getDeviceIds() {
+        return deviceIds;
+    }
+
+    public boolean isDigest() {
+        return digest;
+    }
+
+    public long getFirstOccurredAt() {
+        return firstOccurredAt;
+    }
+}
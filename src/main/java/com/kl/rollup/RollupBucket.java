@@ -0,0 +1,116 @@
+package com.kl.rollup;
+
+import com.kl.entity.TelemetryRollup;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 一个对象（设备或支行）在一个时间桶内各指标的 count/min/max/sum/last。
+ * 不是线程安全的，由 TelemetryRollupEngine 在锁内访问。
+ */
+final class RollupBucket {
+
+    private static final int METRICS = TelemetryMetric.values().length;
+
+    final int scopeType;
+    final String scopeKey;
+    final long start;
+
+    private final long[] count = new long[METRICS];
+    private final double[] min = new double[METRICS];
+    private final double[] max = new double[METRICS];
+    private final double[] sum = new double[METRICS];
+    private final double[] last = new double[METRICS];
+    private final long[] lastTime = new long[METRICS];
+
+    RollupBucket(int scopeType, String scopeKey, long start) {
+        this.scopeType = scopeType;
+        this.scopeKey = scopeKey;
+        this.start = start;
+    }
+
+    void add(int metric, double value, long time) {
+        merge(metric, 1, value, value, value, value, time);
+    }
+
+    void merge(RollupBucket other) {
+        for (int m = 0; m < METRICS; m++) {
+            if (other.count[m] > 0) {
+                merge(m, other.count[m], other.min[m], other.max[m], other.sum[m], other.last[m], other.lastTime[m]);
+            }
+        }
+    }
+
+    void merge(int metric, TelemetryRollup row) {
+        merge(metric, row.getSampleCount(), row.getMinValue(), row.getMaxValue(), row.getSumValue(),
+                row.getLastValue(), row.getLastTime().getTime());
+    }
+
+    void mergeMetric(int metric, RollupBucket other) {
+        if (other.count[metric] > 0) {
+            merge(metric, other.count[metric], other.min[metric], other.max[metric], other.sum[metric],
+                    other.last[metric], other.lastTime[metric]);
+        }
+    }
+
+    private void merge(int m, long n, double lo, double hi, double total, double lastValue, long time) {
+        if (count[m] == 0) {
+            min[m] = lo;
+            max[m] = hi;
+        } else {
+            min[m] = Math.min(min[m], lo);
+            max[m] = Math.max(max[m], hi);
+        }
+        if (count[m] == 0 || time >= lastTime[m]) {
+            last[m] = lastValue;
+            lastTime[m] = time;
+        }
+        count[m] += n;
+        sum[m] += total;
+    }
+
+    long count(int metric) {
+        return count[metric];
+    }
+
+    double min(int metric) {
+        return min[metric];
+    }
+
+    double max(int metric) {
+        return max[metric];
+    }
+
+    double avg(int metric) {
+        return sum[metric] / count[metric];
+    }
+
+    double last(int metric) {
+        return last[metric];
+    }
+
+    // 每个有数据的指标一行
+    void toRows(RollupTier tier, List<TelemetryRollup> rows) {
+        TelemetryMetric[] metrics = TelemetryMetric.values();
+        for (int m = 0; m < METRICS; m++) {
+            if (count[m] == 0) {
+                continue;
+            }
+            TelemetryRollup row = new TelemetryRollup();
+            row.setTier(tier.getCode());
+            row.setScopeType(scopeType);
+            row.setScopeKey(scopeKey);
+            row.setMetric(metrics[m].getCode());
+            row.setBucketTime(new Date(start));
+            row.setSampleCount(count[m]);
+            row.setMinValue(min[m]);
+            row.setMaxValue(max[m]);
+            row.setSumValue(sum[m]);
+            row.setLastValue(last[m]);
+            row.setLastTime(new Date(lastTime[m]));
+            rows.add(row);
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.kl.rollup;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * 降采样层级，由细到粗。桶边界按本地时区对齐（日桶从本地零点开始）。
+ */
+public enum RollupTier {
+
+    MINUTE("1m", 60_000L),
+    HOUR("1h", 3_600_000L),
+    DAY("1d", 86_400_000L);
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final String code;
+    private final long sizeMillis;
+
+    RollupTier(String code, long sizeMillis) {
+        this.code = code;
+        this.sizeMillis = sizeMillis;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public long getSizeMillis() {
+        return sizeMillis;
+    }
+
+    public long bucketStart(long millis) {
+        return align(millis, sizeMillis);
+    }
+
+    // 下一级（更粗）层级，DAY 返回 null
+    public RollupTier coarser() {
+        return ordinal() + 1 < values().length ? values()[ordinal() + 1] : null;
+    }
+
+    // 按本地时区把时间对齐到 step 的整数倍
+    static long align(long millis, long step) {
+        long offset = ZONE.getRules().getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1000L;
+        return millis - Math.floorMod(millis + offset, step);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.kl.rollup;
+
+import com.kl.entity.DeviceStatusLog;
+
+import java.util.function.Function;
+
+/**
+ * 参与降采样的上报指标。
+ */
+public enum TelemetryMetric {
+
+    CPU("cpu", DeviceStatusLog::getCpuUsage),
+    MEMORY("memory", DeviceStatusLog::getMemoryUsage),
+    DISK("disk", DeviceStatusLog::getDiskUsage),
+    TEMPERATURE("temperature", DeviceStatusLog::getTemperature),
+    CASH_LEVEL("cashLevel", DeviceStatusLog::getCashLevel);
+
+    private final String code;
+    private final Function<DeviceStatusLog, Float> extractor;
+
+    TelemetryMetric(String code, Function<DeviceStatusLog, Float> extractor) {
+        this.code = code;
+        this.extractor = extractor;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    // 上报中没有该指标时返回 null
+    public Float valueOf(DeviceStatusLog log) {
+        return extractor.apply(log);
+    }
+
+    public static TelemetryMetric of(String code) {
+        for (TelemetryMetric metric : values()) {
+            if (metric.code.equalsIgnoreCase(code)) {
+                return metric;
+            }
+        }
+        throw new IllegalArgumentException("不支持的指标: " + code + "，可选 cpu/memory/disk/temperature/cashLevel");
+    }
+
+}
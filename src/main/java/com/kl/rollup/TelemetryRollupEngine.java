@@ -0,0 +1,477 @@
+package com.kl.rollup;
+
+import com.kl.cache.DeviceRegistry;
+import com.kl.cache.DeviceStatsAggregator;
+import com.kl.entity.DeviceInfo;
+import com.kl.entity.DeviceStatusLog;
+import com.kl.entity.TelemetryRollup;
+import com.kl.mapper.DeviceStatusLogMapper;
+import com.kl.mapper.TelemetryRollupMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 设备上报指标的增量降采样：1分钟 / 1小时 / 1天三级桶，按设备和按支行各一份。
+ * <p>
+ * 原始上报落库成功后进入分钟桶；桶结束且超过宽限期后写入 telemetry_rollup，并合并进上一级的桶，
+ * 小时桶、天桶同理，所以每条原始数据只被处理一次。写入是累加式的 upsert，迟到数据会形成
+ * 同一时间的新桶并合并到已有行上。未关闭的桶只在内存里：正常停机时全部写出，进程崩溃会丢失这部分。
+ * 查询时按时间范围和分辨率选择能满足要求的最粗一级，再叠加内存中尚未写出的桶。
+ */
+@Component
+public class TelemetryRollupEngine implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(TelemetryRollupEngine.class);
+
+    public static final int SCOPE_DEVICE = 0;
+    public static final int SCOPE_BRANCH = 1;
+
+    private static final int MAX_POINTS = 10000;
+    private static final int DEFAULT_POINTS = 300;
+    private static final int MAX_RETRY_ROWS = 100000;
+    private static final int DELETE_BATCH = 5000;
+
+    @Autowired
+    private TelemetryRollupMapper telemetryRollupMapper;
+
+    @Autowired
+    private DeviceStatusLogMapper deviceStatusLogMapper;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    @Value("${bank-monitor.rollup.flush-interval-seconds:10}")
+    private long flushIntervalSeconds;
+
+    // 桶结束后再等多久才关闭，给上报队列的落库延迟留余量
+    @Value("${bank-monitor.rollup.grace-seconds:60}")
+    private long graceSeconds;
+
+    @Value("${bank-monitor.rollup.write-batch-size:500}")
+    private int writeBatchSize;
+
+    // 各级保留天数，<=0 表示不清理
+    @Value("${bank-monitor.rollup.retention.raw-days:30}")
+    private int rawRetentionDays;
+
+    @Value("${bank-monitor.rollup.retention.minute-days:7}")
+    private int minuteRetentionDays;
+
+    @Value("${bank-monitor.rollup.retention.hour-days:180}")
+    private int hourRetentionDays;
+
+    @Value("${bank-monitor.rollup.retention.day-days:1825}")
+    private int dayRetentionDays;
+
+    // 每级：scopeId("类型:对象") -> 桶开始时间 -> 桶
+    private final EnumMap<RollupTier, Map<String, Map<Long, RollupBucket>>> open = new EnumMap<>(RollupTier.class);
+    private final Object lock = new Object();
+
+    // 写入失败待重试的行（只由调度线程访问）
+    private final List<TelemetryRollup> retry = new ArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    private final AtomicLong sampleCount = new AtomicLong();
+    private final AtomicLong lateSampleCount = new AtomicLong();
+    private final AtomicLong writtenRowCount = new AtomicLong();
+    private final AtomicLong failedWriteCount = new AtomicLong();
+    private final AtomicLong droppedRowCount = new AtomicLong();
+    private final AtomicLong expiredRowCount = new AtomicLong();
+
+    public TelemetryRollupEngine() {
+        for (RollupTier tier : RollupTier.values()) {
+            open.put(tier, new HashMap<>());
+        }
+    }
+
+    // 接收已落库的原始上报
+    public void accept(List<DeviceStatusLog> logs) {
+        // 支行在锁外解析，注册表未命中时会查库
+        String[] branches = new String[logs.size()];
+        for (int i = 0; i < branches.length; i++) {
+            branches[i] = branchOf(logs.get(i).getDeviceId());
+        }
+
+        long closedBefore = System.currentTimeMillis() - graceSeconds * 1000L;
+        TelemetryMetric[] metrics = TelemetryMetric.values();
+        int late = 0;
+        synchronized (lock) {
+            Map<String, Map<Long, RollupBucket>> minutes = open.get(RollupTier.MINUTE);
+            for (int i = 0; i < branches.length; i++) {
+                DeviceStatusLog log = logs.get(i);
+                long time = log.getLogTime().getTime();
+                long start = RollupTier.MINUTE.bucketStart(time);
+                if (start + RollupTier.MINUTE.getSizeMillis() <= closedBefore) {
+                    late++;
+                }
+                RollupBucket device = bucket(minutes, SCOPE_DEVICE, log.getDeviceId(), start);
+                RollupBucket branch = branches[i] == null ? null : bucket(minutes, SCOPE_BRANCH, branches[i], start);
+                for (int m = 0; m < metrics.length; m++) {
+                    Float value = metrics[m].valueOf(log);
+                    if (value == null) {
+                        continue;
+                    }
+                    device.add(m, value, time);
+                    if (branch != null) {
+                        branch.add(m, value, time);
+                    }
+                }
+            }
+        }
+        sampleCount.addAndGet(logs.size());
+        lateSampleCount.addAndGet(late);
+    }
+
+    /**
+     * 查询一个设备或支行某项指标的时间序列。
+     *
+     * @param resolutionSeconds 期望的点间隔，为空时按约300个点自动计算
+     */
+    public Map<String, Object> query(String scope, String key, String metric, Date from, Date to,
+                                     Long resolutionSeconds) {
+        int scopeType = parseScope(scope);
+        if (key == null || key.trim().isEmpty()) {
+            throw new IllegalArgumentException("key 不能为空");
+        }
+        key = key.trim();
+        TelemetryMetric telemetryMetric = TelemetryMetric.of(metric);
+        int metricIndex = telemetryMetric.ordinal();
+
+        long now = System.currentTimeMillis();
+        long toMillis = to == null ? now : to.getTime();
+        long fromMillis = from == null ? toMillis - RollupTier.DAY.getSizeMillis() : from.getTime();
+        if (fromMillis >= toMillis) {
+            throw new IllegalArgumentException("from 必须早于 to");
+        }
+        if (resolutionSeconds != null && resolutionSeconds <= 0) {
+            throw new IllegalArgumentException("resolution 必须大于0");
+        }
+        long requestedStep = resolutionSeconds != null
+                ? resolutionSeconds * 1000L
+                : Math.max(RollupTier.MINUTE.getSizeMillis(), (toMillis - fromMillis + DEFAULT_POINTS - 1) / DEFAULT_POINTS);
+
+        // 选层级：分辨率允许的最粗一级；该级数据已过保留期时退到更粗的一级
+        // 不足一分钟的分辨率只有设备维度可以直接查原始日志（tier 为 null）
+        RollupTier tier = null;
+        boolean degraded = false;
+        if (requestedStep >= RollupTier.MINUTE.getSizeMillis() || scopeType != SCOPE_DEVICE
+                || !covers(rawRetentionDays, fromMillis, now)) {
+            tier = RollupTier.MINUTE;
+            for (RollupTier candidate : RollupTier.values()) {
+                if (candidate.getSizeMillis() <= requestedStep) {
+                    tier = candidate;
+                }
+            }
+            while (tier.coarser() != null && !covers(retentionDays(tier), fromMillis, now)) {
+                tier = tier.coarser();
+                degraded = true;
+            }
+        }
+
+        long step = tier == null
+                ? requestedStep
+                : Math.max(1, requestedStep / tier.getSizeMillis()) * tier.getSizeMillis();
+        long origin = RollupTier.align(fromMillis, step);
+        if ((toMillis - origin + step - 1) / step > MAX_POINTS) {
+            throw new IllegalArgumentException("点数超过" + MAX_POINTS + "，请缩小时间范围或增大 resolution");
+        }
+
+        TreeMap<Long, RollupBucket> points = new TreeMap<>();
+        if (tier == null) {
+            for (DeviceStatusLog log : deviceStatusLogMapper.selectByDeviceAndTime(key, new Date(fromMillis), new Date(toMillis))) {
+                Float value = telemetryMetric.valueOf(log);
+                if (value != null) {
+                    long time = log.getLogTime().getTime();
+                    point(points, scopeType, key, origin, step, time).add(metricIndex, value, time);
+                }
+            }
+        } else {
+            List<TelemetryRollup> rows = telemetryRollupMapper.selectRange(tier.getCode(), scopeType, key,
+                    telemetryMetric.getCode(), new Date(origin), new Date(toMillis));
+            for (TelemetryRollup row : rows) {
+                point(points, scopeType, key, origin, step, row.getBucketTime().getTime()).merge(metricIndex, row);
+            }
+            // 本级及更细层级中尚未写出的桶
+            String scopeId = scopeId(scopeType, key);
+            synchronized (lock) {
+                for (RollupTier openTier : RollupTier.values()) {
+                    if (openTier.ordinal() > tier.ordinal()) {
+                        break;
+                    }
+                    Map<Long, RollupBucket> buckets = open.get(openTier).get(scopeId);
+                    if (buckets == null) {
+                        continue;
+                    }
+                    for (RollupBucket bucket : buckets.values()) {
+                        if (bucket.start >= origin && bucket.start < toMillis) {
+                            point(points, scopeType, key, origin, step, bucket.start).mergeMetric(metricIndex, bucket);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Map<String, Object>> data = new ArrayList<>(points.size());
+        for (RollupBucket point : points.values()) {
+            if (point.count(metricIndex) == 0) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("time", new Date(point.start));
+            item.put("count", point.count(metricIndex));
+            item.put("min", point.min(metricIndex));
+            item.put("max", point.max(metricIndex));
+            item.put("avg", point.avg(metricIndex));
+            item.put("last", point.last(metricIndex));
+            data.add(item);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("scope", scopeType == SCOPE_DEVICE ? "device" : "branch");
+        result.put("key", key);
+        result.put("metric", telemetryMetric.getCode());
+        result.put("tier", tier == null ? "raw" : tier.getCode());
+        result.put("resolutionSeconds", step / 1000.0);
+        // 细粒度数据已过保留期，分辨率被放粗
+        result.put("degraded", degraded);
+        result.put("from", new Date(fromMillis));
+        result.put("to", new Date(toMillis));
+        result.put("points", data);
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> openBuckets = new LinkedHashMap<>();
+        synchronized (lock) {
+            for (RollupTier tier : RollupTier.values()) {
+                int total = 0;
+                for (Map<Long, RollupBucket> buckets : open.get(tier).values()) {
+                    total += buckets.size();
+                }
+                openBuckets.put(tier.getCode(), total);
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("openBuckets", openBuckets);
+        stats.put("samples", sampleCount.get());
+        stats.put("lateSamples", lateSampleCount.get());
+        stats.put("writtenRows", writtenRowCount.get());
+        stats.put("failedWrites", failedWriteCount.get());
+        stats.put("droppedRows", droppedRowCount.get());
+        stats.put("expiredRows", expiredRowCount.get());
+
+        Map<String, Object> retention = new LinkedHashMap<>();
+        retention.put("raw", rawRetentionDays);
+        for (RollupTier tier : RollupTier.values()) {
+            retention.put(tier.getCode(), retentionDays(tier));
+        }
+        stats.put("retentionDays", retention);
+        return stats;
+    }
+
+    // ---------------- 关闭与写出 ----------------
+
+    // force=true 时关闭全部桶（停机）
+    private void rollUp(boolean force) {
+        long closedBefore = System.currentTimeMillis() - graceSeconds * 1000L;
+        List<TelemetryRollup> rows = new ArrayList<>();
+        synchronized (lock) {
+            // 由细到粗：本轮关闭的分钟桶先并入小时桶，小时桶再判断是否关闭
+            for (RollupTier tier : RollupTier.values()) {
+                RollupTier parent = tier.coarser();
+                Iterator<Map<Long, RollupBucket>> scopes = open.get(tier).values().iterator();
+                while (scopes.hasNext()) {
+                    Map<Long, RollupBucket> buckets = scopes.next();
+                    Iterator<RollupBucket> it = buckets.values().iterator();
+                    while (it.hasNext()) {
+                        RollupBucket bucket = it.next();
+                        if (!force && bucket.start + tier.getSizeMillis() > closedBefore) {
+                            continue;
+                        }
+                        it.remove();
+                        bucket.toRows(tier, rows);
+                        if (parent != null) {
+                            bucket(open.get(parent), bucket.scopeType, bucket.scopeKey,
+                                    parent.bucketStart(bucket.start)).merge(bucket);
+                        }
+                    }
+                    if (buckets.isEmpty()) {
+                        scopes.remove();
+                    }
+                }
+            }
+        }
+        write(rows);
+    }
+
+    private void write(List<TelemetryRollup> rows) {
+        retry.addAll(rows);
+        int written = 0;
+        try {
+            while (written < retry.size()) {
+                List<TelemetryRollup> batch = retry.subList(written, Math.min(written + writeBatchSize, retry.size()));
+                telemetryRollupMapper.upsertBatch(batch);
+                written += batch.size();
+            }
+        } catch (Exception e) {
+            failedWriteCount.incrementAndGet();
+            log.warn("指标聚合写入失败({}行)，稍后重试: {}", retry.size() - written, e.getMessage());
+        } finally {
+            writtenRowCount.addAndGet(written);
+            retry.subList(0, written).clear();
+            // 数据库长时间不可用时丢弃最旧的行，避免内存无限增长
+            if (retry.size() > MAX_RETRY_ROWS) {
+                int overflow = retry.size() - MAX_RETRY_ROWS;
+                retry.subList(0, overflow).clear();
+                droppedRowCount.addAndGet(overflow);
+            }
+        }
+    }
+
+    private void tick() {
+        try {
+            rollUp(false);
+        } catch (Exception e) {
+            log.warn("指标降采样失败: {}", e.getMessage());
+        }
+    }
+
+    // ---------------- 保留期 ----------------
+
+    private void purgeExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            if (rawRetentionDays > 0) {
+                Date before = new Date(now - rawRetentionDays * RollupTier.DAY.getSizeMillis());
+                int deleted;
+                do {
+                    deleted = deviceStatusLogMapper.deleteBefore(before, DELETE_BATCH);
+                    expiredRowCount.addAndGet(deleted);
+                } while (deleted == DELETE_BATCH && running);
+            }
+            for (RollupTier tier : RollupTier.values()) {
+                int days = retentionDays(tier);
+                if (days <= 0) {
+                    continue;
+                }
+                Date before = new Date(tier.bucketStart(now - days * RollupTier.DAY.getSizeMillis()));
+                int deleted;
+                do {
+                    deleted = telemetryRollupMapper.deleteBefore(tier.getCode(), before, DELETE_BATCH);
+                    expiredRowCount.addAndGet(deleted);
+                } while (deleted == DELETE_BATCH && running);
+            }
+        } catch (Exception e) {
+            log.warn("指标数据保留期清理失败: {}", e.getMessage());
+        }
+    }
+
+    private int retentionDays(RollupTier tier) {
+        switch (tier) {
+            case MINUTE:
+                return minuteRetentionDays;
+            case HOUR:
+                return hourRetentionDays;
+            default:
+                return dayRetentionDays;
+        }
+    }
+
+    private static boolean covers(int retentionDays, long from, long now) {
+        return retentionDays <= 0 || from >= now - retentionDays * RollupTier.DAY.getSizeMillis();
+    }
+
+    // ---------------- 辅助方法 ----------------
+
+    private String branchOf(String deviceId) {
+        try {
+            DeviceInfo device = deviceRegistry.getByDeviceId(deviceId);
+            if (device == null) {
+                return null;
+            }
+            return device.getBranch() == null ? DeviceStatsAggregator.UNASSIGNED_BRANCH : device.getBranch().trim();
+        } catch (Exception e) {
+            // 查不到支行时只计入设备维度
+            return null;
+        }
+    }
+
+    private static RollupBucket bucket(Map<String, Map<Long, RollupBucket>> tier, int scopeType, String scopeKey, long start) {
+        return tier.computeIfAbsent(scopeId(scopeType, scopeKey), k -> new HashMap<>())
+                .computeIfAbsent(start, s -> new RollupBucket(scopeType, scopeKey, s));
+    }
+
+    private static RollupBucket point(TreeMap<Long, RollupBucket> points, int scopeType, String key,
+                                      long origin, long step, long time) {
+        long start = origin + Math.floorDiv(time - origin, step) * step;
+        return points.computeIfAbsent(start, s -> new RollupBucket(scopeType, key, s));
+    }
+
+    private static String scopeId(int scopeType, String scopeKey) {
+        return scopeType + ":" + scopeKey;
+    }
+
+    private static int parseScope(String scope) {
+        if ("device".equalsIgnoreCase(scope)) {
+            return SCOPE_DEVICE;
+        }
+        if ("branch".equalsIgnoreCase(scope)) {
+            return SCOPE_BRANCH;
+        }
+        throw new IllegalArgumentException("scope 只能是 device 或 branch");
+    }
+
+    // ---------------- 生命周期 ----------------
+
+    @Override
+    public void start() {
+        if (flushIntervalSeconds <= 0 || writeBatchSize <= 0) {
+            throw new IllegalStateException("rollup flush-interval-seconds 与 write-batch-size 必须大于0");
+        }
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "telemetry-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 未关闭的桶按当前内容写出，重启后的新数据会累加到同一行
+        rollUp(true);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 早于上报服务启动、晚于其停止：上报队列停机时排空的数据还能进入聚合
+    @Override
+    public int getPhase() {
+        return -1;
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.kl.service;
+
+import com.kl.entity.DeviceInfo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 设备CSV格式：导入导出共用同一组列，首行为表头。
+ * 字段中含逗号、引号、换行时用双引号包裹，引号写两次；引号内的换行属于字段内容（readRecord 按记录读取）。
+ */
+public final class DeviceCsv {
+
+    public static final String[] COLUMNS = {
+            "deviceId", "deviceName", "deviceType", "vendor", "model", "ipAddress",
+            "location", "branch", "status", "installDate", "warrantyPeriod"
+    };
+
+    private static final String DATE_PATTERN = "yyyy-MM-dd";
+
+    private DeviceCsv() {
+    }
+
+    public static String header() {
+        return String.join(",", COLUMNS);
+    }
+
+    public static String toLine(DeviceInfo device, SimpleDateFormat dateFormat) {
+        StringBuilder sb = new StringBuilder(128);
+        append(sb, device.getDeviceId()).append(',');
+        append(sb, device.getDeviceName()).append(',');
+        append(sb, device.getDeviceType()).append(',');
+        append(sb, device.getVendor()).append(',');
+        append(sb, device.getModel()).append(',');
+        append(sb, device.getIpAddress()).append(',');
+        append(sb, device.getLocation()).append(',');
+        append(sb, device.getBranch()).append(',');
+        append(sb, device.getStatus()).append(',');
+        append(sb, device.getInstallDate() == null ? null : dateFormat.format(device.getInstallDate())).append(',');
+        append(sb, device.getWarrantyPeriod() == null ? null : device.getWarrantyPeriod().toString());
+        return sb.toString();
+    }
+
+    // SimpleDateFormat 非线程安全，每次导入/导出各用一个
+    public static SimpleDateFormat newDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat(DATE_PATTERN);
+        format.setLenient(false);
+        return format;
+    }
+
+    // 按表头把一行CSV转成设备；未知列忽略，空值视为null
+    public static DeviceInfo toDevice(List<String> header, List<String> values, SimpleDateFormat dateFormat) {
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException("列数与表头不一致");
+        }
+        DeviceInfo device = new DeviceInfo();
+        for (int i = 0; i < header.size(); i++) {
+            String value = values.get(i).trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            switch (header.get(i)) {
+                case "deviceId": device.setDeviceId(value); break;
+                case "deviceName": device.setDeviceName(value); break;
+                case "deviceType": device.setDeviceType(value); break;
+                case "vendor": device.setVendor(value); break;
+                case "model": device.setModel(value); break;
+                case "ipAddress": device.setIpAddress(value); break;
+                case "location": device.setLocation(value); break;
+                case "branch": device.setBranch(value); break;
+                case "status": device.setStatus(value); break;
+                case "installDate":
+                    try {
+                        device.setInstallDate(dateFormat.parse(value));
+                    } catch (ParseException e) {
+                        throw new IllegalArgumentException("安装日期格式应为 " + DATE_PATTERN);
+                    }
+                    break;
+                case "warrantyPeriod":
+                    try {
+                        device.setWarrantyPeriod(Integer.valueOf(value));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("保修期必须为整数（月）");
+                    }
+                    break;
+                default: break;
+            }
+        }
+        return device;
+    }
+
+    // 读取一条记录：引号未闭合时把后续行接上（字段内换行），文件结束返回 null
+    public static String readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        // 转义的引号成对出现，引号总数为奇数说明还在引号内
+        int quotes = countQuotes(line);
+        if (quotes % 2 == 0) {
+            return line;
+        }
+        StringBuilder record = new StringBuilder(line);
+        String next;
+        while (quotes % 2 != 0 && (next = reader.readLine()) != null) {
+            record.append('\n').append(next);
+            quotes += countQuotes(next);
+        }
+        // 到文件末尾仍未闭合时由 parseLine 报错
+        return record.toString();
+    }
+
+    private static int countQuotes(CharSequence text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static List<String> parseLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("引号未闭合");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static StringBuilder append(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return sb.append(value);
+        }
+        return sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+}
@@ -1,14 +1,21 @@
 package com.kl.service;
 
+import com.kl.dto.BranchHealthReport;
+import com.kl.dto.DeviceStatistics;
 import com.kl.entity.DeviceInfo;
+import com.kl.entity.DevicePage;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface DeviceService {
 
     // 查询相关
     List<DeviceInfo> getAllDevices();
+    // 按游标分页逐行输出设备，返回本页最后一条（无数据返回null）
+    DeviceInfo streamDevices(DevicePage page, Consumer<DeviceInfo> consumer);
     List<DeviceInfo> getDevicesByStatus(String status);
     DeviceInfo getDeviceById(Integer id);
     DeviceInfo getDeviceByDeviceId(String deviceId);
@@ -17,25 +24,45 @@ public interface DeviceService {
     DeviceInfo addDevice(DeviceInfo device);
     DeviceInfo updateDevice(Integer id, DeviceInfo device);
     void deleteDevice(Integer id);
+    // 批量导入（format: csv / ndjson），返回逐行错误报告
+    Map<String, Object> importDevices(InputStream in, String format);
 
     // 银行业务逻辑
     boolean changeDeviceStatus(Integer id, String newStatus, String changeReason);
+    boolean changeDeviceStatus(Integer id, String newStatus, String changeReason, String actor);
     boolean markDeviceAsFault(Integer id, String faultReason);
+    boolean markDeviceAsFault(Integer id, String faultCode, String faultLevel, String faultReason);
+    // 批量状态变更：按id列表或 支行/类型 筛选，返回每台设备的处理结果
+    Map<String, Object> changeDeviceStatusBatch(List<Integer> ids, String branch, String deviceType,
+                                                String newStatus, String changeReason, String actor);
+    // 条件批量变更：只变更数据库中当前处于 fromStatus 的设备（如心跳超时自动离线），返回值同上
+    Map<String, Object> transitionDeviceStatus(List<Integer> ids, String fromStatus, String newStatus,
+                                               String changeReason, String actor);
 
     // 统计分析
-    Map<String, Object> getDeviceStatistics();
-    Map<String, Object> searchDevices(String keyword, String deviceType, String branch);
+    DeviceStatistics getDeviceStatistics();
+    Map<String, Object> searchDevices(String keyword, String deviceType, String branch,
+                                      Integer offset, Integer limit);
 
     // 银行特殊业务
     List<DeviceInfo> getDevicesByBranch(String branch);
 
     // 银行业务统计 - 保修预警
     List<Map<String, Object>> getWarrantyAlertDevices();
+    // 到期日在 [今天+fromDays, 今天+toDays] 内的设备，任一端为空表示不限
+    Map<String, Object> getWarrantyDevices(Integer fromDays, Integer toDays, String branch, String deviceType, int limit);
 
     // 银行业务统计 - 故障分析
     Map<String, Object> getFaultAnalysis();
 
     // 银行业务统计 - 支行健康度
-    Map<String, Object> getBranchHealthStats();
+    BranchHealthReport getBranchHealthStats();
+
+    // 多维分组统计：groupBy 为逗号分隔的 branch/deviceType/vendor/status，其余参数为筛选条件
+    Map<String, Object> getBreakdown(String groupBy, String branch, String deviceType, String vendor, String status,
+                                     int limit);
+
+    // 设备注册表缓存统计
+    Map<String, Object> getCacheStats();
 
 }
\ No newline at end of file
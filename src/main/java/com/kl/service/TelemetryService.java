@@ -0,0 +1,19 @@
+package com.kl.service;
+
+import com.kl.entity.DeviceStatusLog;
+
+import java.util.List;
+import java.util.Map;
+
+public interface TelemetryService {
+
+    // 批量接收上报，返回成功入队的条数（队列满时剩余部分被拒绝）
+    int submit(List<DeviceStatusLog> reports);
+
+    // 查询设备最近的上报记录
+    List<DeviceStatusLog> getRecentLogs(String deviceId, int limit);
+
+    // 队列与写入统计
+    Map<String, Object> getIngestStats();
+
+}
@@ -1,30 +1,146 @@
 package com.kl.service.impl;
 
+import com.kl.alert.AlertEngine;
+import com.kl.audit.StatusAuditLog;
+import com.kl.cache.DeviceRegistry;
+import com.kl.cache.DeviceSearchIndex;
+import com.kl.cache.DeviceStatsAggregator;
+import com.kl.cache.FaultStatsAggregator;
+import com.kl.cache.FleetSnapshot;
+import com.kl.cache.ResponseCache;
+import com.kl.cache.WarrantyIndex;
+import com.kl.dto.BranchHealth;
+import com.kl.dto.BranchHealthReport;
+import com.kl.dto.DeviceStatistics;
+import com.kl.entity.DeviceFaultRecord;
 import com.kl.entity.DeviceInfo;
+import com.kl.entity.DevicePage;
+import com.kl.liveness.DeviceLivenessTracker;
+import com.kl.mapper.DeviceFaultRecordMapper;
 import com.kl.mapper.DeviceInfoMapper;
+import com.kl.notify.FaultNotifier;
+import com.kl.service.DeviceCsv;
 import com.kl.service.DeviceService;
+import com.kl.stream.DeviceEventStream;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-
-import java.math.BigDecimal;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
-@Transactional
+@Transactional  // 默认读写事务；只读方法标注 readOnly，开启读写分离时路由到从库
 public class DeviceServiceImpl implements DeviceService {
 
     @Autowired
     private DeviceInfoMapper deviceInfoMapper;
 
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    @Autowired
+    private DeviceStatsAggregator deviceStatsAggregator;
+
+    @Autowired
+    private DeviceSearchIndex deviceSearchIndex;
+
+    @Autowired
+    private FleetSnapshot fleetSnapshot;
+
+    @Autowired
+    private WarrantyIndex warrantyIndex;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private DeviceEventStream deviceEventStream;
+
+    @Autowired
+    private FaultNotifier faultNotifier;
+
+    @Autowired
+    private DeviceFaultRecordMapper deviceFaultRecordMapper;
+
+    @Autowired
+    private FaultStatsAggregator faultStatsAggregator;
+
+    @Autowired
+    private StatusAuditLog statusAuditLog;
+
+    // 存活检测和告警引擎依赖本服务做状态变更，延迟获取避免循环依赖
+    @Autowired
+    private ObjectProvider<DeviceLivenessTracker> livenessTracker;
+
+    @Autowired
+    private ObjectProvider<AlertEngine> alertEngine;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 批量导入时每批检查、插入的行数（每批一个事务）
+    @Value("${bank-monitor.bulk.batch-size:500}")
+    private int bulkBatchSize;
+
+    // 批量状态变更时每条UPDATE包含的设备数（每批一个事务）
+    @Value("${bank-monitor.bulk.status-chunk-size:200}")
+    private int statusChunkSize;
+
+    private static final int MAX_BATCH_DEVICES = 10000;
+    // 未指明操作人时的审计记录
+    private static final String SYSTEM_ACTOR = "system";
+    private static final List<String> VALID_STATUS =
+            Arrays.asList("ONLINE", "OFFLINE", "FAULT", "MAINTENANCE", "DECOMMISSIONED");
+    private static final List<String> VALID_FAULT_LEVEL = Arrays.asList("CRITICAL", "HIGH", "MEDIUM", "LOW");
+    // 未指明故障代码/等级时的取值（人工标记）
+    private static final String DEFAULT_FAULT_CODE = "MANUAL";
+    private static final String DEFAULT_FAULT_LEVEL = "MEDIUM";
+
     @Override
+    @Transactional(readOnly = true)
     public List<DeviceInfo> getAllDevices() {
         return deviceInfoMapper.selectAll();
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public DeviceInfo streamDevices(DevicePage page, Consumer<DeviceInfo> consumer) {
+        // Cursor 需要在事务（同一连接）内遍历完
+        DeviceInfo last = null;
+        try (Cursor<DeviceInfo> cursor = deviceInfoMapper.selectPage(page)) {
+            for (DeviceInfo device : cursor) {
+                consumer.accept(device);
+                last = device;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return last;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<DeviceInfo> getDevicesByStatus(String status) {
         if (status == null || status.isEmpty()) {
             return Collections.emptyList();
@@ -33,19 +149,21 @@ public class DeviceServiceImpl implements DeviceService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public DeviceInfo getDeviceById(Integer id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("设备ID无效");
         }
-        return deviceInfoMapper.selectById(id);
+        return deviceRegistry.getById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public DeviceInfo getDeviceByDeviceId(String deviceId) {
         if (deviceId == null || deviceId.isEmpty()) {
             throw new IllegalArgumentException("设备唯一标识不能为空");
         }
-        return deviceInfoMapper.selectByDeviceId(deviceId);
+        return deviceRegistry.getByDeviceId(deviceId);
     }
 
     @Override
@@ -61,17 +179,24 @@ public class DeviceServiceImpl implements DeviceService {
         device.setStatus(device.getStatus().toUpperCase());
 
         // 检查设备是否已存在
-        DeviceInfo existing = deviceInfoMapper.selectByDeviceId(device.getDeviceId());
+        DeviceInfo existing = deviceRegistry.getByDeviceId(device.getDeviceId());
         if (existing != null) {
             throw new RuntimeException("设备已存在，设备ID: " + device.getDeviceId());
         }
 
+        Date now = new Date();
+        if (device.getCreateTime() == null) {
+            device.setCreateTime(now);
+        }
+        device.setUpdateTime(now);
+
         // 插入数据库
         int result = deviceInfoMapper.insert(device);
         if (result <= 0) {
             throw new RuntimeException("设备添加失败");
         }
 
+        publishChange(null, DeviceRegistry.copyOf(device));
         return device;
     }
 
@@ -81,7 +206,7 @@ public class DeviceServiceImpl implements DeviceService {
             throw new IllegalArgumentException("设备ID无效");
         }
 
-        DeviceInfo existingDevice = deviceInfoMapper.selectById(id);
+        DeviceInfo existingDevice = deviceRegistry.getById(id);
         if (existingDevice == null) {
             throw new RuntimeException("设备不存在，ID: " + id);
         }
@@ -92,6 +217,13 @@ public class DeviceServiceImpl implements DeviceService {
             throw new RuntimeException("设备唯一标识(deviceId)不允许修改");
         }
 
+        // 状态变更需要审计和故障记录，只能走状态变更接口；与当前状态相同的值忽略
+        if (device.getStatus() != null &&
+                !device.getStatus().equalsIgnoreCase(existingDevice.getStatus())) {
+            throw new IllegalArgumentException("设备状态不能通过更新接口修改，请使用 PATCH /api/devices/" + id + "/status");
+        }
+        device.setStatus(null);
+
         // 设置ID
         device.setId(id);
 
@@ -101,8 +233,10 @@ public class DeviceServiceImpl implements DeviceService {
             throw new RuntimeException("设备更新失败");
         }
 
-        // 返回更新后的设备
-        return deviceInfoMapper.selectById(id);
+        // 在原记录上合并本次修改的字段，得到更新后的设备，无需再查库
+        DeviceInfo updated = mergeUpdate(existingDevice, device);
+        publishChange(existingDevice, updated);
+        return updated;
     }
 
     @Override
@@ -111,7 +245,7 @@ public class DeviceServiceImpl implements DeviceService {
             throw new IllegalArgumentException("设备ID无效");
         }
 
-        DeviceInfo device = deviceInfoMapper.selectById(id);
+        DeviceInfo device = deviceRegistry.getById(id);
         if (device == null) {
             throw new RuntimeException("设备不存在，ID: " + id);
         }
@@ -125,121 +259,530 @@ public class DeviceServiceImpl implements DeviceService {
         if (result <= 0) {
             throw new RuntimeException("设备删除失败");
         }
+
+        publishChange(device, null);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)  // 按批提交，不在一个大事务里导入
+    public Map<String, Object> importDevices(InputStream in, String format) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("不支持的导入格式: " + format);
+        }
+
+        ImportReport report = new ImportReport();
+        SimpleDateFormat dateFormat = DeviceCsv.newDateFormat();
+        Set<String> seenDeviceIds = new HashSet<>();
+        List<DeviceInfo> chunk = new ArrayList<>(bulkBatchSize);
+        List<Integer> chunkLines = new ArrayList<>(bulkBatchSize);
+        List<String> header = null;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNo = 0;
+            int nextLineNo = 1;
+            // CSV 按记录读取（引号内可含换行），行号取记录的首行
+            while ((line = csv ? DeviceCsv.readRecord(reader) : reader.readLine()) != null) {
+                lineNo = nextLineNo;
+                nextLineNo += 1 + (int) line.chars().filter(c -> c == '\n').count();
+                if (lineNo == 1 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1);  // Excel导出的UTF-8 BOM
+                }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                if (csv && header == null) {
+                    header = new ArrayList<>();
+                    for (String column : DeviceCsv.parseLine(line)) {
+                        header.add(column.trim());
+                    }
+                    if (!header.contains("deviceId")) {
+                        throw new IllegalArgumentException("CSV表头缺少 deviceId 列");
+                    }
+                    continue;
+                }
+
+                report.total++;
+                DeviceInfo device = null;
+                try {
+                    device = csv
+                            ? DeviceCsv.toDevice(header, DeviceCsv.parseLine(line), dateFormat)
+                            : objectMapper.readValue(line, DeviceInfo.class);
+                    if (device == null) {
+                        throw new IllegalArgumentException("空记录");
+                    }
+                    validateDeviceForAdd(device);
+                    if (!seenDeviceIds.add(device.getDeviceId())) {
+                        throw new IllegalArgumentException("文件内设备ID重复");
+                    }
+                } catch (RuntimeException e) {
+                    report.error(lineNo, device == null ? null : device.getDeviceId(),
+                            e.getMessage() == null ? "数据格式错误" : e.getMessage());
+                    continue;
+                }
+
+                chunk.add(device);
+                chunkLines.add(lineNo);
+                if (chunk.size() >= bulkBatchSize) {
+                    importChunk(chunk, chunkLines, report);
+                    chunk.clear();
+                    chunkLines.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取导入数据失败", e);
+        }
+
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, chunkLines, report);
+        }
+        return report.toMap();
+    }
+
+    // 私有方法：一批设备在同一事务内先用 IN 查询去掉已存在的，再一条多行INSERT写入。
+    // 检查之后仍可能有并发写入同一 deviceId（唯一键冲突），这时整批回滚后逐条插入，冲突的记为已存在
+    private void importChunk(List<DeviceInfo> chunk, List<Integer> lines, ImportReport report) {
+        List<String> deviceIds = new ArrayList<>(chunk.size());
+        Date now = new Date();
+        for (DeviceInfo device : chunk) {
+            deviceIds.add(device.getDeviceId());
+            if (device.getStatus() == null || device.getStatus().isEmpty()) {
+                device.setStatus("OFFLINE");
+            }
+            device.setStatus(device.getStatus().toUpperCase());
+            if (device.getCreateTime() == null) {
+                device.setCreateTime(now);
+            }
+            device.setUpdateTime(now);
+        }
+
+        Set<String> existing = new HashSet<>();
+        List<DeviceInfo> toInsert = new ArrayList<>(chunk.size());
+        List<Integer> insertLines = new ArrayList<>(chunk.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                existing.clear();
+                toInsert.clear();
+                insertLines.clear();
+                existing.addAll(deviceInfoMapper.selectExistingDeviceIds(deviceIds));
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (!existing.contains(chunk.get(i).getDeviceId())) {
+                        toInsert.add(chunk.get(i));
+                        insertLines.add(lines.get(i));
+                    }
+                }
+                if (toInsert.isEmpty()) {
+                    return;
+                }
+                deviceInfoMapper.batchInsert(toInsert);
+                for (DeviceInfo device : toInsert) {
+                    publishChange(null, DeviceRegistry.copyOf(device));
+                }
+            });
+            report.inserted += toInsert.size();
+        } catch (DuplicateKeyException e) {
+            for (int i = 0; i < toInsert.size(); i++) {
+                importOne(toInsert.get(i), insertLines.get(i), report);
+            }
+        } catch (RuntimeException e) {
+            for (int i = 0; i < toInsert.size(); i++) {
+                report.error(insertLines.get(i), toInsert.get(i).getDeviceId(), "写入失败: " + e.getMessage());
+            }
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            if (existing.contains(chunk.get(i).getDeviceId())) {
+                report.error(lines.get(i), chunk.get(i).getDeviceId(), "设备已存在");
+            }
+        }
+    }
+
+    // 私有方法：单台设备单独一个事务写入（批量写入遇到唯一键冲突时的回退）
+    private void importOne(DeviceInfo device, int line, ImportReport report) {
+        device.setId(null);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                deviceInfoMapper.insert(device);
+                publishChange(null, DeviceRegistry.copyOf(device));
+            });
+            report.inserted++;
+        } catch (DuplicateKeyException e) {
+            report.error(line, device.getDeviceId(), "设备已存在");
+        } catch (RuntimeException e) {
+            report.error(line, device.getDeviceId(), "写入失败: " + e.getMessage());
+        }
     }
 
     @Override
     public boolean changeDeviceStatus(Integer id, String newStatus, String changeReason) {
+        return changeDeviceStatus(id, newStatus, changeReason, SYSTEM_ACTOR);
+    }
+
+    @Override
+    public boolean changeDeviceStatus(Integer id, String newStatus, String changeReason, String actor) {
         DeviceInfo device = getDeviceById(id);
+        if (device == null) {
+            throw new IllegalArgumentException("设备不存在，ID: " + id);
+        }
 
-        List<String> validStatus = Arrays.asList("ONLINE", "OFFLINE", "FAULT", "MAINTENANCE", "DECOMMISSIONED");
-        if (!validStatus.contains(newStatus.toUpperCase())) {
+        if (!VALID_STATUS.contains(newStatus.toUpperCase())) {
             throw new IllegalArgumentException("无效的设备状态");
         }
 
-        // 记录状态变更原因（银行审计要求）
-        System.out.printf("设备状态变更 [设备ID: %s]: %s -> %s, 原因: %s%n",
-                device.getDeviceId(), device.getStatus(), newStatus, changeReason);
+        String status = newStatus.toUpperCase();
+        boolean changed = updateStatus(device, status, changeReason, actor);
+        // 变为 FAULT 时在同一事务中打开故障记录
+        if (changed && "FAULT".equals(status)) {
+            openFaultRecord(device, DEFAULT_FAULT_CODE, DEFAULT_FAULT_LEVEL, changeReason);
+        }
+        return changed;
+    }
+
+    // 私有方法：单台设备状态变更，同步内存结构、写审计；恢复 ONLINE 时关闭故障记录
+    private boolean updateStatus(DeviceInfo device, String status, String changeReason, String actor) {
+        // 库里和内存中用同一个更新时间（游标分页按 update_time 排序）
+        Date now = new Date();
+        int result = deviceInfoMapper.updateStatus(device.getId(), status, now);
+        if (result <= 0) {
+            return false;
+        }
+        DeviceInfo updated = DeviceRegistry.copyOf(device);
+        updated.setStatus(status);
+        updated.setUpdateTime(now);
+        publishChange(device, updated);
 
-        // 更新状态
-        int result = deviceInfoMapper.updateStatus(id, newStatus.toUpperCase());
-        return result > 0;
+        // 记录状态变更原因（银行审计要求），事务提交后写入审计日志
+        String oldStatus = device.getStatus();
+        afterCommit(() -> statusAuditLog.record(device.getDeviceId(), oldStatus, status, changeReason, actor));
+
+        if ("ONLINE".equals(status)) {
+            closeFaultRecords(Collections.singletonList(device), actor);
+        }
+        return true;
     }
 
 
     @Override
-    public Map<String, Object> getDeviceStatistics() {
-        Map<String, Object> stats = new HashMap<>();
-
-        // 设备总数
-        int totalCount = deviceInfoMapper.countAll();
-        stats.put("totalDevices", totalCount);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)  // 每批单独提交
+    public Map<String, Object> changeDeviceStatusBatch(List<Integer> ids, String branch, String deviceType,
+                                                       String newStatus, String changeReason, String actor) {
+        return changeStatusBatch(ids, branch, deviceType, null, newStatus, changeReason, actor);
+    }
 
-        // 按状态统计
-        List<Map<String, Object>> statusStats = deviceInfoMapper.countByStatus();
-        stats.put("statusDistribution", statusStats);
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)  // 每批单独提交
+    public Map<String, Object> transitionDeviceStatus(List<Integer> ids, String fromStatus, String newStatus,
+                                                      String changeReason, String actor) {
+        if (fromStatus == null || !VALID_STATUS.contains(fromStatus.toUpperCase())) {
+            throw new IllegalArgumentException("无效的原状态");
+        }
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("必须提供设备ID列表");
+        }
+        return changeStatusBatch(ids, null, null, fromStatus.toUpperCase(), newStatus, changeReason, actor);
+    }
 
-        // 计算在线率
-        long onlineCount = statusStats.stream()
-                .filter(item -> "ONLINE".equals(item.get("status")))
-                .mapToLong(item -> Long.parseLong(item.get("count").toString()))
-                .findFirst()
-                .orElse(0L);
+    // 私有方法：批量状态变更；fromStatus 不为空时只变更数据库中当前处于该状态的设备
+    private Map<String, Object> changeStatusBatch(List<Integer> ids, String branch, String deviceType, String fromStatus,
+                                                  String newStatus, String changeReason, String actor) {
+        if (newStatus == null || !VALID_STATUS.contains(newStatus.toUpperCase())) {
+            throw new IllegalArgumentException("无效的设备状态");
+        }
+        if (changeReason == null || changeReason.trim().isEmpty()) {
+            throw new IllegalArgumentException("批量变更必须提供原因");
+        }
+        String status = newStatus.toUpperCase();
+
+        // 1. 确定目标设备
+        List<Map<String, Object>> results = new ArrayList<>();
+        List<DeviceInfo> targets = new ArrayList<>();
+        if (ids != null && !ids.isEmpty()) {
+            if (ids.size() > MAX_BATCH_DEVICES) {
+                throw new IllegalArgumentException("单次最多变更 " + MAX_BATCH_DEVICES + " 台设备");
+            }
+            Map<Integer, DeviceInfo> found = deviceRegistry.getByIds(new LinkedHashSet<>(ids));
+            for (Integer id : new LinkedHashSet<>(ids)) {
+                DeviceInfo device = found.get(id);
+                if (device == null) {
+                    results.add(batchOutcome(id, null, null, status, "NOT_FOUND", "设备不存在"));
+                } else {
+                    targets.add(device);
+                }
+            }
+        } else if ((branch != null && !branch.trim().isEmpty()) || (deviceType != null && !deviceType.trim().isEmpty())) {
+            // 按筛选条件变更时支行需精确匹配，避免维护窗口误伤名称相近的支行
+            for (DeviceInfo device : deviceSearchIndex.search(null, deviceType, branch)) {
+                if (branch == null || branch.trim().isEmpty() || branch.trim().equalsIgnoreCase(
+                        device.getBranch() == null ? null : device.getBranch().trim())) {
+                    targets.add(device);
+                }
+            }
+            if (targets.size() > MAX_BATCH_DEVICES) {
+                throw new IllegalArgumentException("筛选结果超过 " + MAX_BATCH_DEVICES + " 台，请缩小范围");
+            }
+        } else {
+            throw new IllegalArgumentException("必须提供设备ID列表或支行/设备类型筛选条件");
+        }
 
-        double onlineRate = totalCount > 0 ? (onlineCount * 100.0 / totalCount) : 0;
-        stats.put("onlineRate", String.format("%.2f%%", onlineRate));
+        // 2. 已是目标状态的跳过
+        List<DeviceInfo> toChange = new ArrayList<>(targets.size());
+        for (DeviceInfo device : targets) {
+            if (status.equals(device.getStatus())) {
+                results.add(batchOutcome(device.getId(), device.getDeviceId(), device.getStatus(), status, "SKIPPED", "已是目标状态"));
+            } else {
+                toChange.add(device);
+            }
+        }
 
-        // 最近更新时间
-        stats.put("lastUpdateTime", new Date());
+        // 3. 分批集合更新：每批一个事务，先锁定目标行核对当前状态，只更新仍需变更的行（注册表可能落后于数据库）
+        int updated = 0;
+        for (int from = 0; from < toChange.size(); from += statusChunkSize) {
+            List<DeviceInfo> chunk = toChange.subList(from, Math.min(from + statusChunkSize, toChange.size()));
+            List<Integer> chunkIds = new ArrayList<>(chunk.size());
+            for (DeviceInfo device : chunk) {
+                chunkIds.add(device.getId());
+            }
+            List<DeviceInfo> changed = new ArrayList<>(chunk.size());
+            List<String> oldStatuses = new ArrayList<>(chunk.size());
+            List<Map<String, Object>> unchanged = new ArrayList<>();
+            try {
+                transactionTemplate.executeWithoutResult(tx -> {
+                    Map<Integer, String> current = new HashMap<>();
+                    for (DeviceInfo row : deviceInfoMapper.selectStatusForUpdate(chunkIds)) {
+                        current.put(row.getId(), row.getStatus());
+                    }
+                    for (DeviceInfo device : chunk) {
+                        String dbStatus = current.get(device.getId());
+                        if (dbStatus == null) {
+                            unchanged.add(batchOutcome(device.getId(), device.getDeviceId(), null, status, "NOT_FOUND", "设备不存在"));
+                        } else if (status.equals(dbStatus)) {
+                            unchanged.add(batchOutcome(device.getId(), device.getDeviceId(), dbStatus, status, "SKIPPED", "已是目标状态"));
+                        } else if (fromStatus != null && !fromStatus.equals(dbStatus)) {
+                            unchanged.add(batchOutcome(device.getId(), device.getDeviceId(), dbStatus, status, "SKIPPED", "当前状态不是" + fromStatus));
+                        } else {
+                            changed.add(device);
+                            oldStatuses.add(dbStatus);
+                        }
+                    }
+                    if (changed.isEmpty()) {
+                        return;
+                    }
+                    List<Integer> changedIds = new ArrayList<>(changed.size());
+                    for (DeviceInfo device : changed) {
+                        changedIds.add(device.getId());
+                    }
+                    Date now = new Date();
+                    deviceInfoMapper.updateStatusBatch(changedIds, status, now);
+                    for (DeviceInfo device : changed) {
+                        DeviceInfo after = DeviceRegistry.copyOf(device);
+                        after.setStatus(status);
+                        after.setUpdateTime(now);
+                        publishChange(device, after);
+                    }
+                    if ("ONLINE".equals(status)) {
+                        closeFaultRecords(changed, actor);
+                    } else if ("FAULT".equals(status)) {
+                        for (DeviceInfo device : changed) {
+                            openFaultRecord(device, DEFAULT_FAULT_CODE, DEFAULT_FAULT_LEVEL, changeReason);
+                        }
+                    }
+                });
+                auditBatchStatusChange(changed, oldStatuses, status, changeReason, actor);
+                results.addAll(unchanged);
+                for (int i = 0; i < changed.size(); i++) {
+                    DeviceInfo device = changed.get(i);
+                    results.add(batchOutcome(device.getId(), device.getDeviceId(), oldStatuses.get(i), status, "UPDATED", null));
+                }
+                updated += changed.size();
+            } catch (RuntimeException e) {
+                for (DeviceInfo device : chunk) {
+                    results.add(batchOutcome(device.getId(), device.getDeviceId(), device.getStatus(), status, "FAILED", e.getMessage()));
+                }
+            }
+        }
 
-        return stats;
+        Map<String, Object> result = new HashMap<>();
+        result.put("requested", results.size());
+        result.put("updated", updated);
+        result.put("results", results);
+        return result;
     }
 
-    @Override
-    public boolean markDeviceAsFault(Integer id, String faultReason) {
+    // 私有方法：打开故障记录并返回记录id；设备已有未关闭的记录（如 FAULT -> MAINTENANCE -> FAULT）时沿用原记录。
+    // 每台设备最多一条未关闭记录由唯一键 uk_open_fault 保证，并发打开时后到的事务沿用先提交的记录
+    private Integer openFaultRecord(DeviceInfo device, String faultCode, String faultLevel, String faultReason) {
+        Integer openId = faultStatsAggregator.getOpenFaultId(device.getDeviceId());
+        if (openId != null) {
+            return openId;
+        }
+        DeviceFaultRecord record = new DeviceFaultRecord();
+        record.setDeviceId(device.getDeviceId());
+        record.setFaultCode(faultCode);
+        record.setFaultLevel(faultLevel);
+        record.setFaultDescription(faultReason);
+        // 按秒取整，与 DATETIME 列一致，内存中的修复时长才和 downtime_duration 相同
+        record.setOccurrenceTime(new Date(System.currentTimeMillis() / 1000 * 1000));
         try {
-            // 1. 检查设备是否存在
-            DeviceInfo device = getDeviceById(id);
-            if (device == null) {
-                throw new RuntimeException("设备不存在，ID: " + id);
+            deviceFaultRecordMapper.insert(record);
+        } catch (DuplicateKeyException e) {
+            openId = deviceFaultRecordMapper.selectOpenId(device.getDeviceId());
+            if (openId == null) {
+                throw e;
             }
+            return openId;
+        }
+        afterCommit(() -> faultStatsAggregator.onOpen(device, record));
+        responseCache.invalidateAfterCommit();
+        return record.getId();
+    }
 
-            // 2. 银行业务规则：检查是否已经是故障状态
-            if ("FAULT".equals(device.getStatus())) {
-                System.out.println("设备已是故障状态，无需重复标记");
-                return false;
+    // 私有方法：设备恢复 ONLINE 时关闭其未关闭的故障记录，并在提交后计入修复时长统计
+    private void closeFaultRecords(List<DeviceInfo> devices, String actor) {
+        List<String> deviceIds = new ArrayList<>();
+        for (DeviceInfo device : devices) {
+            if (faultStatsAggregator.hasOpenFault(device.getDeviceId())) {
+                deviceIds.add(device.getDeviceId());
+            }
+        }
+        if (deviceIds.isEmpty()) {
+            return;
+        }
+        long recoveryTime = System.currentTimeMillis() / 1000 * 1000;
+        deviceFaultRecordMapper.closeOpenRecords(deviceIds, new Date(recoveryTime), actor);
+        afterCommit(() -> {
+            for (String deviceId : deviceIds) {
+                faultStatsAggregator.onClose(deviceId, recoveryTime);
             }
+        });
+        responseCache.invalidateAfterCommit();
+    }
 
-            // 3. 更新状态为故障
-            boolean success = changeDeviceStatus(id, "FAULT", faultReason);
+    // 私有方法：批量变更的审计记录（银行审计要求），整批入队后由审计日志异步写入
+    private void auditBatchStatusChange(List<DeviceInfo> changed, List<String> oldStatuses, String newStatus,
+                                        String changeReason, String actor) {
+        for (int i = 0; i < changed.size(); i++) {
+            statusAuditLog.record(changed.get(i).getDeviceId(), oldStatuses.get(i), newStatus, changeReason, actor);
+        }
+    }
 
-            if (success) {
-                // 4. 这里可以记录到故障表（后续开发）
-                System.out.printf("设备标记为故障 [ID: %d, 名称: %s], 原因: %s%n",
-                        id, device.getDeviceName(), faultReason);
+    private Map<String, Object> batchOutcome(Integer id, String deviceId, String from, String to,
+                                             String outcome, String message) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("deviceId", deviceId);
+        row.put("fromStatus", from);
+        row.put("toStatus", to);
+        row.put("outcome", outcome);
+        if (message != null) {
+            row.put("message", message);
+        }
+        return row;
+    }
 
-                // 5. 银行特色：发送通知（模拟）
-                sendFaultNotification(device, faultReason);
-            }
+    @Override
+    @Transactional(readOnly = true)
+    public DeviceStatistics getDeviceStatistics() {
+        // 设备总数和按状态统计（列式快照或内存计数器，不再查库）
+        boolean columnar = fleetSnapshot.isEnabled();
+        long totalCount = columnar ? fleetSnapshot.getTotalCount() : deviceStatsAggregator.getTotalCount();
 
-            return success;
-        } catch (Exception e) {
-            System.err.println("标记设备故障失败: " + e.getMessage());
+        // 计算在线率
+        long onlineCount = columnar ? fleetSnapshot.getStatusCount("ONLINE")
+                : deviceStatsAggregator.getStatusCount("ONLINE");
+        double onlineRate = totalCount > 0 ? (onlineCount * 100.0 / totalCount) : 0;
+
+        return new DeviceStatistics(totalCount,
+                columnar ? fleetSnapshot.getStatusDistribution() : deviceStatsAggregator.getStatusDistribution(),
+                String.format("%.2f%%", onlineRate), new Date());
+    }
+
+    @Override
+    public boolean markDeviceAsFault(Integer id, String faultReason) {
+        return markDeviceAsFault(id, DEFAULT_FAULT_CODE, DEFAULT_FAULT_LEVEL, faultReason);
+    }
+
+    @Override
+    public boolean markDeviceAsFault(Integer id, String faultCode, String faultLevel, String faultReason) {
+        String code = faultCode == null || faultCode.trim().isEmpty() ? DEFAULT_FAULT_CODE : faultCode.trim().toUpperCase();
+        String level = faultLevel == null || faultLevel.trim().isEmpty() ? DEFAULT_FAULT_LEVEL : faultLevel.trim().toUpperCase();
+        if (!VALID_FAULT_LEVEL.contains(level)) {
+            throw new IllegalArgumentException("无效的故障等级，可选 " + VALID_FAULT_LEVEL);
+        }
+        // 1. 检查设备是否存在
+        DeviceInfo device = getDeviceById(id);
+        if (device == null) {
+            throw new IllegalArgumentException("设备不存在，ID: " + id);
+        }
+
+        // 2. 银行业务规则：已经是故障状态的不重复标记
+        if ("FAULT".equals(device.getStatus())) {
             return false;
         }
-    }
 
-    // 私有方法：发送故障通知（模拟）
-    private void sendFaultNotification(DeviceInfo device, String reason) {
-        String message = String.format(
-                "【银行设备故障报警】\n设备: %s (%s)\n位置: %s\n状态: %s -> FAULT\n原因: %s\n时间: %s",
-                device.getDeviceName(), device.getDeviceId(),
-                device.getLocation(), device.getStatus(), reason,
-                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())
-        );
-        System.out.println("发送通知: " + message);
+        // 3. 更新状态为故障，并在同一事务中记录到故障表（设备恢复 ONLINE 时关闭）；任一步失败整体回滚
+        if (!updateStatus(device, "FAULT", faultReason, SYSTEM_ACTOR)) {
+            return false;
+        }
+        Integer faultId = openFaultRecord(device, code, level, faultReason);
+
+        // 4. 银行特色：发送通知（事务提交后异步入队，不占用请求事务），按故障记录去重
+        afterCommit(() -> faultNotifier.notifyFault(device, faultId, faultReason));
+        return true;
     }
 
     @Override
-    public Map<String, Object> searchDevices(String keyword, String deviceType, String branch) {
+    @Transactional(readOnly = true)
+    public Map<String, Object> searchDevices(String keyword, String deviceType, String branch,
+                                             Integer offset, Integer limit) {
         Map<String, Object> result = new HashMap<>();
 
         try {
+            if (offset != null && offset < 0) {
+                throw new IllegalArgumentException("offset 不能小于0");
+            }
+            if (limit != null && limit <= 0) {
+                throw new IllegalArgumentException("limit 必须大于0");
+            }
+
+            // 只按类型/支行筛选并分页时走列式快照，只取这一页的设备
+            if (fleetSnapshot.isEnabled() && limit != null && (keyword == null || keyword.trim().isEmpty())) {
+                int from = offset == null ? 0 : offset;
+                FleetSnapshot.SearchPage page = fleetSnapshot.search(deviceType, branch, from, limit);
+                Map<Integer, DeviceInfo> loaded = deviceRegistry.getByIds(page.ids());
+                List<DeviceInfo> devices = new ArrayList<>(page.ids().size());
+                for (Integer id : page.ids()) {
+                    DeviceInfo device = loaded.get(id);
+                    if (device != null) {
+                        devices.add(device);
+                    }
+                }
+                result.put("success", true);
+                result.put("total", page.total());
+                result.put("devices", devices);
+                result.put("offset", Math.min(from, page.total()));
+                result.put("limit", limit);
+                result.put("searchParams", searchParams(keyword, deviceType, branch));
+                return result;
+            }
 
-            // Java代码过滤
-            List<DeviceInfo> allDevices = deviceInfoMapper.selectAll();
-            List<DeviceInfo> filteredDevices = filterDevices(allDevices, keyword, deviceType, branch);
+            // 内存索引检索，不再全表查询
+            List<DeviceInfo> matched = deviceSearchIndex.search(keyword, deviceType, branch);
+
+            // 分页
+            int from = offset == null ? 0 : Math.min(offset, matched.size());
+            int to = limit == null ? matched.size() : (int) Math.min((long) from + limit, matched.size());
 
             // 构建结果
             result.put("success", true);
-            result.put("total", filteredDevices.size());
-            result.put("devices", filteredDevices);
+            result.put("total", matched.size());
+            result.put("devices", matched.subList(from, to));
+            result.put("offset", from);
+            result.put("limit", limit);
 
             // 搜索条件记录（便于调试）
-            Map<String, String> searchParams = new HashMap<>();
-            if (keyword != null) searchParams.put("keyword", keyword);
-            if (deviceType != null) searchParams.put("deviceType", deviceType);
-            if (branch != null) searchParams.put("branch", branch);
-            result.put("searchParams", searchParams);
+            result.put("searchParams", searchParams(keyword, deviceType, branch));
 
         } catch (Exception e) {
             result.put("success", false);
@@ -251,47 +794,16 @@ public class DeviceServiceImpl implements DeviceService {
         return result;
     }
 
-    // 辅助方法：Java代码过滤
-    private List<DeviceInfo> filterDevices(List<DeviceInfo> devices,
-                                           String keyword,
-                                           String deviceType,
-                                           String branch) {
-        List<DeviceInfo> filtered = new ArrayList<>();
-
-        for (DeviceInfo device : devices) {
-            boolean match = true;
-
-            // 关键词匹配（多个字段）
-            if (keyword != null && !keyword.trim().isEmpty()) {
-                String lowerKeyword = keyword.toLowerCase().trim();
-                match = match && (
-                        device.getDeviceName().toLowerCase().contains(lowerKeyword) ||
-                                device.getDeviceId().toLowerCase().contains(lowerKeyword) ||
-                                device.getLocation().toLowerCase().contains(lowerKeyword) ||
-                                (device.getBranch() != null && device.getBranch().toLowerCase().contains(lowerKeyword))
-                );
-            }
-
-            // 设备类型匹配
-            if (deviceType != null && !deviceType.trim().isEmpty()) {
-                match = match && deviceType.trim().equalsIgnoreCase(device.getDeviceType());
-            }
-
-            // 支行匹配
-            if (branch != null && !branch.trim().isEmpty()) {
-                match = match && device.getBranch() != null &&
-                        device.getBranch().toLowerCase().contains(branch.toLowerCase().trim());
-            }
-
-            if (match) {
-                filtered.add(device);
-            }
-        }
-
-        return filtered;
+    private static Map<String, String> searchParams(String keyword, String deviceType, String branch) {
+        Map<String, String> searchParams = new HashMap<>();
+        if (keyword != null) searchParams.put("keyword", keyword);
+        if (deviceType != null) searchParams.put("deviceType", deviceType);
+        if (branch != null) searchParams.put("branch", branch);
+        return searchParams;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<DeviceInfo> getDevicesByBranch(String branch) {
         if (branch == null || branch.trim().isEmpty()) {
             return Collections.emptyList();
@@ -307,61 +819,170 @@ public class DeviceServiceImpl implements DeviceService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Map<String, Object>> getWarrantyAlertDevices() {
-        return deviceInfoMapper.getWarrantyAlertDevices();
+        return warrantyIndex.getAlertDevices();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getWarrantyDevices(Integer fromDays, Integer toDays, String branch,
+                                                  String deviceType, int limit) {
+        if (limit <= 0 || limit > 10000) {
+            throw new IllegalArgumentException("limit 取值范围 1-10000");
+        }
+        return warrantyIndex.query(fromDays, toDays, branch, deviceType, limit);
     }
 
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Object> getFaultAnalysis() {
-        return deviceInfoMapper.getFaultAnalysis();
+        // 内存中按故障关闭增量维护，不再对 device_fault_record 做 GROUP BY
+        Map<String, Object> result = faultStatsAggregator.getFaultAnalysis();
+        result.put("timestamp", LocalDateTime.now());
+        return result;
     }
 
     @Override
-    public Map<String, Object> getBranchHealthStats() {
-        // 1. 获取原始数据统计
-        List<Map<String, Object>> branchStats = deviceInfoMapper.getBranchHealthStats();
+    @Transactional(readOnly = true)
+    public BranchHealthReport getBranchHealthStats() {
+        // 1. 从列式快照或内存计数器获取各支行统计
+        List<BranchHealth> branchStats = fleetSnapshot.isEnabled() ? fleetSnapshot.getBranchHealth()
+                : deviceStatsAggregator.getBranchHealth();
 
-        // 2. 计算总体在线率（修复类型转换）
+        // 2. 计算总体在线率
         long totalDevices = 0;
         long totalOnline = 0;
+        for (BranchHealth stat : branchStats) {
+            totalDevices += stat.total();
+            totalOnline += stat.online();
+        }
 
-        for (Map<String, Object> stat : branchStats) {
-            // 处理 total（BigDecimal -> Long）
-            Object totalObj = stat.get("total");
-            long total = 0;
-            if (totalObj instanceof BigDecimal) {
-                total = ((BigDecimal) totalObj).longValue();
-            } else if (totalObj instanceof Long) {
-                total = (Long) totalObj;
-            } else if (totalObj instanceof Integer) {
-                total = ((Integer) totalObj).longValue();
-            }
-            totalDevices += total;
-
-            // 处理 online（BigDecimal -> Long）
-            Object onlineObj = stat.get("online");
-            long online = 0;
-            if (onlineObj instanceof BigDecimal) {
-                online = ((BigDecimal) onlineObj).longValue();
-            } else if (onlineObj instanceof Long) {
-                online = (Long) onlineObj;
-            } else if (onlineObj instanceof Integer) {
-                online = ((Integer) onlineObj).longValue();
+        return new BranchHealthReport(branchStats, totalDevices > 0 ?
+                String.format("%.2f%%", totalOnline * 100.0 / totalDevices) : "0%", LocalDateTime.now());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getBreakdown(String groupBy, String branch, String deviceType, String vendor,
+                                            String status, int limit) {
+        if (limit <= 0 || limit > 10000) {
+            throw new IllegalArgumentException("limit 取值范围 1-10000");
+        }
+        List<FleetSnapshot.Dimension> dimensions = new ArrayList<>();
+        if (groupBy != null) {
+            for (String field : groupBy.split(",")) {
+                if (!field.isBlank()) {
+                    FleetSnapshot.Dimension dimension = FleetSnapshot.Dimension.of(field);
+                    if (!dimensions.contains(dimension)) {
+                        dimensions.add(dimension);
+                    }
+                }
             }
-            totalOnline += online;
+        }
+        Map<FleetSnapshot.Dimension, String> filters = new EnumMap<>(FleetSnapshot.Dimension.class);
+        putFilter(filters, FleetSnapshot.Dimension.BRANCH, branch);
+        putFilter(filters, FleetSnapshot.Dimension.DEVICE_TYPE, deviceType);
+        putFilter(filters, FleetSnapshot.Dimension.VENDOR, vendor);
+        putFilter(filters, FleetSnapshot.Dimension.STATUS, status);
+
+        // 内存列式快照上并行分组，不查库
+        long start = System.nanoTime();
+        List<Map<String, Object>> rows = fleetSnapshot.aggregate(dimensions, filters);
+        long matched = 0;
+        for (Map<String, Object> row : rows) {
+            matched += (Long) row.get("total");
         }
 
-        // 3. 返回结构化的数据
         Map<String, Object> result = new HashMap<>();
-        result.put("branchStats", branchStats);
-        result.put("overallOnlineRate", totalDevices > 0 ?
-                String.format("%.2f%%", totalOnline * 100.0 / totalDevices) : "0%");
+        result.put("groupBy", dimensions.stream().map(FleetSnapshot.Dimension::field).toList());
+        Map<String, String> filterParams = new HashMap<>();
+        filters.forEach((dimension, value) -> filterParams.put(dimension.field(), value));
+        result.put("filters", filterParams);
+        result.put("totalDevices", matched);
+        result.put("groupCount", rows.size());
+        result.put("groups", rows.size() > limit ? rows.subList(0, limit) : rows);
+        result.put("elapsedMs", (System.nanoTime() - start) / 1_000_000.0);
         result.put("timestamp", LocalDateTime.now());
-
         return result;
     }
 
+    private static void putFilter(Map<FleetSnapshot.Dimension, String> filters, FleetSnapshot.Dimension dimension,
+                                  String value) {
+        if (value != null && !value.trim().isEmpty()) {
+            filters.put(dimension, value.trim());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getCacheStats() {
+        return deviceRegistry.getStats();
+    }
+
+    // 私有方法：把更新请求中的非空字段合并到原记录的副本上（与 update 语句的 <if> 条件一致）
+    private DeviceInfo mergeUpdate(DeviceInfo existing, DeviceInfo changes) {
+        DeviceInfo merged = DeviceRegistry.copyOf(existing);
+        if (changes.getDeviceName() != null) merged.setDeviceName(changes.getDeviceName());
+        if (changes.getDeviceType() != null) merged.setDeviceType(changes.getDeviceType());
+        if (changes.getVendor() != null) merged.setVendor(changes.getVendor());
+        if (changes.getModel() != null) merged.setModel(changes.getModel());
+        if (changes.getIpAddress() != null) merged.setIpAddress(changes.getIpAddress());
+        if (changes.getLocation() != null) merged.setLocation(changes.getLocation());
+        if (changes.getBranch() != null) merged.setBranch(changes.getBranch());
+        if (changes.getStatus() != null) merged.setStatus(changes.getStatus());
+        if (changes.getInstallDate() != null) merged.setInstallDate(changes.getInstallDate());
+        if (changes.getWarrantyPeriod() != null) merged.setWarrantyPeriod(changes.getWarrantyPeriod());
+        merged.setUpdateTime(new Date());
+        return merged;
+    }
+
+    // 私有方法：设备变更后同步内存结构（before为空表示新增，after为空表示删除）
+    private void publishChange(DeviceInfo before, DeviceInfo after) {
+        afterCommit(() -> {
+            if (after == null) {
+                deviceRegistry.evict(before.getId());
+                deviceStatsAggregator.onDelete(before);
+                deviceSearchIndex.remove(before.getId());
+                fleetSnapshot.remove(before.getId());
+                warrantyIndex.remove(before.getId());
+                deviceEventStream.publishDelete(before);
+                livenessTracker.ifAvailable(tracker -> tracker.remove(before.getDeviceId()));
+                alertEngine.ifAvailable(engine -> engine.remove(before.getDeviceId()));
+            } else if (before == null) {
+                deviceRegistry.put(after);
+                deviceStatsAggregator.onInsert(after);
+                deviceSearchIndex.put(after);
+                fleetSnapshot.put(after);
+                warrantyIndex.put(after);
+                deviceEventStream.publishUpsert(null, after);
+            } else {
+                deviceRegistry.put(after);
+                deviceStatsAggregator.onUpdate(before, after);
+                deviceSearchIndex.put(after);
+                fleetSnapshot.put(after);
+                warrantyIndex.put(after);
+                deviceEventStream.publishUpsert(before, after);
+            }
+        });
+        responseCache.invalidateAfterCommit();
+    }
+
+    // 私有方法：事务提交后再执行（回滚时缓存保持原样）；无事务时立即执行
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     // 私有方法：添加设备时的验证
     private void validateDeviceForAdd(DeviceInfo device) {
         if (device.getDeviceId() == null || device.getDeviceId().isEmpty()) {
@@ -377,4 +998,35 @@ public class DeviceServiceImpl implements DeviceService {
             throw new IllegalArgumentException("设备位置不能为空");
         }
     }
-}
\ No newline at end of file
+
+    // 导入结果：错误明细最多保留 MAX_ERRORS 条
+    private static class ImportReport {
+        private static final int MAX_ERRORS = 1000;
+
+        int total;
+        int inserted;
+        int failed;
+        final List<Map<String, Object>> errors = new ArrayList<>();
+
+        void error(int line, String deviceId, String message) {
+            failed++;
+            if (errors.size() < MAX_ERRORS) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("line", line);
+                error.put("deviceId", deviceId);
+                error.put("message", message);
+                errors.add(error);
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("total", total);
+            result.put("inserted", inserted);
+            result.put("failed", failed);
+            result.put("errors", errors);
+            result.put("errorsTruncated", failed > errors.size());
+            return result;
+        }
+    }
+}
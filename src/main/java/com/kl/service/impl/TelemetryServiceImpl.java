@@ -0,0 +1,210 @@
+package com.kl.service.impl;
+
+import com.kl.alert.AlertEngine;
+import com.kl.entity.DeviceStatusLog;
+import com.kl.liveness.DeviceLivenessTracker;
+import com.kl.mapper.DeviceStatusLogMapper;
+import com.kl.rollup.TelemetryRollupEngine;
+import com.kl.service.TelemetryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class TelemetryServiceImpl implements TelemetryService, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(TelemetryServiceImpl.class);
+
+    @Autowired
+    private DeviceStatusLogMapper deviceStatusLogMapper;
+
+    @Autowired
+    private TelemetryRollupEngine telemetryRollupEngine;
+
+    @Autowired
+    private DeviceLivenessTracker deviceLivenessTracker;
+
+    @Autowired
+    private AlertEngine alertEngine;
+
+    @Value("${bank-monitor.telemetry.queue-capacity:50000}")
+    private int queueCapacity;
+
+    // 每条INSERT最多合并的行数
+    @Value("${bank-monitor.telemetry.batch-size:500}")
+    private int batchSize;
+
+    // 队列不满一批时，最多等待多久就落库
+    @Value("${bank-monitor.telemetry.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    private BlockingQueue<DeviceStatusLog> queue;
+    private Thread flushThread;
+    private volatile boolean running;
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong flushedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    @Override
+    public int submit(List<DeviceStatusLog> reports) {
+        if (reports == null || reports.isEmpty()) {
+            throw new IllegalArgumentException("上报数据不能为空");
+        }
+        for (DeviceStatusLog report : reports) {
+            validateReport(report);
+        }
+
+        Date now = new Date();
+        int accepted = 0;
+        List<String> heartbeats = new ArrayList<>(reports.size());
+        for (DeviceStatusLog report : reports) {
+            report.setStatus(report.getStatus().toUpperCase());
+            if (report.getLogTime() == null) {
+                report.setLogTime(now);
+            }
+            if (report.getNetworkStatus() == null) {
+                report.setNetworkStatus(1);
+            }
+            // 队列满：不阻塞请求线程，剩余部分交给调用方重试
+            if (!queue.offer(report)) {
+                break;
+            }
+            heartbeats.add(report.getDeviceId());
+            accepted++;
+        }
+        // 收到上报即算心跳，不等落库
+        deviceLivenessTracker.onHeartbeats(heartbeats);
+
+        acceptedCount.addAndGet(accepted);
+        rejectedCount.addAndGet(reports.size() - accepted);
+        return accepted;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DeviceStatusLog> getRecentLogs(String deviceId, int limit) {
+        if (deviceId == null || deviceId.isEmpty()) {
+            throw new IllegalArgumentException("设备唯一标识不能为空");
+        }
+        if (limit <= 0 || limit > 1000) {
+            throw new IllegalArgumentException("limit 取值范围 1-1000");
+        }
+        return deviceStatusLogMapper.selectRecentByDeviceId(deviceId, limit);
+    }
+
+    @Override
+    public Map<String, Object> getIngestStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueSize", queue == null ? 0 : queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("accepted", acceptedCount.get());
+        stats.put("rejected", rejectedCount.get());
+        stats.put("flushed", flushedCount.get());
+        stats.put("failed", failedCount.get());
+        stats.put("batches", batchCount.get());
+        return stats;
+    }
+
+    // 后台落库线程：攒批后一次性多行插入
+    private void flushLoop() {
+        List<DeviceStatusLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                DeviceStatusLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<DeviceStatusLog> batch) {
+        // 告警求值不依赖落库结果，先于写库执行以减少告警延迟
+        try {
+            alertEngine.evaluate(batch);
+        } catch (Exception e) {
+            log.warn("告警规则求值失败: {}", e.getMessage());
+        }
+        try {
+            deviceStatusLogMapper.batchInsert(batch);
+            flushedCount.addAndGet(batch.size());
+            batchCount.incrementAndGet();
+        } catch (Exception e) {
+            failedCount.addAndGet(batch.size());
+            log.warn("设备上报日志批量写入失败({}条): {}", batch.size(), e.getMessage());
+            return;
+        }
+        // 只有落库成功的数据进入降采样，聚合结果与原始日志一致
+        telemetryRollupEngine.accept(batch);
+    }
+
+    private void validateReport(DeviceStatusLog report) {
+        if (report == null) {
+            throw new IllegalArgumentException("上报数据不能为空");
+        }
+        if (report.getDeviceId() == null || report.getDeviceId().isEmpty()) {
+            throw new IllegalArgumentException("设备唯一标识(deviceId)不能为空");
+        }
+        if (report.getStatus() == null || report.getStatus().isEmpty()) {
+            throw new IllegalArgumentException("上报状态不能为空, 设备ID: " + report.getDeviceId());
+        }
+    }
+
+    @Override
+    public void start() {
+        if (batchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalStateException("telemetry batch-size 与 queue-capacity 必须大于0");
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        flushThread = new Thread(this::flushLoop, "telemetry-flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    @Override
+    public void stop() {
+        // 不打断落库线程：等它把队列剩余数据写完后自然退出
+        running = false;
+        if (flushThread != null) {
+            try {
+                flushThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 先于Web服务器启动、晚于其停止，保证接口可用时队列已就绪
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.kl.shard;
+
+import com.kl.entity.DeviceInfo;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 多个分片游标的归并：每个分片已按 (update_time DESC, id DESC) 有序，用小顶堆每次取全局最前的一条，
+ * 取够 limit 条即停止。第 i 个游标来自 i 号分片，取出时把 id 换算成全局 id。
+ */
+class MergedDeviceCursor implements Cursor<DeviceInfo> {
+
+    private final List<Cursor<DeviceInfo>> cursors;
+    private final Integer limit;
+    private boolean iteratorRetrieved;
+    private boolean consumed;
+    private int index = -1;
+
+    MergedDeviceCursor(List<Cursor<DeviceInfo>> cursors, Integer limit) {
+        this.cursors = cursors;
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean isOpen() {
+        for (Cursor<DeviceInfo> cursor : cursors) {
+            if (cursor.isOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return index;
+    }
+
+    @Override
+    public Iterator<DeviceInfo> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        iteratorRetrieved = true;
+
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, cursors.size()),
+                (a, b) -> ShardedDeviceInfoMapper.PAGE_ORDER.compare(a.device, b.device));
+        for (int shard = 0; shard < cursors.size(); shard++) {
+            Head head = new Head(cursors.get(shard).iterator(), shard);
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                boolean more = !heads.isEmpty() && (limit == null || index + 1 < limit);
+                if (!more) {
+                    consumed = true;
+                }
+                return more;
+            }
+
+            @Override
+            public DeviceInfo next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Head head = heads.poll();
+                DeviceInfo device = head.device;
+                if (head.advance()) {
+                    heads.add(head);
+                }
+                index++;
+                return device;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Cursor<DeviceInfo> cursor : cursors) {
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    static void closeQuietly(List<Cursor<DeviceInfo>> cursors) {
+        for (Cursor<DeviceInfo> cursor : cursors) {
+            try {
+                cursor.close();
+            } catch (IOException ignored) {
+                // 打开后续分片失败时的清理，保留原始异常
+            }
+        }
+    }
+
+    private static class Head {
+        final Iterator<DeviceInfo> iterator;
+        final int shard;
+        DeviceInfo device;
+
+        Head(Iterator<DeviceInfo> iterator, int shard) {
+            this.iterator = iterator;
+            this.shard = shard;
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            device = iterator.next();
+            ShardedDeviceInfoMapper.globalize(device, shard);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,673 @@
+package com.kl.shard;
+
+import com.kl.cache.DeviceRegistry;
+import com.kl.entity.DeviceInfo;
+import com.kl.entity.DevicePage;
+import com.kl.mapper.DeviceInfoMapper;
+import com.kl.mapper.DeviceShardMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 按支行分片的 device_info：每个分片一个数据源，0 号分片是 spring.datasource。
+ * <p>
+ * 设备在新增时按支行（branch-shards 配置，未配置的支行按哈希）确定分片，之后不再迁移；
+ * 修改支行不会移动数据行。全局 id = 分片号 &lt;&lt; 27 | 分片内自增 id，按 id 的操作直接定位分片，
+ * 0 号分片的 id 与分片前完全一致。按 deviceId 的查询先查 deviceId→分片 目录，未命中再广播。
+ * 统计、搜索等查询并行发往各分片后合并；0 号分片和已加入当前事务的分片在调用线程上执行，能看到事务中未提交的写入。
+ * 设备ID的全局唯一由 0 号分片的 device_shard 表保证：新增时先在表里占位，主键冲突即设备已存在。
+ * <p>
+ * 0 号分片由 Spring 事务管理器管理；读写事务中访问 1..N 号分片时，取一条关闭自动提交的连接绑定到事务上，
+ * 在 0 号分片提交前依次提交（失败则整个事务回滚），回滚时一起回滚。0 号分片在此之后提交失败时，
+ * 已提交的分片无法撤销，记录错误日志供人工核对。
+ */
+public class ShardedDeviceInfoMapper implements DeviceInfoMapper, InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedDeviceInfoMapper.class);
+
+    public static final int MAX_SHARDS = 16;
+    private static final int SHARD_BITS = 27;
+    private static final int LOCAL_MASK = (1 << SHARD_BITS) - 1;
+    private static final int BACKFILL_BATCH = 1000;
+
+    // 按全局游标排序：update_time 倒序（NULL 在最后），再按 id 倒序，与 selectPage 的 ORDER BY 一致
+    static final Comparator<DeviceInfo> PAGE_ORDER = Comparator
+            .comparing(DeviceInfo::getUpdateTime, Comparator.nullsFirst(Comparator.<Date>naturalOrder()))
+            .thenComparing(DeviceInfo::getId)
+            .reversed();
+
+    private final List<DeviceInfoMapper> shards;
+    // 1..N 号分片的数据源（下标为分片号减一），0 号分片的由 Spring 管理
+    private final List<DataSource> shardDataSources;
+    private final DeviceShardMapper deviceShardMapper;
+    private final Map<String, Integer> exactShards = new HashMap<>();
+    // 以 * 结尾的前缀规则，长的优先
+    private final List<Map.Entry<String, Integer>> prefixShards = new ArrayList<>();
+    private final ExecutorService scatterPool;
+
+    // deviceId -> 分片号，按访问顺序LRU；只是加速，未命中或过期时广播查询
+    private final LinkedHashMap<String, Integer> directory;
+
+    private final AtomicLong directoryHits = new AtomicLong();
+    private final AtomicLong directoryMisses = new AtomicLong();
+    private final AtomicLong scatterQueries = new AtomicLong();
+
+    public ShardedDeviceInfoMapper(List<DeviceInfoMapper> shards, List<? extends DataSource> shardDataSources,
+                                   DeviceShardMapper deviceShardMapper, String branchShards, int directorySize,
+                                   int scatterThreads) {
+        if (shards.isEmpty() || shards.size() > MAX_SHARDS) {
+            throw new IllegalStateException("分片数取值范围 1-" + MAX_SHARDS);
+        }
+        if (shardDataSources.size() != shards.size() - 1) {
+            throw new IllegalStateException("1..N 号分片的数据源数量与分片数不一致");
+        }
+        this.shards = List.copyOf(shards);
+        this.shardDataSources = List.copyOf(shardDataSources);
+        this.deviceShardMapper = deviceShardMapper;
+        parseBranchShards(branchShards);
+
+        this.directory = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > directorySize;
+            }
+        };
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scatterPool = Executors.newFixedThreadPool(Math.max(1, scatterThreads), r -> {
+            Thread thread = new Thread(r, "shard-scatter-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // device_shard 是在分片之后引入的：条数少于设备总数时，把各分片已有的设备ID补进去
+    @Override
+    public void afterPropertiesSet() {
+        int devices = countAll();
+        if (deviceShardMapper.countAll() >= devices) {
+            return;
+        }
+        int added = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<String> deviceIds = new ArrayList<>();
+            for (DeviceInfo device : shards.get(shard).selectAll()) {
+                deviceIds.add(device.getDeviceId());
+            }
+            for (int from = 0; from < deviceIds.size(); from += BACKFILL_BATCH) {
+                List<String> part = deviceIds.subList(from, Math.min(from + BACKFILL_BATCH, deviceIds.size()));
+                List<String> missing = new ArrayList<>(part);
+                missing.removeAll(new HashSet<>(deviceShardMapper.selectExisting(part)));
+                if (!missing.isEmpty()) {
+                    added += deviceShardMapper.insertBatch(missing, shard);
+                }
+            }
+        }
+        log.info("设备ID目录补齐 {} 条，设备总数 {}", added, devices);
+    }
+
+    // ==================== 分片定位 ====================
+
+    public int shardOfBranch(String branch) {
+        if (branch == null || branch.isBlank()) {
+            return 0;
+        }
+        String key = branch.trim();
+        Integer shard = exactShards.get(key);
+        if (shard != null) {
+            return shard;
+        }
+        for (Map.Entry<String, Integer> rule : prefixShards) {
+            if (key.startsWith(rule.getKey())) {
+                return rule.getValue();
+            }
+        }
+        return Math.floorMod(key.hashCode(), shards.size());
+    }
+
+    public static int shardOfId(Integer id) {
+        return id >>> SHARD_BITS;
+    }
+
+    private static int localId(Integer id) {
+        return id & LOCAL_MASK;
+    }
+
+    static DeviceInfo globalize(DeviceInfo device, int shard) {
+        if (device != null && device.getId() != null) {
+            int local = device.getId();
+            if (local > LOCAL_MASK) {
+                throw new IllegalStateException("分片 " + shard + " 的自增id超出范围: " + local);
+            }
+            device.setId(shard << SHARD_BITS | local);
+        }
+        return device;
+    }
+
+    private int checkedShardOf(Integer id) {
+        int shard = shardOfId(id);
+        if (shard >= shards.size()) {
+            throw new IllegalArgumentException("设备ID不属于任何分片: " + id);
+        }
+        return shard;
+    }
+
+    private DeviceInfoMapper shardFor(Integer id) {
+        return shard(checkedShardOf(id));
+    }
+
+    private Map<Integer, List<Integer>> groupIds(List<Integer> ids) {
+        Map<Integer, List<Integer>> byShard = new TreeMap<>();
+        for (Integer id : ids) {
+            byShard.computeIfAbsent(checkedShardOf(id), k -> new ArrayList<>()).add(localId(id));
+        }
+        return byShard;
+    }
+
+    private void remember(String deviceId, int shard) {
+        synchronized (directory) {
+            directory.put(deviceId, shard);
+        }
+    }
+
+    // 在调用线程上访问分片：读写事务中先让该分片加入事务
+    private DeviceInfoMapper shard(int index) {
+        joinTransaction(index);
+        return shards.get(index);
+    }
+
+    // ==================== 事务 ====================
+
+    // 1..N 号分片加入当前读写事务：绑定一条关闭自动提交的连接，MyBatis（SpringManagedTransaction）
+    // 通过 DataSourceUtils 复用这条连接、不自行提交；提交和回滚由 ShardTransaction 完成
+    private void joinTransaction(int shard) {
+        if (shard == 0 || !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly() || joined(shard)) {
+            return;
+        }
+        DataSource dataSource = shardDataSources.get(shard - 1);
+        Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new CannotGetJdbcConnectionException("分片 " + shard + " 获取连接失败", e);
+        }
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw new CannotGetJdbcConnectionException("分片 " + shard + " 开启事务失败", e);
+        }
+        ShardConnectionHolder holder = new ShardConnectionHolder(connection);
+        TransactionSynchronizationManager.bindResource(dataSource, holder);
+        TransactionSynchronizationManager.registerSynchronization(new ShardTransaction(shard, dataSource, holder));
+    }
+
+    private boolean joined(int shard) {
+        return shard == 0 || TransactionSynchronizationManager.getResource(shardDataSources.get(shard - 1))
+                instanceof ShardConnectionHolder;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("关闭分片连接失败: {}", e.getMessage());
+        }
+    }
+
+    // ==================== 按 id / deviceId 定位 ====================
+
+    @Override
+    public int insert(DeviceInfo deviceInfo) {
+        int shard = shardOfBranch(deviceInfo.getBranch());
+        deviceShardMapper.insertBatch(Collections.singletonList(deviceInfo.getDeviceId()), shard);
+        int rows = shard(shard).insert(deviceInfo);
+        globalize(deviceInfo, shard);
+        remember(deviceInfo.getDeviceId(), shard);
+        return rows;
+    }
+
+    @Override
+    public int batchInsert(List<DeviceInfo> devices) {
+        Map<Integer, List<DeviceInfo>> byShard = new TreeMap<>();
+        for (DeviceInfo device : devices) {
+            byShard.computeIfAbsent(shardOfBranch(device.getBranch()), k -> new ArrayList<>()).add(device);
+        }
+        int rows = 0;
+        for (Map.Entry<Integer, List<DeviceInfo>> entry : byShard.entrySet()) {
+            int shard = entry.getKey();
+            List<String> deviceIds = new ArrayList<>(entry.getValue().size());
+            for (DeviceInfo device : entry.getValue()) {
+                deviceIds.add(device.getDeviceId());
+            }
+            deviceShardMapper.insertBatch(deviceIds, shard);
+            rows += shard(shard).batchInsert(entry.getValue());
+            for (DeviceInfo device : entry.getValue()) {
+                globalize(device, shard);
+                remember(device.getDeviceId(), shard);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public int update(DeviceInfo device) {
+        DeviceInfoMapper shard = shardFor(device.getId());
+        DeviceInfo local = DeviceRegistry.copyOf(device);
+        local.setId(localId(device.getId()));
+        return shard.update(local);
+    }
+
+    @Override
+    public int updateStatus(Integer id, String status, Date updateTime) {
+        return shardFor(id).updateStatus(localId(id), status, updateTime);
+    }
+
+    @Override
+    public List<DeviceInfo> selectStatusForUpdate(List<Integer> ids) {
+        List<DeviceInfo> result = new ArrayList<>(ids.size());
+        for (Map.Entry<Integer, List<Integer>> entry : groupIds(ids).entrySet()) {
+            for (DeviceInfo device : shard(entry.getKey()).selectStatusForUpdate(entry.getValue())) {
+                result.add(globalize(device, entry.getKey()));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int updateStatusBatch(List<Integer> ids, String status, Date updateTime) {
+        int rows = 0;
+        for (Map.Entry<Integer, List<Integer>> entry : groupIds(ids).entrySet()) {
+            rows += shard(entry.getKey()).updateStatusBatch(entry.getValue(), status, updateTime);
+        }
+        return rows;
+    }
+
+    @Override
+    public int deleteById(Integer id) {
+        DeviceInfoMapper shard = shardFor(id);
+        DeviceInfo device = shard.selectById(localId(id));
+        if (device == null) {
+            return 0;
+        }
+        int rows = shard.deleteById(localId(id));
+        deviceShardMapper.delete(device.getDeviceId());
+        synchronized (directory) {
+            directory.remove(device.getDeviceId());
+        }
+        return rows;
+    }
+
+    @Override
+    public DeviceInfo selectById(Integer id) {
+        return globalize(shardFor(id).selectById(localId(id)), shardOfId(id));
+    }
+
+    @Override
+    public List<DeviceInfo> selectByIds(List<Integer> ids) {
+        List<DeviceInfo> result = new ArrayList<>(ids.size());
+        for (Map.Entry<Integer, List<Integer>> entry : groupIds(ids).entrySet()) {
+            for (DeviceInfo device : shard(entry.getKey()).selectByIds(entry.getValue())) {
+                result.add(globalize(device, entry.getKey()));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public DeviceInfo selectByDeviceId(String deviceId) {
+        Integer known;
+        synchronized (directory) {
+            known = directory.get(deviceId);
+        }
+        if (known != null) {
+            DeviceInfo device = shard(known).selectByDeviceId(deviceId);
+            if (device != null) {
+                directoryHits.incrementAndGet();
+                return globalize(device, known);
+            }
+        }
+        directoryMisses.incrementAndGet();
+
+        List<DeviceInfo> found = scatter(shard -> shard.selectByDeviceId(deviceId));
+        for (int shard = 0; shard < found.size(); shard++) {
+            if (found.get(shard) != null) {
+                remember(deviceId, shard);
+                return globalize(found.get(shard), shard);
+            }
+        }
+        return null;
+    }
+
+    // ==================== 广播查询 ====================
+
+    @Override
+    public List<DeviceInfo> selectAll() {
+        List<DeviceInfo> devices = scatterDevices(DeviceInfoMapper::selectAll);
+        devices.sort(PAGE_ORDER);
+        return devices;
+    }
+
+    @Override
+    public Cursor<DeviceInfo> selectPage(DevicePage page) {
+        // 游标在调用线程上依次打开，各分片按同一顺序流式返回，这里做多路归并
+        List<Cursor<DeviceInfo>> cursors = new ArrayList<>(shards.size());
+        try {
+            for (int shard = 0; shard < shards.size(); shard++) {
+                DevicePage shardPage = page.isHasCursor() ? page.withAfterId(localAfterId(page.getAfterId(), shard)) : page;
+                cursors.add(shard(shard).selectPage(shardPage));
+            }
+        } catch (RuntimeException e) {
+            MergedDeviceCursor.closeQuietly(cursors);
+            throw e;
+        }
+        return new MergedDeviceCursor(cursors, page.getLimit());
+    }
+
+    // 全局游标 id 换算为分片内的 id 上界：更小分片号的 id 全部在游标之后，更大的全部在之前
+    private static int localAfterId(Integer afterId, int shard) {
+        int cursorShard = shardOfId(afterId);
+        if (shard < cursorShard) {
+            return LOCAL_MASK + 1;
+        }
+        return shard > cursorShard ? 0 : localId(afterId);
+    }
+
+    @Override
+    public List<DeviceInfo> selectByStatus(String status) {
+        return scatterDevices(shard -> shard.selectByStatus(status));
+    }
+
+    @Override
+    public List<String> selectExistingDeviceIds(List<String> deviceIds) {
+        List<String> existing = new ArrayList<>();
+        for (List<String> part : scatter(shard -> shard.selectExistingDeviceIds(deviceIds))) {
+            existing.addAll(part);
+        }
+        return existing;
+    }
+
+    @Override
+    public List<DeviceInfo> selectByDeviceType(String deviceType) {
+        return scatterDevices(shard -> shard.selectByDeviceType(deviceType));
+    }
+
+    @Override
+    public List<DeviceInfo> selectByBranch(String branch) {
+        return scatterDevices(shard -> shard.selectByBranch(branch));
+    }
+
+    @Override
+    public List<DeviceInfo> searchByKeyword(String keyword) {
+        return scatterDevices(shard -> shard.searchByKeyword(keyword));
+    }
+
+    @Override
+    public List<DeviceInfo> selectWarrantyCandidates() {
+        return scatterDevices(DeviceInfoMapper::selectWarrantyCandidates);
+    }
+
+    @Override
+    public int countAll() {
+        int total = 0;
+        for (Integer count : scatter(DeviceInfoMapper::countAll)) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public List<Map<String, Object>> countByStatus() {
+        return sumCounts(scatter(DeviceInfoMapper::countByStatus), "status");
+    }
+
+    @Override
+    public List<Map<String, Object>> countByBranchAndStatus() {
+        return sumCounts(scatter(DeviceInfoMapper::countByBranchAndStatus), "branch", "status");
+    }
+
+    @Override
+    public List<Map<String, Object>> getBranchHealthStats() {
+        Map<Object, long[]> byBranch = new LinkedHashMap<>();
+        for (List<Map<String, Object>> part : scatter(DeviceInfoMapper::getBranchHealthStats)) {
+            for (Map<String, Object> row : part) {
+                long[] sums = byBranch.computeIfAbsent(row.get("branch"), k -> new long[3]);
+                sums[0] += ((Number) row.get("total")).longValue();
+                sums[1] += ((Number) row.get("online")).longValue();
+                sums[2] += ((Number) row.get("fault_count")).longValue();
+            }
+        }
+
+        List<Map<String, Object>> merged = new ArrayList<>(byBranch.size());
+        for (Map.Entry<Object, long[]> entry : byBranch.entrySet()) {
+            long[] sums = entry.getValue();
+            Map<String, Object> row = new HashMap<>();
+            row.put("branch", entry.getKey());
+            row.put("total", sums[0]);
+            row.put("online", sums[1]);
+            row.put("online_rate", sums[0] == 0 ? null :
+                    BigDecimal.valueOf(sums[1] * 100.0 / sums[0]).setScale(2, RoundingMode.HALF_UP));
+            row.put("fault_count", sums[2]);
+            merged.add(row);
+        }
+        merged.sort(Comparator.comparing((Map<String, Object> row) -> (BigDecimal) row.get("online_rate"),
+                Comparator.nullsLast(Comparator.<BigDecimal>reverseOrder())));
+        return merged;
+    }
+
+    // 按给定列分组，把各分片的 count 相加
+    private static List<Map<String, Object>> sumCounts(List<List<Map<String, Object>>> parts, String... keys) {
+        Map<List<Object>, Map<String, Object>> merged = new LinkedHashMap<>();
+        for (List<Map<String, Object>> part : parts) {
+            for (Map<String, Object> row : part) {
+                List<Object> key = new ArrayList<>(keys.length);
+                for (String column : keys) {
+                    key.add(row.get(column));
+                }
+                Map<String, Object> target = merged.get(key);
+                if (target == null) {
+                    target = new HashMap<>(row);
+                    target.put("count", ((Number) row.get("count")).longValue());
+                    merged.put(key, target);
+                } else {
+                    target.put("count", (Long) target.get("count") + ((Number) row.get("count")).longValue());
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private List<DeviceInfo> scatterDevices(Function<DeviceInfoMapper, List<DeviceInfo>> query) {
+        List<List<DeviceInfo>> parts = scatter(query);
+        int total = 0;
+        for (List<DeviceInfo> part : parts) {
+            total += part.size();
+        }
+        List<DeviceInfo> merged = new ArrayList<>(total);
+        for (int shard = 0; shard < parts.size(); shard++) {
+            for (DeviceInfo device : parts.get(shard)) {
+                merged.add(globalize(device, shard));
+            }
+        }
+        return merged;
+    }
+
+    // 未加入当前事务的分片提交到线程池，0 号分片和已加入事务的分片在调用线程上执行；结果按分片号排列
+    private <T> List<T> scatter(Function<DeviceInfoMapper, T> query) {
+        scatterQueries.incrementAndGet();
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            DeviceInfoMapper mapper = shards.get(shard);
+            futures.add(joined(shard) ? null : scatterPool.submit(() -> query.apply(mapper)));
+        }
+
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (int shard = 0; shard < shards.size(); shard++) {
+                Future<T> future = futures.get(shard);
+                results.add(future == null ? query.apply(shards.get(shard)) : future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                    : new IllegalStateException("分片查询失败: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("分片查询被中断", e);
+        } finally {
+            for (Future<T> future : futures) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    // ==================== 配置与统计 ====================
+
+    // 格式：北京分行=1,上海*=2；以 * 结尾按前缀匹配（如按地区前缀归并多个支行）
+    private void parseBranchShards(String branchShards) {
+        if (branchShards == null || branchShards.isBlank()) {
+            return;
+        }
+        for (String item : branchShards.split(",")) {
+            if (item.isBlank()) {
+                continue;
+            }
+            int sep = item.lastIndexOf('=');
+            if (sep <= 0) {
+                throw new IllegalStateException("branch-shards 格式错误: " + item);
+            }
+            String branch = item.substring(0, sep).trim();
+            int shard;
+            try {
+                shard = Integer.parseInt(item.substring(sep + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("branch-shards 分片号无效: " + item);
+            }
+            if (shard < 0 || shard >= shards.size()) {
+                throw new IllegalStateException("branch-shards 分片号超出范围 0-" + (shards.size() - 1) + ": " + item);
+            }
+            if (branch.endsWith("*")) {
+                prefixShards.add(Map.entry(branch.substring(0, branch.length() - 1), shard));
+            } else {
+                exactShards.put(branch, shard);
+            }
+        }
+        prefixShards.sort(Comparator.comparingInt((Map.Entry<String, Integer> rule) -> rule.getKey().length()).reversed());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("shards", shards.size());
+        stats.put("deviceCounts", scatter(DeviceInfoMapper::countAll));
+        synchronized (directory) {
+            stats.put("directorySize", directory.size());
+        }
+        stats.put("directoryHits", directoryHits.get());
+        stats.put("directoryMisses", directoryMisses.get());
+        stats.put("scatterQueries", scatterQueries.get());
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+        scatterPool.shutdownNow();
+        for (DataSource dataSource : shardDataSources) {
+            if (!(dataSource instanceof AutoCloseable closeable)) {
+                continue;
+            }
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("关闭分片数据源失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    // 标记由 joinTransaction 绑定的连接，区别于 DataSourceUtils 为自动提交读取绑定的连接
+    private static final class ShardConnectionHolder extends ConnectionHolder {
+        ShardConnectionHolder(Connection connection) {
+            super(connection);
+            setSynchronizedWithTransaction(true);
+        }
+    }
+
+    // 1..N 号分片在当前事务中的提交与回滚
+    private static final class ShardTransaction implements TransactionSynchronization {
+        private final int shard;
+        private final DataSource dataSource;
+        private final ShardConnectionHolder holder;
+        private boolean committed;
+
+        ShardTransaction(int shard, DataSource dataSource, ShardConnectionHolder holder) {
+            this.shard = shard;
+            this.dataSource = dataSource;
+            this.holder = holder;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(dataSource);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(dataSource, holder);
+        }
+
+        // 在 0 号分片提交前提交，这里抛出异常时事务管理器回滚整个事务
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            try {
+                holder.getConnection().commit();
+                committed = true;
+            } catch (SQLException e) {
+                throw new TransactionSystemException("分片 " + shard + " 提交失败: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(dataSource);
+            Connection connection = holder.getConnection();
+            try {
+                if (!committed) {
+                    connection.rollback();
+                } else if (status != STATUS_COMMITTED) {
+                    log.error("分片 {} 已提交，但 0 号分片的事务未提交，两边的设备数据可能不一致，需人工核对", shard);
+                }
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                log.error("分片 {} 回滚失败: {}", shard, e.getMessage());
+            } finally {
+                holder.clear();
+                closeQuietly(connection);
+            }
+        }
+    }
+}
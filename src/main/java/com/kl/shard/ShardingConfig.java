@@ -0,0 +1,83 @@
+package com.kl.shard;
+
+import com.kl.datasource.DataSourceRoutingConfig;
+import com.kl.datasource.PoolTuner;
+import com.kl.mapper.DeviceInfoMapper;
+import com.kl.mapper.DeviceShardMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * bank-monitor.sharding.enabled=true 时，用 ShardedDeviceInfoMapper 替换注入到各处的 DeviceInfoMapper。
+ * 0 号分片复用 MyBatis 自动配置的 deviceInfoMapper（spring.datasource），
+ * shard-urls 中的每个地址依次是 1、2…号分片，各自一个连接池和 SqlSessionFactory；
+ * 分片的 SqlSessionFactory 使用 SpringManagedTransaction，读写事务中复用 ShardedDeviceInfoMapper 绑定的连接。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "bank-monitor.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    @Primary
+    public ShardedDeviceInfoMapper shardedDeviceInfoMapper(
+            @Qualifier("deviceInfoMapper") DeviceInfoMapper defaultMapper,
+            DeviceShardMapper deviceShardMapper,
+            SqlSessionFactory sqlSessionFactory,
+            @Value("${bank-monitor.sharding.shard-urls:}") String shardUrls,
+            @Value("${bank-monitor.sharding.username:${spring.datasource.username:}}") String username,
+            @Value("${bank-monitor.sharding.password:${spring.datasource.password:}}") String password,
+            @Value("${spring.datasource.driver-class-name:}") String driverClassName,
+            @Value("${bank-monitor.sharding.branch-shards:}") String branchShards,
+            @Value("${bank-monitor.sharding.directory-size:1000000}") int directorySize,
+            @Value("${bank-monitor.sharding.scatter-threads:8}") int scatterThreads,
+            ObjectProvider<PoolTuner> poolTuner) {
+
+        List<DeviceInfoMapper> shards = new ArrayList<>();
+        List<HikariDataSource> pools = new ArrayList<>();
+        shards.add(defaultMapper);
+        for (String url : shardUrls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource pool = DataSourceRoutingConfig.pool("shard-" + shards.size(), url.trim(),
+                    username, password, driverClassName);
+            poolTuner.ifAvailable(tuner -> tuner.tune(pool));
+            pools.add(pool);
+            shards.add(shardMapper(pool, sqlSessionFactory));
+        }
+        return new ShardedDeviceInfoMapper(shards, pools, deviceShardMapper, branchShards, directorySize, scatterThreads);
+    }
+
+    // 分片的 MyBatis 配置沿用主 SqlSessionFactory 的下划线转驼峰、缓存和日志设置、拦截器（SQL指标）
+    private static DeviceInfoMapper shardMapper(DataSource dataSource, SqlSessionFactory template) {
+        org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
+        configuration.setMapUnderscoreToCamelCase(template.getConfiguration().isMapUnderscoreToCamelCase());
+        configuration.setCacheEnabled(template.getConfiguration().isCacheEnabled());
+        configuration.setLocalCacheScope(template.getConfiguration().getLocalCacheScope());
+        configuration.setLogImpl(template.getConfiguration().getLogImpl());
+        template.getConfiguration().getInterceptors().forEach(configuration::addInterceptor);
+        configuration.addMapper(DeviceInfoMapper.class);
+
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setConfiguration(configuration);
+        try {
+            return new SqlSessionTemplate(factoryBean.getObject()).getMapper(DeviceInfoMapper.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("分片 SqlSessionFactory 初始化失败: " + e.getMessage(), e);
+        }
+    }
+}
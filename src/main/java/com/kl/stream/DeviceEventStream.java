@@ -0,0 +1,267 @@
+package com.kl.stream;
+
+import com.kl.cache.DeviceSearchIndex;
+import com.kl.entity.DeviceInfo;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 设备变更推送（SSE）：连接建立时先推一次全量快照(snapshot)，之后只推增量(device)。
+ * 可按支行订阅，快照和每条增量都按支行过滤；设备调出订阅的支行时推送 delete。
+ * <p>
+ * 每个订阅者有自己的有界队列，由发送线程池按订阅者逐个发送，一个客户端卡住不影响其他客户端。
+ * 队列满或单次发送超过 send-timeout-ms 的订阅者直接断开，浏览器 EventSource 重连后重新拿快照。
+ * 快照在登记订阅者时入队，之后的增量排在快照后面，客户端收到的顺序与版本号一致。
+ */
+@Component
+public class DeviceEventStream implements InitializingBean, DisposableBean {
+
+    @Autowired
+    private DeviceSearchIndex deviceSearchIndex;
+
+    // 连接超时后浏览器 EventSource 会自动重连并重新拿快照
+    @Value("${bank-monitor.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${bank-monitor.stream.heartbeat-seconds:15}")
+    private long heartbeatSeconds;
+
+    // 每个订阅者待发送的事件数上限，超出说明客户端跟不上，断开让其重连
+    @Value("${bank-monitor.stream.queue-capacity:1000}")
+    private int queueCapacity;
+
+    // 单次发送的最长时间，超过视为客户端卡住
+    @Value("${bank-monitor.stream.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${bank-monitor.stream.send-threads:4}")
+    private int sendThreads;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // 登记订阅者和发布增量互斥：快照之后的增量一定会进入新订阅者的队列
+    private final Object publishLock = new Object();
+    private ExecutorService sender;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "device-event-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void afterPropertiesSet() {
+        AtomicLong threadIndex = new AtomicLong();
+        sender = Executors.newFixedThreadPool(Math.max(sendThreads, 1), r -> {
+            Thread thread = new Thread(r, "device-event-send-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 心跳同时检查卡住的订阅者
+        timer.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(null);
+    }
+
+    // branch 为空时订阅全部设备，否则只接收该支行（忽略大小写和首尾空格）的设备
+    public SseEmitter subscribe(String branch) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter,
+                branch == null || branch.trim().isEmpty() ? null : branch.trim());
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        synchronized (publishLock) {
+            List<DeviceInfo> devices = new ArrayList<>();
+            for (DeviceInfo device : deviceSearchIndex.search(null, null, null)) {
+                if (subscriber.accepts(device)) {
+                    devices.add(device);
+                }
+            }
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("version", sequence.get());
+            snapshot.put("total", devices.size());
+            snapshot.put("devices", devices);
+            if (subscriber.branch != null) {
+                snapshot.put("branch", subscriber.branch);
+            }
+            subscriber.offer(SseEmitter.event().name("snapshot").id(String.valueOf(sequence.get())).data(snapshot));
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    // 设备新增或更新（含状态变更）；before 为空表示新增
+    public void publishUpsert(DeviceInfo before, DeviceInfo after) {
+        Map<String, Object> upsert = new HashMap<>();
+        upsert.put("type", "upsert");
+        upsert.put("device", after);
+        // 按支行订阅、设备调出该支行的客户端收到删除
+        Map<String, Object> leave = before == null ? null : deleteEvent(after);
+        synchronized (publishLock) {
+            long seq = sequence.incrementAndGet();
+            upsert.put("seq", seq);
+            if (leave != null) {
+                leave.put("seq", seq);
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.accepts(after)) {
+                    subscriber.offer(event(seq, upsert));
+                } else if (before != null && subscriber.accepts(before)) {
+                    subscriber.offer(event(seq, leave));
+                }
+            }
+        }
+    }
+
+    public void publishDelete(DeviceInfo device) {
+        Map<String, Object> delete = deleteEvent(device);
+        synchronized (publishLock) {
+            long seq = sequence.incrementAndGet();
+            delete.put("seq", seq);
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.accepts(device)) {
+                    subscriber.offer(event(seq, delete));
+                }
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("dropped", droppedCount.get());
+        return stats;
+    }
+
+    private static Map<String, Object> deleteEvent(DeviceInfo device) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "delete");
+        event.put("id", device.getId());
+        event.put("deviceId", device.getDeviceId());
+        return event;
+    }
+
+    private static SseEmitter.SseEventBuilder event(long seq, Map<String, Object> data) {
+        return SseEmitter.event().name("device").id(String.valueOf(seq)).data(data);
+    }
+
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since > 0 && now - since > sendTimeoutMs) {
+                drop(subscriber, "发送超时");
+            } else {
+                subscriber.offer(SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    private void drop(Subscriber subscriber, String reason) {
+        if (subscriber.closed.compareAndSet(false, true)) {
+            subscribers.remove(subscriber);
+            subscriber.queue.clear();
+            droppedCount.incrementAndGet();
+            subscriber.emitter.completeWithError(new IllegalStateException("推送断开: " + reason));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+        if (sender != null) {
+            sender.shutdownNow();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.closed.set(true);
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final String branch;
+        final BlockingQueue<SseEmitter.SseEventBuilder> queue = new LinkedBlockingQueue<>(queueCapacity);
+        // 同一时刻只有一个发送任务，保证单个订阅者内的顺序
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile long sendingSince;
+
+        Subscriber(SseEmitter emitter, String branch) {
+            this.emitter = emitter;
+            this.branch = branch;
+        }
+
+        boolean accepts(DeviceInfo device) {
+            return branch == null || (device.getBranch() != null && branch.equalsIgnoreCase(device.getBranch().trim()));
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                drop(this, "待发送事件超过 " + queueCapacity + " 条");
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    sendingSince = System.currentTimeMillis();
+                    try {
+                        emitter.send(event);
+                    } catch (Exception e) {
+                        // 客户端已断开：移除订阅
+                        if (closed.compareAndSet(false, true)) {
+                            subscribers.remove(this);
+                            queue.clear();
+                            emitter.completeWithError(e);
+                        }
+                    } finally {
+                        sendingSince = 0;
+                    }
+                }
+            } finally {
+                draining.set(false);
+            }
+            // 退出前有新事件入队，重新调度
+            schedule();
+        }
+    }
+
+}
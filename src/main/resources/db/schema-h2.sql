@@ -0,0 +1,93 @@
+-- H2（MySQL兼容模式）建表脚本，仅用于 embedded 配置下本地验证，表结构与 README 中的 MySQL DDL 一致
+CREATE TABLE IF NOT EXISTS device_info (
+  id int NOT NULL AUTO_INCREMENT,
+  device_id varchar(64) NOT NULL,
+  device_name varchar(100) NOT NULL,
+  device_type varchar(50) NOT NULL,
+  vendor varchar(100) DEFAULT NULL,
+  model varchar(100) DEFAULT NULL,
+  ip_address varchar(45) DEFAULT NULL,
+  location varchar(200) NOT NULL,
+  branch varchar(100) DEFAULT NULL,
+  status varchar(20) DEFAULT 'offline',
+  install_date date DEFAULT NULL,
+  warranty_period int DEFAULT NULL,
+  create_time datetime DEFAULT CURRENT_TIMESTAMP,
+  update_time datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (id),
+  UNIQUE KEY uk_device_id (device_id),
+  KEY idx_location (location),
+  KEY idx_status (status),
+  KEY idx_update_time_id (update_time, id)
+);
+
+CREATE TABLE IF NOT EXISTS device_status_log (
+  id bigint NOT NULL AUTO_INCREMENT,
+  device_id varchar(64) NOT NULL,
+  status varchar(20) NOT NULL,
+  cpu_usage float DEFAULT NULL,
+  memory_usage float DEFAULT NULL,
+  disk_usage float DEFAULT NULL,
+  network_status tinyint DEFAULT 1,
+  temperature float DEFAULT NULL,
+  cash_level float DEFAULT NULL,
+  log_time datetime DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (id),
+  KEY idx_device_log_time (device_id, log_time),
+  KEY idx_log_time (log_time)
+);
+
+CREATE TABLE IF NOT EXISTS telemetry_rollup (
+  tier varchar(4) NOT NULL,
+  scope_type tinyint NOT NULL,
+  scope_key varchar(100) NOT NULL,
+  metric varchar(20) NOT NULL,
+  bucket_time datetime NOT NULL,
+  sample_count bigint NOT NULL,
+  min_value double NOT NULL,
+  max_value double NOT NULL,
+  sum_value double NOT NULL,
+  last_value double NOT NULL,
+  last_time datetime(3) NOT NULL,
+  PRIMARY KEY (tier, scope_type, scope_key, metric, bucket_time),
+  KEY idx_tier_time (tier, bucket_time)
+);
+
+CREATE TABLE IF NOT EXISTS device_fault_record (
+  id int NOT NULL AUTO_INCREMENT,
+  device_id varchar(64) NOT NULL,
+  fault_code varchar(50) NOT NULL,
+  fault_description text,
+  fault_level varchar(20) DEFAULT 'MEDIUM',
+  occurrence_time datetime NOT NULL,
+  recovery_time datetime DEFAULT NULL,
+  downtime_duration int GENERATED ALWAYS AS (TIMESTAMPDIFF(MINUTE, occurrence_time, recovery_time)),
+  open_device_id varchar(64) GENERATED ALWAYS AS (CASE WHEN recovery_time IS NULL THEN device_id END),
+  maintenance_person varchar(100) DEFAULT NULL,
+  solution text,
+  create_time datetime DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (id),
+  UNIQUE KEY uk_open_fault (open_device_id),
+  KEY idx_device_recovery (device_id, recovery_time),
+  KEY idx_occurrence_time (occurrence_time)
+);
+
+CREATE TABLE IF NOT EXISTS device_status_audit (
+  id bigint NOT NULL AUTO_INCREMENT,
+  seq bigint NOT NULL,
+  device_id varchar(64) NOT NULL,
+  old_status varchar(20) DEFAULT NULL,
+  new_status varchar(20) NOT NULL,
+  reason varchar(500) DEFAULT NULL,
+  actor varchar(100) DEFAULT NULL,
+  change_time datetime NOT NULL,
+  PRIMARY KEY (id),
+  UNIQUE KEY uk_seq (seq),
+  KEY idx_device_time (device_id, change_time)
+);
+
+CREATE TABLE IF NOT EXISTS device_shard (
+  device_id varchar(64) NOT NULL,
+  shard tinyint NOT NULL,
+  PRIMARY KEY (device_id)
+);
@@ -0,0 +1,133 @@
+package com.kl.alert;
+
+import com.kl.cache.DeviceRegistry;
+import com.kl.entity.DeviceInfo;
+import com.kl.entity.DeviceStatusLog;
+import com.kl.notify.FaultNotifier;
+import com.kl.service.DeviceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlertEngineTest {
+
+    private static final String TEMP_RULE = "{\"id\":\"temp-high\",\"metric\":\"temperature\",\"type\":\"SUSTAINED\","
+            + "\"operator\":\">\",\"threshold\":%s,\"durationSeconds\":60}";
+    private static final String CPU_RULE = "{\"id\":\"cpu-high\",\"metric\":\"cpu\",\"operator\":\">\",\"threshold\":90}";
+
+    @TempDir
+    Path dir;
+
+    private Path rulesFile;
+    private AlertEngine engine;
+    private final long t0 = System.currentTimeMillis();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rulesFile = dir.resolve("alert-rules.json");
+        writeRules(String.format(TEMP_RULE, 60), CPU_RULE);
+
+        DeviceRegistry registry = Mockito.mock(DeviceRegistry.class);
+        for (int id = 1; id <= 2; id++) {
+            DeviceInfo device = new DeviceInfo();
+            device.setId(id);
+            device.setDeviceId("ATM-A" + id);
+            device.setDeviceType("ATM");
+            Mockito.when(registry.getByDeviceId("ATM-A" + id)).thenReturn(device);
+        }
+
+        engine = new AlertEngine();
+        ReflectionTestUtils.setField(engine, "deviceRegistry", registry);
+        ReflectionTestUtils.setField(engine, "deviceService", Mockito.mock(DeviceService.class));
+        ReflectionTestUtils.setField(engine, "faultNotifier", Mockito.mock(FaultNotifier.class));
+        ReflectionTestUtils.setField(engine, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(engine, "objectMapper", new JsonMapper());
+        ReflectionTestUtils.setField(engine, "rulesLocation", rulesFile.toUri().toString());
+        ReflectionTestUtils.setField(engine, "recentSize", 10);
+        ReflectionTestUtils.setField(engine, "actionQueueCapacity", 10);
+        engine.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.stop();
+    }
+
+    @Test
+    void unchangedRuleKeepsSustainedStateAcrossReload() throws Exception {
+        sample("ATM-A1", 0, 70f, null);
+        engine.reloadRules();
+        sample("ATM-A1", 61, 70f, null);
+        assertEquals(1L, fired());
+    }
+
+    @Test
+    void activeAlertDoesNotFireAgainAfterReload() throws Exception {
+        sample("ATM-A1", 0, null, 95f);
+        assertEquals(1L, fired());
+        engine.reloadRules();
+        sample("ATM-A1", 1, null, 95f);
+        assertEquals(1L, fired());
+    }
+
+    @Test
+    void changedRuleStartsOver() throws Exception {
+        sample("ATM-A1", 0, 70f, null);
+        writeRules(String.format(TEMP_RULE, 65), CPU_RULE);
+        engine.reloadRules();
+        // 阈值变了，持续时间从这次上报重新计算
+        sample("ATM-A1", 61, 70f, null);
+        assertEquals(0L, fired());
+        sample("ATM-A1", 122, 70f, null);
+        assertEquals(1L, fired());
+    }
+
+    @Test
+    void reloadAndDeletePruneStates() throws Exception {
+        sample("ATM-A1", 0, 70f, null);
+        sample("ATM-A2", 0, 70f, null);
+        sample("ATM-UNKNOWN", 0, 70f, null);
+        assertEquals(3, engine.getStats().get("trackedDevices"));
+
+        // 未知设备和规则全部被删除/修改的设备状态在重新加载时丢弃
+        writeRules(String.format(TEMP_RULE, 65));
+        engine.reloadRules();
+        assertEquals(0, engine.getStats().get("trackedDevices"));
+
+        sample("ATM-A1", 1, 70f, null);
+        sample("ATM-A2", 1, 70f, null);
+        engine.remove("ATM-A2");
+        assertEquals(1, engine.getStats().get("trackedDevices"));
+    }
+
+    private void writeRules(String... rules) throws Exception {
+        Files.write(rulesFile, ("[" + String.join(",", rules) + "]").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sample(String deviceId, int seconds, Float temperature, Float cpu) {
+        DeviceStatusLog log = new DeviceStatusLog();
+        log.setDeviceId(deviceId);
+        log.setTemperature(temperature);
+        log.setCpuUsage(cpu);
+        log.setLogTime(new Date(t0 + seconds * 1000L));
+        engine.evaluate(Collections.singletonList(log));
+    }
+
+    private long fired() {
+        return (Long) engine.getStats().get("fired");
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.kl.audit;
+
+import com.kl.entity.DeviceStatusAudit;
+import com.kl.mapper.DeviceStatusAuditMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatusAuditLogTest {
+
+    // 约 560 字节一条，1MB 的段大约 1800 条
+    private static final String LONG_REASON = "x".repeat(500);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rollKeepsSegmentsUntilFlushedToDb() throws Exception {
+        StubMapper mapper = new StubMapper();
+        mapper.failing = true;
+        StatusAuditLog log = start(mapper);
+        try {
+            append(log, "ATM-ROLL", 5000);
+            int segments = (Integer) log.getStats().get("segments");
+            assertTrue(segments > 1, "应滚动出多个段");
+            // 数据库不可用：超出保留数的段都未落库，不能删除
+            assertTrue((Integer) log.getStats().get("unflushedSegments") >= segments - 1);
+            assertEquals(5000, log.query("ATM-ROLL", null, null, 10000).size());
+
+            mapper.failing = false;
+            flush(log);
+            assertEquals(5000, mapper.inserted.size());
+            assertEquals(0, log.getStats().get("unflushedSegments"));
+
+            // 落库追上后，下一次滚动删除已落库的段；新写入的记录所在段保留
+            append(log, "ATM-ROLL", 2000);
+            assertTrue((Integer) log.getStats().get("segments") < segments);
+            assertEquals(log.getStats().get("segments"), log.getStats().get("unflushedSegments"));
+            flush(log);
+            assertEquals(7000, mapper.inserted.size());
+        } finally {
+            log.stop();
+        }
+    }
+
+    @Test
+    void recoverReplaysRecordsAfterCheckpoint() throws Exception {
+        StubMapper mapper = new StubMapper();
+        StatusAuditLog log = start(mapper);
+        append(log, "ATM-RECOVER", 3);
+        flush(log);
+        assertEquals(3, mapper.inserted.size());
+
+        // 之后的记录未落库就停机
+        mapper.failing = true;
+        append(log, "ATM-RECOVER", 2);
+        log.stop();
+        assertEquals(3, mapper.inserted.size());
+
+        StubMapper restarted = new StubMapper();
+        StatusAuditLog recovered = start(restarted);
+        try {
+            assertEquals(5, recovered.query("ATM-RECOVER", null, null, 100).size());
+            flush(recovered);
+            List<Long> seqs = new ArrayList<>();
+            for (DeviceStatusAudit audit : restarted.inserted) {
+                seqs.add(audit.getSeq());
+            }
+            assertEquals(Arrays.asList(4L, 5L), seqs);
+
+            // 序号在重启后继续递增
+            append(recovered, "ATM-RECOVER", 1);
+            flush(recovered);
+            assertEquals(6L, restarted.inserted.get(2).getSeq());
+        } finally {
+            recovered.stop();
+        }
+    }
+
+    @Test
+    void seqContinuesFromDbWhenLocalDirIsEmpty() throws Exception {
+        // 本地目录是新的（清空或换机器），数据库里已有序号到 41 的记录
+        StubMapper mapper = new StubMapper();
+        mapper.maxSeq = 41L;
+        StatusAuditLog log = start(mapper);
+        try {
+            append(log, "ATM-SEQ", 2);
+            flush(log);
+            assertEquals(2, mapper.inserted.size());
+            assertEquals(42L, mapper.inserted.get(0).getSeq());
+            assertEquals(43L, log.getStats().get("checkpointSeq"));
+        } finally {
+            log.stop();
+        }
+    }
+
+    @Test
+    void recordsFlushedBeforeCheckpointAreNotReplayed() throws Exception {
+        StubMapper mapper = new StubMapper();
+        StatusAuditLog log = start(mapper);
+        append(log, "ATM-CRASH", 3);
+        flush(log);
+        mapper.failing = true;
+        append(log, "ATM-CRASH", 2);
+        log.stop();
+
+        // 模拟 4 号已落库、checkpoint 还没来得及写就停机
+        StubMapper restarted = new StubMapper();
+        restarted.maxSeq = 4L;
+        StatusAuditLog recovered = start(restarted);
+        try {
+            flush(recovered);
+            assertEquals(1, restarted.inserted.size());
+            assertEquals(5L, restarted.inserted.get(0).getSeq());
+        } finally {
+            recovered.stop();
+        }
+    }
+
+    @Test
+    void seqCollisionFailsInsteadOfDroppingRecords() throws Exception {
+        StubMapper mapper = new StubMapper();
+        StatusAuditLog log = start(mapper);
+        try {
+            // 另一个实例已写入了同样的序号
+            mapper.seqs.add(1L);
+            append(log, "ATM-DUP", 1);
+            flush(log);
+            assertTrue(mapper.inserted.isEmpty());
+            assertEquals(1L, log.getStats().get("dbFailed"));
+            assertEquals(0L, log.getStats().get("checkpointSeq"));
+        } finally {
+            log.stop();
+        }
+    }
+
+    private StatusAuditLog start(DeviceStatusAuditMapper mapper) {
+        StatusAuditLog log = new StatusAuditLog();
+        ReflectionTestUtils.setField(log, "deviceStatusAuditMapper", mapper);
+        ReflectionTestUtils.setField(log, "dir", dir.toString());
+        ReflectionTestUtils.setField(log, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(log, "retainSegments", 1);
+        ReflectionTestUtils.setField(log, "unflushedSegmentsWarn", 100);
+        ReflectionTestUtils.setField(log, "queueCapacity", 1000);
+        // 落库由测试手动触发
+        ReflectionTestUtils.setField(log, "dbFlushIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(log, "dbBatchSize", 500);
+        log.start();
+        return log;
+    }
+
+    private static void append(StatusAuditLog log, String deviceId, int count) throws InterruptedException {
+        long target = (Long) log.getStats().get("appended") + count;
+        for (int i = 0; i < count; i++) {
+            log.record(deviceId, "ONLINE", "FAULT", LONG_REASON, "test");
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((Long) log.getStats().get("appended") < target) {
+            assertTrue(System.currentTimeMillis() < deadline, "写线程未在10秒内写完");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void flush(StatusAuditLog log) {
+        ReflectionTestUtils.invokeMethod(log, "flushToDb");
+    }
+
+    private static final class StubMapper implements DeviceStatusAuditMapper {
+        final List<DeviceStatusAudit> inserted = new ArrayList<>();
+        final Set<Long> seqs = new HashSet<>();
+        volatile boolean failing;
+        Long maxSeq;
+
+        // 与 uk_seq 一致：有一条序号冲突时整批失败
+        @Override
+        public int batchInsert(List<DeviceStatusAudit> audits) {
+            if (failing) {
+                throw new IllegalStateException("数据库不可用");
+            }
+            for (DeviceStatusAudit audit : audits) {
+                if (seqs.contains(audit.getSeq())) {
+                    throw new DuplicateKeyException("Duplicate entry '" + audit.getSeq() + "' for key 'uk_seq'");
+                }
+            }
+            for (DeviceStatusAudit audit : audits) {
+                seqs.add(audit.getSeq());
+            }
+            inserted.addAll(audits);
+            return audits.size();
+        }
+
+        @Override
+        public Long selectMaxSeq() {
+            return maxSeq;
+        }
+
+        @Override
+        public List<DeviceStatusAudit> selectByDeviceAndTime(String deviceId, Date from, Date to, int limit) {
+            return Collections.emptyList();
+        }
+    }
+
+}
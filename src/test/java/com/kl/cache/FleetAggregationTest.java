@@ -0,0 +1,192 @@
+package com.kl.cache;
+
+import com.kl.cache.FleetSnapshot.Dimension;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 分组统计与逐台设备直接计算的结果对比；设备数超过 LEAF_ROWS，扫描会拆成多个 fork-join 任务再合并
+class FleetAggregationTest {
+
+    private static final int DEVICES = 3 * FleetAggregation.LEAF_ROWS + 1234;
+    private static final String[] STATUSES = {"ONLINE", "OFFLINE", "FAULT", "MAINTENANCE"};
+
+    private final List<DeviceInfo> devices = new ArrayList<>();
+    private final LocalDate today = LocalDate.now();
+
+    private FleetSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(7);
+        for (int id = 1; id <= DEVICES; id++) {
+            DeviceInfo device = new DeviceInfo();
+            device.setId(id);
+            device.setDeviceId("AGG-" + id);
+            // 40 个支行 × 40 个厂商 × 6 种类型超过 DENSE_GROUPS，三维分组走哈希表
+            device.setBranch(random.nextInt(50) == 0 ? null : "支行" + random.nextInt(40));
+            device.setVendor(random.nextInt(20) == 0 ? null : "厂商" + random.nextInt(40));
+            device.setDeviceType("T" + random.nextInt(6));
+            device.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+            if (random.nextInt(10) > 0) {
+                device.setInstallDate(toDate(today.minusDays(random.nextInt(3000))));
+                device.setWarrantyPeriod(random.nextInt(5) == 0 ? null : 12 + random.nextInt(60));
+            }
+            devices.add(device);
+        }
+        // 字面值为“未分配支行”的设备与支行为空的合并
+        devices.get(0).setBranch(DeviceStatsAggregator.UNASSIGNED_BRANCH);
+
+        snapshot = new FleetSnapshot();
+        ReflectionTestUtils.setField(snapshot, "deviceInfoMapper", Mockito.mock(DeviceInfoMapper.class));
+        ReflectionTestUtils.setField(snapshot, "enabled", true);
+        ReflectionTestUtils.setField(snapshot, "parallelism", 4);
+        snapshot.afterPropertiesSet();
+        snapshot.rebuild(devices);
+    }
+
+    @AfterEach
+    void tearDown() {
+        snapshot.destroy();
+    }
+
+    @Test
+    void denseGroupingMatchesDirectComputation() {
+        assertMatches(List.of(Dimension.BRANCH, Dimension.STATUS), Map.of());
+        assertMatches(List.of(Dimension.DEVICE_TYPE), Map.of(Dimension.STATUS, "online"));
+        assertMatches(List.of(), Map.of());
+        assertMatches(List.of(Dimension.VENDOR), Map.of(Dimension.BRANCH, DeviceStatsAggregator.UNASSIGNED_BRANCH));
+    }
+
+    @Test
+    void hashedGroupingMatchesDirectComputation() {
+        assertMatches(List.of(Dimension.BRANCH, Dimension.VENDOR, Dimension.DEVICE_TYPE), Map.of());
+        assertMatches(List.of(Dimension.VENDOR, Dimension.BRANCH, Dimension.DEVICE_TYPE, Dimension.STATUS),
+                Map.of(Dimension.DEVICE_TYPE, "t3"));
+    }
+
+    @Test
+    void hashedPartialsMergeAcrossResize() {
+        FleetAggregation.Partial left = new FleetAggregation.Partial(0);
+        FleetAggregation.Partial right = new FleetAggregation.Partial(0);
+        // 左边 300 个键触发多次扩容，右边与左边有 100 个键重叠
+        for (long key = 0; key < 300; key++) {
+            add(left, key << 16, key + 1);
+        }
+        for (long key = 200; key < 350; key++) {
+            add(right, key << 16, 1000);
+        }
+
+        FleetAggregation.Partial merged = right.merge(left);
+        Map<Long, Long> totals = new HashMap<>();
+        for (int slot = 0; slot < merged.slots(); slot++) {
+            if (merged.occupied(slot)) {
+                totals.put(merged.key(slot), merged.metrics[slot * FleetAggregation.METRICS + FleetAggregation.TOTAL]);
+            }
+        }
+        assertEquals(350, totals.size());
+        for (long key = 0; key < 350; key++) {
+            long expected = (key < 300 ? key + 1 : 0) + (key >= 200 ? 1000 : 0);
+            assertEquals(expected, totals.get(key << 16), "key " + key);
+        }
+    }
+
+    // 先取槽位再取 metrics：slotOf 扩容时会换掉数组
+    private static void add(FleetAggregation.Partial partial, long key, long total) {
+        int base = partial.slotOf(key) * FleetAggregation.METRICS;
+        partial.metrics[base + FleetAggregation.TOTAL] += total;
+    }
+
+    private void assertMatches(List<Dimension> groupBy, Map<Dimension, String> filters) {
+        Map<List<String>, long[]> expected = new HashMap<>();
+        int todayDay = (int) today.toEpochDay();
+        for (DeviceInfo device : devices) {
+            if (!accepted(device, filters)) {
+                continue;
+            }
+            List<String> labels = new ArrayList<>();
+            for (Dimension dimension : groupBy) {
+                labels.add(label(device, dimension));
+            }
+            long[] sum = expected.computeIfAbsent(labels, k -> new long[FleetAggregation.METRICS]);
+            sum[FleetAggregation.TOTAL]++;
+            if ("ONLINE".equals(device.getStatus())) {
+                sum[FleetAggregation.ONLINE]++;
+            } else if ("FAULT".equals(device.getStatus())) {
+                sum[FleetAggregation.FAULT]++;
+            }
+            if (device.getInstallDate() != null) {
+                LocalDate install = toLocalDate(device.getInstallDate());
+                if (device.getWarrantyPeriod() != null && install.plusMonths(device.getWarrantyPeriod()).isBefore(today)) {
+                    sum[FleetAggregation.WARRANTY_EXPIRED]++;
+                }
+                sum[FleetAggregation.AGE_DAYS_SUM] += todayDay - install.toEpochDay();
+                sum[FleetAggregation.AGE_COUNT]++;
+            }
+        }
+
+        List<Map<String, Object>> rows = snapshot.aggregate(groupBy, filters);
+        assertEquals(expected.size(), rows.size(), groupBy + " " + filters);
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> row = rows.get(i);
+            if (i > 0) {
+                assertTrue((Long) rows.get(i - 1).get("total") >= (Long) row.get("total"));
+            }
+            List<String> labels = new ArrayList<>();
+            for (Dimension dimension : groupBy) {
+                labels.add((String) row.get(dimension.field()));
+            }
+            long[] sum = expected.get(labels);
+            assertNotNull(sum, "多出的分组 " + labels);
+            assertEquals(sum[FleetAggregation.TOTAL], row.get("total"), labels.toString());
+            assertEquals(sum[FleetAggregation.ONLINE], row.get("online"), labels.toString());
+            assertEquals(sum[FleetAggregation.FAULT], row.get("faultCount"), labels.toString());
+            assertEquals(sum[FleetAggregation.WARRANTY_EXPIRED], row.get("warrantyExpired"), labels.toString());
+            long aged = sum[FleetAggregation.AGE_COUNT];
+            assertEquals(aged == 0 ? null : Math.round(sum[FleetAggregation.AGE_DAYS_SUM] * 10.0 / aged) / 10.0,
+                    row.get("avgAgeDays"), labels.toString());
+        }
+    }
+
+    private static boolean accepted(DeviceInfo device, Map<Dimension, String> filters) {
+        for (Map.Entry<Dimension, String> filter : filters.entrySet()) {
+            String label = label(device, filter.getKey());
+            if (label == null || !label.equalsIgnoreCase(filter.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String label(DeviceInfo device, Dimension dimension) {
+        switch (dimension) {
+            case BRANCH:
+                return device.getBranch() == null ? DeviceStatsAggregator.UNASSIGNED_BRANCH : device.getBranch();
+            case DEVICE_TYPE:
+                return device.getDeviceType();
+            case VENDOR:
+                return device.getVendor();
+            default:
+                return device.getStatus();
+        }
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.kl.cache;
+
+import com.kl.dto.BranchHealth;
+import com.kl.dto.StatusCount;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 同一串增删改同时喂给列式快照、计数聚合和搜索索引，快照的统计和分页结果应与后两者一致
+class FleetSnapshotTest {
+
+    private static final String[] BRANCHES = {"北京朝阳支行", "北京海淀支行", " 上海浦东支行 ", "广州天河支行", null};
+    private static final String[] TYPES = {"ATM", "CRS", "VTM"};
+    private static final String[] STATUSES = {"ONLINE", "OFFLINE", "FAULT", "MAINTENANCE"};
+
+    private final Random random = new Random(42);
+    private final Map<Integer, DeviceInfo> devices = new HashMap<>();
+
+    private FleetSnapshot snapshot;
+    private DeviceStatsAggregator aggregator;
+    private DeviceSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        DeviceInfoMapper mapper = Mockito.mock(DeviceInfoMapper.class);
+        snapshot = new FleetSnapshot();
+        ReflectionTestUtils.setField(snapshot, "deviceInfoMapper", mapper);
+        ReflectionTestUtils.setField(snapshot, "enabled", true);
+        ReflectionTestUtils.setField(snapshot, "parallelism", 2);
+        snapshot.afterPropertiesSet();
+
+        aggregator = new DeviceStatsAggregator();
+        ReflectionTestUtils.setField(aggregator, "deviceInfoMapper", mapper);
+        aggregator.afterPropertiesSet();
+
+        searchIndex = new DeviceSearchIndex();
+        ReflectionTestUtils.setField(searchIndex, "deviceInfoMapper", mapper);
+        searchIndex.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        snapshot.destroy();
+    }
+
+    @Test
+    void matchesAggregatorAndSearchIndexThroughUpdatesDeletesAndRowReuse() {
+        for (int id = 1; id <= 400; id++) {
+            add(device(id));
+        }
+        assertConsistent();
+
+        // 状态变更
+        for (int i = 0; i < 300; i++) {
+            DeviceInfo before = devices.get(1 + random.nextInt(400));
+            DeviceInfo after = DeviceRegistry.copyOf(before);
+            after.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+            after.setUpdateTime(new Date(1_700_000_000_000L + random.nextInt(50) * 1000L));
+            update(before, after);
+        }
+        assertConsistent();
+
+        // 删除一部分，再新增：快照复用空出的行号
+        List<Integer> ids = new ArrayList<>(devices.keySet());
+        Collections.shuffle(ids, random);
+        for (Integer id : ids.subList(0, 150)) {
+            delete(devices.get(id));
+        }
+        assertConsistent();
+        assertEquals(150, snapshot.getStats().get("freeRows"));
+
+        for (int id = 1001; id <= 1100; id++) {
+            add(device(id));
+        }
+        assertEquals(50, snapshot.getStats().get("freeRows"));
+        assertConsistent();
+
+        // 更新支行：旧支行计数减少、新支行增加
+        DeviceInfo moved = devices.values().iterator().next();
+        DeviceInfo after = DeviceRegistry.copyOf(moved);
+        after.setBranch("深圳南山支行");
+        update(moved, after);
+        assertConsistent();
+    }
+
+    @Test
+    void searchPagesFollowNewestFirstOrder() {
+        // 更新时间大量重复且有空值，检验堆排序在时间相同时按id倒序、空值排最后
+        for (int id = 1; id <= 120; id++) {
+            DeviceInfo device = device(id);
+            device.setUpdateTime(id % 7 == 0 ? null : new Date(1_700_000_000_000L + (id % 5) * 1000L));
+            add(device);
+        }
+        assertPages(null, null);
+        assertPages("atm", null);
+        assertPages(null, "北京");
+        assertPages("CRS", "支行");
+        assertPages("POS", null);
+
+        FleetSnapshot.SearchPage empty = snapshot.search(null, "北京", 0, 0);
+        assertTrue(empty.ids().isEmpty());
+        assertEquals(searchIndex.search(null, null, "北京").size(), empty.total());
+    }
+
+    private void assertConsistent() {
+        assertEquals(aggregator.getTotalCount(), snapshot.getTotalCount());
+        for (String status : STATUSES) {
+            assertEquals(aggregator.getStatusCount(status), snapshot.getStatusCount(status), status);
+        }
+        assertEquals(new HashSet<>(aggregator.getStatusDistribution()), new HashSet<>(snapshot.getStatusDistribution()));
+        assertEquals(byBranch(aggregator.getBranchHealth()), byBranch(snapshot.getBranchHealth()));
+        assertSortedByOnlineRate(snapshot.getBranchHealth());
+
+        assertPages(null, null);
+        assertPages("ATM", "北京");
+        assertPages("vtm", null);
+        assertPages(null, "上海");
+    }
+
+    // 各种 offset/limit 下快照的分页与搜索索引全量结果截取的那一段相同
+    private void assertPages(String type, String branch) {
+        List<Integer> expected = new ArrayList<>();
+        for (DeviceInfo device : searchIndex.search(null, type, branch)) {
+            expected.add(device.getId());
+        }
+        int[][] pages = {{0, 10}, {0, 1}, {5, 20}, {0, expected.size() + 5}, {expected.size(), 10}, {expected.size() + 3, 5}};
+        for (int[] page : pages) {
+            FleetSnapshot.SearchPage result = snapshot.search(type, branch, page[0], page[1]);
+            assertEquals(expected.size(), result.total());
+            int from = Math.min(page[0], expected.size());
+            int to = Math.min(page[0] + page[1], expected.size());
+            assertEquals(expected.subList(from, to), result.ids(), type + "/" + branch + " " + Arrays.toString(page));
+        }
+    }
+
+    private static Map<String, BranchHealth> byBranch(List<BranchHealth> rows) {
+        Map<String, BranchHealth> result = new HashMap<>();
+        for (BranchHealth row : rows) {
+            assertNull(result.put(row.branch(), row), "支行重复: " + row.branch());
+        }
+        return result;
+    }
+
+    private static void assertSortedByOnlineRate(List<BranchHealth> rows) {
+        for (int i = 1; i < rows.size(); i++) {
+            assertTrue(rows.get(i - 1).onlineRate() >= rows.get(i).onlineRate());
+        }
+    }
+
+    private void add(DeviceInfo device) {
+        devices.put(device.getId(), device);
+        snapshot.put(device);
+        aggregator.onInsert(device);
+        searchIndex.put(device);
+    }
+
+    private void update(DeviceInfo before, DeviceInfo after) {
+        devices.put(after.getId(), after);
+        snapshot.put(after);
+        aggregator.onUpdate(before, after);
+        searchIndex.put(after);
+    }
+
+    private void delete(DeviceInfo device) {
+        devices.remove(device.getId());
+        snapshot.remove(device.getId());
+        aggregator.onDelete(device);
+        searchIndex.remove(device.getId());
+    }
+
+    private DeviceInfo device(int id) {
+        DeviceInfo device = new DeviceInfo();
+        device.setId(id);
+        device.setDeviceId("FS-" + id);
+        device.setDeviceName("快照测试" + id);
+        device.setDeviceType(TYPES[random.nextInt(TYPES.length)]);
+        device.setBranch(BRANCHES[random.nextInt(BRANCHES.length)]);
+        device.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+        device.setUpdateTime(new Date(1_700_000_000_000L + random.nextInt(50) * 1000L));
+        return device;
+    }
+
+}
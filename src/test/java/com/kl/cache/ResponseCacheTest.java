@@ -0,0 +1,128 @@
+package com.kl.cache;
+
+import com.kl.dto.WireFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private String body = "{\"total\":1}";
+
+    private ResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ResponseCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxAgeSeconds", 30L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 256);
+        ReflectionTestUtils.setField(cache, "maxEntryKb", 2048);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(cache);
+    }
+
+    @Test
+    void ifNoneMatchReturnsNotModified() {
+        ResponseEntity<byte[]> first = serve(null);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertArrayEquals(body.getBytes(StandardCharsets.UTF_8), first.getBody());
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+
+        // 弱校验前缀、多个值、* 都能匹配
+        for (String ifNoneMatch : new String[]{etag, "W/" + etag, "\"other\", " + etag, "*"}) {
+            ResponseEntity<byte[]> response = serve(ifNoneMatch);
+            assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode(), ifNoneMatch);
+            assertNull(response.getBody());
+            assertEquals(etag, response.getHeaders().getETag());
+        }
+        for (String ifNoneMatch : new String[]{"", "\"other\"", etag.replace("\"", "")}) {
+            assertEquals(HttpStatus.OK, serve(ifNoneMatch).getStatusCode(), ifNoneMatch);
+        }
+        assertEquals(1, loads.get());
+        assertEquals(4L, cache.getStats().get("notModified"));
+    }
+
+    @Test
+    void newVersionReloadsAndEtagFollowsContent() {
+        String etag = serve(null).getHeaders().getETag();
+
+        // 内容没变：重新计算后 ETag 不变，仍返回 304
+        cache.invalidate();
+        assertEquals(HttpStatus.NOT_MODIFIED, serve(etag).getStatusCode());
+        assertEquals(2, loads.get());
+
+        body = "{\"total\":2}";
+        cache.invalidate();
+        ResponseEntity<byte[]> changed = serve(etag);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(etag, changed.getHeaders().getETag());
+        assertEquals(3, loads.get());
+
+        // JSON 和 CBOR 分开缓存
+        cache.serve("stats", WireFormat.CBOR, null, out -> {
+            loads.incrementAndGet();
+            out.write(new byte[]{(byte) 0xa0});
+        });
+        assertEquals(4, loads.get());
+        assertEquals(HttpStatus.OK, serve(null).getStatusCode());
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void invalidateAfterCommitWaitsForCommit() {
+        serve(null);
+        long version = (Long) cache.getStats().get("version");
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateAfterCommit();
+        cache.invalidateAfterCommit();
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+        assertEquals(version, cache.getStats().get("version"));
+        serve(null);
+        assertEquals(1, loads.get());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(version + 1, cache.getStats().get("version"));
+        serve(null);
+        assertEquals(2, loads.get());
+
+        // 回滚不失效
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateAfterCommit();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(version + 1, cache.getStats().get("version"));
+    }
+
+    private void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private ResponseEntity<byte[]> serve(String ifNoneMatch) {
+        return cache.serve("stats", WireFormat.JSON, ifNoneMatch, out -> {
+            loads.incrementAndGet();
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+}
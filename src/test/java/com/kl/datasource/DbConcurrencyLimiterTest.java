@@ -0,0 +1,65 @@
+package com.kl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DbConcurrencyLimiterTest {
+
+    private final HikariDataSource pool = DataSourceRoutingConfig.pool("limiter",
+            "jdbc:h2:mem:limiter;DB_CLOSE_DELAY=-1", "sa", "", "org.h2.Driver");
+    private final DbConcurrencyLimiter limiter = new DbConcurrencyLimiter(2, 100);
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void transactionTakesPermitOnlyWhenSqlRuns() {
+        assertPermitTakenOnFirstStatement((DataSource) limiter.postProcessAfterInitialization(pool, "dataSource"));
+    }
+
+    @Test
+    void lazyRoutingProxyStaysOutermost() {
+        DataSource limited = (DataSource) limiter.postProcessAfterInitialization(
+                new LazyConnectionDataSourceProxy(pool), "dataSource");
+        assertInstanceOf(LazyConnectionDataSourceProxy.class, limited);
+        assertPermitTakenOnFirstStatement(limited);
+    }
+
+    @Test
+    void otherDataSourcesAreNotLimited() {
+        assertSame(pool, limiter.postProcessAfterInitialization(pool, "shardDataSource"));
+    }
+
+    private void assertPermitTakenOnFirstStatement(DataSource dataSource) {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        // 第一个事务开始时代理会取一次连接读取默认的自动提交和隔离级别，之后没有执行 SQL 的事务不占许可
+        transaction.executeWithoutResult(status -> { });
+        long acquired = (Long) limiter.getStats().get("acquired");
+        transaction.executeWithoutResult(status -> assertEquals(0, limiter.getStats().get("inUse")));
+        assertEquals(acquired, limiter.getStats().get("acquired"));
+
+        transaction.executeWithoutResult(status -> {
+            assertEquals(0, limiter.getStats().get("inUse"));
+            jdbc.queryForObject("SELECT 1", Integer.class);
+            jdbc.queryForObject("SELECT 2", Integer.class);
+            // 同一事务的多条语句共用一个许可
+            assertEquals(1, limiter.getStats().get("inUse"));
+        });
+        assertEquals(0, limiter.getStats().get("inUse"));
+        assertEquals(acquired + 1, limiter.getStats().get("acquired"));
+    }
+
+}
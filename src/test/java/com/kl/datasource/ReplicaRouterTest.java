@@ -0,0 +1,118 @@
+package com.kl.datasource;
+
+import com.kl.cache.DeviceRegistry;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 主库和从库是两个独立的 H2 内存库，各自只有一行标记，查出来是哪个就是哪个库应答的
+class ReplicaRouterTest {
+
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+    private ReplicaRouter router;
+    private JdbcTemplate jdbc;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        primary = embedded("primary");
+        replica = embedded("replica");
+        router = new ReplicaRouter(primary, Collections.singletonMap("replica", replica),
+                ReplicaRouter.Strategy.ROUND_ROBIN, 60_000, 5_000);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(new RoutingDataSource(router));
+        jdbc = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRouter.clearClient();
+        router.destroy();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplicaAndOthersToPrimary() {
+        assertEquals("replica", inTransaction(true));
+        assertEquals("primary", inTransaction(false));
+        assertEquals("primary", node());
+    }
+
+    @Test
+    void clientSticksToPrimaryOnlyAfterWriteTransaction() {
+        ReplicaRouter.bindClient("teller-1");
+        // 无事务的查询走主库，但不产生粘滞
+        assertEquals("primary", node());
+        assertEquals("replica", inTransaction(true));
+        assertEquals(0, router.getStats().get("stickyClients"));
+
+        assertEquals("primary", inTransaction(false));
+        assertEquals(1, router.getStats().get("stickyClients"));
+        assertEquals("primary", inTransaction(true));
+        assertEquals(1L, router.getStats().get("stickyReads"));
+
+        // 其他客户端不受影响
+        ReplicaRouter.bindClient("teller-2");
+        assertEquals("replica", inTransaction(true));
+    }
+
+    @Test
+    void registryMissInsideReadOnlyTransactionLoadsFromPrimary() {
+        DeviceInfoMapper mapper = Mockito.mock(DeviceInfoMapper.class);
+        Mockito.when(mapper.selectById(ArgumentMatchers.anyInt())).thenAnswer(inv -> {
+            DeviceInfo device = new DeviceInfo();
+            device.setId(inv.getArgument(0));
+            device.setDeviceId("ATM-RR" + inv.getArgument(0));
+            device.setDeviceName(node());
+            return device;
+        });
+        DeviceRegistry registry = new DeviceRegistry();
+        ReflectionTestUtils.setField(registry, "deviceInfoMapper", mapper);
+        ReflectionTestUtils.setField(registry, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(registry, "maxSize", 10);
+        ReflectionTestUtils.setField(registry, "preload", false);
+        registry.afterPropertiesSet();
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        String[] nodes = readOnly.execute(status -> new String[]{
+                node(), registry.getById(1).getDeviceName(), node()});
+        assertArrayEquals(new String[]{"replica", "primary", "replica"}, nodes);
+    }
+
+    private String inTransaction(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template.execute(status -> node());
+    }
+
+    private String node() {
+        return jdbc.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static HikariDataSource embedded(String name) {
+        HikariDataSource dataSource = DataSourceRoutingConfig.pool(name,
+                "jdbc:h2:mem:rr-" + name + ";DB_CLOSE_DELAY=-1", "sa", "", "org.h2.Driver");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(16))");
+        jdbc.update("DELETE FROM node");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.kl.dto;
+
+import com.kl.entity.DeviceInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 改一项 spring.jackson 设置，CBOR 也要跟着生效
+@SpringBootTest(properties = "spring.jackson.datatype.datetime.write-dates-as-timestamps=true")
+@ActiveProfiles("test")
+class ResponseMappersTest {
+
+    @Autowired
+    private ResponseMappers responseMappers;
+
+    @Test
+    void cborUsesSameModulesAndSettingsAsJson() {
+        DeviceInfo device = new DeviceInfo();
+        device.setId(1);
+        device.setDeviceId("ATM-CBOR");
+        device.setDeviceName("CBOR测试");
+        device.setStatus("ONLINE");
+        device.setUpdateTime(new Date(1_700_000_000_000L));
+
+        ObjectMapper json = responseMappers.mapperFor(WireFormat.JSON);
+        ObjectMapper cbor = responseMappers.mapperFor(WireFormat.CBOR);
+        assertNotSame(json, cbor);
+
+        // 两种格式解码后的结构一致：同一个序列化器、同样的日期和空值处理
+        Map<String, Object> body = Map.of("device", device, "generatedAt", new Date(1_700_000_000_000L));
+        JsonNode fromJson = json.readTree(json.writeValueAsBytes(body));
+        JsonNode fromCbor = cbor.readTree(cbor.writeValueAsBytes(body));
+        assertEquals(fromJson, fromCbor);
+        assertEquals("ATM-CBOR", fromCbor.get("device").get("deviceId").asString());
+        assertEquals(1_700_000_000_000L, fromCbor.get("generatedAt").asLong());
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.kl.liveness;
+
+import com.kl.cache.DeviceRegistry;
+import com.kl.entity.DeviceInfo;
+import com.kl.service.DeviceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceLivenessTrackerTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    private final Map<String, DeviceInfo> devices = new HashMap<>();
+    // 每次批量状态变更：目标状态 -> 设备ID列表
+    private final List<Map.Entry<String, List<Integer>>> transitions = new ArrayList<>();
+    private DeviceLivenessTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        DeviceRegistry registry = Mockito.mock(DeviceRegistry.class);
+        Mockito.when(registry.getByDeviceId(ArgumentMatchers.anyString()))
+                .thenAnswer(inv -> devices.get(inv.<String>getArgument(0)));
+        Mockito.when(registry.getByIds(ArgumentMatchers.anyCollection())).thenAnswer(inv -> {
+            Map<Integer, DeviceInfo> found = new HashMap<>();
+            for (Object id : inv.<Collection<?>>getArgument(0)) {
+                for (DeviceInfo device : devices.values()) {
+                    if (device.getId().equals(id)) {
+                        found.put(device.getId(), device);
+                    }
+                }
+            }
+            return found;
+        });
+
+        DeviceService deviceService = Mockito.mock(DeviceService.class);
+        Mockito.when(deviceService.transitionDeviceStatus(ArgumentMatchers.anyList(), ArgumentMatchers.anyString(),
+                ArgumentMatchers.anyString(), ArgumentMatchers.anyString(), ArgumentMatchers.anyString())).thenAnswer(inv -> {
+            List<Integer> ids = new ArrayList<>(inv.<List<Integer>>getArgument(0));
+            String status = inv.getArgument(2);
+            transitions.add(new AbstractMap.SimpleEntry<>(status, ids));
+            for (DeviceInfo device : devices.values()) {
+                if (ids.contains(device.getId())) {
+                    device.setStatus(status);
+                }
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("updated", ids.size());
+            return result;
+        });
+
+        tracker = new DeviceLivenessTracker();
+        ReflectionTestUtils.setField(tracker, "deviceRegistry", registry);
+        ReflectionTestUtils.setField(tracker, "deviceService", deviceService);
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "tickMs", 1000L);
+        ReflectionTestUtils.setField(tracker, "wheelSize", 64);
+        ReflectionTestUtils.setField(tracker, "defaultTimeoutSeconds", TIMEOUT_MS / 1000);
+        ReflectionTestUtils.setField(tracker, "typeTimeouts", "");
+        tracker.start();
+        // 时间轮由测试手动推进
+        ((ScheduledExecutorService) ReflectionTestUtils.getField(tracker, "ticker")).shutdownNow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.stop();
+    }
+
+    @Test
+    void timeoutMarksOfflineAndHeartbeatBringsBackOnline() {
+        device(1, "ATM-L1", "ONLINE");
+        tracker.onHeartbeats(Collections.singletonList("ATM-L1"));
+        tick(0);
+        assertTrue(transitions.isEmpty());
+
+        tick(TIMEOUT_MS + 2_000);
+        assertEquals(Collections.singletonList(transition("OFFLINE", 1)), transitions);
+        assertEquals(1, tracker.getStats().get("expired"));
+
+        tracker.onHeartbeats(Collections.singletonList("ATM-L1"));
+        tick(0);
+        assertEquals(transition("ONLINE", 1), transitions.get(1));
+        assertEquals(0, tracker.getStats().get("expired"));
+    }
+
+    @Test
+    void firstHeartbeatFromOfflineDeviceBringsItOnline() {
+        device(2, "ATM-L2", "OFFLINE");
+        tracker.onHeartbeats(Collections.singletonList("ATM-L2"));
+        tick(0);
+        assertEquals(Collections.singletonList(transition("ONLINE", 2)), transitions);
+    }
+
+    @Test
+    void manualStatusesAreNotTouched() {
+        device(3, "ATM-L3", "MAINTENANCE");
+        tracker.onHeartbeats(Collections.singletonList("ATM-L3"));
+        tick(TIMEOUT_MS + 2_000);
+        assertTrue(transitions.isEmpty());
+    }
+
+    @Test
+    void removedDeviceReleasesSlot() {
+        device(4, "ATM-L4", "ONLINE");
+        device(5, "ATM-L5", "ONLINE");
+        tracker.onHeartbeats(Arrays.asList("ATM-L4", "ATM-L5"));
+        assertEquals(2, tracker.getStats().get("tracked"));
+
+        // 仍在时间轮上的槽位：转到时回收，不再触发离线
+        tracker.remove("ATM-L4");
+        assertEquals(1, tracker.getStats().get("tracked"));
+        tick(TIMEOUT_MS + 2_000);
+        assertEquals(Collections.singletonList(transition("OFFLINE", 5)), transitions);
+
+        // 已超时的槽位立即回收；新设备复用空闲槽位
+        tracker.remove("ATM-L5");
+        assertEquals(0, tracker.getStats().get("tracked"));
+        device(6, "ATM-L6", "ONLINE");
+        device(7, "ATM-L7", "ONLINE");
+        tracker.onHeartbeats(Arrays.asList("ATM-L6", "ATM-L7"));
+        assertEquals(2, tracker.getStats().get("tracked"));
+        assertEquals(2, ReflectionTestUtils.getField(tracker, "slotCount"));
+    }
+
+    private void device(int id, String deviceId, String status) {
+        DeviceInfo device = new DeviceInfo();
+        device.setId(id);
+        device.setDeviceId(deviceId);
+        device.setStatus(status);
+        devices.put(deviceId, device);
+    }
+
+    // 把时间轮推进到当前时间之后 offsetMs，并执行待处理的状态变更
+    private void tick(long offsetMs) {
+        ReflectionTestUtils.invokeMethod(tracker, "advance", System.currentTimeMillis() + offsetMs);
+        ReflectionTestUtils.invokeMethod(tracker, "applyPending");
+    }
+
+    private static Map.Entry<String, List<Integer>> transition(String status, Integer... ids) {
+        return new AbstractMap.SimpleEntry<>(status, Arrays.asList(ids));
+    }
+
+}
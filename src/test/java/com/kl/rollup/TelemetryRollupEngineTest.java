@@ -0,0 +1,185 @@
+package com.kl.rollup;
+
+import com.kl.cache.DeviceRegistry;
+import com.kl.entity.DeviceInfo;
+import com.kl.entity.DeviceStatusLog;
+import com.kl.entity.TelemetryRollup;
+import com.kl.mapper.DeviceStatusLogMapper;
+import com.kl.mapper.TelemetryRollupMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryRollupEngineTest {
+
+    private static final long MINUTE = RollupTier.MINUTE.getSizeMillis();
+    private static final long HOUR = RollupTier.HOUR.getSizeMillis();
+
+    private StubRollupMapper rollupMapper;
+    private TelemetryRollupEngine engine;
+    // 两小时前的整点，分钟桶和小时桶在宽限期后都已关闭
+    private long base;
+
+    @BeforeEach
+    void setUp() {
+        DeviceInfo device = new DeviceInfo();
+        device.setDeviceId("ATM-R1");
+        device.setBranch(" 北京分行 ");
+        DeviceRegistry registry = Mockito.mock(DeviceRegistry.class);
+        Mockito.when(registry.getByDeviceId("ATM-R1")).thenReturn(device);
+
+        rollupMapper = new StubRollupMapper();
+        engine = new TelemetryRollupEngine();
+        ReflectionTestUtils.setField(engine, "telemetryRollupMapper", rollupMapper);
+        ReflectionTestUtils.setField(engine, "deviceStatusLogMapper", Mockito.mock(DeviceStatusLogMapper.class));
+        ReflectionTestUtils.setField(engine, "deviceRegistry", registry);
+        ReflectionTestUtils.setField(engine, "graceSeconds", 0L);
+        ReflectionTestUtils.setField(engine, "writeBatchSize", 500);
+        ReflectionTestUtils.setField(engine, "minuteRetentionDays", 7);
+        ReflectionTestUtils.setField(engine, "hourRetentionDays", 180);
+        ReflectionTestUtils.setField(engine, "dayRetentionDays", 1825);
+        ReflectionTestUtils.setField(engine, "rawRetentionDays", 30);
+
+        base = RollupTier.HOUR.bucketStart(System.currentTimeMillis()) - 2 * HOUR;
+    }
+
+    @Test
+    void closedMinuteBucketsRollIntoHourForDeviceAndBranch() {
+        engine.accept(Arrays.asList(
+                log(base + 10_000, 10f),
+                log(base + 20_000, 30f),
+                log(base + MINUTE + 5_000, 50f)));
+        rollUp();
+
+        TelemetryRollup first = rollupMapper.row("1m", TelemetryRollupEngine.SCOPE_DEVICE, "ATM-R1", "cpu", base);
+        assertEquals(2L, first.getSampleCount());
+        assertEquals(10.0, first.getMinValue());
+        assertEquals(30.0, first.getMaxValue());
+        assertEquals(40.0, first.getSumValue());
+        assertEquals(30.0, first.getLastValue());
+        assertEquals(1L, rollupMapper.row("1m", TelemetryRollupEngine.SCOPE_DEVICE, "ATM-R1", "cpu", base + MINUTE)
+                .getSampleCount());
+
+        TelemetryRollup hour = rollupMapper.row("1h", TelemetryRollupEngine.SCOPE_DEVICE, "ATM-R1", "cpu", base);
+        assertEquals(3L, hour.getSampleCount());
+        assertEquals(90.0, hour.getSumValue());
+        assertEquals(50.0, hour.getMaxValue());
+        assertEquals(50.0, hour.getLastValue());
+
+        // 支行维度按去掉首尾空格后的支行名聚合
+        TelemetryRollup branch = rollupMapper.row("1h", TelemetryRollupEngine.SCOPE_BRANCH, "北京分行", "cpu", base);
+        assertEquals(3L, branch.getSampleCount());
+        // 没有上报的指标不写行
+        assertNull(rollupMapper.row("1m", TelemetryRollupEngine.SCOPE_DEVICE, "ATM-R1", "memory", base));
+    }
+
+    @Test
+    void lateSamplesAccumulateIntoWrittenBucket() {
+        engine.accept(Collections.singletonList(log(base + 10_000, 10f)));
+        rollUp();
+        engine.accept(Collections.singletonList(log(base + 5_000, 70f)));
+        rollUp();
+
+        TelemetryRollup minute = rollupMapper.row("1m", TelemetryRollupEngine.SCOPE_DEVICE, "ATM-R1", "cpu", base);
+        assertEquals(2L, minute.getSampleCount());
+        assertEquals(80.0, minute.getSumValue());
+        // 迟到的样本时间更早，不覆盖 last
+        assertEquals(10.0, minute.getLastValue());
+    }
+
+    @Test
+    void queryPicksCoarsestTierAndMergesOpenBuckets() {
+        engine.accept(Arrays.asList(log(base + 10_000, 10f), log(base + 30 * MINUTE, 30f)));
+        rollUp();
+
+        Map<String, Object> hourly = engine.query("device", "ATM-R1", "cpu",
+                new Date(base), new Date(base + HOUR), 3600L);
+        assertEquals("1h", hourly.get("tier"));
+        List<?> points = (List<?>) hourly.get("points");
+        assertEquals(1, points.size());
+        Map<?, ?> point = (Map<?, ?>) points.get(0);
+        assertEquals(2L, point.get("count"));
+        assertEquals(20.0, point.get("avg"));
+
+        // 刚上报、尚未关闭的分钟桶也能查到
+        long now = System.currentTimeMillis();
+        engine.accept(Collections.singletonList(log(now, 90f)));
+        Map<String, Object> recent = engine.query("device", "ATM-R1", "cpu",
+                new Date(now - 5 * MINUTE), new Date(now + MINUTE), 60L);
+        assertEquals("1m", recent.get("tier"));
+        List<?> recentPoints = (List<?>) recent.get("points");
+        assertEquals(1, recentPoints.size());
+        assertEquals(90.0, ((Map<?, ?>) recentPoints.get(0)).get("last"));
+    }
+
+    private void rollUp() {
+        ReflectionTestUtils.invokeMethod(engine, "rollUp", false);
+    }
+
+    private static DeviceStatusLog log(long time, float cpu) {
+        DeviceStatusLog log = new DeviceStatusLog();
+        log.setDeviceId("ATM-R1");
+        log.setCpuUsage(cpu);
+        log.setLogTime(new Date(time));
+        return log;
+    }
+
+    // 与 upsertBatch 的 ON DUPLICATE KEY UPDATE 口径一致的内存实现
+    private static final class StubRollupMapper implements TelemetryRollupMapper {
+        final Map<String, TelemetryRollup> rows = new HashMap<>();
+
+        TelemetryRollup row(String tier, int scopeType, String scopeKey, String metric, long bucketTime) {
+            return rows.get(key(tier, scopeType, scopeKey, metric, bucketTime));
+        }
+
+        @Override
+        public int upsertBatch(List<TelemetryRollup> batch) {
+            for (TelemetryRollup r : batch) {
+                String key = key(r.getTier(), r.getScopeType(), r.getScopeKey(), r.getMetric(), r.getBucketTime().getTime());
+                TelemetryRollup existing = rows.get(key);
+                if (existing == null) {
+                    rows.put(key, r);
+                    continue;
+                }
+                existing.setSampleCount(existing.getSampleCount() + r.getSampleCount());
+                existing.setMinValue(Math.min(existing.getMinValue(), r.getMinValue()));
+                existing.setMaxValue(Math.max(existing.getMaxValue(), r.getMaxValue()));
+                existing.setSumValue(existing.getSumValue() + r.getSumValue());
+                if (!r.getLastTime().before(existing.getLastTime())) {
+                    existing.setLastValue(r.getLastValue());
+                    existing.setLastTime(r.getLastTime());
+                }
+            }
+            return batch.size();
+        }
+
+        @Override
+        public List<TelemetryRollup> selectRange(String tier, int scopeType, String scopeKey, String metric,
+                                                 Date from, Date to) {
+            List<TelemetryRollup> result = new ArrayList<>();
+            for (TelemetryRollup r : rows.values()) {
+                if (r.getTier().equals(tier) && r.getScopeType() == scopeType && r.getScopeKey().equals(scopeKey)
+                        && r.getMetric().equals(metric) && !r.getBucketTime().before(from) && r.getBucketTime().before(to)) {
+                    result.add(r);
+                }
+            }
+            result.sort(Comparator.comparing(TelemetryRollup::getBucketTime));
+            return result;
+        }
+
+        @Override
+        public int deleteBefore(String tier, Date before, int limit) {
+            return 0;
+        }
+
+        private static String key(String tier, int scopeType, String scopeKey, String metric, long bucketTime) {
+            return tier + "|" + scopeType + "|" + scopeKey + "|" + metric + "|" + bucketTime;
+        }
+    }
+
+}
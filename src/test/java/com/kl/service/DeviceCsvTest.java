@@ -0,0 +1,87 @@
+package com.kl.service;
+
+import com.kl.entity.DeviceInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceCsvTest {
+
+    private final SimpleDateFormat dateFormat = DeviceCsv.newDateFormat();
+
+    @Test
+    void exportedLinesParseBackToTheSameDevice() throws Exception {
+        DeviceInfo device = new DeviceInfo();
+        device.setDeviceId("ATM-0001");
+        device.setDeviceName("大堂\"一号\"机, 靠门");
+        device.setDeviceType("ATM");
+        device.setVendor("GRG");
+        device.setLocation("一楼大堂\n东侧");
+        device.setBranch("城东支行");
+        device.setStatus("ONLINE");
+        device.setInstallDate(dateFormat.parse("2023-05-01"));
+        device.setWarrantyPeriod(36);
+
+        DeviceInfo plain = new DeviceInfo();
+        plain.setDeviceId("ATM-0002");
+        plain.setDeviceName("二号机");
+        plain.setDeviceType("ATM");
+        plain.setLocation("二楼");
+
+        String csv = DeviceCsv.header() + "\n"
+                + DeviceCsv.toLine(device, dateFormat) + "\n"
+                + DeviceCsv.toLine(plain, dateFormat) + "\n";
+
+        List<DeviceInfo> parsed = readAll(csv);
+        assertEquals(2, parsed.size());
+
+        DeviceInfo first = parsed.get(0);
+        assertEquals("ATM-0001", first.getDeviceId());
+        assertEquals("大堂\"一号\"机, 靠门", first.getDeviceName());
+        assertEquals("一楼大堂\n东侧", first.getLocation());
+        assertEquals("城东支行", first.getBranch());
+        assertEquals(device.getInstallDate(), first.getInstallDate());
+        assertEquals(36, first.getWarrantyPeriod());
+
+        DeviceInfo second = parsed.get(1);
+        assertEquals("ATM-0002", second.getDeviceId());
+        assertNull(second.getVendor());
+        assertNull(second.getInstallDate());
+    }
+
+    @Test
+    void readRecordJoinsLinesOnlyInsideQuotes() throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader("a,\"b\nc\",d\ne,\"\"\"f\"\"\"\n"));
+        assertEquals("a,\"b\nc\",d", DeviceCsv.readRecord(reader));
+        assertEquals("e,\"\"\"f\"\"\"", DeviceCsv.readRecord(reader));
+        assertNull(DeviceCsv.readRecord(reader));
+        assertEquals(Arrays.asList("e", "\"f\""), DeviceCsv.parseLine("e,\"\"\"f\"\"\""));
+    }
+
+    @Test
+    void unterminatedQuoteIsRejected() throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader("a,\"b\nc\n"));
+        String record = DeviceCsv.readRecord(reader);
+        assertEquals("a,\"b\nc", record);
+        assertThrows(IllegalArgumentException.class, () -> DeviceCsv.parseLine(record));
+    }
+
+    private List<DeviceInfo> readAll(String csv) throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader(csv));
+        List<String> header = DeviceCsv.parseLine(DeviceCsv.readRecord(reader));
+        List<DeviceInfo> devices = new ArrayList<>();
+        String record;
+        while ((record = DeviceCsv.readRecord(reader)) != null) {
+            devices.add(DeviceCsv.toDevice(header, DeviceCsv.parseLine(record), dateFormat));
+        }
+        return devices;
+    }
+}
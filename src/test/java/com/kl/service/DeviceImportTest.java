@@ -0,0 +1,51 @@
+package com.kl.service;
+
+import com.kl.entity.DeviceInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DeviceImportTest {
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Test
+    void importsMultiLineFieldsAndReportsExistingDevices() {
+        DeviceInfo existing = new DeviceInfo();
+        existing.setDeviceId("IMP-EXIST");
+        existing.setDeviceName("已有设备");
+        existing.setDeviceType("ATM");
+        existing.setLocation("大堂");
+        deviceService.addDevice(existing);
+
+        String csv = "deviceId,deviceName,deviceType,location,branch\n"
+                + "IMP-001,一号机,ATM,\"一楼\n东侧\",城东支行\n"
+                + "IMP-EXIST,重复设备,ATM,二楼,城东支行\n"
+                + "IMP-002,二号机,VTM,三楼,城东支行\n";
+        Map<String, Object> report = deviceService.importDevices(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "csv");
+
+        assertEquals(3, report.get("total"));
+        assertEquals(2, report.get("inserted"));
+        assertEquals(1, report.get("failed"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) report.get("errors");
+        assertEquals("IMP-EXIST", errors.get(0).get("deviceId"));
+        // 首个记录跨两行，重复设备在文件第4行
+        assertEquals(4, errors.get(0).get("line"));
+
+        assertEquals("一楼\n东侧", deviceService.getDeviceByDeviceId("IMP-001").getLocation());
+        assertNotNull(deviceService.getDeviceByDeviceId("IMP-002"));
+    }
+}
@@ -0,0 +1,168 @@
+package com.kl.service;
+
+import com.kl.entity.DeviceFaultRecord;
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceFaultRecordMapper;
+import com.kl.mapper.DeviceInfoMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class FaultRecordLifecycleTest {
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private DeviceFaultRecordMapper deviceFaultRecordMapper;
+
+    @Autowired
+    private DeviceInfoMapper deviceInfoMapper;
+
+    @Test
+    void markFaultOpensRecordAndOnlineClosesIt() {
+        DeviceInfo device = addDevice("FLT-001", "ONLINE");
+
+        assertTrue(deviceService.markDeviceAsFault(device.getId(), "E01_CASH_JAM", "HIGH", "卡钞"));
+        List<DeviceFaultRecord> open = openRecords("FLT-001");
+        assertEquals(1, open.size());
+        assertEquals("E01_CASH_JAM", open.get(0).getFaultCode());
+        assertEquals("HIGH", open.get(0).getFaultLevel());
+
+        // 已是故障状态：不重复标记，也不新开记录
+        assertFalse(deviceService.markDeviceAsFault(device.getId(), "卡钞"));
+        assertEquals(1, openRecords("FLT-001").size());
+
+        assertTrue(deviceService.changeDeviceStatus(device.getId(), "ONLINE", "已修复"));
+        assertTrue(openRecords("FLT-001").isEmpty());
+    }
+
+    @Test
+    void everyTransitionToFaultOpensOneRecord() {
+        DeviceInfo device = addDevice("FLT-002", "ONLINE");
+
+        assertTrue(deviceService.changeDeviceStatus(device.getId(), "FAULT", "巡检发现故障"));
+        List<DeviceFaultRecord> open = openRecords("FLT-002");
+        assertEquals(1, open.size());
+        assertEquals("MANUAL", open.get(0).getFaultCode());
+
+        // FAULT -> MAINTENANCE -> FAULT 沿用未关闭的记录
+        assertTrue(deviceService.changeDeviceStatus(device.getId(), "MAINTENANCE", "维修中"));
+        assertTrue(deviceService.changeDeviceStatus(device.getId(), "FAULT", "维修未完成"));
+        assertEquals(open.get(0).getId(), openRecords("FLT-002").get(0).getId());
+        assertEquals(1, openRecords("FLT-002").size());
+
+        DeviceInfo other = addDevice("FLT-003", "ONLINE");
+        Map<String, Object> result = deviceService.changeDeviceStatusBatch(Arrays.asList(device.getId(), other.getId()),
+                null, null, "FAULT", "批量标记", "tester");
+        assertEquals(1, result.get("updated"));
+        assertEquals(1, openRecords("FLT-003").size());
+        assertEquals(1, openRecords("FLT-002").size());
+    }
+
+    @Test
+    void databaseAllowsOnlyOneOpenRecordPerDevice() {
+        DeviceInfo device = addDevice("FLT-004", "ONLINE");
+        // 模拟并发事务已先提交了一条未关闭记录（内存统计尚未更新）
+        deviceFaultRecordMapper.insert(record("FLT-004", "OTHER"));
+        assertThrows(DuplicateKeyException.class, () -> deviceFaultRecordMapper.insert(record("FLT-004", "OTHER")));
+
+        // 打开记录时遇到唯一键冲突，沿用已有记录而不是失败
+        assertTrue(deviceService.markDeviceAsFault(device.getId(), "E02", "LOW", "并发标记"));
+        List<DeviceFaultRecord> open = openRecords("FLT-004");
+        assertEquals(1, open.size());
+        assertEquals("OTHER", open.get(0).getFaultCode());
+        assertEquals("FAULT", deviceService.getDeviceById(device.getId()).getStatus());
+
+        // 关闭后可以再打开新的记录
+        deviceFaultRecordMapper.closeOpenRecords(Collections.singletonList("FLT-004"), new Date(), "tester");
+        deviceFaultRecordMapper.insert(record("FLT-004", "NEXT"));
+        assertEquals("NEXT", openRecords("FLT-004").get(0).getFaultCode());
+    }
+
+    @Test
+    void transitionOnlyChangesDevicesStillInFromStatus() {
+        DeviceInfo stale = addDevice("FLT-006", "OFFLINE");
+        DeviceInfo ready = addDevice("FLT-007", "OFFLINE");
+        // 绕过注册表直接改库，模拟注册表尚未同步的人工变更
+        deviceInfoMapper.updateStatus(stale.getId(), "FAULT", new Date());
+
+        Map<String, Object> result = deviceService.transitionDeviceStatus(Arrays.asList(stale.getId(), ready.getId()),
+                "OFFLINE", "ONLINE", "恢复上报", "tester");
+        assertEquals(1, result.get("updated"));
+        assertEquals("FAULT", deviceInfoMapper.selectById(stale.getId()).getStatus());
+        assertEquals("ONLINE", deviceInfoMapper.selectById(ready.getId()).getStatus());
+        assertEquals("ONLINE", deviceService.getDeviceById(ready.getId()).getStatus());
+        for (Object row : (List<?>) result.get("results")) {
+            Map<?, ?> outcome = (Map<?, ?>) row;
+            assertEquals(stale.getId().equals(outcome.get("id")) ? "SKIPPED" : "UPDATED", outcome.get("outcome"));
+        }
+    }
+
+    @Test
+    void updateDeviceCannotChangeStatus() {
+        DeviceInfo device = addDevice("FLT-005", "ONLINE");
+
+        DeviceInfo changes = new DeviceInfo();
+        changes.setStatus("FAULT");
+        changes.setLocation("二楼");
+        assertThrows(IllegalArgumentException.class, () -> deviceService.updateDevice(device.getId(), changes));
+        assertEquals("ONLINE", deviceService.getDeviceById(device.getId()).getStatus());
+        assertTrue(openRecords("FLT-005").isEmpty());
+
+        // 与当前状态相同的值随其他字段一起提交时忽略
+        changes.setStatus("online");
+        DeviceInfo updated = deviceService.updateDevice(device.getId(), changes);
+        assertEquals("ONLINE", updated.getStatus());
+        assertEquals("二楼", updated.getLocation());
+    }
+
+    @Test
+    void missingDeviceIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> deviceService.markDeviceAsFault(-1, "不存在"));
+    }
+
+    private DeviceInfo addDevice(String deviceId, String status) {
+        DeviceInfo device = new DeviceInfo();
+        device.setDeviceId(deviceId);
+        device.setDeviceName("故障测试" + deviceId);
+        device.setDeviceType("ATM");
+        device.setLocation("大堂");
+        device.setBranch("故障测试支行");
+        device.setStatus(status);
+        return deviceService.addDevice(device);
+    }
+
+    private static DeviceFaultRecord record(String deviceId, String faultCode) {
+        DeviceFaultRecord record = new DeviceFaultRecord();
+        record.setDeviceId(deviceId);
+        record.setFaultCode(faultCode);
+        record.setFaultLevel("MEDIUM");
+        record.setOccurrenceTime(new Date());
+        return record;
+    }
+
+    private List<DeviceFaultRecord> openRecords(String deviceId) {
+        List<DeviceFaultRecord> result = new ArrayList<>();
+        for (DeviceFaultRecord record : deviceFaultRecordMapper.selectOpen()) {
+            if (deviceId.equals(record.getDeviceId())) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.kl.shard;
+
+import com.kl.entity.DeviceInfo;
+import com.kl.mapper.DeviceInfoMapper;
+import com.kl.service.DeviceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 0 号分片和 1 号分片是两个独立的 H2 内存库，北京的支行落在 1 号分片
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard-test0;" + ShardedDeviceInfoMapperTest.H2_OPTIONS,
+        "bank-monitor.sharding.enabled=true",
+        "bank-monitor.sharding.shard-urls=jdbc:h2:mem:shard-test1;" + ShardedDeviceInfoMapperTest.H2_OPTIONS,
+        "bank-monitor.sharding.branch-shards=北京*=1,上海*=0"
+})
+@ActiveProfiles("test")
+class ShardedDeviceInfoMapperTest {
+
+    static final String H2_OPTIONS = "MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;"
+            + "INIT=RUNSCRIPT FROM 'classpath:db/schema-h2.sql'";
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private DeviceInfoMapper deviceInfoMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void routesByBranchAndFindsDevicesOnEveryShard() {
+        DeviceInfo north = deviceService.addDevice(device("SHD-N1", "北京朝阳支行"));
+        DeviceInfo east = deviceService.addDevice(device("SHD-E1", "上海浦东支行"));
+        assertEquals(1, ShardedDeviceInfoMapper.shardOfId(north.getId()));
+        assertEquals(0, ShardedDeviceInfoMapper.shardOfId(east.getId()));
+
+        assertEquals("SHD-N1", deviceInfoMapper.selectById(north.getId()).getDeviceId());
+        assertEquals(north.getId(), deviceInfoMapper.selectByDeviceId("SHD-N1").getId());
+        List<String> existing = deviceInfoMapper.selectExistingDeviceIds(List.of("SHD-N1", "SHD-E1", "SHD-NONE"));
+        assertEquals(2, existing.size());
+
+        assertTrue(deviceService.changeDeviceStatus(north.getId(), "MAINTENANCE", "巡检"));
+        assertEquals("MAINTENANCE", deviceInfoMapper.selectById(north.getId()).getStatus());
+
+        deviceService.deleteDevice(north.getId());
+        assertNull(deviceInfoMapper.selectByDeviceId("SHD-N1"));
+    }
+
+    @Test
+    void deviceIdIsUniqueAcrossShards() {
+        deviceService.addDevice(device("SHD-DUP", "上海静安支行"));
+        // 不经过注册表，直接写到另一个分片
+        assertThrows(DuplicateKeyException.class, () -> deviceInfoMapper.insert(device("SHD-DUP", "北京海淀支行")));
+        assertThrows(DuplicateKeyException.class,
+                () -> deviceInfoMapper.batchInsert(Collections.singletonList(device("SHD-DUP", "北京西城支行"))));
+        assertEquals(1, deviceInfoMapper.selectExistingDeviceIds(List.of("SHD-DUP")).size());
+
+        // 删除后设备ID可以在其他分片重新使用
+        deviceService.deleteDevice(deviceInfoMapper.selectByDeviceId("SHD-DUP").getId());
+        DeviceInfo reused = deviceService.addDevice(device("SHD-DUP", "北京海淀支行"));
+        assertEquals(1, ShardedDeviceInfoMapper.shardOfId(reused.getId()));
+    }
+
+    @Test
+    void otherShardsJoinTheTransaction() {
+        DeviceInfo north = deviceService.addDevice(device("SHD-TX1", "北京东城支行"));
+        int before = deviceInfoMapper.countAll();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            deviceInfoMapper.insert(device("SHD-TX2", "北京东城支行"));
+            deviceInfoMapper.updateStatus(north.getId(), "FAULT", new Date());
+            // 事务内的广播查询能看到未提交的写入
+            assertEquals(before + 1, deviceInfoMapper.countAll());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(before, deviceInfoMapper.countAll());
+        assertNull(deviceInfoMapper.selectByDeviceId("SHD-TX2"));
+        assertEquals("OFFLINE", deviceInfoMapper.selectById(north.getId()).getStatus());
+        // 回滚后 device_shard 中的占位也一起撤销
+        assertEquals(1, ShardedDeviceInfoMapper.shardOfId(deviceService.addDevice(device("SHD-TX2", "北京东城支行")).getId()));
+    }
+
+    private static DeviceInfo device(String deviceId, String branch) {
+        DeviceInfo device = new DeviceInfo();
+        device.setDeviceId(deviceId);
+        device.setDeviceName("分片测试" + deviceId);
+        device.setDeviceType("ATM");
+        device.setLocation("大堂");
+        device.setBranch(branch);
+        device.setStatus("OFFLINE");
+        return device;
+    }
+
+}